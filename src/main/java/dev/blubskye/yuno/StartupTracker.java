@@ -0,0 +1,83 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Startup Tracker
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long each startup stage took. Stages may run concurrently,
+ * so the tracker keeps the set of stages currently in progress.
+ */
+public class StartupTracker {
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> stageNanos = new LinkedHashMap<>();
+    private final Set<String> activeStages = ConcurrentHashMap.newKeySet();
+    private volatile boolean finished;
+
+    public interface Stage {
+        void run() throws Exception;
+    }
+
+    public void time(String stage, Stage work) throws Exception {
+        time(stage, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public <T> T time(String stage, Callable<T> work) throws Exception {
+        activeStages.add(stage);
+        long begin = System.nanoTime();
+        try {
+            return work.call();
+        } finally {
+            record(stage, System.nanoTime() - begin);
+            activeStages.remove(stage);
+        }
+    }
+
+    public void finish() {
+        record("total", System.nanoTime() - startNanos);
+        finished = true;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public String getCurrentStage() {
+        if (finished) {
+            return "ready";
+        }
+        return activeStages.isEmpty() ? "starting" : String.join("+", activeStages);
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (stageNanos) {
+            for (Map.Entry<String, Long> entry : stageNanos.entrySet()) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(entry.getKey()).append('=')
+                        .append(TimeUnit.NANOSECONDS.toMillis(entry.getValue())).append("ms");
+            }
+        }
+        return sb.toString();
+    }
+
+    private void record(String stage, long nanos) {
+        synchronized (stageNanos) {
+            stageNanos.put(stage, nanos);
+        }
+    }
+}
@@ -7,14 +7,30 @@
 package dev.blubskye.yuno;
 
 import dev.blubskye.yuno.commands.*;
+import dev.blubskye.yuno.config.ConfigWatcher;
 import dev.blubskye.yuno.config.YunoConfig;
+import dev.blubskye.yuno.database.GuildSettings;
+import dev.blubskye.yuno.database.LevelCurve;
+import dev.blubskye.yuno.database.RelevelJob;
+import dev.blubskye.yuno.database.RetentionJob;
+import dev.blubskye.yuno.database.SqliteDatabase;
+import dev.blubskye.yuno.database.SqliteMaintenance;
 import dev.blubskye.yuno.database.YunoDatabase;
+import dev.blubskye.yuno.health.HealthServer;
+import dev.blubskye.yuno.listeners.EventPool;
+import dev.blubskye.yuno.listeners.LevelUpAnnouncer;
 import dev.blubskye.yuno.listeners.MessageListener;
+import dev.blubskye.yuno.listeners.MessageLog;
+import dev.blubskye.yuno.listeners.RaidGuard;
 import dev.blubskye.yuno.listeners.ReadyListener;
 import dev.blubskye.yuno.listeners.SlashCommandListener;
+import dev.blubskye.yuno.metrics.Metrics;
+import dev.blubskye.yuno.outbound.OutboundScheduler;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.Activity;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.channel.ChannelType;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
 import net.dv8tion.jda.api.interactions.commands.build.OptionData;
@@ -23,31 +39,133 @@ import net.dv8tion.jda.api.utils.MemberCachePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.sql.SQLException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class YunoBot {
     private static final Logger logger = LoggerFactory.getLogger(YunoBot.class);
 
-    private final YunoConfig config;
+    private final AtomicReference<YunoConfig> config;
     private final YunoDatabase database;
-    private JDA jda;
+    private final StartupTracker startup;
+    private final Metrics metrics = new Metrics();
+    private final OutboundScheduler outbound = new OutboundScheduler(metrics);
+    private final LeaderboardCache leaderboardCache;
+    private final GlobalLeaderboard globalLeaderboard;
+    private final ActivityTracker activity;
+    private final LevelUpAnnouncer levelUpAnnouncer;
+    private final RaidGuard raidGuard;
+    private final MessageLog messageLog;
+    private final TempBanScheduler tempBans;
+    private final CommandRateLimiter rateLimiter;
+    private final RelevelJob relevel;
+    private final EventPool eventPool = new EventPool();
+    private final CountDownLatch readyLatch = new CountDownLatch(1);
+    private volatile CompletableFuture<Void> databaseStage;
+    private volatile JDA jda;
+    private volatile boolean shuttingDown;
+    private SqliteMaintenance maintenance;
+    private RetentionJob retention;
+    private ConfigWatcher configWatcher;
+    private HealthServer health;
 
-    public YunoBot(YunoConfig config) {
-        this.config = config;
-        this.database = new YunoDatabase(config.getDatabasePath());
+    public YunoBot(YunoConfig config, StartupTracker startup) {
+        this.config = new AtomicReference<>(config);
+        this.startup = startup;
+        this.database = YunoDatabase.create(config);
+        this.leaderboardCache = new LeaderboardCache(database);
+        this.globalLeaderboard = new GlobalLeaderboard(database);
+        this.activity = new ActivityTracker(database, metrics);
+        this.levelUpAnnouncer = new LevelUpAnnouncer(this);
+        this.raidGuard = new RaidGuard(this);
+        this.messageLog = new MessageLog(this);
+        this.tempBans = new TempBanScheduler(this);
+        this.rateLimiter = new CommandRateLimiter(this::getConfig, metrics);
+        this.relevel = new RelevelJob(database);
+        metrics.gauge("events.backlog", eventPool::getBacklog);
     }
 
     public void start() throws Exception {
-        // Initialize database
+        // Up first, so the orchestrator can see startup progress
+        if (getConfig().getHealthPort() > 0) {
+            health = new HealthServer(this, eventPool);
+            try {
+                health.start(getConfig().getHealthBindAddress(), getConfig().getHealthPort());
+            } catch (IOException e) {
+                logger.warn("Could not start health checks on port {}: {}", getConfig().getHealthPort(), e.getMessage());
+                health = null;
+            }
+        }
+
+        // Open the database and warm caches while the gateway logs in
+        ExecutorService startupExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "yuno-startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture<Void> opened = CompletableFuture.runAsync(() -> {
+            try {
+                startup.time("database", database::open);
+                // Holds every statement for as long as the whole file takes to rewrite
+                if (database instanceof SqliteDatabase sqlite && sqlite.needsVacuumRebuild()) {
+                    startup.time("vacuum-rebuild", sqlite::rebuildForIncrementalVacuum);
+                }
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, startupExecutor);
+        databaseStage = opened.thenRun(() -> {
+            try {
+                startup.time("cache-preload", database::preloadGuildSettings);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+        startupExecutor.shutdown();
+
+        // A rebuild must be over before the gateway is up, or the ready handler
+        // would sit on the event thread waiting for it
+        if (database instanceof SqliteDatabase) {
+            awaitDatabase("database-open-wait", opened);
+        }
+
+        try {
+            jda = startup.time("gateway-login", this::buildJda);
+        } catch (Exception e) {
+            databaseStage.handle((ignored, error) -> {
+                database.close();
+                return null;
+            });
+            throw e;
+        }
+
+        awaitDatabase("database-wait", databaseStage);
+    }
+
+    private void awaitDatabase(String stage, CompletableFuture<Void> future) throws Exception {
         try {
-            database.open();
-        } catch (SQLException e) {
-            logger.error("Failed to open database: {}", e.getMessage());
-            throw new RuntimeException("Database initialization failed", e);
+            startup.time(stage, future::join);
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.error("Failed to open database: {}", cause.getMessage());
+            if (jda != null) {
+                jda.shutdownNow();
+            }
+            database.close();
+            throw new RuntimeException("Database initialization failed", cause);
         }
+    }
 
-        // Build JDA instance
-        jda = JDABuilder.createDefault(config.getDiscordToken())
+    private JDA buildJda() {
+        return JDABuilder.createDefault(getConfig().getDiscordToken())
                 .setActivity(Activity.watching("over you~ | /help"))
                 .enableIntents(
                         GatewayIntent.GUILD_MESSAGES,
@@ -56,19 +174,48 @@ public class YunoBot {
                         GatewayIntent.DIRECT_MESSAGES
                 )
                 .setMemberCachePolicy(MemberCachePolicy.ALL)
+                .setEventPool(eventPool, true)
                 .addEventListeners(
                         new ReadyListener(this),
                         new MessageListener(this),
-                        new SlashCommandListener(this)
+                        new SlashCommandListener(this),
+                        raidGuard,
+                        messageLog
                 )
                 .build();
+    }
 
-        // Wait for JDA to be ready
-        jda.awaitReady();
+    public void onGatewayReady(JDA readyJda) {
+        if (isReady() || shuttingDown) {
+            return;
+        }
+        this.jda = readyJda;
+
+        // Events stay gated until the database stage has finished too
+        try {
+            databaseStage.join();
+        } catch (CompletionException e) {
+            return;
+        }
 
         // Register slash commands
         registerSlashCommands();
 
+        // Backups and vacuum wait until startup is out of the way
+        if (database instanceof SqliteDatabase sqlite) {
+            maintenance = new SqliteMaintenance(sqlite, getConfig());
+            maintenance.start();
+        }
+        retention = new RetentionJob(database, this::getConfig);
+        retention.start();
+        tempBans.start();
+        raidGuard.restoreLockdowns(readyJda);
+        globalLeaderboard.start();
+        activity.start();
+
+        readyLatch.countDown();
+        startup.finish();
+        logger.info("Startup timings: {}", startup.summary());
         logger.info("Yuno is online! I'm watching over your servers for you~");
     }
 
@@ -82,12 +229,21 @@ public class YunoBot {
                 Commands.slash("source", "See Yuno's source code~"),
                 Commands.slash("prefix", "Set server command prefix~")
                         .addOptions(new OptionData(OptionType.STRING, "prefix", "The new prefix (max 5 characters)", true)),
+                Commands.slash("stats", "See how busy the server has been~"),
 
                 // Moderation commands
                 Commands.slash("ban", "Ban a user from the server~")
                         .addOptions(
                                 new OptionData(OptionType.USER, "user", "The user to ban", true),
-                                new OptionData(OptionType.STRING, "reason", "Reason for the ban", false)
+                                new OptionData(OptionType.STRING, "reason", "Reason for the ban", false),
+                                new OptionData(OptionType.STRING, "duration", "Lift the ban after this long, like 30m, 12h or 7d", false)
+                        ),
+                Commands.slash("mass-ban", "Ban many users at once, or everyone who just joined~")
+                        .addOptions(
+                                new OptionData(OptionType.STRING, "users", "User IDs or mentions, separated by spaces", false),
+                                new OptionData(OptionType.INTEGER, "joined_minutes", "Ban everyone who joined in the last N minutes", false)
+                                        .setRequiredRange(1, 1440),
+                                new OptionData(OptionType.STRING, "reason", "Reason for the bans", false)
                         ),
                 Commands.slash("kick", "Kick a user from the server~")
                         .addOptions(
@@ -108,11 +264,40 @@ public class YunoBot {
                 Commands.slash("clean", "Delete messages from a channel~")
                         .addOptions(new OptionData(OptionType.INTEGER, "amount", "Number of messages to delete", false)),
                 Commands.slash("mod-stats", "View moderation statistics~"),
+                Commands.slash("import-bans", "Add the server's existing bans to the mod log~"),
 
                 // Leveling commands
                 Commands.slash("xp", "Check XP and level~")
                         .addOptions(new OptionData(OptionType.USER, "user", "User to check (optional)", false)),
-                Commands.slash("leaderboard", "View server XP leaderboard~"),
+                Commands.slash("leaderboard", "View the XP leaderboard~")
+                        .addOptions(new OptionData(OptionType.STRING, "scope", "Which leaderboard", false)
+                                .addChoice("This server", "server")
+                                .addChoice("Every server", "global")),
+                Commands.slash("xp-cooldown", "Set how often chatting can earn XP~")
+                        .addOptions(new OptionData(OptionType.INTEGER, "seconds", "Cooldown in seconds (0 to disable)", true)
+                                .setRequiredRange(0, 86400)),
+                Commands.slash("level-ups", "Choose where level-ups are announced~")
+                        .addOptions(
+                                new OptionData(OptionType.STRING, "mode", "Where announcements go", false)
+                                        .addChoice("Channel where it happened", GuildSettings.LEVEL_UP_HERE)
+                                        .addChoice("A dedicated channel", GuildSettings.LEVEL_UP_CHANNEL)
+                                        .addChoice("Direct message", GuildSettings.LEVEL_UP_DM)
+                                        .addChoice("Off", GuildSettings.LEVEL_UP_OFF),
+                                new OptionData(OptionType.CHANNEL, "channel", "The dedicated channel", false)
+                                        .setChannelTypes(ChannelType.TEXT, ChannelType.NEWS)
+                        ),
+                Commands.slash("level-curve", "Choose how much XP each level takes~")
+                        .addOptions(
+                                new OptionData(OptionType.STRING, "shape", "How the XP per level grows", false)
+                                        .addChoice("Quadratic (xp \u00D7 level\u00B2)", "quadratic")
+                                        .addChoice("Linear (xp \u00D7 level)", "linear")
+                                        .addChoice("Exponential (grows by factor each level)", "exponential")
+                                        .addChoice("Bot default", "default"),
+                                new OptionData(OptionType.INTEGER, "xp", "XP for the first level", false)
+                                        .setRequiredRange(1, LevelCurve.MAX_BASE),
+                                new OptionData(OptionType.NUMBER, "factor", "Growth per level, exponential only", false)
+                                        .setRequiredRange(1.01, LevelCurve.MAX_FACTOR)
+                        ),
 
                 // Fun commands
                 Commands.slash("8ball", "Ask the magic 8-ball~")
@@ -121,34 +306,224 @@ public class YunoBot {
                 // Config commands
                 Commands.slash("auto-clean", "Configure auto-clean for a channel~"),
                 Commands.slash("delay", "Delay auto-clean for this channel~")
-                        .addOptions(new OptionData(OptionType.INTEGER, "minutes", "Minutes to delay", false))
+                        .addOptions(new OptionData(OptionType.INTEGER, "minutes", "Minutes to delay", false)),
+                Commands.slash("raid-guard", "Set up raid detection and lockdowns~")
+                        .addOptions(
+                                new OptionData(OptionType.INTEGER, "threshold", "Joins that trigger a lockdown (0 = off)", false)
+                                        .setRequiredRange(0, RaidGuard.MAX_THRESHOLD),
+                                new OptionData(OptionType.CHANNEL, "alert_channel", "Where to alert the mods", false)
+                                        .setChannelTypes(ChannelType.TEXT, ChannelType.NEWS),
+                                new OptionData(OptionType.BOOLEAN, "end_lockdown", "Lift the current lockdown", false)
+                        ),
+                Commands.slash("message-log", "Log deleted and edited messages to a channel~")
+                        .addOptions(
+                                new OptionData(OptionType.CHANNEL, "channel", "Where to log them", false)
+                                        .setChannelTypes(ChannelType.TEXT, ChannelType.NEWS),
+                                new OptionData(OptionType.BOOLEAN, "off", "Stop logging and forget remembered messages", false)
+                        ),
+                Commands.slash("retention", "Set how long warnings and the mod log are kept~")
+                        .addOptions(
+                                new OptionData(OptionType.INTEGER, "warning_days", "Days until spam warnings fade (0 = never)", false)
+                                        .setRequiredRange(0, 3650),
+                                new OptionData(OptionType.INTEGER, "mod_log_days", "Days until mod actions are archived (0 = never)", false)
+                                        .setRequiredRange(0, 3650)
+                        ),
+                Commands.slash("export", "Download XP or the mod log as a file~")
+                        .addOptions(
+                                new OptionData(OptionType.STRING, "data", "What to export", true)
+                                        .addChoice("XP", "xp")
+                                        .addChoice("Mod log", "mod-log"),
+                                new OptionData(OptionType.STRING, "format", "File format (default CSV)", false)
+                                        .addChoice("CSV", "csv")
+                                        .addChoice("JSON Lines", "jsonl")
+                        ),
+                Commands.slash("import", "Load XP or mod log entries from a CSV or JSONL file~")
+                        .addOptions(
+                                new OptionData(OptionType.STRING, "data", "What to import", true)
+                                        .addChoice("XP", "xp")
+                                        .addChoice("Mod log", "mod-log"),
+                                new OptionData(OptionType.ATTACHMENT, "file", "A .csv or .jsonl file (optionally .gz)", true)
+                        )
         ).queue(
                 success -> logger.info("Successfully registered {} slash commands~", success.size()),
                 error -> logger.error("Failed to register slash commands: {}", error.getMessage())
         );
     }
 
-    public void shutdown() {
-        if (jda != null) {
-            jda.shutdown();
+    /** Picks up edits to the config file without a restart. */
+    public void watchConfig(Path path) {
+        try {
+            configWatcher = new ConfigWatcher(path, config, this::applyReload);
+            configWatcher.start();
+        } catch (IOException e) {
+            logger.warn("Could not watch {} for changes: {}", path, e.getMessage());
+        }
+    }
+
+    // Servers on the bot default get re-leveled when the default curve changes
+    private void applyReload(YunoConfig previous, YunoConfig next) {
+        JDA current = jda;
+        if (previous.getLevelCurve().equals(next.getLevelCurve()) || current == null) {
+            return;
+        }
+        int started = 0;
+        for (Guild guild : current.getGuilds()) {
+            long guildId = guild.getIdLong();
+            GuildSettings settings = database.getGuildSettings(guildId);
+            LevelCurve curve = LevelCurve.forGuild(settings, next.getLevelCurve());
+            if (curve.getSpec().equals(LevelCurve.forGuild(settings, previous.getLevelCurve()).getSpec())) {
+                continue;
+            }
+            relevel.relevel(guildId, curve, result -> leaderboardCache.invalidate(guildId));
+            started++;
         }
-        database.close();
+        logger.info("level_curve is now {}, re-leveling {} servers on the default~", next.getLevelCurve(), started);
+    }
+
+    /**
+     * Shuts down in phases against one deadline: stop taking events and
+     * background work, drain queued REST calls (their callbacks write the mod
+     * log), close the gateway, flush and optimize the database, then close it.
+     * A phase that runs out of time is logged and the next one starts anyway.
+     */
+    public void shutdown() {
+        shuttingDown = true;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(getConfig().getShutdownTimeoutSeconds());
+        StartupTracker phases = new StartupTracker();
+
+        // Listeners ignore new events from here; the one being handled gets to finish
+        phase(phases, "events", () -> {
+            if (configWatcher != null) {
+                configWatcher.stop();
+            }
+            raidGuard.stop();
+            tempBans.stop();
+            relevel.stop();
+            globalLeaderboard.stop();
+            activity.stop();
+            if (retention != null) {
+                retention.stop();
+            }
+            if (maintenance != null) {
+                maintenance.stop();
+            }
+            if (!eventPool.awaitIdle(deadline)) {
+                logger.warn("Still handling an event at the deadline, moving on~");
+            }
+            levelUpAnnouncer.stop();
+        });
+        phase(phases, "outbound", () -> {
+            if (!outbound.awaitIdle(deadline)) {
+                logger.warn("Gave up on {} REST calls at the deadline~", outbound.getPending());
+            }
+        });
+        phase(phases, "gateway", () -> {
+            if (jda != null) {
+                jda.shutdown();
+                if (!jda.awaitShutdown(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())))) {
+                    jda.shutdownNow();
+                }
+            }
+        });
+        phase(phases, "database-flush", () -> {
+            tempBans.flush();
+            activity.flush();
+            database.flush();
+        });
+        phase(phases, "database-optimize", database::optimize);
+        phase(phases, "close", () -> {
+            if (health != null) {
+                health.stop();
+            }
+            database.close();
+        });
+
+        phases.finish();
+        logger.info("Shutdown timings: {}", phases.summary());
         logger.info("Yuno has gone to sleep... see you next time~");
     }
 
+    private static void phase(StartupTracker phases, String name, StartupTracker.Stage work) {
+        try {
+            phases.time(name, work);
+        } catch (Exception e) {
+            logger.error("Shutdown phase {} failed: {}", name, e.getMessage());
+        }
+    }
+
     public YunoConfig getConfig() {
-        return config;
+        return config.get();
     }
 
     public YunoDatabase getDatabase() {
         return database;
     }
 
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public OutboundScheduler getOutbound() {
+        return outbound;
+    }
+
+    public LeaderboardCache getLeaderboardCache() {
+        return leaderboardCache;
+    }
+
+    public ActivityTracker getActivity() {
+        return activity;
+    }
+
+    public GlobalLeaderboard getGlobalLeaderboard() {
+        return globalLeaderboard;
+    }
+
+    public LevelUpAnnouncer getLevelUpAnnouncer() {
+        return levelUpAnnouncer;
+    }
+
+    public RaidGuard getRaidGuard() {
+        return raidGuard;
+    }
+
+    public MessageLog getMessageLog() {
+        return messageLog;
+    }
+
+    public TempBanScheduler getTempBans() {
+        return tempBans;
+    }
+
+    public CommandRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public RelevelJob getRelevel() {
+        return relevel;
+    }
+
+    public LevelCurve getLevelCurve(long guildId) {
+        return LevelCurve.forGuild(database.getGuildSettings(guildId), getConfig().getLevelCurve());
+    }
+
     public JDA getJda() {
         return jda;
     }
 
+    public StartupTracker getStartup() {
+        return startup;
+    }
+
+    public boolean isReady() {
+        return readyLatch.getCount() == 0 && !shuttingDown;
+    }
+
+    public boolean isShuttingDown() {
+        return shuttingDown;
+    }
+
     public boolean isMasterUser(long userId) {
-        return config.isMasterUser(userId);
+        return getConfig().isMasterUser(userId);
     }
 }
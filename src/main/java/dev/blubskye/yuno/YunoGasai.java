@@ -21,6 +21,7 @@
 package dev.blubskye.yuno;
 
 import dev.blubskye.yuno.config.YunoConfig;
+import dev.blubskye.yuno.logging.LogControl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +31,7 @@ public class YunoGasai {
     private static final Logger logger = LoggerFactory.getLogger(YunoGasai.class);
 
     public static void main(String[] args) {
+        StartupTracker startup = new StartupTracker();
         printBanner();
 
         String configPath = "config.json";
@@ -43,40 +45,63 @@ public class YunoGasai {
         }
 
         YunoConfig config;
-        File configFile = new File(configPath);
+        String resolvedPath = configPath;
+        try {
+            config = startup.time("config", () -> loadConfig(resolvedPath));
+        } catch (Exception e) {
+            logger.error("Failed to load config: {}", e.getMessage(), e);
+            config = null;
+        }
 
-        if (configFile.exists()) {
-            logger.info("Loading config from {}~", configPath);
-            config = YunoConfig.loadFromFile(configPath);
-        } else {
-            logger.info("Config file not found, checking environment...");
-            config = YunoConfig.loadFromEnv();
+        if (config == null) {
+            logger.error("Couldn't read the config, see above for why~");
+            LogControl.shutdown();
+            System.exit(1);
         }
 
-        if (config == null || config.getDiscordToken() == null || config.getDiscordToken().isEmpty()
+        if (config.getDiscordToken() == null || config.getDiscordToken().isEmpty()
                 || config.getDiscordToken().equals("YOUR_DISCORD_BOT_TOKEN_HERE")) {
             logger.error("No valid Discord token provided!");
             logger.error("Set DISCORD_TOKEN environment variable or add it to config.json");
+            LogControl.shutdown();
             System.exit(1);
         }
 
+        LogControl.setAppLevel(config.getLogLevel());
+
         logger.info("Yuno is waking up... please wait~");
 
         try {
-            YunoBot bot = new YunoBot(config);
+            YunoBot bot = new YunoBot(config, startup);
             bot.start();
+            if (new File(resolvedPath).exists()) {
+                bot.watchConfig(new File(resolvedPath).toPath());
+            }
 
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 logger.info("Yuno is shutting down... goodbye, my love~");
                 bot.shutdown();
+                LogControl.shutdown();
             }));
 
         } catch (Exception e) {
             logger.error("Failed to start Yuno: {}", e.getMessage(), e);
+            LogControl.shutdown();
             System.exit(1);
         }
     }
 
+    private static YunoConfig loadConfig(String configPath) {
+        File configFile = new File(configPath);
+
+        if (configFile.exists()) {
+            logger.info("Loading config from {}~", configPath);
+            return YunoConfig.loadFromFile(configPath);
+        }
+        logger.info("Config file not found, checking environment...");
+        return YunoConfig.loadFromEnv();
+    }
+
     private static void printBanner() {
         System.out.println();
         System.out.println("    ======================================================");
@@ -0,0 +1,417 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Activity Tracker
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.commands;
+
+import dev.blubskye.yuno.database.ActivityRow;
+import dev.blubskye.yuno.database.ChatterSketch;
+import dev.blubskye.yuno.database.YunoDatabase;
+import dev.blubskye.yuno.metrics.Metrics;
+import dev.blubskye.yuno.util.ConcurrentLongObjectMap;
+import dev.blubskye.yuno.util.HyperLogLog;
+import dev.blubskye.yuno.util.LongObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Counts messages per guild without a database write per message. A guild
+ * that chatted in the last hour holds its per-minute counts in a ring and
+ * this hour's per-channel counts in a few small arrays, plus a 2 KiB
+ * HyperLogLog sketch of today's chatters. When the hour turns the counts
+ * become hourly rows, written in one batch within a minute; the database
+ * keeps daily rows summed from the hourly ones. The sketch is merged into
+ * the stored one for the day whenever it gained someone that hour, and a
+ * week or month is the union of its days' sketches. Guilds that go quiet
+ * are dropped.
+ */
+public class ActivityTracker {
+    private static final Logger logger = LoggerFactory.getLogger(ActivityTracker.class);
+
+    private static final int MINUTES = 60;
+    // Channels counted on their own each hour, the first to talk; the rest only count toward the guild
+    private static final int CHANNELS = 8;
+    private static final long MINUTE_MILLIS = 60_000;
+    private static final long HOURLY_KEEP_HOURS = 14 * 24;
+    private static final long DAILY_KEEP_DAYS = 400;
+    private static final long CHATTER_KEEP_DAYS = 35;
+    private static final long FLUSH_SECONDS = 60;
+    private static final int SHOWN_DAYS = 14;
+    private static final int SHOWN_CHANNELS = 5;
+    private static final String[] BARS = {
+            "\u2581", "\u2582", "\u2583", "\u2584", "\u2585", "\u2586", "\u2587", "\u2588"
+    };
+
+    // Guarded by its own monitor
+    private static final class GuildActivity {
+        // minutes[m % MINUTES] counts minute m, for the hour up to lastMinute
+        final int[] minutes = new int[MINUTES];
+        long lastMinute;
+        // The clock hour being counted
+        long hour;
+        int total;
+        int peak;
+        final long[] channelIds = new long[CHANNELS];
+        final int[] channelCounts = new int[CHANNELS];
+        int channels;
+        // Today's chatters, allocated with the day's first message
+        HyperLogLog chatters;
+        boolean chattersChanged;
+        boolean removed;
+
+        void record(long minute, long channelId, long authorId) {
+            if (chatters == null) {
+                chatters = new HyperLogLog();
+            }
+            chattersChanged |= chatters.add(authorId);
+            advance(minute);
+            int count = ++minutes[(int) (minute % MINUTES)];
+            total++;
+            peak = Math.max(peak, count);
+            for (int i = 0; i < channels; i++) {
+                if (channelIds[i] == channelId) {
+                    channelCounts[i]++;
+                    return;
+                }
+            }
+            if (channels < CHANNELS) {
+                channelIds[channels] = channelId;
+                channelCounts[channels++] = 1;
+            }
+        }
+
+        // Clears the minutes that passed since the last message
+        void advance(long minute) {
+            if (minute <= lastMinute) {
+                return;
+            }
+            long from = Math.max(lastMinute + 1, minute - MINUTES + 1);
+            for (long m = from; m <= minute; m++) {
+                minutes[(int) (m % MINUTES)] = 0;
+            }
+            lastMinute = minute;
+        }
+
+        // Moves to the given hour, handing the finished one's rows over
+        void roll(long guildId, long currentHour, Queue<ActivityRow> rows, Queue<ChatterSketch> sketches) {
+            if (hour != currentHour) {
+                drain(guildId, rows, sketches);
+                if (currentHour / 24 != hour / 24) {
+                    chatters = null;
+                }
+                hour = currentHour;
+            }
+        }
+
+        void drain(long guildId, Queue<ActivityRow> rows, Queue<ChatterSketch> sketches) {
+            if (total > 0) {
+                rows(guildId, rows::add);
+            }
+            total = 0;
+            peak = 0;
+            channels = 0;
+            if (chattersChanged) {
+                sketches.add(sketch(guildId));
+                chattersChanged = false;
+            }
+        }
+
+        ChatterSketch sketch(long guildId) {
+            ChatterSketch sketch = new ChatterSketch();
+            sketch.setGuildId(guildId);
+            sketch.setDay(hour / 24);
+            sketch.setSketch(chatters.toBytes());
+            return sketch;
+        }
+
+        void rows(long guildId, Consumer<ActivityRow> out) {
+            out.accept(row(guildId, ActivityRow.GUILD, total, peak));
+            for (int i = 0; i < channels; i++) {
+                out.accept(row(guildId, channelIds[i], channelCounts[i], 0));
+            }
+        }
+
+        ActivityRow row(long guildId, long channelId, long messages, int peak) {
+            ActivityRow row = new ActivityRow();
+            row.setGuildId(guildId);
+            row.setChannelId(channelId);
+            row.setPeriod(hour);
+            row.setMessages(messages);
+            row.setPeak(peak);
+            return row;
+        }
+    }
+
+    private final YunoDatabase database;
+    private final ConcurrentLongObjectMap<GuildActivity> guilds = new ConcurrentLongObjectMap<>();
+    // Finished hours waiting for the next flush
+    private final ConcurrentLinkedQueue<ActivityRow> pending = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<ChatterSketch> pendingSketches = new ConcurrentLinkedQueue<>();
+    private final LongAdder rowsWritten;
+    private final LongAdder sketchesWritten;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "yuno-activity");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ActivityTracker(YunoDatabase database, Metrics metrics) {
+        this.database = database;
+        this.rowsWritten = metrics.counter("activity.rows_written");
+        this.sketchesWritten = metrics.counter("activity.sketches_written");
+        metrics.gauge("activity.guilds", guilds::size);
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::flushFinished, FLUSH_SECONDS, FLUSH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /** Stops the periodic flush; {@link #flush()} afterwards still saves what's left. */
+    public void stop() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Activity flush did not stop in time~");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void record(long guildId, long channelId, long authorId, long now) {
+        long minute = now / MINUTE_MILLIS;
+        while (true) {
+            GuildActivity activity = guilds.computeIfAbsent(guildId, id -> new GuildActivity());
+            synchronized (activity) {
+                // Lost a race with the flush; the next pass gets a fresh one
+                if (activity.removed) {
+                    continue;
+                }
+                activity.roll(guildId, minute / MINUTES, pending, pendingSketches);
+                activity.record(minute, channelId, authorId);
+                return;
+            }
+        }
+    }
+
+    /** Saves everything counted so far, including the hour in progress; for shutdown. */
+    public void flush() {
+        guilds.forEach((guildId, activity) -> {
+            synchronized (activity) {
+                activity.drain(guildId, pending, pendingSketches);
+            }
+        });
+        write(System.currentTimeMillis() / MINUTE_MILLIS / MINUTES);
+    }
+
+    private void flushFinished() {
+        try {
+            long minute = System.currentTimeMillis() / MINUTE_MILLIS;
+            long hour = minute / MINUTES;
+            List<Long> quiet = new ArrayList<>();
+            guilds.forEach((guildId, activity) -> {
+                synchronized (activity) {
+                    activity.roll(guildId, hour, pending, pendingSketches);
+                    if (activity.total == 0 && activity.lastMinute <= minute - MINUTES) {
+                        quiet.add(guildId);
+                    }
+                }
+            });
+            for (long guildId : quiet) {
+                GuildActivity activity = guilds.get(guildId);
+                if (activity == null) {
+                    continue;
+                }
+                synchronized (activity) {
+                    if (activity.total == 0 && activity.lastMinute <= minute - MINUTES) {
+                        activity.removed = true;
+                        guilds.remove(guildId);
+                    }
+                }
+            }
+            write(hour);
+        } catch (Exception e) {
+            logger.error("Error flushing activity: {}", e.getMessage());
+        }
+    }
+
+    private void write(long hour) {
+        List<ActivityRow> rows = new ArrayList<>();
+        ActivityRow row;
+        while ((row = pending.poll()) != null) {
+            rows.add(row);
+        }
+        if (!rows.isEmpty()) {
+            database.addActivity(rows, hour - HOURLY_KEEP_HOURS, hour / 24 - DAILY_KEEP_DAYS);
+            rowsWritten.add(rows.size());
+        }
+
+        List<ChatterSketch> sketches = new ArrayList<>();
+        ChatterSketch sketch;
+        while ((sketch = pendingSketches.poll()) != null) {
+            sketches.add(sketch);
+        }
+        if (!sketches.isEmpty()) {
+            database.mergeChatterSketches(sketches, hour / 24 - CHATTER_KEEP_DAYS);
+            sketchesWritten.add(sketches.size());
+        }
+    }
+
+    public String render(long guildId) {
+        long minute = System.currentTimeMillis() / MINUTE_MILLIS;
+        long hour = minute / MINUTES;
+        long day = hour / 24;
+
+        // What's only in memory: the last hour by minute, this hour's rows and finished ones not yet written
+        int[] lastHour = new int[MINUTES];
+        List<ActivityRow> unsaved = new ArrayList<>();
+        List<ChatterSketch> sketches = new ArrayList<>(database.getChatterSketches(guildId, day - 29));
+        GuildActivity activity = guilds.get(guildId);
+        if (activity != null) {
+            synchronized (activity) {
+                activity.roll(guildId, hour, pending, pendingSketches);
+                activity.advance(minute);
+                for (int i = 0; i < MINUTES; i++) {
+                    lastHour[i] = activity.minutes[(int) ((minute + 1 + i) % MINUTES)];
+                }
+                if (activity.total > 0) {
+                    activity.rows(guildId, unsaved::add);
+                }
+                if (activity.chattersChanged) {
+                    sketches.add(activity.sketch(guildId));
+                }
+            }
+        }
+        for (ActivityRow row : pending) {
+            if (row.getGuildId() == guildId) {
+                unsaved.add(row);
+            }
+        }
+        for (ChatterSketch sketch : pendingSketches) {
+            if (sketch.getGuildId() == guildId) {
+                sketches.add(sketch);
+            }
+        }
+
+        // Merging is a register-wise max, so a sketch seen twice counts once
+        HyperLogLog today = new HyperLogLog();
+        HyperLogLog week = new HyperLogLog();
+        HyperLogLog month = new HyperLogLog();
+        for (ChatterSketch sketch : sketches) {
+            long age = day - sketch.getDay();
+            if (age < 0 || age >= 30) {
+                continue;
+            }
+            HyperLogLog chatters;
+            try {
+                chatters = HyperLogLog.fromBytes(sketch.getSketch());
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            month.merge(chatters);
+            if (age < 7) {
+                week.merge(chatters);
+            }
+            if (age == 0) {
+                today.merge(chatters);
+            }
+        }
+
+        long[] hours = new long[24];
+        long[] days = new long[SHOWN_DAYS];
+        int peak = 0;
+        LongObjectMap<long[]> channels = new LongObjectMap<>();
+        List<ActivityRow> hourly = new ArrayList<>(database.getHourlyActivity(guildId, hour - 23));
+        hourly.addAll(unsaved);
+        for (ActivityRow row : hourly) {
+            int index = (int) (row.getPeriod() - (hour - 23));
+            if (index < 0 || index >= hours.length) {
+                continue;
+            }
+            if (row.getChannelId() == ActivityRow.GUILD) {
+                hours[index] += row.getMessages();
+                peak = Math.max(peak, row.getPeak());
+            } else {
+                channels.computeIfAbsent(row.getChannelId(), id -> new long[1])[0] += row.getMessages();
+            }
+        }
+        for (ActivityRow row : database.getDailyActivity(guildId, day - (SHOWN_DAYS - 1))) {
+            int index = (int) (row.getPeriod() - (day - (SHOWN_DAYS - 1)));
+            if (index >= 0 && index < days.length) {
+                days[index] += row.getMessages();
+            }
+        }
+        // Daily rows only cover hours already written
+        for (ActivityRow row : unsaved) {
+            int index = (int) (row.getPeriod() / 24 - (day - (SHOWN_DAYS - 1)));
+            if (row.getChannelId() == ActivityRow.GUILD && index >= 0 && index < days.length) {
+                days[index] += row.getMessages();
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("\uD83D\uDCCA **Server Activity**\n*\"I see every message, you know~\"* \uD83D\uDC95\n\n");
+        if (sum(days) == 0 && sum(hours) == 0) {
+            sb.append("No messages yet~");
+            return sb.toString();
+        }
+
+        // Three minutes a bar keeps the line short
+        long[] recent = new long[MINUTES / 3];
+        for (int i = 0; i < MINUTES; i++) {
+            recent[i / 3] += lastHour[i];
+        }
+        sb.append(String.format("**Last hour:** %,d messages\n`%s`\n", sum(recent), sparkline(recent)));
+        sb.append(String.format("**Last 24 hours:** %,d messages, busiest minute %,d\n`%s`\n",
+                sum(hours), peak, sparkline(hours)));
+        sb.append(String.format("**Last %d days:** %,d messages\n`%s`\n", SHOWN_DAYS, sum(days), sparkline(days)));
+        sb.append(String.format("**Chatters:** %,d today, %,d in 7 days, %,d in 30 days\n"
+                        + "*Estimates, usually within \u00B1%.1f%% and nearly always within \u00B1%.0f%%*\n",
+                today.estimate(), week.estimate(), month.estimate(),
+                HyperLogLog.STANDARD_ERROR * 100, HyperLogLog.STANDARD_ERROR * 300));
+
+        if (channels.size() > 0) {
+            List<long[]> ranked = new ArrayList<>();
+            channels.forEach((channelId, count) -> ranked.add(new long[]{channelId, count[0]}));
+            ranked.sort((a, b) -> Long.compare(b[1], a[1]));
+            sb.append("\n**Busiest channels, last 24 hours:**\n");
+            for (int i = 0; i < Math.min(SHOWN_CHANNELS, ranked.size()); i++) {
+                sb.append(String.format("%d. <#%d> - %,d\n", i + 1, ranked.get(i)[0], ranked.get(i)[1]));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    // Lowest bar for nothing at all, the rest scaled to the busiest
+    private static String sparkline(long[] values) {
+        long max = 1;
+        for (long value : values) {
+            max = Math.max(max, value);
+        }
+        StringBuilder sb = new StringBuilder(values.length);
+        for (long value : values) {
+            sb.append(value == 0 ? BARS[0] : BARS[1 + (int) ((value * (BARS.length - 1) - 1) / max)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Command Rate Limiter
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.commands;
+
+import dev.blubskye.yuno.config.YunoConfig;
+import dev.blubskye.yuno.metrics.Metrics;
+import dev.blubskye.yuno.util.TokenBucketTable;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Charges every command against three token buckets: the user's, the
+ * guild's and one for the whole bot. A command has to fit in all three;
+ * if a later level turns it down, what the earlier ones took is given back.
+ * Heavier commands cost more tokens, moderation commands cost nothing so a
+ * raid can always be handled, and master users are never limited. Limits
+ * and costs are read from the live config on every call.
+ */
+public class CommandRateLimiter {
+    private static final int USER_SLOTS = 1 << 15;
+    private static final int GUILD_SLOTS = 1 << 12;
+    private static final long GLOBAL_KEY = 1;
+
+    // Commands that touch a lot of rows or send a lot cost more; unlisted ones cost 1
+    private static final Map<String, Integer> DEFAULT_COSTS = Map.ofEntries(
+            Map.entry("leaderboard", 3),
+            Map.entry("mod-stats", 3),
+            Map.entry("stats", 3),
+            Map.entry("xp", 2),
+            Map.entry("export", 10),
+            Map.entry("import", 10),
+            Map.entry("import-bans", 10),
+            Map.entry("level-curve", 10),
+            Map.entry("ban", 0),
+            Map.entry("mass-ban", 0),
+            Map.entry("kick", 0),
+            Map.entry("unban", 0),
+            Map.entry("timeout", 0),
+            Map.entry("clean", 0),
+            Map.entry("raid-guard", 0)
+    );
+
+    private final Supplier<YunoConfig> config;
+    private final TokenBucketTable users;
+    private final TokenBucketTable guilds;
+    private final TokenBucketTable global;
+    private final LongAdder rejectedUser;
+    private final LongAdder rejectedGuild;
+    private final LongAdder rejectedGlobal;
+
+    public CommandRateLimiter(Supplier<YunoConfig> config, Metrics metrics) {
+        this.config = config;
+        long now = System.currentTimeMillis();
+        this.users = new TokenBucketTable(USER_SLOTS, now);
+        this.guilds = new TokenBucketTable(GUILD_SLOTS, now);
+        this.global = new TokenBucketTable(2, now);
+        this.rejectedUser = metrics.counter("ratelimit.rejected.user");
+        this.rejectedGuild = metrics.counter("ratelimit.rejected.guild");
+        this.rejectedGlobal = metrics.counter("ratelimit.rejected.global");
+    }
+
+    public int costOf(String command) {
+        Integer cost = config.get().getCommandCosts().get(command);
+        if (cost == null) {
+            cost = DEFAULT_COSTS.get(command);
+        }
+        return cost != null ? cost : 1;
+    }
+
+    /** Returns 0 if the command may run, otherwise how many milliseconds to wait before trying again. */
+    public long tryAcquire(String command, long guildId, long userId) {
+        YunoConfig current = config.get();
+        int cost = costOf(command);
+        if (cost == 0 || current.isMasterUser(userId)) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+
+        int userBurst = current.getRateLimitUserBurst();
+        int userRate = current.getRateLimitUserPerMinute();
+        long wait = userBurst > 0 ? users.tryTake(userId, cost, userBurst, userRate, now) : 0;
+        if (wait > 0) {
+            rejectedUser.increment();
+            return wait;
+        }
+
+        int guildBurst = current.getRateLimitGuildBurst();
+        int guildRate = current.getRateLimitGuildPerMinute();
+        wait = guildBurst > 0 && guildId != 0 ? guilds.tryTake(guildId, cost, guildBurst, guildRate, now) : 0;
+        if (wait > 0) {
+            refundUser(userId, cost, userBurst, userRate, now);
+            rejectedGuild.increment();
+            return wait;
+        }
+
+        int globalBurst = current.getRateLimitGlobalBurst();
+        wait = globalBurst > 0 ? global.tryTake(GLOBAL_KEY, cost, globalBurst, current.getRateLimitGlobalPerMinute(), now) : 0;
+        if (wait > 0) {
+            refundUser(userId, cost, userBurst, userRate, now);
+            if (guildBurst > 0 && guildId != 0) {
+                guilds.refund(guildId, cost, guildBurst, guildRate, now);
+            }
+            rejectedGlobal.increment();
+            return wait;
+        }
+        return 0;
+    }
+
+    private void refundUser(long userId, int cost, int burst, int perMinute, long now) {
+        if (burst > 0) {
+            users.refund(userId, cost, burst, perMinute, now);
+        }
+    }
+}
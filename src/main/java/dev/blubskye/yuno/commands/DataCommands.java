@@ -0,0 +1,353 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Data Commands
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.commands;
+
+import dev.blubskye.yuno.YunoBot;
+import dev.blubskye.yuno.database.DataTransfer;
+import dev.blubskye.yuno.database.ModAction;
+import dev.blubskye.yuno.outbound.OutboundScheduler;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.requests.RestAction;
+import net.dv8tion.jda.api.utils.FileUpload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bulk import/export of XP and the mod log, plus importing the guild's
+ * existing ban list. Transfers run one at a time on a background thread
+ * and stream rows in chunks, so they never hold an event thread or load
+ * a whole file into memory.
+ */
+public class DataCommands {
+    private static final Logger logger = LoggerFactory.getLogger(DataCommands.class);
+
+    private static final ExecutorService transfers = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "yuno-data-transfer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final int BAN_PAGE_SIZE = 1000;
+
+    private final YunoBot bot;
+    private final OutboundScheduler.Sender out;
+    private final DataTransfer dataTransfer;
+
+    public DataCommands(YunoBot bot) {
+        this.bot = bot;
+        this.out = bot.getOutbound().sender(OutboundScheduler.Priority.REPLY);
+        this.dataTransfer = new DataTransfer(bot.getDatabase());
+    }
+
+    // Slash Commands
+
+    public void handleExport(SlashCommandInteractionEvent event) {
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
+            return;
+        }
+
+        String data = event.getOption("data").getAsString();
+        DataTransfer.Format format = event.getOption("format") != null
+                ? DataTransfer.Format.fromFileName("." + event.getOption("format").getAsString())
+                : DataTransfer.Format.CSV;
+        Guild guild = event.getGuild();
+
+        out.send(event.deferReply());
+        transfers.execute(() -> export(guild, data, format,
+                (message, file) -> event.getHook().sendMessage(message).addFiles(file),
+                error -> out.send(event.getHook().sendMessage(error))));
+    }
+
+    public void handleImport(SlashCommandInteractionEvent event) {
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
+            return;
+        }
+
+        String data = event.getOption("data").getAsString();
+        Message.Attachment file = event.getOption("file").getAsAttachment();
+        DataTransfer.Format format = DataTransfer.Format.fromFileName(file.getFileName());
+        if (format == null) {
+            out.send(event.reply("\uD83D\uDC94 I can only read `.csv` or `.jsonl` files (optionally `.gz`)~").setEphemeral(true));
+            return;
+        }
+
+        out.send(event.deferReply());
+        importFile(event.getGuild().getIdLong(), data, file, format,
+                message -> out.send(event.getHook().sendMessage(message)));
+    }
+
+    public void handleImportBans(SlashCommandInteractionEvent event) {
+        if (!event.getMember().hasPermission(Permission.BAN_MEMBERS)) {
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
+            return;
+        }
+
+        out.send(event.deferReply());
+        importBans(event.getGuild(), event.getUser().getIdLong(), message -> out.send(event.getHook().sendMessage(message)));
+    }
+
+    // Prefix Commands
+
+    public void handleExportPrefix(MessageReceivedEvent event, String args) {
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.sendMessage(event.getChannel(),
+                    bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
+            );
+            return;
+        }
+
+        String[] parts = args == null ? new String[0] : args.trim().split("\\s+");
+        String data = parts.length > 0 ? parts[0].toLowerCase() : "";
+        DataTransfer.Format format = parts.length > 1
+                ? DataTransfer.Format.fromFileName("." + parts[1].toLowerCase())
+                : DataTransfer.Format.CSV;
+        if (!isDataType(data) || format == null) {
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 Usage: `export <xp|mod-log> [csv|jsonl]`~");
+            return;
+        }
+
+        Guild guild = event.getGuild();
+        out.send(event.getChannel(), event.getChannel().sendTyping());
+        transfers.execute(() -> export(guild, data, format,
+                (message, file) -> event.getChannel().sendMessage(message).addFiles(file),
+                error -> out.sendMessage(event.getChannel(), error)));
+    }
+
+    public void handleImportPrefix(MessageReceivedEvent event, String args) {
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.sendMessage(event.getChannel(),
+                    bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
+            );
+            return;
+        }
+
+        String data = args == null ? "" : args.trim().toLowerCase();
+        List<Message.Attachment> attachments = event.getMessage().getAttachments();
+        DataTransfer.Format format = attachments.isEmpty() ? null
+                : DataTransfer.Format.fromFileName(attachments.get(0).getFileName());
+        if (!isDataType(data) || format == null) {
+            out.sendMessage(event.getChannel(),
+                    "\uD83D\uDC94 Usage: `import <xp|mod-log>` with a `.csv` or `.jsonl` file attached~"
+            );
+            return;
+        }
+
+        importFile(event.getGuild().getIdLong(), data, attachments.get(0), format,
+                message -> out.sendMessage(event.getChannel(), message));
+    }
+
+    public void handleImportBansPrefix(MessageReceivedEvent event) {
+        if (!event.getMember().hasPermission(Permission.BAN_MEMBERS)) {
+            out.sendMessage(event.getChannel(),
+                    bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
+            );
+            return;
+        }
+
+        importBans(event.getGuild(), event.getAuthor().getIdLong(), message -> out.sendMessage(event.getChannel(), message));
+    }
+
+    // Transfers
+
+    private interface ExportReply {
+        RestAction<?> send(String message, FileUpload file);
+    }
+
+    private static boolean isDataType(String data) {
+        return data.equals("xp") || data.equals("mod-log");
+    }
+
+    // Streams the rows into a temp file, gzipping it if it would not fit as a plain upload
+    private void export(Guild guild, String data, DataTransfer.Format format, ExportReply reply, Consumer<String> onError) {
+        Path file = null;
+        try {
+            file = Files.createTempFile("yuno-export", format.extension());
+            long rows;
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8))) {
+                rows = data.equals("xp")
+                        ? dataTransfer.exportXp(guild.getIdLong(), format, out)
+                        : dataTransfer.exportModActions(guild.getIdLong(), format, out);
+            }
+
+            String name = data + "-" + guild.getId() + format.extension();
+            if (Files.size(file) > guild.getMaxFileSize()) {
+                Path gzipped = Files.createTempFile("yuno-export", format.extension() + ".gz");
+                try (InputStream in = Files.newInputStream(file);
+                     OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzipped))) {
+                    in.transferTo(out);
+                }
+                Files.delete(file);
+                file = gzipped;
+                name += ".gz";
+            }
+            if (Files.size(file) > guild.getMaxFileSize()) {
+                Files.delete(file);
+                onError.accept("\uD83D\uDC94 That export is too big to upload here, even compressed~");
+                return;
+            }
+
+            Path upload = file;
+            out.send(reply.send(String.format("\uD83D\uDCE6 **Export ready!**\n**%,d** rows, all yours~ \uD83D\uDC95", rows),
+                    FileUpload.fromData(upload.toFile(), name)),
+                    sent -> deleteQuietly(upload),
+                    error -> deleteQuietly(upload));
+        } catch (IOException e) {
+            logger.error("Error exporting {} for guild {}: {}", data, guild.getId(), e.getMessage());
+            deleteQuietly(file);
+            onError.accept("\uD83D\uDC94 Something went wrong while exporting~");
+        }
+    }
+
+    private void importFile(long guildId, String data, Message.Attachment file, DataTransfer.Format format,
+                            Consumer<String> reply) {
+        file.getProxy().download().thenAcceptAsync(stream -> {
+            long begin = System.nanoTime();
+            try (InputStream raw = file.getFileName().toLowerCase().endsWith(".gz") ? new GZIPInputStream(stream) : stream;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(raw, StandardCharsets.UTF_8))) {
+                DataTransfer.Result result = data.equals("xp")
+                        ? dataTransfer.importXp(guildId, format, in, bot.getLevelCurve(guildId))
+                        : dataTransfer.importModActions(guildId, format, in);
+                if (data.equals("xp")) {
+                    bot.getLeaderboardCache().invalidate(guildId);
+                    bot.getGlobalLeaderboard().invalidate();
+                }
+                long millis = (System.nanoTime() - begin) / 1_000_000;
+                if (result.getFailed() > 0) {
+                    logger.warn("Imported {} {} rows into guild {}, {} failed to save ({} skipped)",
+                            result.getRows(), data, guildId, result.getFailed(), result.getSkipped());
+                    reply.accept(String.format(
+                            "\uD83D\uDC94 **Import incomplete...**\n**%,d** rows imported, but **%,d** couldn't be saved%s~",
+                            result.getRows(), result.getFailed(),
+                            result.getSkipped() > 0 ? String.format(" and %,d unreadable rows were skipped", result.getSkipped()) : ""));
+                    return;
+                }
+                logger.info("Imported {} {} rows into guild {} in {}ms ({} skipped)~",
+                        result.getRows(), data, guildId, millis, result.getSkipped());
+                reply.accept(String.format(
+                        "\uD83D\uDCE5 **Import finished!**\n**%,d** rows imported in %,dms%s~ \uD83D\uDC95",
+                        result.getRows(), millis,
+                        result.getSkipped() > 0 ? String.format(" (%,d unreadable rows skipped)", result.getSkipped()) : ""));
+            } catch (IOException e) {
+                logger.error("Error importing {} for guild {}: {}", data, guildId, e.getMessage());
+                reply.accept("\uD83D\uDC94 I couldn't read that file~");
+            }
+        }, transfers).exceptionally(error -> {
+            logger.error("Error downloading import for guild {}: {}", guildId, error.getMessage());
+            reply.accept("\uD83D\uDC94 I couldn't download that file~");
+            return null;
+        });
+    }
+
+    // Discord pages the ban list by cursor, so pages arrive one after another; each full
+    // batch is written on the transfer thread while the next page is already being fetched.
+    // Discord doesn't say who banned whom, so the bans are logged as the importing moderator's
+    private void importBans(Guild guild, long moderatorId, Consumer<String> reply) {
+        long guildId = guild.getIdLong();
+        CompletableFuture.supplyAsync(() -> {
+            Set<Long> alreadyLogged = new HashSet<>();
+            bot.getDatabase().forEachModAction(guildId, action -> {
+                if ("ban".equals(action.getActionType())) {
+                    alreadyLogged.add(action.getTargetId());
+                }
+            });
+            return alreadyLogged;
+        }, transfers).thenCompose(alreadyLogged -> {
+            long now = System.currentTimeMillis() / 1000;
+            // Read, already logged, failed to save; only the transfer thread touches the last
+            long[] counts = new long[3];
+            List<List<ModAction>> batch = new ArrayList<>(List.of(new ArrayList<>(DataTransfer.CHUNK_SIZE)));
+
+            return guild.retrieveBanList().limit(BAN_PAGE_SIZE).forEachAsync(ban -> {
+                if (!alreadyLogged.add(ban.getUser().getIdLong())) {
+                    counts[1]++;
+                    return true;
+                }
+                ModAction action = new ModAction();
+                action.setGuildId(guildId);
+                action.setModeratorId(moderatorId);
+                action.setTargetId(ban.getUser().getIdLong());
+                action.setActionType("ban");
+                action.setReason(ban.getReason() != null ? ban.getReason() : "Imported from ban list");
+                action.setTimestamp(now);
+                batch.get(0).add(action);
+                counts[0]++;
+                if (batch.get(0).size() == DataTransfer.CHUNK_SIZE) {
+                    List<ModAction> full = batch.set(0, new ArrayList<>(DataTransfer.CHUNK_SIZE));
+                    transfers.execute(() -> saveBans(full, counts));
+                }
+                return true;
+            }).thenRunAsync(() -> {
+                saveBans(batch.get(0), counts);
+                long imported = counts[0] - counts[2];
+                if (counts[2] > 0) {
+                    logger.warn("Imported {} bans into guild {}, {} failed to save ({} already logged)",
+                            imported, guildId, counts[2], counts[1]);
+                    reply.accept(String.format(
+                            "\uD83D\uDC94 **Ban import incomplete...**\n**%,d** bans added to the mod log, but **%,d** couldn't be saved~ Run it again to retry them",
+                            imported, counts[2]));
+                    return;
+                }
+                logger.info("Imported {} bans into guild {} ({} already logged)~", imported, guildId, counts[1]);
+                reply.accept(String.format(
+                        "\uD83D\uDD2A **Ban history imported!**\n**%,d** bans added to the mod log, **%,d** were already there~ \uD83D\uDC95",
+                        imported, counts[1]));
+            }, transfers);
+        }).exceptionally(error -> {
+            logger.error("Error importing bans for guild {}: {}", guild.getId(), error.getMessage());
+            reply.accept("\uD83D\uDC94 I couldn't read the ban list... do I have the Ban Members permission?~");
+            return null;
+        });
+    }
+
+    private void saveBans(List<ModAction> bans, long[] counts) {
+        if (!bot.getDatabase().logModActions(bans)) {
+            counts[2] += bans.size();
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete temp file: {}", e.getMessage());
+        }
+    }
+}
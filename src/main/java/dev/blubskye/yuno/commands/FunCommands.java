@@ -7,6 +7,7 @@
 package dev.blubskye.yuno.commands;
 
 import dev.blubskye.yuno.YunoBot;
+import dev.blubskye.yuno.outbound.OutboundScheduler;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 
@@ -42,10 +43,12 @@ public class FunCommands {
     };
 
     private final YunoBot bot;
+    private final OutboundScheduler.Sender out;
     private final Random random;
 
     public FunCommands(YunoBot bot) {
         this.bot = bot;
+        this.out = bot.getOutbound().sender(OutboundScheduler.Priority.FUN);
         this.random = new Random();
     }
 
@@ -59,31 +62,31 @@ public class FunCommands {
         String question = event.getOption("question").getAsString();
         String response = getRandomResponse();
 
-        event.reply(String.format(
+        out.send(event.reply(String.format(
                 "\uD83C\uDFB1 **Magic 8-Ball**\n\n" +
                         "**Question:** %s\n\n" +
                         "**Answer:** %s\n\n" +
                         "*shakes the 8-ball mysteriously*",
                 question, response
-        )).queue();
+        )));
     }
 
     // Prefix Commands
 
     public void handle8BallPrefix(MessageReceivedEvent event, String args) {
         if (args == null || args.isEmpty()) {
-            event.getChannel().sendMessage("\uD83D\uDC94 You need to ask a question~ \uD83C\uDFB1").queue();
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 You need to ask a question~ \uD83C\uDFB1");
             return;
         }
 
         String response = getRandomResponse();
 
-        event.getChannel().sendMessage(String.format(
+        out.sendMessage(event.getChannel(), String.format(
                 "\uD83C\uDFB1 **Magic 8-Ball**\n\n" +
                         "**Question:** %s\n\n" +
                         "**Answer:** %s\n\n" +
                         "*shakes the 8-ball mysteriously*",
                 args, response
-        )).queue();
+        ));
     }
 }
@@ -0,0 +1,159 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Global Leaderboard
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.commands;
+
+import dev.blubskye.yuno.database.UserXp;
+import dev.blubskye.yuno.database.YunoDatabase;
+import dev.blubskye.yuno.util.LongObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top users by XP summed over every server. The top {@link #TRACKED} totals
+ * are held in memory and each award is added to its user's total if they're
+ * on it, so showing the board never touches the database. Once a minute the
+ * list is reloaded from the totals table (an indexed read of TRACKED rows)
+ * to pick up anyone who climbed in from below. Far more users are tracked
+ * than shown, so the shown places are right unless someone outside the
+ * tracked ones overtakes them within a minute.
+ */
+public class GlobalLeaderboard {
+    private static final Logger logger = LoggerFactory.getLogger(GlobalLeaderboard.class);
+
+    public static final int SIZE = LeaderboardCache.SIZE;
+    public static final int TRACKED = 100;
+    private static final long RECONCILE_SECONDS = 60;
+
+    private final YunoDatabase database;
+    // Guarded by this
+    private LongObjectMap<long[]> totals = new LongObjectMap<>();    // user -> {total xp}
+    private long[] rankedIds = new long[0];
+    private long[] rankedXp = new long[0];
+    private boolean reorder;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "yuno-global-leaderboard");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public GlobalLeaderboard(YunoDatabase database) {
+        this.database = database;
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::reconcile, 0, RECONCILE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public void onXpAwarded(long userId, long amount) {
+        synchronized (this) {
+            long[] total = totals.get(userId);
+            if (total != null) {
+                total[0] += amount;
+                reorder = true;
+            }
+        }
+    }
+
+    /** For changes that can lower totals or touch many users at once, like imports; reloads in the background. */
+    public void invalidate() {
+        try {
+            scheduler.execute(this::reconcile);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    public String get(long viewerId) {
+        long[] ids;
+        long[] xp;
+        synchronized (this) {
+            if (reorder) {
+                rank();
+            }
+            ids = rankedIds;
+            xp = rankedXp;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("\uD83C\uDF0D **Global Leaderboard**\n*\"Every server, and you're still my favourite~\"* \uD83D\uDC95\n\n");
+        if (ids.length == 0) {
+            sb.append("No one has earned XP yet~");
+            return sb.toString();
+        }
+
+        int viewerRank = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == viewerId) {
+                viewerRank = i + 1;
+            }
+            if (i < SIZE) {
+                String medal = switch (i) {
+                    case 0 -> "\uD83E\uDD47";
+                    case 1 -> "\uD83E\uDD48";
+                    case 2 -> "\uD83E\uDD49";
+                    default -> "";
+                };
+                sb.append(String.format("%s %d. <@%d> - %,d XP\n", medal, i + 1, ids[i], xp[i]));
+            }
+        }
+        if (viewerRank > 0) {
+            sb.append(String.format("\nYou're **#%d** with %,d XP~", viewerRank, xp[viewerRank - 1]));
+        } else {
+            long total = database.getTotalXp(viewerId);
+            sb.append(String.format("\nYou have %,d XP, not in the top %d yet~", total, TRACKED));
+        }
+        return sb.toString();
+    }
+
+    // Sorts the tracked totals, highest first; there are only TRACKED of them
+    private void rank() {
+        int size = totals.size();
+        long[] ids = new long[size];
+        long[] xp = new long[size];
+        int[] count = {0};
+        totals.forEach((userId, total) -> {
+            int i = count[0]++;
+            // Insertion sort, descending
+            while (i > 0 && xp[i - 1] < total[0]) {
+                ids[i] = ids[i - 1];
+                xp[i] = xp[i - 1];
+                i--;
+            }
+            ids[i] = userId;
+            xp[i] = total[0];
+        });
+        rankedIds = ids;
+        rankedXp = xp;
+        reorder = false;
+    }
+
+    private void reconcile() {
+        try {
+            List<UserXp> top = database.getGlobalLeaderboard(TRACKED);
+            LongObjectMap<long[]> fresh = new LongObjectMap<>();
+            for (UserXp row : top) {
+                fresh.put(row.getUserId(), new long[]{row.getXp()});
+            }
+            synchronized (this) {
+                totals = fresh;
+                rank();
+            }
+        } catch (Exception e) {
+            logger.error("Error reloading the global leaderboard: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Leaderboard Cache
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.commands;
+
+import dev.blubskye.yuno.database.UserXp;
+import dev.blubskye.yuno.database.YunoDatabase;
+import dev.blubskye.yuno.util.ConcurrentLongObjectMap;
+
+import java.util.List;
+
+/**
+ * Rendered leaderboard message per guild, shared by the slash and prefix
+ * commands. An entry lives for a short TTL and is dropped early only when
+ * an XP award could change who is on the board or their order; awards
+ * further down just wait for the TTL to refresh the numbers.
+ */
+public class LeaderboardCache {
+    public static final int SIZE = 10;
+    private static final long TTL_MS = 60_000;
+
+    private static final class Entry {
+        final String message;
+        final long[] userIds;
+        final long[] xp;
+        final long expiresAt;
+        volatile boolean stale;
+
+        Entry(String message, long[] userIds, long[] xp, long expiresAt) {
+            this.message = message;
+            this.userIds = userIds;
+            this.xp = xp;
+            this.expiresAt = expiresAt;
+        }
+
+        // Awards only ever raise XP, so the cached values are lower bounds and these checks
+        // can only err towards refreshing
+        boolean changedBy(long userId, long newXp) {
+            for (int i = 0; i < userIds.length; i++) {
+                if (userIds[i] == userId) {
+                    return i > 0 && newXp >= xp[i - 1];
+                }
+            }
+            return userIds.length < SIZE || newXp >= xp[userIds.length - 1];
+        }
+    }
+
+    private final YunoDatabase database;
+    private final ConcurrentLongObjectMap<Entry> entries = new ConcurrentLongObjectMap<>();
+
+    public LeaderboardCache(YunoDatabase database) {
+        this.database = database;
+    }
+
+    public String get(long guildId) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(guildId);
+        if (entry != null && !entry.stale && entry.expiresAt > now) {
+            return entry.message;
+        }
+
+        List<UserXp> top = database.getLeaderboard(guildId, SIZE);
+        long[] userIds = new long[top.size()];
+        long[] xp = new long[top.size()];
+        for (int i = 0; i < top.size(); i++) {
+            userIds[i] = top.get(i).getUserId();
+            xp[i] = top.get(i).getXp();
+        }
+        entry = new Entry(render(top), userIds, xp, now + TTL_MS);
+        entries.put(guildId, entry);
+        return entry.message;
+    }
+
+    public void onXpAwarded(long guildId, long userId, long newXp) {
+        Entry entry = entries.get(guildId);
+        if (entry != null && !entry.stale && entry.changedBy(userId, newXp)) {
+            entry.stale = true;
+        }
+    }
+
+    /** For changes that can lower XP or touch many users at once, like imports. */
+    public void invalidate(long guildId) {
+        entries.remove(guildId);
+    }
+
+    private static String render(List<UserXp> topUsers) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("\uD83C\uDFC6 **Server Leaderboard**\n*\"Look who's been the most active~\"* \uD83D\uDC95\n\n");
+
+        if (topUsers.isEmpty()) {
+            sb.append("No one has earned XP yet~");
+        } else {
+            for (int i = 0; i < topUsers.size(); i++) {
+                UserXp user = topUsers.get(i);
+                String medal = switch (i) {
+                    case 0 -> "\uD83E\uDD47";
+                    case 1 -> "\uD83E\uDD48";
+                    case 2 -> "\uD83E\uDD49";
+                    default -> "";
+                };
+                sb.append(String.format("%s %d. <@%d> - Level %d (%d XP)\n",
+                        medal, i + 1, user.getUserId(), user.getLevel(), user.getXp()));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -8,7 +8,10 @@ package dev.blubskye.yuno.commands;
 
 import dev.blubskye.yuno.YunoBot;
 import dev.blubskye.yuno.database.ModAction;
+import dev.blubskye.yuno.outbound.OutboundScheduler;
+import dev.blubskye.yuno.util.LongHashSet;
 import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.entities.UserSnowflake;
@@ -18,55 +21,69 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class ModerationCommands {
     private static final Logger logger = LoggerFactory.getLogger(ModerationCommands.class);
     private static final Pattern USER_MENTION_PATTERN = Pattern.compile("<@!?(\\d+)>");
+    private static final Pattern SNOWFLAKE_PATTERN = Pattern.compile("\\d{17,20}");
+    // Discord's bulk ban endpoint takes at most 200 users per request
+    private static final int BULK_BAN_SIZE = 200;
+    private static final int MAX_MASS_BAN = 1000;
+    private static final Pattern DURATION_PATTERN = Pattern.compile("(\\d{1,6})([mhdw])", Pattern.CASE_INSENSITIVE);
+    private static final Duration MAX_BAN_DURATION = Duration.ofDays(365);
+    private static final String BAD_DURATION = "\uD83D\uDC94 Durations look like `30m`, `12h`, `7d` or `2w`, up to a year~";
 
     private final YunoBot bot;
+    private final OutboundScheduler.Sender out;
 
     public ModerationCommands(YunoBot bot) {
         this.bot = bot;
+        this.out = bot.getOutbound().sender(OutboundScheduler.Priority.MODERATION);
     }
 
     // Slash Commands
 
     public void handleBan(SlashCommandInteractionEvent event) {
         if (!event.getMember().hasPermission(Permission.BAN_MEMBERS)) {
-            event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
-                    .setEphemeral(true).queue();
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
             return;
         }
 
         User targetUser = event.getOption("user").getAsUser();
         String reason = event.getOption("reason") != null ?
                 event.getOption("reason").getAsString() : "No reason provided";
+        String durationText = event.getOption("duration") != null ? event.getOption("duration").getAsString().trim() : null;
+        Duration duration = durationText != null ? parseDuration(durationText) : null;
+        if (durationText != null && duration == null) {
+            out.send(event.reply(BAD_DURATION).setEphemeral(true));
+            return;
+        }
 
-        event.getGuild().ban(targetUser, 0, TimeUnit.SECONDS)
-                .reason(reason)
-                .queue(
-                        success -> {
-                            logModAction(event.getGuild().getIdLong(), event.getUser().getIdLong(),
-                                    targetUser.getIdLong(), "ban", reason);
-
-                            event.reply(String.format(
-                                    "\uD83D\uDD2A **Banned!**\nThey won't bother you anymore~ \uD83D\uDC95\n\n" +
-                                            "**User:** %s\n**Moderator:** %s\n**Reason:** %s",
-                                    targetUser.getAsMention(), event.getUser().getAsMention(), reason
-                            )).queue();
-                        },
-                        error -> event.reply("\uD83D\uDC94 Failed to ban user: " + error.getMessage())
-                                .setEphemeral(true).queue()
-                );
+        out.send(event.getGuild().ban(targetUser, 0, TimeUnit.SECONDS)
+                .reason(reason),
+                success -> {
+                    long liftAt = recordBan(event.getGuild().getIdLong(), event.getUser().getIdLong(),
+                            targetUser.getIdLong(), reason, durationText, duration);
+                    out.send(event.reply(formatBan(targetUser.getAsMention(), event.getUser().getAsMention(),
+                            reason, durationText, liftAt)));
+                },
+                error -> out.send(event.reply("\uD83D\uDC94 Failed to ban user: " + error.getMessage())
+                        .setEphemeral(true))
+        );
     }
 
     public void handleKick(SlashCommandInteractionEvent event) {
         if (!event.getMember().hasPermission(Permission.KICK_MEMBERS)) {
-            event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
-                    .setEphemeral(true).queue();
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
             return;
         }
 
@@ -75,32 +92,31 @@ public class ModerationCommands {
                 event.getOption("reason").getAsString() : "No reason provided";
 
         if (targetMember == null) {
-            event.reply("\uD83D\uDC94 User not found in this server~").setEphemeral(true).queue();
-            return;
-        }
-
-        targetMember.kick()
-                .reason(reason)
-                .queue(
-                        success -> {
-                            logModAction(event.getGuild().getIdLong(), event.getUser().getIdLong(),
-                                    targetMember.getIdLong(), "kick", reason);
-
-                            event.reply(String.format(
-                                    "\uD83D\uDC62 **Kicked!**\nGet out! \uD83D\uDCA2\n\n" +
-                                            "**User:** %s\n**Moderator:** %s\n**Reason:** %s",
-                                    targetMember.getUser().getAsMention(), event.getUser().getAsMention(), reason
-                            )).queue();
-                        },
-                        error -> event.reply("\uD83D\uDC94 Failed to kick user: " + error.getMessage())
-                                .setEphemeral(true).queue()
-                );
+            out.send(event.reply("\uD83D\uDC94 User not found in this server~").setEphemeral(true));
+            return;
+        }
+
+        out.send(targetMember.kick()
+                .reason(reason),
+                success -> {
+                    logModAction(event.getGuild().getIdLong(), event.getUser().getIdLong(),
+                            targetMember.getIdLong(), "kick", reason);
+
+                    out.send(event.reply(String.format(
+                            "\uD83D\uDC62 **Kicked!**\nGet out! \uD83D\uDCA2\n\n" +
+                                    "**User:** %s\n**Moderator:** %s\n**Reason:** %s",
+                            targetMember.getUser().getAsMention(), event.getUser().getAsMention(), reason
+                    )));
+                },
+                error -> out.send(event.reply("\uD83D\uDC94 Failed to kick user: " + error.getMessage())
+                        .setEphemeral(true))
+        );
     }
 
     public void handleUnban(SlashCommandInteractionEvent event) {
         if (!event.getMember().hasPermission(Permission.BAN_MEMBERS)) {
-            event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
-                    .setEphemeral(true).queue();
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
             return;
         }
 
@@ -112,32 +128,32 @@ public class ModerationCommands {
         try {
             userId = Long.parseLong(userIdStr);
         } catch (NumberFormatException e) {
-            event.reply("\uD83D\uDC94 Invalid user ID~").setEphemeral(true).queue();
-            return;
-        }
-
-        event.getGuild().unban(UserSnowflake.fromId(userId))
-                .reason(reason)
-                .queue(
-                        success -> {
-                            logModAction(event.getGuild().getIdLong(), event.getUser().getIdLong(),
-                                    userId, "unban", reason);
-
-                            event.reply(String.format(
-                                    "\uD83D\uDC95 **Unbanned!**\nI'm giving them another chance~ Be good this time!\n\n" +
-                                            "**User:** <@%d>\n**Moderator:** %s\n**Reason:** %s",
-                                    userId, event.getUser().getAsMention(), reason
-                            )).queue();
-                        },
-                        error -> event.reply("\uD83D\uDC94 Failed to unban user: " + error.getMessage())
-                                .setEphemeral(true).queue()
-                );
+            out.send(event.reply("\uD83D\uDC94 Invalid user ID~").setEphemeral(true));
+            return;
+        }
+
+        out.send(event.getGuild().unban(UserSnowflake.fromId(userId))
+                .reason(reason),
+                success -> {
+                    logModAction(event.getGuild().getIdLong(), event.getUser().getIdLong(),
+                            userId, "unban", reason);
+                    bot.getTempBans().cancelUnban(event.getGuild().getIdLong(), userId);
+
+                    out.send(event.reply(String.format(
+                            "\uD83D\uDC95 **Unbanned!**\nI'm giving them another chance~ Be good this time!\n\n" +
+                                    "**User:** <@%d>\n**Moderator:** %s\n**Reason:** %s",
+                            userId, event.getUser().getAsMention(), reason
+                    )));
+                },
+                error -> out.send(event.reply("\uD83D\uDC94 Failed to unban user: " + error.getMessage())
+                        .setEphemeral(true))
+        );
     }
 
     public void handleTimeout(SlashCommandInteractionEvent event) {
         if (!event.getMember().hasPermission(Permission.MODERATE_MEMBERS)) {
-            event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
-                    .setEphemeral(true).queue();
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
             return;
         }
 
@@ -147,33 +163,32 @@ public class ModerationCommands {
                 event.getOption("reason").getAsString() : "No reason provided";
 
         if (targetMember == null) {
-            event.reply("\uD83D\uDC94 User not found in this server~").setEphemeral(true).queue();
-            return;
-        }
-
-        targetMember.timeoutFor(Duration.ofMinutes(minutes))
-                .reason(reason)
-                .queue(
-                        success -> {
-                            String fullReason = String.format("%s (%d minutes)", reason, minutes);
-                            logModAction(event.getGuild().getIdLong(), event.getUser().getIdLong(),
-                                    targetMember.getIdLong(), "timeout", fullReason);
-
-                            event.reply(String.format(
-                                    "\u23F0 **Timed Out!**\nThink about what you did~ \uD83D\uDE24\n\n" +
-                                            "**User:** %s\n**Duration:** %d minutes\n**Moderator:** %s\n**Reason:** %s",
-                                    targetMember.getUser().getAsMention(), minutes, event.getUser().getAsMention(), reason
-                            )).queue();
-                        },
-                        error -> event.reply("\uD83D\uDC94 Failed to timeout user: " + error.getMessage())
-                                .setEphemeral(true).queue()
-                );
+            out.send(event.reply("\uD83D\uDC94 User not found in this server~").setEphemeral(true));
+            return;
+        }
+
+        out.send(targetMember.timeoutFor(Duration.ofMinutes(minutes))
+                .reason(reason),
+                success -> {
+                    String fullReason = String.format("%s (%d minutes)", reason, minutes);
+                    logModAction(event.getGuild().getIdLong(), event.getUser().getIdLong(),
+                            targetMember.getIdLong(), "timeout", fullReason);
+
+                    out.send(event.reply(String.format(
+                            "\u23F0 **Timed Out!**\nThink about what you did~ \uD83D\uDE24\n\n" +
+                                    "**User:** %s\n**Duration:** %d minutes\n**Moderator:** %s\n**Reason:** %s",
+                            targetMember.getUser().getAsMention(), minutes, event.getUser().getAsMention(), reason
+                    )));
+                },
+                error -> out.send(event.reply("\uD83D\uDC94 Failed to timeout user: " + error.getMessage())
+                        .setEphemeral(true))
+        );
     }
 
     public void handleClean(SlashCommandInteractionEvent event) {
         if (!event.getMember().hasPermission(Permission.MESSAGE_MANAGE)) {
-            event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
-                    .setEphemeral(true).queue();
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
             return;
         }
 
@@ -181,23 +196,23 @@ public class ModerationCommands {
                 (int) event.getOption("amount").getAsLong() : 10;
 
         if (amount < 1 || amount > 100) {
-            event.reply("\uD83D\uDC94 Please specify between 1 and 100 messages~").setEphemeral(true).queue();
+            out.send(event.reply("\uD83D\uDC94 Please specify between 1 and 100 messages~").setEphemeral(true));
             return;
         }
 
-        event.deferReply().setEphemeral(true).queue();
+        out.send(event.deferReply().setEphemeral(true));
 
-        event.getChannel().getHistory().retrievePast(amount).queue(messages -> {
+        out.send(event.getChannel(), event.getChannel().getHistory().retrievePast(amount), messages -> {
             if (messages.isEmpty()) {
-                event.getHook().sendMessage("\uD83D\uDC94 No messages to delete~").queue();
+                out.send(event.getHook().sendMessage("\uD83D\uDC94 No messages to delete~"));
                 return;
             }
 
-            event.getChannel().asTextChannel().deleteMessages(messages).queue(
-                    success -> event.getHook().sendMessage(
+            out.send(event.getChannel(), event.getChannel().asTextChannel().deleteMessages(messages),
+                    success -> out.send(event.getHook().sendMessage(
                             String.format("\uD83E\uDDF9 Deleted %d messages~ \uD83D\uDC95", messages.size())
-                    ).queue(),
-                    error -> event.getHook().sendMessage("\uD83D\uDC94 Failed to delete messages: " + error.getMessage()).queue()
+                    )),
+                    error -> out.send(event.getHook().sendMessage("\uD83D\uDC94 Failed to delete messages: " + error.getMessage()))
             );
         });
     }
@@ -205,64 +220,109 @@ public class ModerationCommands {
     public void handleModStats(SlashCommandInteractionEvent event) {
         var actions = bot.getDatabase().getModActions(event.getGuild().getIdLong(), 100);
 
-        event.reply(String.format(
+        out.send(event.reply(String.format(
                 "\uD83D\uDCCA **Moderation Statistics**\nLook at all we've done together~ \uD83D\uDC95\n\n" +
                         "**Total Actions:** %d",
                 actions.size()
-        )).queue();
+        )));
+    }
+
+    public void handleMassBan(SlashCommandInteractionEvent event) {
+        if (!event.getMember().hasPermission(Permission.BAN_MEMBERS)) {
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
+            return;
+        }
+
+        String reason = event.getOption("reason") != null ?
+                event.getOption("reason").getAsString() : "Mass ban";
+
+        List<Long> candidates;
+        if (event.getOption("joined_minutes") != null) {
+            candidates = recentJoiners(event.getGuild(), event.getOption("joined_minutes").getAsLong());
+        } else if (event.getOption("users") != null) {
+            candidates = new ArrayList<>();
+            for (String token : event.getOption("users").getAsString().split("[\\s,]+")) {
+                Long userId = parseUserMention(token);
+                if (userId != null) {
+                    candidates.add(userId);
+                }
+            }
+        } else {
+            out.send(event.reply("\uD83D\uDC94 Give me some user IDs or a join window~").setEphemeral(true));
+            return;
+        }
+
+        List<UserSnowflake> targets = selectTargets(event.getGuild(), event.getMember(), candidates);
+        String problem = checkMassBan(event.getGuild(), targets);
+        if (problem != null) {
+            out.send(event.reply(problem).setEphemeral(true));
+            return;
+        }
+
+        out.send(event.reply(formatMassBanStart(targets.size())));
+        massBan(event.getGuild(), event.getUser().getIdLong(), targets, candidates.size() - targets.size(), reason,
+                text -> out.send(event.getHook().editOriginal(text)));
     }
 
     // Prefix Commands
 
     public void handleBanPrefix(MessageReceivedEvent event, String args) {
         if (!event.getMember().hasPermission(Permission.BAN_MEMBERS)) {
-            event.getChannel().sendMessage(
+            out.sendMessage(event.getChannel(),
                     bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
-            ).queue();
+            );
             return;
         }
 
         if (args == null || args.isEmpty()) {
-            event.getChannel().sendMessage("\uD83D\uDC94 Please specify a user to ban~").queue();
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 Please specify a user to ban~");
             return;
         }
 
-        String[] parts = args.split("\\s+", 2);
+        // ban <user> [duration] [reason]
+        String[] parts = args.split("\\s+", 3);
         Long userId = parseUserMention(parts[0]);
-        String reason = parts.length > 1 ? parts[1] : "No reason provided";
+        String durationText = parts.length > 1 && DURATION_PATTERN.matcher(parts[1]).matches() ? parts[1] : null;
+        Duration duration = durationText != null ? parseDuration(durationText) : null;
+        String reason;
+        if (durationText != null) {
+            reason = parts.length > 2 ? parts[2] : "No reason provided";
+        } else {
+            reason = parts.length > 1 ? args.split("\\s+", 2)[1] : "No reason provided";
+        }
 
         if (userId == null) {
-            event.getChannel().sendMessage("\uD83D\uDC94 I couldn't find that user~").queue();
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 I couldn't find that user~");
+            return;
+        }
+        if (durationText != null && duration == null) {
+            out.sendMessage(event.getChannel(), BAD_DURATION);
             return;
         }
 
-        event.getGuild().ban(UserSnowflake.fromId(userId), 0, TimeUnit.SECONDS)
-                .reason(reason)
-                .queue(
-                        success -> {
-                            logModAction(event.getGuild().getIdLong(), event.getAuthor().getIdLong(),
-                                    userId, "ban", reason);
-
-                            event.getChannel().sendMessage(String.format(
-                                    "\uD83D\uDD2A **Banned!**\nThey won't bother you anymore~ \uD83D\uDC95\n\n" +
-                                            "**User:** <@%d>\n**Moderator:** %s\n**Reason:** %s",
-                                    userId, event.getAuthor().getAsMention(), reason
-                            )).queue();
-                        },
-                        error -> event.getChannel().sendMessage("\uD83D\uDC94 Failed to ban user: " + error.getMessage()).queue()
-                );
+        out.send(event.getGuild().ban(UserSnowflake.fromId(userId), 0, TimeUnit.SECONDS)
+                .reason(reason),
+                success -> {
+                    long liftAt = recordBan(event.getGuild().getIdLong(), event.getAuthor().getIdLong(),
+                            userId, reason, durationText, duration);
+                    out.sendMessage(event.getChannel(), formatBan("<@" + userId + ">",
+                            event.getAuthor().getAsMention(), reason, durationText, liftAt));
+                },
+                error -> out.sendMessage(event.getChannel(), "\uD83D\uDC94 Failed to ban user: " + error.getMessage())
+        );
     }
 
     public void handleKickPrefix(MessageReceivedEvent event, String args) {
         if (!event.getMember().hasPermission(Permission.KICK_MEMBERS)) {
-            event.getChannel().sendMessage(
+            out.sendMessage(event.getChannel(),
                     bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
-            ).queue();
+            );
             return;
         }
 
         if (args == null || args.isEmpty()) {
-            event.getChannel().sendMessage("\uD83D\uDC94 Please specify a user to kick~").queue();
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 Please specify a user to kick~");
             return;
         }
 
@@ -271,37 +331,36 @@ public class ModerationCommands {
         String reason = parts.length > 1 ? parts[1] : "No reason provided";
 
         if (userId == null) {
-            event.getChannel().sendMessage("\uD83D\uDC94 I couldn't find that user~").queue();
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 I couldn't find that user~");
             return;
         }
 
-        event.getGuild().kick(UserSnowflake.fromId(userId))
-                .reason(reason)
-                .queue(
-                        success -> {
-                            logModAction(event.getGuild().getIdLong(), event.getAuthor().getIdLong(),
-                                    userId, "kick", reason);
-
-                            event.getChannel().sendMessage(String.format(
-                                    "\uD83D\uDC62 **Kicked!**\nGet out! \uD83D\uDCA2\n\n" +
-                                            "**User:** <@%d>\n**Moderator:** %s\n**Reason:** %s",
-                                    userId, event.getAuthor().getAsMention(), reason
-                            )).queue();
-                        },
-                        error -> event.getChannel().sendMessage("\uD83D\uDC94 Failed to kick user: " + error.getMessage()).queue()
-                );
+        out.send(event.getGuild().kick(UserSnowflake.fromId(userId))
+                .reason(reason),
+                success -> {
+                    logModAction(event.getGuild().getIdLong(), event.getAuthor().getIdLong(),
+                            userId, "kick", reason);
+
+                    out.sendMessage(event.getChannel(), String.format(
+                            "\uD83D\uDC62 **Kicked!**\nGet out! \uD83D\uDCA2\n\n" +
+                                    "**User:** <@%d>\n**Moderator:** %s\n**Reason:** %s",
+                            userId, event.getAuthor().getAsMention(), reason
+                    ));
+                },
+                error -> out.sendMessage(event.getChannel(), "\uD83D\uDC94 Failed to kick user: " + error.getMessage())
+        );
     }
 
     public void handleUnbanPrefix(MessageReceivedEvent event, String args) {
         if (!event.getMember().hasPermission(Permission.BAN_MEMBERS)) {
-            event.getChannel().sendMessage(
+            out.sendMessage(event.getChannel(),
                     bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
-            ).queue();
+            );
             return;
         }
 
         if (args == null || args.isEmpty()) {
-            event.getChannel().sendMessage("\uD83D\uDC94 Please specify a user ID to unban~").queue();
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 Please specify a user ID to unban~");
             return;
         }
 
@@ -310,50 +369,50 @@ public class ModerationCommands {
         try {
             userId = Long.parseLong(parts[0]);
         } catch (NumberFormatException e) {
-            event.getChannel().sendMessage("\uD83D\uDC94 Invalid user ID~").queue();
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 Invalid user ID~");
             return;
         }
         String reason = parts.length > 1 ? parts[1] : "No reason provided";
 
-        event.getGuild().unban(UserSnowflake.fromId(userId))
-                .reason(reason)
-                .queue(
-                        success -> {
-                            logModAction(event.getGuild().getIdLong(), event.getAuthor().getIdLong(),
-                                    userId, "unban", reason);
-
-                            event.getChannel().sendMessage(String.format(
-                                    "\uD83D\uDC95 **Unbanned!**\nI'm giving them another chance~ Be good this time!\n\n" +
-                                            "**User:** <@%d>\n**Moderator:** %s\n**Reason:** %s",
-                                    userId, event.getAuthor().getAsMention(), reason
-                            )).queue();
-                        },
-                        error -> event.getChannel().sendMessage("\uD83D\uDC94 Failed to unban user: " + error.getMessage()).queue()
-                );
+        out.send(event.getGuild().unban(UserSnowflake.fromId(userId))
+                .reason(reason),
+                success -> {
+                    logModAction(event.getGuild().getIdLong(), event.getAuthor().getIdLong(),
+                            userId, "unban", reason);
+                    bot.getTempBans().cancelUnban(event.getGuild().getIdLong(), userId);
+
+                    out.sendMessage(event.getChannel(), String.format(
+                            "\uD83D\uDC95 **Unbanned!**\nI'm giving them another chance~ Be good this time!\n\n" +
+                                    "**User:** <@%d>\n**Moderator:** %s\n**Reason:** %s",
+                            userId, event.getAuthor().getAsMention(), reason
+                    ));
+                },
+                error -> out.sendMessage(event.getChannel(), "\uD83D\uDC94 Failed to unban user: " + error.getMessage())
+        );
     }
 
     public void handleTimeoutPrefix(MessageReceivedEvent event, String args) {
         if (!event.getMember().hasPermission(Permission.MODERATE_MEMBERS)) {
-            event.getChannel().sendMessage(
+            out.sendMessage(event.getChannel(),
                     bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
-            ).queue();
+            );
             return;
         }
 
         if (args == null || args.isEmpty()) {
-            event.getChannel().sendMessage("\uD83D\uDC94 Usage: timeout <user> <minutes> [reason]~").queue();
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 Usage: timeout <user> <minutes> [reason]~");
             return;
         }
 
         String[] parts = args.split("\\s+", 3);
         if (parts.length < 2) {
-            event.getChannel().sendMessage("\uD83D\uDC94 Usage: timeout <user> <minutes> [reason]~").queue();
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 Usage: timeout <user> <minutes> [reason]~");
             return;
         }
 
         Long userId = parseUserMention(parts[0]);
         if (userId == null) {
-            event.getChannel().sendMessage("\uD83D\uDC94 I couldn't find that user~").queue();
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 I couldn't find that user~");
             return;
         }
 
@@ -361,37 +420,36 @@ public class ModerationCommands {
         try {
             minutes = Long.parseLong(parts[1]);
         } catch (NumberFormatException e) {
-            event.getChannel().sendMessage("\uD83D\uDC94 Invalid duration~").queue();
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 Invalid duration~");
             return;
         }
 
         String reason = parts.length > 2 ? parts[2] : "No reason provided";
 
-        event.getGuild().retrieveMemberById(userId).queue(member -> {
-            member.timeoutFor(Duration.ofMinutes(minutes))
-                    .reason(reason)
-                    .queue(
-                            success -> {
-                                String fullReason = String.format("%s (%d minutes)", reason, minutes);
-                                logModAction(event.getGuild().getIdLong(), event.getAuthor().getIdLong(),
-                                        userId, "timeout", fullReason);
-
-                                event.getChannel().sendMessage(String.format(
-                                        "\u23F0 **Timed Out!**\nThink about what you did~ \uD83D\uDE24\n\n" +
-                                                "**User:** <@%d>\n**Duration:** %d minutes\n**Moderator:** %s",
-                                        userId, minutes, event.getAuthor().getAsMention()
-                                )).queue();
-                            },
-                            error -> event.getChannel().sendMessage("\uD83D\uDC94 Failed to timeout user: " + error.getMessage()).queue()
-                    );
-        }, error -> event.getChannel().sendMessage("\uD83D\uDC94 User not found in this server~").queue());
+        out.send(event.getGuild().retrieveMemberById(userId), member -> {
+            out.send(member.timeoutFor(Duration.ofMinutes(minutes))
+                    .reason(reason),
+                    success -> {
+                        String fullReason = String.format("%s (%d minutes)", reason, minutes);
+                        logModAction(event.getGuild().getIdLong(), event.getAuthor().getIdLong(),
+                                userId, "timeout", fullReason);
+
+                        out.sendMessage(event.getChannel(), String.format(
+                                "\u23F0 **Timed Out!**\nThink about what you did~ \uD83D\uDE24\n\n" +
+                                        "**User:** <@%d>\n**Duration:** %d minutes\n**Moderator:** %s",
+                                userId, minutes, event.getAuthor().getAsMention()
+                        ));
+                    },
+                    error -> out.sendMessage(event.getChannel(), "\uD83D\uDC94 Failed to timeout user: " + error.getMessage())
+            );
+        }, error -> out.sendMessage(event.getChannel(), "\uD83D\uDC94 User not found in this server~"));
     }
 
     public void handleCleanPrefix(MessageReceivedEvent event, String args) {
         if (!event.getMember().hasPermission(Permission.MESSAGE_MANAGE)) {
-            event.getChannel().sendMessage(
+            out.sendMessage(event.getChannel(),
                     bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
-            ).queue();
+            );
             return;
         }
 
@@ -400,18 +458,18 @@ public class ModerationCommands {
             try {
                 amount = Integer.parseInt(args.trim());
             } catch (NumberFormatException e) {
-                event.getChannel().sendMessage("\uD83D\uDC94 Invalid amount~").queue();
+                out.sendMessage(event.getChannel(), "\uD83D\uDC94 Invalid amount~");
                 return;
             }
         }
 
         if (amount < 1 || amount > 100) {
-            event.getChannel().sendMessage("\uD83D\uDC94 Please specify between 1 and 100 messages~").queue();
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 Please specify between 1 and 100 messages~");
             return;
         }
 
         final int deleteAmount = amount;
-        event.getChannel().getHistory().retrievePast(amount + 1).queue(messages -> {
+        out.send(event.getChannel(), event.getChannel().getHistory().retrievePast(amount + 1), messages -> {
             // Remove the command message itself
             messages.removeIf(m -> m.getId().equals(event.getMessage().getId()));
             if (messages.size() > deleteAmount) {
@@ -419,15 +477,14 @@ public class ModerationCommands {
             }
 
             if (messages.isEmpty()) {
-                event.getChannel().sendMessage("\uD83D\uDC94 No messages to delete~").queue();
+                out.sendMessage(event.getChannel(), "\uD83D\uDC94 No messages to delete~");
                 return;
             }
 
-            event.getChannel().asTextChannel().deleteMessages(messages).queue(
-                    success -> event.getChannel().sendMessage(
-                            String.format("\uD83E\uDDF9 Deleted messages~ \uD83D\uDC95")
-                    ).queue(msg -> msg.delete().queueAfter(3, TimeUnit.SECONDS)),
-                    error -> event.getChannel().sendMessage("\uD83D\uDC94 Failed to delete messages: " + error.getMessage()).queue()
+            out.send(event.getChannel(), event.getChannel().asTextChannel().deleteMessages(messages),
+                    success -> out.sendMessage(event.getChannel(), "\uD83E\uDDF9 Deleted messages~ \uD83D\uDC95",
+                            msg -> msg.delete().queueAfter(3, TimeUnit.SECONDS), null),
+                    error -> out.sendMessage(event.getChannel(), "\uD83D\uDC94 Failed to delete messages: " + error.getMessage())
             );
         });
     }
@@ -435,11 +492,72 @@ public class ModerationCommands {
     public void handleModStatsPrefix(MessageReceivedEvent event) {
         var actions = bot.getDatabase().getModActions(event.getGuild().getIdLong(), 100);
 
-        event.getChannel().sendMessage(String.format(
+        out.sendMessage(event.getChannel(), String.format(
                 "\uD83D\uDCCA **Moderation Statistics**\nLook at all we've done together~ \uD83D\uDC95\n\n" +
                         "**Total Actions:** %d",
                 actions.size()
-        )).queue();
+        ));
+    }
+
+    public void handleMassBanPrefix(MessageReceivedEvent event, String args) {
+        if (!event.getMember().hasPermission(Permission.BAN_MEMBERS)) {
+            out.sendMessage(event.getChannel(),
+                    bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
+            );
+            return;
+        }
+
+        String usage = "\uD83D\uDC94 Usage: `mass-ban <users...> [reason]` or `mass-ban joined <minutes> [reason]`~";
+        if (args == null || args.isEmpty()) {
+            out.sendMessage(event.getChannel(), usage);
+            return;
+        }
+
+        String[] parts = args.trim().split("\\s+");
+        List<Long> candidates = new ArrayList<>();
+        int next = 0;
+        if (parts[0].equalsIgnoreCase("joined")) {
+            long minutes;
+            try {
+                minutes = parts.length > 1 ? Long.parseLong(parts[1]) : 0;
+            } catch (NumberFormatException e) {
+                minutes = 0;
+            }
+            if (minutes < 1 || minutes > 1440) {
+                out.sendMessage(event.getChannel(), "\uD83D\uDC94 Please give a join window between 1 and 1440 minutes~");
+                return;
+            }
+            candidates = recentJoiners(event.getGuild(), minutes);
+            next = 2;
+        } else {
+            // IDs and mentions come first; the first word that isn't one starts the reason
+            for (; next < parts.length; next++) {
+                Long userId = parseUserTarget(parts[next].replace(",", ""));
+                if (userId == null) {
+                    break;
+                }
+                candidates.add(userId);
+            }
+            if (candidates.isEmpty()) {
+                out.sendMessage(event.getChannel(), usage);
+                return;
+            }
+        }
+        String reason = next < parts.length
+                ? String.join(" ", List.of(parts).subList(next, parts.length)) : "Mass ban";
+
+        List<UserSnowflake> targets = selectTargets(event.getGuild(), event.getMember(), candidates);
+        String problem = checkMassBan(event.getGuild(), targets);
+        if (problem != null) {
+            out.sendMessage(event.getChannel(), problem);
+            return;
+        }
+
+        int skipped = candidates.size() - targets.size();
+        out.sendMessage(event.getChannel(), formatMassBanStart(targets.size()),
+                message -> massBan(event.getGuild(), event.getAuthor().getIdLong(), targets, skipped, reason,
+                        text -> out.send(event.getChannel(), message.editMessage(text))),
+                null);
     }
 
     // Helper methods
@@ -456,7 +574,69 @@ public class ModerationCommands {
         }
     }
 
+    // Stricter than parseUserMention, so a number in the reason isn't taken for a user
+    private Long parseUserTarget(String token) {
+        Matcher matcher = USER_MENTION_PATTERN.matcher(token);
+        if (matcher.matches()) {
+            return Long.parseLong(matcher.group(1));
+        }
+        if (SNOWFLAKE_PATTERN.matcher(token).matches()) {
+            try {
+                return Long.parseLong(token);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
     private void logModAction(long guildId, long moderatorId, long targetId, String actionType, String reason) {
+        bot.getDatabase().logModAction(modAction(guildId, moderatorId, targetId, actionType, reason));
+    }
+
+    // Temp bans
+
+    // Logs the ban and schedules its unban, or clears an old one if this ban is permanent; returns when it lifts, or 0
+    private long recordBan(long guildId, long moderatorId, long userId, String reason, String durationText, Duration duration) {
+        if (duration == null) {
+            logModAction(guildId, moderatorId, userId, "ban", reason);
+            bot.getTempBans().cancelUnban(guildId, userId);
+            return 0;
+        }
+        long liftAt = System.currentTimeMillis() / 1000 + duration.getSeconds();
+        logModAction(guildId, moderatorId, userId, "ban", String.format("%s (%s)", reason, durationText));
+        bot.getTempBans().scheduleUnban(guildId, userId, moderatorId, reason, liftAt);
+        return liftAt;
+    }
+
+    private static String formatBan(String user, String moderator, String reason, String durationText, long liftAt) {
+        String message = String.format(
+                "\uD83D\uDD2A **Banned!**\nThey won't bother you anymore~ \uD83D\uDC95\n\n" +
+                        "**User:** %s\n**Moderator:** %s\n**Reason:** %s",
+                user, moderator, reason);
+        if (liftAt != 0) {
+            message += String.format("\n**Duration:** %s (lifted <t:%d:R>)", durationText, liftAt);
+        }
+        return message;
+    }
+
+    // "30m", "12h", "7d" or "2w"; null if it isn't one or is longer than a year
+    static Duration parseDuration(String text) {
+        Matcher matcher = DURATION_PATTERN.matcher(text);
+        if (!matcher.matches()) {
+            return null;
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        Duration duration = switch (Character.toLowerCase(matcher.group(2).charAt(0))) {
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            case 'd' -> Duration.ofDays(amount);
+            default -> Duration.ofDays(amount * 7);
+        };
+        return duration.isZero() || duration.compareTo(MAX_BAN_DURATION) > 0 ? null : duration;
+    }
+
+    static ModAction modAction(long guildId, long moderatorId, long targetId, String actionType, String reason) {
         ModAction action = new ModAction();
         action.setGuildId(guildId);
         action.setModeratorId(moderatorId);
@@ -464,6 +644,110 @@ public class ModerationCommands {
         action.setActionType(actionType);
         action.setReason(reason);
         action.setTimestamp(System.currentTimeMillis() / 1000);
-        bot.getDatabase().logModAction(action);
+        return action;
+    }
+
+    // Mass ban
+
+    private static List<Long> recentJoiners(Guild guild, long minutes) {
+        OffsetDateTime since = OffsetDateTime.now().minusMinutes(minutes);
+        List<Long> userIds = new ArrayList<>();
+        guild.getMemberCache().forEach(member -> {
+            if (!member.getUser().isBot() && member.getTimeJoined().isAfter(since)) {
+                userIds.add(member.getIdLong());
+            }
+        });
+        return userIds;
+    }
+
+    // Drops duplicates, ourselves, the moderator, the owner and anyone ranked above either of us
+    private static List<UserSnowflake> selectTargets(Guild guild, Member moderator, List<Long> candidates) {
+        Member self = guild.getSelfMember();
+        LongHashSet seen = new LongHashSet(candidates.size());
+        List<UserSnowflake> targets = new ArrayList<>();
+        for (long userId : candidates) {
+            if (!seen.add(userId) || userId == self.getIdLong() || userId == moderator.getIdLong()
+                    || userId == guild.getOwnerIdLong()) {
+                continue;
+            }
+            Member member = guild.getMemberById(userId);
+            if (member != null && (!self.canInteract(member) || !moderator.canInteract(member))) {
+                continue;
+            }
+            targets.add(UserSnowflake.fromId(userId));
+        }
+        return targets;
+    }
+
+    private static String checkMassBan(Guild guild, List<UserSnowflake> targets) {
+        if (!guild.getSelfMember().hasPermission(Permission.BAN_MEMBERS)) {
+            return "\uD83D\uDC94 I don't have permission to ban members here~";
+        }
+        if (targets.isEmpty()) {
+            return "\uD83D\uDC94 There's no one there I can ban~";
+        }
+        if (targets.size() > MAX_MASS_BAN) {
+            return String.format("\uD83D\uDC94 That's %,d users... I can only ban %,d at once~",
+                    targets.size(), MAX_MASS_BAN);
+        }
+        return null;
+    }
+
+    private static String formatMassBanStart(int targets) {
+        return String.format("\uD83D\uDD2A **Mass ban started!**\nBanning **%,d** users... \uD83D\uDC95", targets);
+    }
+
+    // All chunks go out at once and the scheduler paces them; the mod log is written in one
+    // transaction when the last chunk answers
+    private void massBan(Guild guild, long moderatorId, List<UserSnowflake> targets, int skipped, String reason,
+                         Consumer<String> progress) {
+        long begin = System.nanoTime();
+        int chunks = (targets.size() + BULK_BAN_SIZE - 1) / BULK_BAN_SIZE;
+        List<ModAction> banned = new ArrayList<>(targets.size());
+        int[] state = new int[2]; // chunks done, users failed
+
+        for (int from = 0; from < targets.size(); from += BULK_BAN_SIZE) {
+            List<UserSnowflake> chunk = targets.subList(from, Math.min(from + BULK_BAN_SIZE, targets.size()));
+            Consumer<List<UserSnowflake>> onChunk = failed -> {
+                // Progress is sent under the lock so the final summary is always the last edit
+                synchronized (banned) {
+                    state[0]++;
+                    state[1] += failed.size();
+                    if (state[0] < chunks) {
+                        progress.accept(String.format(
+                                "\uD83D\uDD2A **Mass ban in progress...**\n**%,d** banned, **%,d** failed, %d/%d batches done~",
+                                banned.size(), state[1], state[0], chunks));
+                        return;
+                    }
+                    bot.getDatabase().logModActions(banned);
+                    long millis = (System.nanoTime() - begin) / 1_000_000;
+                    logger.info("Mass ban in guild {}: {} banned, {} failed, {} skipped in {}ms~",
+                            guild.getId(), banned.size(), state[1], skipped, millis);
+                    progress.accept(String.format(
+                            "\uD83D\uDD2A **Mass ban finished!**\nThey won't bother you anymore~ \uD83D\uDC95\n\n" +
+                                    "**Banned:** %,d\n**Failed:** %,d\n**Skipped:** %,d\n**Moderator:** <@%d>\n" +
+                                    "**Reason:** %s\n**Took:** %,dms",
+                            banned.size(), state[1], skipped, moderatorId, reason, millis));
+                }
+            };
+
+            out.send(guild.ban(chunk, Duration.ZERO).reason(reason),
+                    response -> {
+                        synchronized (banned) {
+                            for (UserSnowflake user : response.getBannedUsers()) {
+                                banned.add(modAction(guild.getIdLong(), moderatorId, user.getIdLong(), "ban", reason));
+                            }
+                        }
+                        // These bans are permanent, so an earlier temp ban mustn't lift them
+                        for (UserSnowflake user : response.getBannedUsers()) {
+                            bot.getTempBans().cancelUnban(guild.getIdLong(), user.getIdLong());
+                        }
+                        onChunk.accept(response.getFailedUsers());
+                    },
+                    error -> {
+                        logger.warn("Bulk ban of {} users failed in guild {}: {}", chunk.size(), guild.getId(), error.getMessage());
+                        onChunk.accept(chunk);
+                    });
+        }
     }
 }
@@ -0,0 +1,297 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Temp Ban Scheduler
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.commands;
+
+import dev.blubskye.yuno.YunoBot;
+import dev.blubskye.yuno.database.ModAction;
+import dev.blubskye.yuno.database.ScheduledAction;
+import dev.blubskye.yuno.outbound.OutboundScheduler;
+import dev.blubskye.yuno.util.TimingWheel;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.UserSnowflake;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lifts temporary bans when they run out. Every pending unban lives in the
+ * scheduled_actions table; only the ones due in the next few minutes are
+ * loaded into a timing wheel, so a guild with thousands of month-long bans
+ * costs nothing until they come close. Unbans that came due while the bot
+ * was down are caught up in small batches after startup. A fired entry is
+ * checked against its row first, so cancelled or extended bans are left
+ * alone. Shard processes sharing one database each only handle the rows of
+ * guilds on their own shard.
+ */
+public class TempBanScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(TempBanScheduler.class);
+
+    public static final String EXPIRED_REASON = "Temporary ban expired";
+
+    // Rows due within this many seconds are kept in the wheel
+    private static final long HORIZON_SECONDS = 15 * 60;
+    private static final long LOAD_INTERVAL_SECONDS = 5 * 60;
+    private static final int PAGE_SIZE = 500;
+    private static final int CATCH_UP_BATCH = 50;
+    private static final long CATCH_UP_PAUSE_MS = 5000;
+    private static final long RETRY_SECONDS = 5 * 60;
+
+    private final YunoBot bot;
+    private final OutboundScheduler.Sender out;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "yuno-temp-bans");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Guards the wheel and the horizon
+    private final Object lock = new Object();
+    private TimingWheel<Long> wheel;
+    // Everything due before this is either in the wheel or being loaded into it
+    private long horizon;
+    // Rows with an unban on its way, so a row is never handled twice at once
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<ScheduledAction> completed = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<ModAction> completedLog = new ConcurrentLinkedQueue<>();
+    private int caughtUp;
+
+    public TempBanScheduler(YunoBot bot) {
+        this.bot = bot;
+        this.out = bot.getOutbound().sender(OutboundScheduler.Priority.MODERATION);
+    }
+
+    public void start() {
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            wheel = new TimingWheel<>(now);
+            horizon = now / 1000;
+        }
+        long cutoff = now / 1000;
+        scheduler.execute(() -> catchUp(cutoff, 0));
+        scheduler.scheduleWithFixedDelay(this::load, 0, LOAD_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::tick, 1, 1, TimeUnit.SECONDS);
+    }
+
+    // Unbans already sent still complete; flush() saves them once they have
+    public void stop() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Stores an unban for {@code dueAt} (Unix seconds), replacing any pending one for the same user. */
+    public void scheduleUnban(long guildId, long userId, long moderatorId, String reason, long dueAt) {
+        ScheduledAction action = new ScheduledAction();
+        action.setGuildId(guildId);
+        action.setTargetId(userId);
+        action.setModeratorId(moderatorId);
+        action.setActionType(ScheduledAction.UNBAN);
+        action.setReason(reason);
+        action.setDueAt(dueAt);
+        if (bot.getDatabase().scheduleAction(action) != 0) {
+            enqueue(action);
+        }
+    }
+
+    /** Drops a pending unban, e.g. when the ban is made permanent or lifted by hand. */
+    public void cancelUnban(long guildId, long userId) {
+        bot.getDatabase().cancelScheduledAction(guildId, userId, ScheduledAction.UNBAN);
+    }
+
+    private void enqueue(ScheduledAction action) {
+        synchronized (lock) {
+            // Before start(), or beyond the horizon: the loader picks it up when it comes close
+            if (wheel != null && action.getDueAt() < horizon) {
+                wheel.add(action.getDueAt() * 1000, action.getId());
+            }
+        }
+    }
+
+    // Pulls the rows that have come within the horizon into the wheel
+    private void load() {
+        try {
+            long from;
+            long until = System.currentTimeMillis() / 1000 + HORIZON_SECONDS;
+            synchronized (lock) {
+                from = horizon;
+                // Raised first, so anything scheduled while the query runs goes straight in
+                horizon = Math.max(horizon, until);
+            }
+            if (until <= from) {
+                return;
+            }
+            int loaded = 0;
+            long afterId = 0;
+            JDA jda = bot.getJda();
+            while (true) {
+                List<ScheduledAction> page = bot.getDatabase().getScheduledActions(from, until, afterId, PAGE_SIZE);
+                synchronized (lock) {
+                    for (ScheduledAction action : page) {
+                        if (isOwnShard(jda, action.getGuildId())) {
+                            wheel.add(action.getDueAt() * 1000, action.getId());
+                            loaded++;
+                        }
+                    }
+                }
+                if (page.size() < PAGE_SIZE) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).getId();
+            }
+            if (loaded > 0) {
+                logger.debug("Loaded {} unbans due in the next {} minutes~", loaded, (until - from) / 60);
+            }
+        } catch (Exception e) {
+            logger.error("Error loading scheduled unbans: {}", e.getMessage());
+        }
+    }
+
+    private void tick() {
+        try {
+            List<Long> due = new ArrayList<>();
+            synchronized (lock) {
+                wheel.advance(System.currentTimeMillis(), due::add);
+            }
+            long now = System.currentTimeMillis() / 1000;
+            for (long id : due) {
+                if (!inFlight.add(id)) {
+                    continue;
+                }
+                ScheduledAction action = bot.getDatabase().getScheduledAction(id);
+                // Cancelled, or re-banned for longer since it was loaded
+                if (action == null || action.getDueAt() > now) {
+                    inFlight.remove(id);
+                    continue;
+                }
+                expire(action);
+            }
+            flush();
+        } catch (Exception e) {
+            logger.error("Error running scheduled unbans: {}", e.getMessage());
+        }
+    }
+
+    // Works through unbans missed while offline a batch at a time, so a long outage doesn't flood the REST queue
+    private void catchUp(long cutoff, long afterId) {
+        try {
+            JDA jda = bot.getJda();
+            List<ScheduledAction> batch = bot.getDatabase().getScheduledActions(Long.MIN_VALUE, cutoff, afterId, CATCH_UP_BATCH);
+            for (ScheduledAction action : batch) {
+                if (isOwnShard(jda, action.getGuildId()) && inFlight.add(action.getId())) {
+                    expire(action);
+                }
+            }
+            caughtUp += batch.size();
+            if (batch.size() == CATCH_UP_BATCH) {
+                long last = batch.get(batch.size() - 1).getId();
+                scheduler.schedule(() -> catchUp(cutoff, last), CATCH_UP_PAUSE_MS, TimeUnit.MILLISECONDS);
+            } else if (caughtUp > 0) {
+                logger.info("Caught up on {} temporary bans that ran out while I was away~", caughtUp);
+            }
+        } catch (Exception e) {
+            logger.error("Error catching up on scheduled unbans: {}", e.getMessage());
+        }
+    }
+
+    private void expire(ScheduledAction action) {
+        JDA jda = bot.getJda();
+        Guild guild = jda.getGuildById(action.getGuildId());
+        if (guild == null) {
+            if (!isOwnShard(jda, action.getGuildId())) {
+                // Another shard's guild; that shard's scheduler lifts it
+                inFlight.remove(action.getId());
+            } else if (jda.isUnavailable(action.getGuildId())) {
+                retry(action);
+            } else {
+                // We've left the guild, so there is nothing to lift
+                complete(action, null);
+            }
+            return;
+        }
+        if (!guild.getSelfMember().hasPermission(Permission.BAN_MEMBERS)) {
+            logger.warn("Can't lift the temp-ban of {} in guild {} without Ban Members, retrying later",
+                    action.getTargetId(), guild.getId());
+            retry(action);
+            return;
+        }
+
+        long selfId = guild.getSelfMember().getIdLong();
+        out.send(guild.unban(UserSnowflake.fromId(action.getTargetId())).reason(EXPIRED_REASON),
+                success -> complete(action, ModerationCommands.modAction(guild.getIdLong(), selfId,
+                        action.getTargetId(), "unban", EXPIRED_REASON)),
+                error -> {
+                    if (error instanceof ErrorResponseException e && e.getErrorResponse() == ErrorResponse.UNKNOWN_BAN) {
+                        // Someone unbanned them already
+                        complete(action, null);
+                    } else {
+                        logger.warn("Could not lift the temp-ban of {} in guild {}: {}",
+                                action.getTargetId(), guild.getId(), error.getMessage());
+                        retry(action);
+                    }
+                });
+    }
+
+    // Only pushes the row back if it's still the one we fired; a re-ban meanwhile keeps its own due time
+    private void retry(ScheduledAction action) {
+        long retryAt = System.currentTimeMillis() / 1000 + RETRY_SECONDS;
+        boolean moved = bot.getDatabase().rescheduleAction(action.getId(), action.getDueAt(), retryAt);
+        inFlight.remove(action.getId());
+        if (moved) {
+            action.setDueAt(retryAt);
+            enqueue(action);
+        }
+    }
+
+    // Guilds are spread over shards by their ID; an unsharded connection owns every guild
+    private static boolean isOwnShard(JDA jda, long guildId) {
+        JDA.ShardInfo shard = jda.getShardInfo();
+        return (guildId >>> 22) % shard.getShardTotal() == shard.getShardId();
+    }
+
+    private void complete(ScheduledAction action, ModAction log) {
+        completed.add(action);
+        if (log != null) {
+            completedLog.add(log);
+        }
+    }
+
+    // Deletes finished rows and logs their unbans in one transaction per tick; a row re-banned meanwhile stays.
+    // If the write fails they're queued again, still in flight, for the next tick.
+    public void flush() {
+        List<ScheduledAction> done = new ArrayList<>();
+        for (ScheduledAction action = completed.poll(); action != null; action = completed.poll()) {
+            done.add(action);
+        }
+        List<ModAction> log = new ArrayList<>();
+        for (ModAction action = completedLog.poll(); action != null; action = completedLog.poll()) {
+            log.add(action);
+        }
+        if (done.isEmpty()) {
+            return;
+        }
+        if (!bot.getDatabase().completeScheduledActions(done, log)) {
+            completed.addAll(done);
+            completedLog.addAll(log);
+            return;
+        }
+        done.forEach(action -> inFlight.remove(action.getId()));
+    }
+}
@@ -8,65 +8,88 @@ package dev.blubskye.yuno.commands;
 
 import dev.blubskye.yuno.YunoBot;
 import dev.blubskye.yuno.database.GuildSettings;
+import dev.blubskye.yuno.database.LevelCurve;
 import dev.blubskye.yuno.database.UserXp;
+import dev.blubskye.yuno.listeners.RaidGuard;
+import dev.blubskye.yuno.outbound.OutboundScheduler;
 import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildChannel;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 
 import java.util.List;
 
+
 public class UtilityCommands {
+    private static final String RAID_THRESHOLD_RANGE = "\uD83D\uDC94 Please give a threshold between 2 and 50 joins, or 0 to turn it off~";
+    private static final String LEVEL_CURVE_USAGE =
+            "\uD83D\uDC94 Usage: `level-curve <quadratic [xp]|linear [xp]|exponential [xp] <factor>|default>`~";
+    private static final long DEFAULT_CURVE_XP = 100;
+    private static final int[] CURVE_SAMPLE_LEVELS = {1, 5, 10, 25, 50, 100};
+
     private final YunoBot bot;
+    private final OutboundScheduler.Sender out;
 
     public UtilityCommands(YunoBot bot) {
         this.bot = bot;
+        this.out = bot.getOutbound().sender(OutboundScheduler.Priority.REPLY);
     }
 
     // Slash Commands
 
     public void handlePing(SlashCommandInteractionEvent event) {
         long gatewayPing = event.getJDA().getGatewayPing();
-        event.reply(String.format(
-                "\uD83D\uDC93 **Pong!**\nI'm always here for you~ \uD83D\uDC95\n\n**Latency:** %dms",
-                gatewayPing
-        )).queue();
+        out.send(event.reply(formatPing(gatewayPing)));
     }
 
     public void handleHelp(SlashCommandInteractionEvent event) {
-        event.reply("""
+        out.send(event.reply("""
                 \uD83D\uDC95 **Yuno's Commands** \uD83D\uDC95
                 *"Let me show you everything I can do for you~"* \uD83D\uDC97
 
                 **\uD83D\uDD2A Moderation**
-                `/ban` - Ban a user
+                `/ban` - Ban a user, optionally for a while
+                `/mass-ban` - Ban many users or recent joiners
+                `/raid-guard` - Raid detection and lockdown
+                `/message-log` - Log deleted and edited messages
                 `/kick` - Kick a user
                 `/unban` - Unban a user
                 `/timeout` - Timeout a user
                 `/clean` - Delete messages
                 `/mod-stats` - View moderation stats
+                `/import-bans` - Log existing bans
 
                 **\u2699\uFE0F Utility**
                 `/ping` - Check latency
                 `/prefix` - Set server prefix
                 `/auto-clean` - Configure auto-clean
                 `/delay` - Delay auto-clean
+                `/stats` - Server activity
+                `/retention` - Set how long history is kept
+                `/export` - Download XP or the mod log
+                `/import` - Load XP or the mod log
                 `/source` - View source code
                 `/help` - This menu
 
                 **\u2728 Leveling**
                 `/xp` - Check XP and level
-                `/leaderboard` - Server rankings
+                `/leaderboard` - Server or global rankings
+                `/xp-cooldown` - Set XP cooldown
+                `/level-ups` - Choose where level-ups are announced
+                `/level-curve` - Choose how much XP each level takes
 
                 **\uD83C\uDFB1 Fun**
                 `/8ball` - Ask the magic 8-ball
 
                 \uD83D\uDC95 *Yuno is always watching over you~* \uD83D\uDC95
-                """).queue();
+                """));
     }
 
     public void handleSource(SlashCommandInteractionEvent event) {
-        event.reply("""
+        out.send(event.reply("""
                 \uD83D\uDCDC **Source Code**
                 *"I have nothing to hide from you~"* \uD83D\uDC95
 
@@ -77,43 +100,43 @@ public class UtilityCommands {
                 **Original JS**: https://github.com/japaneseenrichmentorganization/Yuno-Gasai-2
 
                 Licensed under **AGPL-3.0** \uD83D\uDC97
-                """).queue();
+                """));
     }
 
     public void handlePrefix(SlashCommandInteractionEvent event) {
         if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
-            event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
-                    .setEphemeral(true).queue();
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
             return;
         }
 
         String newPrefix = event.getOption("prefix").getAsString();
 
         if (newPrefix.length() > 5) {
-            event.reply("\uD83D\uDC94 Prefix too long! Max 5 characters~").setEphemeral(true).queue();
+            out.send(event.reply("\uD83D\uDC94 Prefix too long! Max 5 characters~").setEphemeral(true));
             return;
         }
 
         bot.getDatabase().setPrefix(event.getGuild().getIdLong(), newPrefix);
 
-        event.reply(String.format(
+        out.send(event.reply(String.format(
                 "\uD83D\uDD27 **Prefix Updated!**\nNew prefix is now: `%s` \uD83D\uDC95",
                 newPrefix
-        )).queue();
+        )));
     }
 
     public void handleAutoClean(SlashCommandInteractionEvent event) {
-        event.reply("\uD83E\uDDF9 Auto-clean configuration~ \uD83D\uDC95").queue();
+        out.send(event.reply("\uD83E\uDDF9 Auto-clean configuration~ \uD83D\uDC95"));
     }
 
     public void handleDelay(SlashCommandInteractionEvent event) {
         int minutes = event.getOption("minutes") != null ?
                 (int) event.getOption("minutes").getAsLong() : 5;
 
-        event.reply(String.format(
+        out.send(event.reply(String.format(
                 "\u23F3 **Delay Requested**\nI'll wait %d more minutes before cleaning~ \uD83D\uDC95",
                 minutes
-        )).queue();
+        )));
     }
 
     public void handleXp(SlashCommandInteractionEvent event) {
@@ -121,91 +144,234 @@ public class UtilityCommands {
                 event.getOption("user").getAsUser() : event.getUser();
 
         UserXp userXp = bot.getDatabase().getUserXp(targetUser.getIdLong(), event.getGuild().getIdLong());
+        LevelCurve curve = bot.getLevelCurve(event.getGuild().getIdLong());
+        int level = curve.levelFor(userXp.getXp());
+        int progress = progress(curve, level, userXp.getXp());
 
-        int nextLevel = userXp.getLevel() + 1;
-        long xpForNext = (long) nextLevel * nextLevel * 100;
-        int progress = (int) ((userXp.getXp() * 100) / Math.max(xpForNext, 1));
-
-        event.reply(String.format(
+        out.send(event.reply(String.format(
                 "\u2728 **XP Stats**\n%s's progress~ \uD83D\uDC95\n\n" +
                         "**Level:** %d\n" +
                         "**XP:** %d\n" +
                         "**Progress to Next:** %d%%",
-                targetUser.getAsMention(), userXp.getLevel(), userXp.getXp(), progress
-        )).queue();
+                targetUser.getAsMention(), level, userXp.getXp(), progress
+        )));
     }
 
     public void handleLeaderboard(SlashCommandInteractionEvent event) {
-        List<UserXp> topUsers = bot.getDatabase().getLeaderboard(event.getGuild().getIdLong(), 10);
+        if (event.getOption("scope") != null && event.getOption("scope").getAsString().equals("global")) {
+            out.send(event.reply(bot.getGlobalLeaderboard().get(event.getUser().getIdLong())));
+            return;
+        }
+        out.send(event.reply(bot.getLeaderboardCache().get(event.getGuild().getIdLong())));
+    }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("\uD83C\uDFC6 **Server Leaderboard**\n*\"Look who's been the most active~\"* \uD83D\uDC95\n\n");
+    public void handleStats(SlashCommandInteractionEvent event) {
+        out.send(event.reply(bot.getActivity().render(event.getGuild().getIdLong())));
+    }
 
-        if (topUsers.isEmpty()) {
-            sb.append("No one has earned XP yet~");
-        } else {
-            for (int i = 0; i < topUsers.size(); i++) {
-                UserXp user = topUsers.get(i);
-                String medal = switch (i) {
-                    case 0 -> "\uD83E\uDD47";
-                    case 1 -> "\uD83E\uDD48";
-                    case 2 -> "\uD83E\uDD49";
-                    default -> "";
-                };
-                sb.append(String.format("%s %d. <@%d> - Level %d (%d XP)\n",
-                        medal, i + 1, user.getUserId(), user.getLevel(), user.getXp()));
+    public void handleXpCooldown(SlashCommandInteractionEvent event) {
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
+            return;
+        }
+
+        int seconds = (int) event.getOption("seconds").getAsLong();
+        bot.getDatabase().setXpCooldown(event.getGuild().getIdLong(), seconds);
+
+        out.send(event.reply(formatXpCooldownUpdated(seconds)));
+    }
+
+    public void handleRetention(SlashCommandInteractionEvent event) {
+        GuildSettings settings = bot.getDatabase().getGuildSettings(event.getGuild().getIdLong());
+        if (event.getOption("warning_days") == null && event.getOption("mod_log_days") == null) {
+            out.send(event.reply(formatRetention(settings)));
+            return;
+        }
+
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
+            return;
+        }
+
+        int warningDays = event.getOption("warning_days") != null
+                ? (int) event.getOption("warning_days").getAsLong()
+                : settings != null ? settings.getWarningDecayDays() : -1;
+        int modLogDays = event.getOption("mod_log_days") != null
+                ? (int) event.getOption("mod_log_days").getAsLong()
+                : settings != null ? settings.getModActionRetentionDays() : -1;
+        bot.getDatabase().setRetention(event.getGuild().getIdLong(), warningDays, modLogDays);
+
+        out.send(event.reply(formatRetention(bot.getDatabase().getGuildSettings(event.getGuild().getIdLong()))));
+    }
+
+    public void handleLevelUps(SlashCommandInteractionEvent event) {
+        if (event.getOption("mode") == null) {
+            out.send(event.reply(formatLevelUps(bot.getDatabase().getGuildSettings(event.getGuild().getIdLong()))));
+            return;
+        }
+
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
+            return;
+        }
+
+        String mode = event.getOption("mode").getAsString();
+        long channelId = 0;
+        if (mode.equals(GuildSettings.LEVEL_UP_CHANNEL)) {
+            if (event.getOption("channel") == null) {
+                out.send(event.reply("\uD83D\uDC94 Tell me which channel the announcements should go to~").setEphemeral(true));
+                return;
+            }
+            channelId = event.getOption("channel").getAsChannel().getIdLong();
+        }
+        bot.getDatabase().setLevelUpRouting(event.getGuild().getIdLong(), mode, channelId);
+
+        out.send(event.reply(formatLevelUps(bot.getDatabase().getGuildSettings(event.getGuild().getIdLong()))));
+    }
+
+    public void handleLevelCurve(SlashCommandInteractionEvent event) {
+        Guild guild = event.getGuild();
+        if (event.getOption("shape") == null) {
+            out.send(event.reply(formatLevelCurve(guild.getIdLong())));
+            return;
+        }
+
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
+            return;
+        }
+
+        String shape = event.getOption("shape").getAsString();
+        long xp = event.getOption("xp") != null ? event.getOption("xp").getAsLong() : DEFAULT_CURVE_XP;
+        String spec = switch (shape) {
+            case "default" -> null;
+            case "exponential" -> event.getOption("factor") != null
+                    ? shape + ":" + xp + ":" + event.getOption("factor").getAsDouble() : "";
+            default -> shape + ":" + xp;
+        };
+        if ("".equals(spec)) {
+            out.send(event.reply("\uD83D\uDC94 Tell me how much each level should grow by with `factor`~").setEphemeral(true));
+            return;
+        }
+
+        try {
+            out.send(event.reply(changeLevelCurve(guild, spec, event.getChannel())));
+        } catch (IllegalArgumentException e) {
+            out.send(event.reply("\uD83D\uDC94 " + e.getMessage() + "~").setEphemeral(true));
+        }
+    }
+
+    public void handleRaidGuard(SlashCommandInteractionEvent event) {
+        Guild guild = event.getGuild();
+        if (event.getOption("threshold") == null && event.getOption("alert_channel") == null
+                && event.getOption("end_lockdown") == null) {
+            out.send(event.reply(formatRaidGuard(guild)));
+            return;
+        }
+
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
+            return;
+        }
+
+        GuildSettings settings = bot.getDatabase().getGuildSettings(guild.getIdLong());
+        int threshold = settings != null ? settings.getRaidJoinThreshold() : -1;
+        long alertChannelId = settings != null ? settings.getModAlertChannelId() : 0;
+        if (event.getOption("threshold") != null) {
+            threshold = (int) event.getOption("threshold").getAsLong();
+            if (threshold != 0 && threshold < RaidGuard.MIN_THRESHOLD) {
+                out.send(event.reply(RAID_THRESHOLD_RANGE).setEphemeral(true));
+                return;
             }
         }
+        if (event.getOption("alert_channel") != null) {
+            alertChannelId = event.getOption("alert_channel").getAsChannel().getIdLong();
+        }
+        bot.getDatabase().setRaidGuard(guild.getIdLong(), threshold, alertChannelId);
+
+        if (event.getOption("end_lockdown") != null && event.getOption("end_lockdown").getAsBoolean()) {
+            bot.getRaidGuard().endLockdown(guild);
+        }
+        out.send(event.reply(formatRaidGuard(guild)));
+    }
+
+    public void handleMessageLog(SlashCommandInteractionEvent event) {
+        Guild guild = event.getGuild();
+        boolean off = event.getOption("off") != null && event.getOption("off").getAsBoolean();
+        if (event.getOption("channel") == null && !off) {
+            out.send(event.reply(formatMessageLog(guild)));
+            return;
+        }
+
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.send(event.reply(bot.getConfig().formatInsufficientPermissionsMessage(event.getUser().getAsMention()))
+                    .setEphemeral(true));
+            return;
+        }
 
-        event.reply(sb.toString()).queue();
+        setMessageLog(guild, off ? 0 : event.getOption("channel").getAsChannel().getIdLong());
+        out.send(event.reply(formatMessageLog(guild)));
     }
 
     // Prefix Commands
 
     public void handlePingPrefix(MessageReceivedEvent event) {
         long gatewayPing = event.getJDA().getGatewayPing();
-        event.getChannel().sendMessage(String.format(
-                "\uD83D\uDC93 **Pong!**\nI'm always here for you~ \uD83D\uDC95\n\n**Latency:** %dms",
-                gatewayPing
-        )).queue();
+        out.sendMessage(event.getChannel(), formatPing(gatewayPing));
     }
 
     public void handleHelpPrefix(MessageReceivedEvent event) {
         String prefix = bot.getDatabase().getPrefix(event.getGuild().getIdLong(), bot.getConfig().getDefaultPrefix());
 
-        event.getChannel().sendMessage(String.format("""
+        out.sendMessage(event.getChannel(), String.format("""
                 \uD83D\uDC95 **Yuno's Commands** \uD83D\uDC95
                 *"Let me show you everything I can do for you~"* \uD83D\uDC97
                 Prefix: `%s`
 
                 **\uD83D\uDD2A Moderation**
-                `ban` - Ban a user
+                `ban` - Ban a user (add `7d` etc. after them for a temp-ban)
+                `mass-ban` - Ban many users or recent joiners
+                `raid-guard` - Raid detection and lockdown
+                `message-log` - Log deleted and edited messages
                 `kick` - Kick a user
                 `unban` - Unban a user
                 `timeout` - Timeout a user
                 `clean` - Delete messages
                 `mod-stats` - View moderation stats
+                `import-bans` - Log existing bans
 
                 **\u2699\uFE0F Utility**
                 `ping` - Check latency
                 `prefix` - Set server prefix
                 `delay` - Delay auto-clean
+                `stats` - Server activity
+                `retention` - Set how long history is kept
+                `export` - Download XP or the mod log
+                `import` - Load XP or the mod log
                 `source` - View source code
                 `help` - This menu
 
                 **\u2728 Leveling**
                 `xp` - Check XP and level
-                `leaderboard` - Server rankings
+                `leaderboard [global]` - Server or global rankings
+                `xp-cooldown` - Set XP cooldown
+                `level-ups` - Choose where level-ups are announced
+                `level-curve` - Choose how much XP each level takes
 
                 **\uD83C\uDFB1 Fun**
                 `8ball` - Ask the magic 8-ball
 
                 \uD83D\uDC95 *Yuno is always watching over you~* \uD83D\uDC95
-                """, prefix)).queue();
+                """, prefix));
     }
 
     public void handleSourcePrefix(MessageReceivedEvent event) {
-        event.getChannel().sendMessage("""
+        out.sendMessage(event.getChannel(), """
                 \uD83D\uDCDC **Source Code**
                 *"I have nothing to hide from you~"* \uD83D\uDC95
 
@@ -216,39 +382,39 @@ public class UtilityCommands {
                 **Original JS**: https://github.com/japaneseenrichmentorganization/Yuno-Gasai-2
 
                 Licensed under **AGPL-3.0** \uD83D\uDC97
-                """).queue();
+                """);
     }
 
     public void handlePrefixPrefix(MessageReceivedEvent event, String args) {
         if (args == null || args.isEmpty()) {
             String currentPrefix = bot.getDatabase().getPrefix(
                     event.getGuild().getIdLong(), bot.getConfig().getDefaultPrefix());
-            event.getChannel().sendMessage(String.format("\uD83D\uDC95 Current prefix: `%s`", currentPrefix)).queue();
+            out.sendMessage(event.getChannel(), String.format("\uD83D\uDC95 Current prefix: `%s`", currentPrefix));
             return;
         }
 
         if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
-            event.getChannel().sendMessage(
+            out.sendMessage(event.getChannel(),
                     bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
-            ).queue();
+            );
             return;
         }
 
         if (args.length() > 5) {
-            event.getChannel().sendMessage("\uD83D\uDC94 Prefix too long! Max 5 characters~").queue();
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 Prefix too long! Max 5 characters~");
             return;
         }
 
         bot.getDatabase().setPrefix(event.getGuild().getIdLong(), args);
 
-        event.getChannel().sendMessage(String.format(
+        out.sendMessage(event.getChannel(), String.format(
                 "\uD83D\uDD27 **Prefix Updated!**\nNew prefix is now: `%s` \uD83D\uDC95",
                 args
-        )).queue();
+        ));
     }
 
     public void handleAutoCleanPrefix(MessageReceivedEvent event) {
-        event.getChannel().sendMessage("\uD83E\uDDF9 Auto-clean configuration~ \uD83D\uDC95").queue();
+        out.sendMessage(event.getChannel(), "\uD83E\uDDF9 Auto-clean configuration~ \uD83D\uDC95");
     }
 
     public void handleDelayPrefix(MessageReceivedEvent event, String args) {
@@ -261,51 +427,371 @@ public class UtilityCommands {
             }
         }
 
-        event.getChannel().sendMessage(String.format(
+        out.sendMessage(event.getChannel(), String.format(
                 "\u23F3 **Delay Requested**\nI'll wait %d more minutes before cleaning~ \uD83D\uDC95",
                 minutes
-        )).queue();
+        ));
     }
 
     public void handleXpPrefix(MessageReceivedEvent event) {
         long userId = event.getAuthor().getIdLong();
         UserXp userXp = bot.getDatabase().getUserXp(userId, event.getGuild().getIdLong());
+        LevelCurve curve = bot.getLevelCurve(event.getGuild().getIdLong());
+        int level = curve.levelFor(userXp.getXp());
+        int progress = progress(curve, level, userXp.getXp());
 
-        int nextLevel = userXp.getLevel() + 1;
-        long xpForNext = (long) nextLevel * nextLevel * 100;
-        int progress = (int) ((userXp.getXp() * 100) / Math.max(xpForNext, 1));
-
-        event.getChannel().sendMessage(String.format(
+        out.sendMessage(event.getChannel(), String.format(
                 "\u2728 **XP Stats**\n%s's progress~ \uD83D\uDC95\n\n" +
                         "**Level:** %d\n" +
                         "**XP:** %d\n" +
                         "**Progress to Next:** %d%%",
-                event.getAuthor().getAsMention(), userXp.getLevel(), userXp.getXp(), progress
-        )).queue();
+                event.getAuthor().getAsMention(), level, userXp.getXp(), progress
+        ));
+    }
+
+    public void handleLeaderboardPrefix(MessageReceivedEvent event, String args) {
+        if (args != null && args.trim().equalsIgnoreCase("global")) {
+            out.sendMessage(event.getChannel(), bot.getGlobalLeaderboard().get(event.getAuthor().getIdLong()));
+            return;
+        }
+        out.sendMessage(event.getChannel(), bot.getLeaderboardCache().get(event.getGuild().getIdLong()));
+    }
+
+    public void handleStatsPrefix(MessageReceivedEvent event) {
+        out.sendMessage(event.getChannel(), bot.getActivity().render(event.getGuild().getIdLong()));
+    }
+
+    public void handleXpCooldownPrefix(MessageReceivedEvent event, String args) {
+        if (args == null || args.isEmpty()) {
+            GuildSettings settings = bot.getDatabase().getGuildSettings(event.getGuild().getIdLong());
+            int seconds = settings != null && settings.getXpCooldownSeconds() >= 0
+                    ? settings.getXpCooldownSeconds() : bot.getConfig().getXpCooldownSeconds();
+            out.sendMessage(event.getChannel(), String.format("\u23F3 Current XP cooldown: **%d** seconds~", seconds));
+            return;
+        }
+
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.sendMessage(event.getChannel(),
+                    bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
+            );
+            return;
+        }
+
+        int seconds;
+        try {
+            seconds = Integer.parseInt(args.trim());
+        } catch (NumberFormatException e) {
+            seconds = -1;
+        }
+        if (seconds < 0 || seconds > 86400) {
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 Please give a cooldown between 0 and 86400 seconds~");
+            return;
+        }
+
+        bot.getDatabase().setXpCooldown(event.getGuild().getIdLong(), seconds);
+        out.sendMessage(event.getChannel(), formatXpCooldownUpdated(seconds));
+    }
+
+    private String formatPing(long gatewayPing) {
+        OutboundScheduler outbound = bot.getOutbound();
+        return String.format(
+                "\uD83D\uDC93 **Pong!**\nI'm always here for you~ \uD83D\uDC95\n\n**Latency:** %dms\n" +
+                        "**Queued:** %d moderation, %d replies, %d announcements, %d fun",
+                gatewayPing,
+                outbound.getQueueDepth(OutboundScheduler.Priority.MODERATION),
+                outbound.getQueueDepth(OutboundScheduler.Priority.REPLY),
+                outbound.getQueueDepth(OutboundScheduler.Priority.ANNOUNCEMENT),
+                outbound.getQueueDepth(OutboundScheduler.Priority.FUN)
+        );
+    }
+
+    private String formatXpCooldownUpdated(int seconds) {
+        if (seconds == 0) {
+            return "\u2728 **XP Cooldown Disabled!**\nEvery message earns XP now~ \uD83D\uDC95";
+        }
+        return String.format(
+                "\u23F3 **XP Cooldown Updated!**\nChatting earns XP at most once every **%d** seconds~ \uD83D\uDC95",
+                seconds
+        );
+    }
+
+    public void handleRetentionPrefix(MessageReceivedEvent event, String args) {
+        GuildSettings settings = bot.getDatabase().getGuildSettings(event.getGuild().getIdLong());
+        if (args == null || args.isEmpty()) {
+            out.sendMessage(event.getChannel(), formatRetention(settings));
+            return;
+        }
+
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.sendMessage(event.getChannel(),
+                    bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
+            );
+            return;
+        }
+
+        String[] parts = args.trim().split("\\s+");
+        int warningDays;
+        int modLogDays;
+        try {
+            warningDays = Integer.parseInt(parts[0]);
+            modLogDays = parts.length > 1 ? Integer.parseInt(parts[1])
+                    : settings != null ? settings.getModActionRetentionDays() : -1;
+        } catch (NumberFormatException e) {
+            warningDays = -2;
+            modLogDays = -2;
+        }
+        if (warningDays < 0 || warningDays > 3650 || modLogDays < -1 || modLogDays > 3650) {
+            out.sendMessage(event.getChannel(),
+                    "\uD83D\uDC94 Usage: `retention <warning-days> [mod-log-days]`, between 0 and 3650 days (0 keeps forever)~"
+            );
+            return;
+        }
+
+        bot.getDatabase().setRetention(event.getGuild().getIdLong(), warningDays, modLogDays);
+        out.sendMessage(event.getChannel(), formatRetention(bot.getDatabase().getGuildSettings(event.getGuild().getIdLong())));
+    }
+
+    public void handleLevelUpsPrefix(MessageReceivedEvent event, String args) {
+        if (args == null || args.isEmpty()) {
+            out.sendMessage(event.getChannel(), formatLevelUps(bot.getDatabase().getGuildSettings(event.getGuild().getIdLong())));
+            return;
+        }
+
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.sendMessage(event.getChannel(),
+                    bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
+            );
+            return;
+        }
+
+        String mode = args.trim().toLowerCase();
+        long channelId = 0;
+        List<GuildChannel> channels = event.getMessage().getMentions().getChannels();
+        if (!channels.isEmpty()) {
+            mode = GuildSettings.LEVEL_UP_CHANNEL;
+            channelId = channels.get(0).getIdLong();
+        } else if (!mode.equals(GuildSettings.LEVEL_UP_HERE) && !mode.equals(GuildSettings.LEVEL_UP_DM)
+                && !mode.equals(GuildSettings.LEVEL_UP_OFF)) {
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 Usage: `level-ups <here|#channel|dm|off>`~");
+            return;
+        }
+
+        bot.getDatabase().setLevelUpRouting(event.getGuild().getIdLong(), mode, channelId);
+        out.sendMessage(event.getChannel(), formatLevelUps(bot.getDatabase().getGuildSettings(event.getGuild().getIdLong())));
+    }
+
+    public void handleLevelCurvePrefix(MessageReceivedEvent event, String args) {
+        Guild guild = event.getGuild();
+        if (args == null || args.isEmpty()) {
+            out.sendMessage(event.getChannel(), formatLevelCurve(guild.getIdLong()));
+            return;
+        }
+
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.sendMessage(event.getChannel(),
+                    bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
+            );
+            return;
+        }
+
+        String[] words = args.trim().toLowerCase().split("\\s+");
+        String spec;
+        if (words[0].equals("default")) {
+            spec = null;
+        } else if (words[0].equals("exponential") && words.length == 2) {
+            // Just the factor
+            spec = words[0] + ":" + DEFAULT_CURVE_XP + ":" + words[1];
+        } else if (words.length == 1) {
+            spec = words[0] + ":" + DEFAULT_CURVE_XP;
+        } else {
+            spec = String.join(":", words);
+        }
+
+        try {
+            out.sendMessage(event.getChannel(), changeLevelCurve(guild, spec, event.getChannel()));
+        } catch (IllegalArgumentException e) {
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 " + e.getMessage() + "~\n" + LEVEL_CURVE_USAGE);
+        }
+    }
+
+    public void handleRaidGuardPrefix(MessageReceivedEvent event, String args) {
+        Guild guild = event.getGuild();
+        if (args == null || args.isEmpty()) {
+            out.sendMessage(event.getChannel(), formatRaidGuard(guild));
+            return;
+        }
+
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.sendMessage(event.getChannel(),
+                    bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
+            );
+            return;
+        }
+
+        GuildSettings settings = bot.getDatabase().getGuildSettings(guild.getIdLong());
+        int threshold = settings != null ? settings.getRaidJoinThreshold() : -1;
+        long alertChannelId = settings != null ? settings.getModAlertChannelId() : 0;
+        boolean end = false;
+        List<GuildChannel> channels = event.getMessage().getMentions().getChannels();
+        if (!channels.isEmpty()) {
+            alertChannelId = channels.get(0).getIdLong();
+        }
+        for (String word : args.trim().toLowerCase().split("\\s+")) {
+            if (word.equals("end")) {
+                end = true;
+            } else if (word.equals("off")) {
+                threshold = 0;
+            } else if (!word.startsWith("<#")) {
+                try {
+                    threshold = Integer.parseInt(word);
+                } catch (NumberFormatException e) {
+                    out.sendMessage(event.getChannel(), "\uD83D\uDC94 Usage: `raid-guard [threshold|off] [#alert-channel] [end]`~");
+                    return;
+                }
+                if (threshold != 0 && (threshold < RaidGuard.MIN_THRESHOLD || threshold > RaidGuard.MAX_THRESHOLD)) {
+                    out.sendMessage(event.getChannel(), RAID_THRESHOLD_RANGE);
+                    return;
+                }
+            }
+        }
+        bot.getDatabase().setRaidGuard(guild.getIdLong(), threshold, alertChannelId);
+
+        if (end) {
+            bot.getRaidGuard().endLockdown(guild);
+        }
+        out.sendMessage(event.getChannel(), formatRaidGuard(guild));
     }
 
-    public void handleLeaderboardPrefix(MessageReceivedEvent event) {
-        List<UserXp> topUsers = bot.getDatabase().getLeaderboard(event.getGuild().getIdLong(), 10);
+    public void handleMessageLogPrefix(MessageReceivedEvent event, String args) {
+        Guild guild = event.getGuild();
+        if (args == null || args.isEmpty()) {
+            out.sendMessage(event.getChannel(), formatMessageLog(guild));
+            return;
+        }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("\uD83C\uDFC6 **Server Leaderboard**\n*\"Look who's been the most active~\"* \uD83D\uDC95\n\n");
+        if (!event.getMember().hasPermission(Permission.MANAGE_SERVER)) {
+            out.sendMessage(event.getChannel(),
+                    bot.getConfig().formatInsufficientPermissionsMessage(event.getAuthor().getAsMention())
+            );
+            return;
+        }
 
-        if (topUsers.isEmpty()) {
-            sb.append("No one has earned XP yet~");
+        List<GuildChannel> channels = event.getMessage().getMentions().getChannels();
+        if (args.trim().equalsIgnoreCase("off")) {
+            setMessageLog(guild, 0);
+        } else if (!channels.isEmpty()) {
+            setMessageLog(guild, channels.get(0).getIdLong());
         } else {
-            for (int i = 0; i < topUsers.size(); i++) {
-                UserXp user = topUsers.get(i);
-                String medal = switch (i) {
-                    case 0 -> "\uD83E\uDD47";
-                    case 1 -> "\uD83E\uDD48";
-                    case 2 -> "\uD83E\uDD49";
-                    default -> "";
-                };
-                sb.append(String.format("%s %d. <@%d> - Level %d (%d XP)\n",
-                        medal, i + 1, user.getUserId(), user.getLevel(), user.getXp()));
+            out.sendMessage(event.getChannel(), "\uD83D\uDC94 Usage: `message-log [#channel|off]`~");
+            return;
+        }
+        out.sendMessage(event.getChannel(), formatMessageLog(guild));
+    }
+
+    // Turning the log off forgets what was kept for it, too
+    private void setMessageLog(Guild guild, long channelId) {
+        bot.getDatabase().setMessageLogChannel(guild.getIdLong(), channelId);
+        bot.getMessageLog().logChannelChanged(guild.getIdLong());
+        if (channelId == 0) {
+            bot.getMessageLog().forgetGuild(guild.getIdLong());
+        }
+    }
+
+    // Stores the guild's curve (null for the bot default) and re-levels everyone on it in the background
+    private String changeLevelCurve(Guild guild, String spec, MessageChannel channel) {
+        long guildId = guild.getIdLong();
+        String stored = spec != null ? LevelCurve.parse(spec).getSpec() : null;
+        LevelCurve before = bot.getLevelCurve(guildId);
+        bot.getDatabase().setLevelCurve(guildId, stored);
+        LevelCurve after = bot.getLevelCurve(guildId);
+        if (after.getSpec().equals(before.getSpec())) {
+            return formatLevelCurve(guildId);
+        }
+
+        bot.getRelevel().relevel(guildId, after, result -> {
+            bot.getLeaderboardCache().invalidate(guildId);
+            out.sendMessage(channel, String.format(
+                    "\u2728 **Levels updated!**\n**%,d** of %,d members moved to a new level in %,dms~ \uD83D\uDC95",
+                    result.getChanged(), result.getScanned(), result.getMillis()));
+        });
+        return formatLevelCurve(guildId) + "\nI'm working out everyone's new level in the background, I'll tell you when I'm done~";
+    }
+
+    private String formatLevelCurve(long guildId) {
+        GuildSettings settings = bot.getDatabase().getGuildSettings(guildId);
+        LevelCurve curve = bot.getLevelCurve(guildId);
+        StringBuilder levels = new StringBuilder();
+        for (int level : CURVE_SAMPLE_LEVELS) {
+            if (level > curve.getMaxLevel()) {
+                break;
             }
+            levels.append(levels.length() > 0 ? " \u2022 " : "")
+                    .append(String.format("%d: **%,d**", level, curve.xpFor(level)));
+        }
+        return String.format("\u2728 **Level Curve**\nShape: `%s`%s\nXP per level: %s~ \uD83D\uDC95",
+                curve.getSpec(), settings != null && settings.getLevelCurve() != null ? "" : " (bot default)", levels);
+    }
+
+    // Share of the next level's XP already earned, counted from zero like it always has been
+    private static int progress(LevelCurve curve, int level, long xp) {
+        long xpForNext = curve.xpFor(level + 1);
+        if (xpForNext == Long.MAX_VALUE) {
+            return 100;
         }
+        return (int) (xp * 100 / Math.max(xpForNext, 1));
+    }
+
+    private static String formatLevelUps(GuildSettings settings) {
+        String mode = settings != null ? settings.getLevelUpMode() : GuildSettings.LEVEL_UP_HERE;
+        String where = switch (mode) {
+            case GuildSettings.LEVEL_UP_CHANNEL -> "in <#" + settings.getLevelUpChannelId() + ">";
+            case GuildSettings.LEVEL_UP_DM -> "in DMs";
+            case GuildSettings.LEVEL_UP_OFF -> "nowhere, they're off";
+            default -> "in the channel where it happened";
+        };
+        return "\u2728 **Level-Up Announcements**\nI'll celebrate level-ups " + where + "~ \uD83D\uDC95";
+    }
+
+    private String formatRaidGuard(Guild guild) {
+        GuildSettings settings = bot.getDatabase().getGuildSettings(guild.getIdLong());
+        int threshold = bot.getRaidGuard().thresholdFor(guild.getIdLong(), bot.getConfig());
+        long alertChannelId = settings != null ? settings.getModAlertChannelId() : 0;
+        String status = bot.getRaidGuard().isLockedDown(guild.getIdLong()) ? "\uD83D\uDEA8 **LOCKED DOWN**" : "watching";
+        if (threshold == 0) {
+            return "\uD83D\uDEE1\uFE0F **Raid Guard**\nI'm not watching joins here, it's off~";
+        }
+        return String.format(
+                "\uD83D\uDEE1\uFE0F **Raid Guard**\nStatus: %s\nLockdown after: **%d** joins in %ds (new accounts count double)\n" +
+                        "Alerts go to: %s~ \uD83D\uDC95",
+                status, threshold, bot.getConfig().getRaidWindowSeconds(),
+                alertChannelId != 0 ? "<#" + alertChannelId + ">" : "the safety alerts or system channel");
+    }
+
+    private String formatMessageLog(Guild guild) {
+        GuildSettings settings = bot.getDatabase().getGuildSettings(guild.getIdLong());
+        long channelId = settings != null ? settings.getMessageLogChannelId() : 0;
+        if (channelId == 0) {
+            return "\uD83D\uDDD1\uFE0F **Message Log**\nI'm not keeping deleted or edited messages here, it's off~";
+        }
+        if (bot.getConfig().getMessageCacheMegabytes() == 0) {
+            return "\uD83D\uDDD1\uFE0F **Message Log**\nIt would go to <#" + channelId + ">, but I've been told not to remember any messages~";
+        }
+        return "\uD83D\uDDD1\uFE0F **Message Log**\nDeleted and edited messages go to <#" + channelId + ">~ \uD83D\uDC95\n" +
+                "I only remember recent messages, so older ones can't be shown.";
+    }
+
+    private String formatRetention(GuildSettings settings) {
+        int warningDays = settings != null && settings.getWarningDecayDays() >= 0
+                ? settings.getWarningDecayDays() : bot.getConfig().getWarningDecayDays();
+        int modLogDays = settings != null && settings.getModActionRetentionDays() >= 0
+                ? settings.getModActionRetentionDays() : bot.getConfig().getModActionRetentionDays();
+        return String.format(
+                "\uD83D\uDDC3\uFE0F **Retention**\nSpam warnings fade after: **%s**\nMod log is archived after: **%s**~ \uD83D\uDC95",
+                formatDays(warningDays), formatDays(modLogDays)
+        );
+    }
 
-        event.getChannel().sendMessage(sb.toString()).queue();
+    private static String formatDays(int days) {
+        return days == 0 ? "never" : days + (days == 1 ? " day" : " days");
     }
 }
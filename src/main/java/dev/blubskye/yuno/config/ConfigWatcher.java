@@ -0,0 +1,158 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Config Watcher
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.config;
+
+import dev.blubskye.yuno.logging.LogControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Watches the config file and swaps in a new snapshot when it changes. A
+ * file that doesn't parse or validate is logged and ignored, leaving the
+ * running snapshot in place. Settings that are only read at startup are
+ * swapped too, but only take effect after a restart. Changes that need more
+ * than a swap are handed to {@code onReload} with the old and new snapshots.
+ */
+public class ConfigWatcher {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigWatcher.class);
+
+    // Editors often save in several writes; wait for them to settle
+    private static final long SETTLE_MS = 500;
+
+    private final Path path;
+    private final AtomicReference<YunoConfig> current;
+    private final BiConsumer<YunoConfig, YunoConfig> onReload;
+    private WatchService watchService;
+    private Thread thread;
+    private volatile boolean stopping;
+
+    public ConfigWatcher(Path path, AtomicReference<YunoConfig> current, BiConsumer<YunoConfig, YunoConfig> onReload) {
+        this.path = path.toAbsolutePath();
+        this.current = current;
+        this.onReload = onReload;
+    }
+
+    public void start() throws IOException {
+        // Watch the directory, since editors replace the file rather than write into it
+        watchService = FileSystems.getDefault().newWatchService();
+        path.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(this::run, "yuno-config-watch");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Watching {} for changes~", path);
+    }
+
+    public void stop() {
+        stopping = true;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            while (!stopping) {
+                WatchKey key = watchService.take();
+                boolean changed = touchesConfig(key);
+                if (!key.reset()) {
+                    logger.warn("Config directory is gone, no longer watching {}", path);
+                    return;
+                }
+                if (!changed) {
+                    continue;
+                }
+                Thread.sleep(SETTLE_MS);
+                for (WatchKey pending = watchService.poll(); pending != null; pending = watchService.poll()) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    private boolean touchesConfig(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || path.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public boolean reload() {
+        YunoConfig next;
+        try {
+            next = YunoConfig.parseFile(path);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Config reload failed, keeping the current settings: {}", e.getMessage());
+            return false;
+        }
+
+        YunoConfig previous = current.getAndSet(next);
+        List<String> restartOnly = restartOnlyChanges(previous, next);
+        if (!restartOnly.isEmpty()) {
+            logger.warn("{} changed; restart me for that to take effect~", String.join(", ", restartOnly));
+        }
+        if (!Objects.equals(previous.getLogLevel(), next.getLogLevel())) {
+            LogControl.setAppLevel(next.getLogLevel());
+        }
+        try {
+            onReload.accept(previous, next);
+        } catch (RuntimeException e) {
+            logger.error("Error applying the reloaded config: {}", e.getMessage());
+        }
+        logger.info("Config reloaded from {}~", path);
+        return true;
+    }
+
+    private static List<String> restartOnlyChanges(YunoConfig previous, YunoConfig next) {
+        List<String> changed = new ArrayList<>();
+        addIfChanged(changed, "discord_token", previous.getDiscordToken(), next.getDiscordToken());
+        addIfChanged(changed, "database_backend", previous.getDatabaseBackend(), next.getDatabaseBackend());
+        addIfChanged(changed, "database_path", previous.getDatabasePath(), next.getDatabasePath());
+        addIfChanged(changed, "postgres_url", previous.getPostgresUrl(), next.getPostgresUrl());
+        addIfChanged(changed, "postgres_user", previous.getPostgresUser(), next.getPostgresUser());
+        addIfChanged(changed, "postgres_password", previous.getPostgresPassword(), next.getPostgresPassword());
+        addIfChanged(changed, "postgres_pool_size", previous.getPostgresPoolSize(), next.getPostgresPoolSize());
+        addIfChanged(changed, "backup_directory", previous.getBackupDirectory(), next.getBackupDirectory());
+        addIfChanged(changed, "backup_interval_minutes", previous.getBackupIntervalMinutes(), next.getBackupIntervalMinutes());
+        addIfChanged(changed, "backup_keep", previous.getBackupKeep(), next.getBackupKeep());
+        addIfChanged(changed, "archive_directory", previous.getArchiveDirectory(), next.getArchiveDirectory());
+        addIfChanged(changed, "message_cache_megabytes", previous.getMessageCacheMegabytes(), next.getMessageCacheMegabytes());
+        addIfChanged(changed, "health_port", previous.getHealthPort(), next.getHealthPort());
+        addIfChanged(changed, "health_bind_address", previous.getHealthBindAddress(), next.getHealthBindAddress());
+        return changed;
+    }
+
+    private static void addIfChanged(List<String> changed, String name, Object before, Object after) {
+        if (!Objects.equals(before, after)) {
+            changed.add(name);
+        }
+    }
+}
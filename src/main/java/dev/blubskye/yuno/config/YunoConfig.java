@@ -7,15 +7,29 @@
 package dev.blubskye.yuno.config;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.google.gson.annotations.SerializedName;
+import dev.blubskye.yuno.database.LevelCurve;
+import dev.blubskye.yuno.util.LongHashSet;
+import dev.blubskye.yuno.util.TokenBucketTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * One snapshot of the bot's settings. Nothing changes a snapshot once it is
+ * loaded; a reload parses a fresh one and swaps it in whole, so readers
+ * never see half of an edit.
+ */
 public class YunoConfig {
     private static final Logger logger = LoggerFactory.getLogger(YunoConfig.class);
 
@@ -25,15 +39,101 @@ public class YunoConfig {
     @SerializedName("default_prefix")
     private String defaultPrefix = ".";
 
+    @SerializedName("database_backend")
+    private String databaseBackend = "sqlite";
+
     @SerializedName("database_path")
     private String databasePath = "yuno.db";
 
+    @SerializedName("backup_directory")
+    private String backupDirectory = "backups";
+
+    @SerializedName("backup_interval_minutes")
+    private int backupIntervalMinutes = 360;
+
+    @SerializedName("backup_keep")
+    private int backupKeep = 7;
+
+    @SerializedName("postgres_url")
+    private String postgresUrl = "jdbc:postgresql://localhost:5432/yuno";
+
+    @SerializedName("postgres_user")
+    private String postgresUser = "yuno";
+
+    @SerializedName("postgres_password")
+    private String postgresPassword;
+
+    @SerializedName("postgres_pool_size")
+    private int postgresPoolSize = 8;
+
     @SerializedName("master_users")
     private List<String> masterUsers = new ArrayList<>();
 
     @SerializedName("spam_max_warnings")
     private int spamMaxWarnings = 3;
 
+    @SerializedName("xp_cooldown_seconds")
+    private int xpCooldownSeconds = 60;
+
+    @SerializedName("level_curve")
+    private String levelCurve = LevelCurve.DEFAULT_SPEC;
+
+    // Both off unless asked for, so upgrading never deletes anything on its own
+    @SerializedName("warning_decay_days")
+    private int warningDecayDays = 0;
+
+    @SerializedName("mod_action_retention_days")
+    private int modActionRetentionDays = 0;
+
+    // Off until a guild (or the bot owner) sets a threshold, so nobody gets locked down by surprise
+    @SerializedName("raid_join_threshold")
+    private int raidJoinThreshold = 0;
+
+    @SerializedName("raid_window_seconds")
+    private int raidWindowSeconds = 10;
+
+    @SerializedName("raid_young_account_days")
+    private int raidYoungAccountDays = 7;
+
+    @SerializedName("raid_lockdown_minutes")
+    private int raidLockdownMinutes = 15;
+
+    @SerializedName("archive_directory")
+    private String archiveDirectory = "archives";
+
+    @SerializedName("message_cache_megabytes")
+    private int messageCacheMegabytes = 16;
+
+    @SerializedName("rate_limit_user_burst")
+    private int rateLimitUserBurst = 5;
+
+    @SerializedName("rate_limit_user_per_minute")
+    private int rateLimitUserPerMinute = 20;
+
+    @SerializedName("rate_limit_guild_burst")
+    private int rateLimitGuildBurst = 30;
+
+    @SerializedName("rate_limit_guild_per_minute")
+    private int rateLimitGuildPerMinute = 120;
+
+    @SerializedName("rate_limit_global_burst")
+    private int rateLimitGlobalBurst = 100;
+
+    @SerializedName("rate_limit_global_per_minute")
+    private int rateLimitGlobalPerMinute = 1200;
+
+    @SerializedName("command_costs")
+    private Map<String, Integer> commandCosts;
+
+    @SerializedName("shutdown_timeout_seconds")
+    private int shutdownTimeoutSeconds = 20;
+
+    @SerializedName("health_port")
+    private int healthPort;
+
+    @SerializedName("health_bind_address")
+    private String healthBindAddress = "0.0.0.0";
+
     @SerializedName("ban_default_image")
     private String banDefaultImage;
 
@@ -43,18 +143,39 @@ public class YunoConfig {
     @SerializedName("insufficient_permissions_message")
     private String insufficientPermissionsMessage = "${author} You don't have permission to do that~";
 
+    @SerializedName("log_level")
+    private String logLevel;
+
+    // Built from masterUsers so the permission check is a hash probe
+    private transient LongHashSet masterUserIds = new LongHashSet();
+
     public static YunoConfig loadFromFile(String path) {
-        try (FileReader reader = new FileReader(path)) {
-            Gson gson = new Gson();
-            YunoConfig config = gson.fromJson(reader, YunoConfig.class);
+        try {
+            return parse(Paths.get(path), false);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to load config from file: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Like {@link #loadFromFile} but throws, so a reload can keep the snapshot it has.
+     * Also rejects master_users entries that startup would only warn about.
+     */
+    public static YunoConfig parseFile(Path path) throws IOException {
+        return parse(path, true);
+    }
+
+    private static YunoConfig parse(Path path, boolean strict) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path)) {
+            YunoConfig config = new Gson().fromJson(reader, YunoConfig.class);
             if (config == null) {
                 config = new YunoConfig();
             }
-            config.applyDefaults();
+            config.applyDefaults(strict);
             return config;
-        } catch (IOException e) {
-            logger.error("Failed to load config from file: {}", e.getMessage());
-            return null;
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid JSON: " + e.getMessage(), e);
         }
     }
 
@@ -71,11 +192,60 @@ public class YunoConfig {
             config.defaultPrefix = prefix;
         }
 
+        String dbBackend = System.getenv("DATABASE_BACKEND");
+        if (dbBackend != null && !dbBackend.isEmpty()) {
+            config.databaseBackend = dbBackend;
+        }
+
         String dbPath = System.getenv("DATABASE_PATH");
         if (dbPath != null && !dbPath.isEmpty()) {
             config.databasePath = dbPath;
         }
 
+        String backupDir = System.getenv("BACKUP_DIRECTORY");
+        if (backupDir != null && !backupDir.isEmpty()) {
+            config.backupDirectory = backupDir;
+        }
+
+        String backupInterval = System.getenv("BACKUP_INTERVAL_MINUTES");
+        if (backupInterval != null && !backupInterval.isEmpty()) {
+            try {
+                config.backupIntervalMinutes = Integer.parseInt(backupInterval);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        String backupKeep = System.getenv("BACKUP_KEEP");
+        if (backupKeep != null && !backupKeep.isEmpty()) {
+            try {
+                config.backupKeep = Integer.parseInt(backupKeep);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        String pgUrl = System.getenv("POSTGRES_URL");
+        if (pgUrl != null && !pgUrl.isEmpty()) {
+            config.postgresUrl = pgUrl;
+        }
+
+        String pgUser = System.getenv("POSTGRES_USER");
+        if (pgUser != null && !pgUser.isEmpty()) {
+            config.postgresUser = pgUser;
+        }
+
+        String pgPassword = System.getenv("POSTGRES_PASSWORD");
+        if (pgPassword != null && !pgPassword.isEmpty()) {
+            config.postgresPassword = pgPassword;
+        }
+
+        String pgPoolSize = System.getenv("POSTGRES_POOL_SIZE");
+        if (pgPoolSize != null && !pgPoolSize.isEmpty()) {
+            try {
+                config.postgresPoolSize = Integer.parseInt(pgPoolSize);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
         String spamWarnings = System.getenv("SPAM_MAX_WARNINGS");
         if (spamWarnings != null && !spamWarnings.isEmpty()) {
             try {
@@ -84,6 +254,48 @@ public class YunoConfig {
             }
         }
 
+        String xpCooldown = System.getenv("XP_COOLDOWN_SECONDS");
+        if (xpCooldown != null && !xpCooldown.isEmpty()) {
+            try {
+                config.xpCooldownSeconds = Integer.parseInt(xpCooldown);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        String levelCurve = System.getenv("LEVEL_CURVE");
+        if (levelCurve != null && !levelCurve.isEmpty()) {
+            config.levelCurve = levelCurve;
+        }
+
+        String warningDecay = System.getenv("WARNING_DECAY_DAYS");
+        if (warningDecay != null && !warningDecay.isEmpty()) {
+            try {
+                config.warningDecayDays = Integer.parseInt(warningDecay);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        String modActionRetention = System.getenv("MOD_ACTION_RETENTION_DAYS");
+        if (modActionRetention != null && !modActionRetention.isEmpty()) {
+            try {
+                config.modActionRetentionDays = Integer.parseInt(modActionRetention);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        String archiveDir = System.getenv("ARCHIVE_DIRECTORY");
+        if (archiveDir != null && !archiveDir.isEmpty()) {
+            config.archiveDirectory = archiveDir;
+        }
+
+        String messageCache = System.getenv("MESSAGE_CACHE_MEGABYTES");
+        if (messageCache != null && !messageCache.isEmpty()) {
+            try {
+                config.messageCacheMegabytes = Integer.parseInt(messageCache);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
         String masterUser = System.getenv("MASTER_USER");
         if (masterUser != null && !masterUser.isEmpty()) {
             config.masterUsers.add(masterUser);
@@ -94,17 +306,34 @@ public class YunoConfig {
             config.dmMessage = dmMsg;
         }
 
-        config.applyDefaults();
+        config.applyDefaults(false);
         return config;
     }
 
-    private void applyDefaults() {
+    // Strict turns a bad master_users entry into an error instead of a warning
+    private void applyDefaults(boolean strict) {
         if (defaultPrefix == null || defaultPrefix.isEmpty()) {
             defaultPrefix = ".";
         }
+        if (databaseBackend == null || databaseBackend.isEmpty()) {
+            databaseBackend = "sqlite";
+        }
+        databaseBackend = databaseBackend.toLowerCase();
         if (databasePath == null || databasePath.isEmpty()) {
             databasePath = "yuno.db";
         }
+        if (backupDirectory == null || backupDirectory.isEmpty()) {
+            backupDirectory = "backups";
+        }
+        if (backupIntervalMinutes < 0) {
+            backupIntervalMinutes = 0;
+        }
+        if (backupKeep < 1) {
+            backupKeep = 1;
+        }
+        if (postgresPoolSize < 1) {
+            postgresPoolSize = 8;
+        }
         if (dmMessage == null || dmMessage.isEmpty()) {
             dmMessage = "I'm just a bot :'(. I can't answer to you.";
         }
@@ -114,14 +343,97 @@ public class YunoConfig {
         if (masterUsers == null) {
             masterUsers = new ArrayList<>();
         }
+        masterUserIds = new LongHashSet(masterUsers.size());
+        List<String> validMasterUsers = new ArrayList<>(masterUsers.size());
+        for (String id : masterUsers) {
+            long userId;
+            try {
+                userId = id != null ? Long.parseLong(id.trim()) : 0;
+            } catch (NumberFormatException e) {
+                userId = 0;
+            }
+            if (userId <= 0) {
+                if (strict) {
+                    throw new IllegalArgumentException("master_users entry '" + id + "' is not a user ID");
+                }
+                logger.warn("Ignoring master_users entry '{}', it's not a user ID~", id);
+                continue;
+            }
+            masterUserIds.add(userId);
+            validMasterUsers.add(id.trim());
+        }
+        masterUsers = List.copyOf(validMasterUsers);
+        if (xpCooldownSeconds < 0) {
+            xpCooldownSeconds = 0;
+        }
+        if (levelCurve == null || levelCurve.isBlank()) {
+            levelCurve = LevelCurve.DEFAULT_SPEC;
+        }
+        try {
+            levelCurve = LevelCurve.parse(levelCurve).getSpec();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("level_curve '" + levelCurve + "' is not valid: " + e.getMessage());
+        }
+        if (warningDecayDays < 0) {
+            warningDecayDays = 0;
+        }
+        if (modActionRetentionDays < 0) {
+            modActionRetentionDays = 0;
+        }
+        if (archiveDirectory == null || archiveDirectory.isEmpty()) {
+            archiveDirectory = "archives";
+        }
+        if (raidJoinThreshold < 0) {
+            raidJoinThreshold = 0;
+        }
+        raidJoinThreshold = Math.min(raidJoinThreshold, 50);
+        if (raidWindowSeconds < 1) {
+            raidWindowSeconds = 10;
+        }
+        if (raidYoungAccountDays < 0) {
+            raidYoungAccountDays = 0;
+        }
+        if (raidLockdownMinutes < 1) {
+            raidLockdownMinutes = 15;
+        }
+        messageCacheMegabytes = Math.max(0, Math.min(messageCacheMegabytes, 1024));
+        rateLimitUserBurst = clampBurst(rateLimitUserBurst);
+        rateLimitGuildBurst = clampBurst(rateLimitGuildBurst);
+        rateLimitGlobalBurst = clampBurst(rateLimitGlobalBurst);
+        rateLimitUserPerMinute = clampRefill(rateLimitUserPerMinute);
+        rateLimitGuildPerMinute = clampRefill(rateLimitGuildPerMinute);
+        rateLimitGlobalPerMinute = clampRefill(rateLimitGlobalPerMinute);
+        Map<String, Integer> costs = new HashMap<>();
+        if (commandCosts != null) {
+            commandCosts.forEach((command, cost) -> {
+                if (command != null && cost != null) {
+                    costs.put(command.toLowerCase(), Math.max(0, cost));
+                }
+            });
+        }
+        commandCosts = Map.copyOf(costs);
+        if (shutdownTimeoutSeconds < 1) {
+            shutdownTimeoutSeconds = 20;
+        }
+        if (healthPort < 0 || healthPort > 65535) {
+            healthPort = 0;
+        }
+        if (healthBindAddress == null || healthBindAddress.isEmpty()) {
+            healthBindAddress = "0.0.0.0";
+        }
+    }
+
+    // 0 turns a level off
+    private static int clampBurst(int burst) {
+        return Math.max(0, Math.min(burst, (int) TokenBucketTable.MAX_TOKENS));
     }
 
-    public boolean isMasterUser(String userId) {
-        return masterUsers.contains(userId);
+    private static int clampRefill(int perMinute) {
+        return Math.max(1, Math.min(perMinute, 100_000));
     }
 
     public boolean isMasterUser(long userId) {
-        return isMasterUser(String.valueOf(userId));
+        return masterUserIds.contains(userId);
     }
 
     // Getters
@@ -133,10 +445,42 @@ public class YunoConfig {
         return defaultPrefix;
     }
 
+    public String getDatabaseBackend() {
+        return databaseBackend;
+    }
+
     public String getDatabasePath() {
         return databasePath;
     }
 
+    public String getBackupDirectory() {
+        return backupDirectory;
+    }
+
+    public int getBackupIntervalMinutes() {
+        return backupIntervalMinutes;
+    }
+
+    public int getBackupKeep() {
+        return backupKeep;
+    }
+
+    public String getPostgresUrl() {
+        return postgresUrl;
+    }
+
+    public String getPostgresUser() {
+        return postgresUser;
+    }
+
+    public String getPostgresPassword() {
+        return postgresPassword;
+    }
+
+    public int getPostgresPoolSize() {
+        return postgresPoolSize;
+    }
+
     public List<String> getMasterUsers() {
         return masterUsers;
     }
@@ -145,6 +489,89 @@ public class YunoConfig {
         return spamMaxWarnings;
     }
 
+    public int getXpCooldownSeconds() {
+        return xpCooldownSeconds;
+    }
+
+    /** A LevelCurve spec, already checked to parse. */
+    public String getLevelCurve() {
+        return levelCurve;
+    }
+
+    public int getWarningDecayDays() {
+        return warningDecayDays;
+    }
+
+    public int getModActionRetentionDays() {
+        return modActionRetentionDays;
+    }
+
+    public int getRaidJoinThreshold() {
+        return raidJoinThreshold;
+    }
+
+    public int getRaidWindowSeconds() {
+        return raidWindowSeconds;
+    }
+
+    public int getRaidYoungAccountDays() {
+        return raidYoungAccountDays;
+    }
+
+    public int getRaidLockdownMinutes() {
+        return raidLockdownMinutes;
+    }
+
+    /** Cap on the recent messages kept for the deleted/edited message log; 0 keeps none. */
+    public int getMessageCacheMegabytes() {
+        return messageCacheMegabytes;
+    }
+
+    public String getArchiveDirectory() {
+        return archiveDirectory;
+    }
+
+    public int getRateLimitUserBurst() {
+        return rateLimitUserBurst;
+    }
+
+    public int getRateLimitUserPerMinute() {
+        return rateLimitUserPerMinute;
+    }
+
+    public int getRateLimitGuildBurst() {
+        return rateLimitGuildBurst;
+    }
+
+    public int getRateLimitGuildPerMinute() {
+        return rateLimitGuildPerMinute;
+    }
+
+    public int getRateLimitGlobalBurst() {
+        return rateLimitGlobalBurst;
+    }
+
+    public int getRateLimitGlobalPerMinute() {
+        return rateLimitGlobalPerMinute;
+    }
+
+    /** Per-command overrides of the token cost; commands not listed use the built-in costs. */
+    public Map<String, Integer> getCommandCosts() {
+        return commandCosts;
+    }
+
+    public int getShutdownTimeoutSeconds() {
+        return shutdownTimeoutSeconds;
+    }
+
+    public int getHealthPort() {
+        return healthPort;
+    }
+
+    public String getHealthBindAddress() {
+        return healthBindAddress;
+    }
+
     public String getBanDefaultImage() {
         return banDefaultImage;
     }
@@ -157,6 +584,10 @@ public class YunoConfig {
         return insufficientPermissionsMessage;
     }
 
+    public String getLogLevel() {
+        return logLevel;
+    }
+
     public String formatInsufficientPermissionsMessage(String authorMention) {
         return insufficientPermissionsMessage.replace("${author}", authorMention);
     }
@@ -0,0 +1,62 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Activity Row
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.database;
+
+/**
+ * Messages counted in one hour or one day (UTC, numbered from the epoch).
+ * Channel 0 is the whole guild; the guild's busiest channels get their own rows.
+ */
+public class ActivityRow {
+    public static final long GUILD = 0;
+
+    private long guildId;
+    private long channelId;
+    private long period;
+    private long messages;
+    // Most messages seen in a single minute of the period
+    private int peak;
+
+    public long getGuildId() {
+        return guildId;
+    }
+
+    public void setGuildId(long guildId) {
+        this.guildId = guildId;
+    }
+
+    public long getChannelId() {
+        return channelId;
+    }
+
+    public void setChannelId(long channelId) {
+        this.channelId = channelId;
+    }
+
+    public long getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(long period) {
+        this.period = period;
+    }
+
+    public long getMessages() {
+        return messages;
+    }
+
+    public void setMessages(long messages) {
+        this.messages = messages;
+    }
+
+    public int getPeak() {
+        return peak;
+    }
+
+    public void setPeak(int peak) {
+        this.peak = peak;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Chatter Sketch
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.database;
+
+import dev.blubskye.yuno.util.HyperLogLog;
+
+/** A guild's distinct chatters on one UTC day, as an encoded HyperLogLog sketch. */
+public class ChatterSketch {
+    private long guildId;
+    private long day;
+    private byte[] sketch;
+
+    public long getGuildId() {
+        return guildId;
+    }
+
+    public void setGuildId(long guildId) {
+        this.guildId = guildId;
+    }
+
+    public long getDay() {
+        return day;
+    }
+
+    public void setDay(long day) {
+        this.day = day;
+    }
+
+    public byte[] getSketch() {
+        return sketch;
+    }
+
+    public void setSketch(byte[] sketch) {
+        this.sketch = sketch;
+    }
+
+    // What a backend stores after merging a new sketch into the old one
+    static byte[] merge(byte[] stored, byte[] incoming) {
+        if (stored == null) {
+            return incoming;
+        }
+        try {
+            HyperLogLog merged = HyperLogLog.fromBytes(stored);
+            merged.merge(HyperLogLog.fromBytes(incoming));
+            return merged.toBytes();
+        } catch (IllegalArgumentException e) {
+            return incoming;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Data Transfer
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.database;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.blubskye.yuno.util.Csv;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams XP and mod actions between a guild and CSV/JSONL files. Rows are
+ * parsed one at a time and written in fixed-size chunks, each chunk in its
+ * own transaction, so memory stays flat no matter how big the file is.
+ */
+public class DataTransfer {
+    public static final int CHUNK_SIZE = 1000;
+
+    public enum Format {
+        CSV, JSONL;
+
+        /** Picks the format from a file name like "xp.csv" or "mod-log.jsonl.gz", or null if unknown. */
+        public static Format fromFileName(String name) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".gz")) {
+                lower = lower.substring(0, lower.length() - 3);
+            }
+            if (lower.endsWith(".csv")) {
+                return CSV;
+            }
+            if (lower.endsWith(".jsonl") || lower.endsWith(".ndjson") || lower.endsWith(".json")) {
+                return JSONL;
+            }
+            return null;
+        }
+
+        public String extension() {
+            return this == CSV ? ".csv" : ".jsonl";
+        }
+    }
+
+    public static class Result {
+        private long rows;
+        private long skipped;
+        private long failed;
+
+        /** Rows written to the database. */
+        public long getRows() {
+            return rows;
+        }
+
+        /** Rows that couldn't be read from the file. */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /** Rows read fine but lost with a chunk the database didn't take. */
+        public long getFailed() {
+            return failed;
+        }
+
+        void count(boolean written, int size) {
+            if (written) {
+                rows += size;
+            } else {
+                failed += size;
+            }
+        }
+    }
+
+    private static final String[] XP_COLUMNS = {"user_id", "xp", "level"};
+    private static final String[] MOD_ACTION_COLUMNS = {"id", "moderator_id", "target_id", "action_type", "reason", "timestamp"};
+
+    private final YunoDatabase database;
+
+    public DataTransfer(YunoDatabase database) {
+        this.database = database;
+    }
+
+    // Export
+
+    public long exportXp(long guildId, Format format, Writer out) throws IOException {
+        long[] rows = new long[1];
+        if (format == Format.CSV) {
+            Csv.writeRecord(out, XP_COLUMNS);
+        }
+        try {
+            database.forEachUserXp(guildId, xp -> {
+                try {
+                    if (format == Format.CSV) {
+                        Csv.writeRecord(out, String.valueOf(xp.getUserId()), String.valueOf(xp.getXp()),
+                                String.valueOf(xp.getLevel()));
+                    } else {
+                        JsonObject json = new JsonObject();
+                        json.addProperty("user_id", String.valueOf(xp.getUserId()));
+                        json.addProperty("xp", xp.getXp());
+                        json.addProperty("level", xp.getLevel());
+                        out.write(json.toString());
+                        out.write('\n');
+                    }
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+
+    public long exportModActions(long guildId, Format format, Writer out) throws IOException {
+        long[] rows = new long[1];
+        if (format == Format.CSV) {
+            Csv.writeRecord(out, MOD_ACTION_COLUMNS);
+        }
+        try {
+            database.forEachModAction(guildId, action -> {
+                try {
+                    if (format == Format.CSV) {
+                        Csv.writeRecord(out, String.valueOf(action.getId()), String.valueOf(action.getModeratorId()),
+                                String.valueOf(action.getTargetId()), action.getActionType(), action.getReason(),
+                                String.valueOf(action.getTimestamp()));
+                    } else {
+                        JsonObject json = new JsonObject();
+                        json.addProperty("id", action.getId());
+                        json.addProperty("moderator_id", String.valueOf(action.getModeratorId()));
+                        json.addProperty("target_id", String.valueOf(action.getTargetId()));
+                        json.addProperty("action_type", action.getActionType());
+                        json.addProperty("reason", action.getReason());
+                        json.addProperty("timestamp", action.getTimestamp());
+                        out.write(json.toString());
+                        out.write('\n');
+                    }
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+
+    // Import
+
+    /** Needs user_id and xp; other columns/fields (like level) are ignored so other bots' exports load as-is. */
+    public Result importXp(long guildId, Format format, BufferedReader in, LevelCurve curve) throws IOException {
+        Result result = new Result();
+        List<UserXp> chunk = new ArrayList<>(CHUNK_SIZE);
+        RecordReader reader = new RecordReader(format, in);
+        while (reader.next()) {
+            try {
+                UserXp xp = new UserXp();
+                xp.setUserId(Long.parseLong(reader.get("user_id")));
+                xp.setGuildId(guildId);
+                xp.setXp(Math.max(0, Long.parseLong(reader.get("xp"))));
+                chunk.add(xp);
+            } catch (RuntimeException e) {
+                result.skipped++;
+                continue;
+            }
+            if (chunk.size() == CHUNK_SIZE) {
+                result.count(database.importXp(guildId, chunk, curve), chunk.size());
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            result.count(database.importXp(guildId, chunk, curve), chunk.size());
+        }
+        return result;
+    }
+
+    /** Needs moderator_id, target_id, action_type and timestamp; ids in the file are not kept. */
+    public Result importModActions(long guildId, Format format, BufferedReader in) throws IOException {
+        Result result = new Result();
+        List<ModAction> chunk = new ArrayList<>(CHUNK_SIZE);
+        RecordReader reader = new RecordReader(format, in);
+        while (reader.next()) {
+            try {
+                ModAction action = new ModAction();
+                action.setGuildId(guildId);
+                action.setModeratorId(Long.parseLong(reader.get("moderator_id")));
+                action.setTargetId(Long.parseLong(reader.get("target_id")));
+                action.setActionType(reader.get("action_type").toLowerCase(Locale.ROOT));
+                String reason = reader.get("reason");
+                action.setReason(reason == null || reason.isEmpty() ? null : reason);
+                action.setTimestamp(Long.parseLong(reader.get("timestamp")));
+                chunk.add(action);
+            } catch (RuntimeException e) {
+                result.skipped++;
+                continue;
+            }
+            if (chunk.size() == CHUNK_SIZE) {
+                result.count(database.logModActions(chunk), chunk.size());
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            result.count(database.logModActions(chunk), chunk.size());
+        }
+        return result;
+    }
+
+    // One record at a time from either format, looked up by column name
+    private static class RecordReader {
+        private final Format format;
+        private final BufferedReader in;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private List<String> record;
+        private JsonObject json;
+
+        RecordReader(Format format, BufferedReader in) throws IOException {
+            this.format = format;
+            this.in = in;
+            if (format == Format.CSV) {
+                List<String> header = Csv.readRecord(in);
+                if (header != null) {
+                    for (int i = 0; i < header.size(); i++) {
+                        // Strip a UTF-8 BOM from spreadsheet exports
+                        columns.put(header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT), i);
+                    }
+                }
+            }
+        }
+
+        boolean next() throws IOException {
+            if (format == Format.CSV) {
+                do {
+                    record = Csv.readRecord(in);
+                } while (record != null && record.size() == 1 && record.get(0).isBlank());
+                return record != null;
+            }
+
+            String line;
+            do {
+                line = in.readLine();
+            } while (line != null && line.isBlank());
+            if (line == null) {
+                return false;
+            }
+            try {
+                JsonElement element = JsonParser.parseString(line);
+                json = element.isJsonObject() ? element.getAsJsonObject() : null;
+            } catch (RuntimeException e) {
+                json = null;
+            }
+            return true;
+        }
+
+        String get(String column) {
+            if (format == Format.CSV) {
+                Integer index = columns.get(column);
+                return index != null && index < record.size() ? record.get(index).trim() : null;
+            }
+            if (json == null) {
+                throw new IllegalArgumentException("Not a JSON object");
+            }
+            JsonElement value = json.get(column);
+            return value == null || value.isJsonNull() ? null : value.getAsString();
+        }
+    }
+}
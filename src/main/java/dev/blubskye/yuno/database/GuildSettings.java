@@ -7,10 +7,47 @@
 package dev.blubskye.yuno.database;
 
 public class GuildSettings {
+    // Where level-up announcements go
+    public static final String LEVEL_UP_HERE = "here";
+    public static final String LEVEL_UP_CHANNEL = "channel";
+    public static final String LEVEL_UP_DM = "dm";
+    public static final String LEVEL_UP_OFF = "off";
+
     private long guildId;
     private String prefix = ".";
     private boolean spamFilterEnabled = false;
     private boolean levelingEnabled = true;
+    private int xpCooldownSeconds = -1;
+    private int warningDecayDays = -1;
+    private int modActionRetentionDays = -1;
+    private String levelUpMode = LEVEL_UP_HERE;
+    private long levelUpChannelId = 0;
+    private int raidJoinThreshold = -1;
+    private long modAlertChannelId = 0;
+    private String levelCurve = null;
+    private long messageLogChannelId = 0;
+    private long raidLockdownUntil = 0;
+    private int raidPreviousVerification = -1;
+
+    public GuildSettings copy() {
+        GuildSettings copy = new GuildSettings();
+        copy.guildId = guildId;
+        copy.prefix = prefix;
+        copy.spamFilterEnabled = spamFilterEnabled;
+        copy.levelingEnabled = levelingEnabled;
+        copy.xpCooldownSeconds = xpCooldownSeconds;
+        copy.warningDecayDays = warningDecayDays;
+        copy.modActionRetentionDays = modActionRetentionDays;
+        copy.levelUpMode = levelUpMode;
+        copy.levelUpChannelId = levelUpChannelId;
+        copy.raidJoinThreshold = raidJoinThreshold;
+        copy.modAlertChannelId = modAlertChannelId;
+        copy.levelCurve = levelCurve;
+        copy.messageLogChannelId = messageLogChannelId;
+        copy.raidLockdownUntil = raidLockdownUntil;
+        copy.raidPreviousVerification = raidPreviousVerification;
+        return copy;
+    }
 
     public long getGuildId() {
         return guildId;
@@ -43,4 +80,102 @@ public class GuildSettings {
     public void setLevelingEnabled(boolean levelingEnabled) {
         this.levelingEnabled = levelingEnabled;
     }
+
+    // -1 means "use the bot-wide default"
+    public int getXpCooldownSeconds() {
+        return xpCooldownSeconds;
+    }
+
+    public void setXpCooldownSeconds(int xpCooldownSeconds) {
+        this.xpCooldownSeconds = xpCooldownSeconds;
+    }
+
+    // -1 means "use the bot-wide default", 0 means "keep forever"
+    public int getWarningDecayDays() {
+        return warningDecayDays;
+    }
+
+    public void setWarningDecayDays(int warningDecayDays) {
+        this.warningDecayDays = warningDecayDays;
+    }
+
+    // -1 means "use the bot-wide default", 0 means "keep forever"
+    public int getModActionRetentionDays() {
+        return modActionRetentionDays;
+    }
+
+    public void setModActionRetentionDays(int modActionRetentionDays) {
+        this.modActionRetentionDays = modActionRetentionDays;
+    }
+
+    public String getLevelUpMode() {
+        return levelUpMode;
+    }
+
+    public void setLevelUpMode(String levelUpMode) {
+        this.levelUpMode = levelUpMode;
+    }
+
+    // Only used when the mode is LEVEL_UP_CHANNEL
+    public long getLevelUpChannelId() {
+        return levelUpChannelId;
+    }
+
+    public void setLevelUpChannelId(long levelUpChannelId) {
+        this.levelUpChannelId = levelUpChannelId;
+    }
+
+    // -1 means "use the bot-wide default", 0 turns the raid guard off
+    public int getRaidJoinThreshold() {
+        return raidJoinThreshold;
+    }
+
+    public void setRaidJoinThreshold(int raidJoinThreshold) {
+        this.raidJoinThreshold = raidJoinThreshold;
+    }
+
+    // 0 means "the server's safety alerts or system channel"
+    public long getModAlertChannelId() {
+        return modAlertChannelId;
+    }
+
+    public void setModAlertChannelId(long modAlertChannelId) {
+        this.modAlertChannelId = modAlertChannelId;
+    }
+
+    // A LevelCurve spec; null means "use the bot-wide default"
+    public String getLevelCurve() {
+        return levelCurve;
+    }
+
+    public void setLevelCurve(String levelCurve) {
+        this.levelCurve = levelCurve;
+    }
+
+    // 0 means deleted and edited messages aren't logged, or kept
+    public long getMessageLogChannelId() {
+        return messageLogChannelId;
+    }
+
+    public void setMessageLogChannelId(long messageLogChannelId) {
+        this.messageLogChannelId = messageLogChannelId;
+    }
+
+    // Unix seconds a running raid lockdown lifts at; 0 means there isn't one
+    public long getRaidLockdownUntil() {
+        return raidLockdownUntil;
+    }
+
+    public void setRaidLockdownUntil(long raidLockdownUntil) {
+        this.raidLockdownUntil = raidLockdownUntil;
+    }
+
+    // Verification level key to restore when the lockdown lifts; -1 if the lockdown didn't raise it
+    public int getRaidPreviousVerification() {
+        return raidPreviousVerification;
+    }
+
+    public void setRaidPreviousVerification(int raidPreviousVerification) {
+        this.raidPreviousVerification = raidPreviousVerification;
+    }
 }
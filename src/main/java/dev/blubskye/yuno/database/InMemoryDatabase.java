@@ -0,0 +1,625 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - In-Memory Database
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.database;
+
+import dev.blubskye.yuno.util.ConcurrentLongObjectMap;
+import dev.blubskye.yuno.util.LongObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Keeps everything on the heap and forgets it on shutdown. Meant for throwaway
+ * test bots and as a baseline when benchmarking the real backends.
+ */
+public class InMemoryDatabase implements YunoDatabase {
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryDatabase.class);
+
+    private final ConcurrentLongObjectMap<GuildSettings> guildSettings = new ConcurrentLongObjectMap<>(64);
+    private final ConcurrentLongObjectMap<GuildData> guilds = new ConcurrentLongObjectMap<>(64);
+    private final AtomicLong nextModActionId = new AtomicLong(1);
+    private final LongObjectMap<ScheduledAction> scheduledActions = new LongObjectMap<>();
+    // user -> {xp summed over every guild}; taken after a guild's lock, never before
+    private final LongObjectMap<long[]> totalXp = new LongObjectMap<>();
+    private long nextScheduledActionId = 1;
+
+    // Everything a guild owns, guarded by the GuildData monitor
+    private static class GuildData {
+        final LongObjectMap<long[]> xp = new LongObjectMap<>();               // user -> {xp, level}
+        final LongObjectMap<long[]> spamWarnings = new LongObjectMap<>();     // user -> {warnings, last_warning}
+        final LongObjectMap<AutoCleanConfig> autoClean = new LongObjectMap<>(); // channel -> config
+        final List<ModAction> modActions = new ArrayList<>();
+        final Map<String, Integer> archivedCounts = new HashMap<>();           // "moderator:type" -> count
+        final TreeMap<Long, LongObjectMap<long[]>> hourlyActivity = new TreeMap<>(); // hour -> channel -> {messages, peak}
+        final TreeMap<Long, LongObjectMap<long[]>> dailyActivity = new TreeMap<>();  // day -> channel -> {messages, peak}
+        final TreeMap<Long, byte[]> chatterSketches = new TreeMap<>();              // day -> sketch
+    }
+
+    // Stands in for guilds with nothing stored; only ever read, never written to
+    private static final GuildData NO_DATA = new GuildData();
+
+    @Override
+    public void open() {
+        logger.info("Using in-memory database, nothing will be saved~");
+    }
+
+    @Override
+    public void ping() {
+    }
+
+    @Override
+    public void close() {
+        guildSettings.clear();
+        guilds.clear();
+        synchronized (totalXp) {
+            totalXp.clear();
+        }
+        logger.info("In-memory database cleared~");
+    }
+
+    @Override
+    public void preloadGuildSettings() {
+    }
+
+    private GuildData guild(long guildId) {
+        return guilds.computeIfAbsent(guildId, id -> new GuildData());
+    }
+
+    // For reads and removals, so looking up a guild with nothing stored doesn't keep an entry for it
+    private GuildData existingGuild(long guildId) {
+        GuildData guild = guilds.get(guildId);
+        return guild != null ? guild : NO_DATA;
+    }
+
+    // Guild Settings
+    @Override
+    public GuildSettings getGuildSettings(long guildId) {
+        return guildSettings.get(guildId);
+    }
+
+    @Override
+    public void setGuildSettings(GuildSettings settings) {
+        guildSettings.put(settings.getGuildId(), settings.copy());
+    }
+
+    // XP/Leveling
+    @Override
+    public UserXp getUserXp(long userId, long guildId) {
+        UserXp xp = new UserXp();
+        xp.setUserId(userId);
+        xp.setGuildId(guildId);
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            long[] entry = guild.xp.get(userId);
+            if (entry != null) {
+                xp.setXp(entry[0]);
+                xp.setLevel((int) entry[1]);
+            }
+        }
+        return xp;
+    }
+
+    @Override
+    public void addXp(long userId, long guildId, long amount) {
+        GuildData guild = guild(guildId);
+        synchronized (guild) {
+            guild.xp.computeIfAbsent(userId, id -> new long[2])[0] += amount;
+            addTotalXp(userId, amount);
+        }
+    }
+
+    private void addTotalXp(long userId, long amount) {
+        synchronized (totalXp) {
+            totalXp.computeIfAbsent(userId, id -> new long[1])[0] += amount;
+        }
+    }
+
+    @Override
+    public XpAward awardXp(long userId, long guildId, long amount, LevelCurve curve) {
+        XpAward award = new XpAward();
+        GuildData guild = guild(guildId);
+        synchronized (guild) {
+            long[] entry = guild.xp.computeIfAbsent(userId, id -> new long[2]);
+            long oldXp = entry[0];
+            entry[0] += amount;
+            addTotalXp(userId, amount);
+            int newLevel = curve.levelFor(entry[0]);
+            entry[1] = newLevel;
+
+            award.setXp(entry[0]);
+            award.setOldLevel(curve.levelFor(oldXp));
+            award.setNewLevel(newLevel);
+        }
+        return award;
+    }
+
+    @Override
+    public List<UserXp> getLeaderboard(long guildId, int limit) {
+        List<UserXp> all = new ArrayList<>();
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            guild.xp.forEach((userId, entry) -> {
+                UserXp xp = new UserXp();
+                xp.setUserId(userId);
+                xp.setGuildId(guildId);
+                xp.setXp(entry[0]);
+                xp.setLevel((int) entry[1]);
+                all.add(xp);
+            });
+        }
+        all.sort(Comparator.comparingLong(UserXp::getXp).reversed());
+        return new ArrayList<>(all.subList(0, Math.min(limit, all.size())));
+    }
+
+    @Override
+    public boolean importXp(long guildId, List<UserXp> rows, LevelCurve curve) {
+        GuildData guild = guild(guildId);
+        synchronized (guild) {
+            for (UserXp row : rows) {
+                long[] entry = guild.xp.computeIfAbsent(row.getUserId(), id -> new long[2]);
+                addTotalXp(row.getUserId(), row.getXp() - entry[0]);
+                entry[0] = row.getXp();
+                entry[1] = curve.levelFor(row.getXp());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public List<UserXp> getGlobalLeaderboard(int limit) {
+        List<UserXp> all = new ArrayList<>();
+        synchronized (totalXp) {
+            totalXp.forEach((userId, total) -> {
+                UserXp xp = new UserXp();
+                xp.setUserId(userId);
+                xp.setXp(total[0]);
+                all.add(xp);
+            });
+        }
+        all.sort(Comparator.comparingLong(UserXp::getXp).reversed());
+        return new ArrayList<>(all.subList(0, Math.min(limit, all.size())));
+    }
+
+    @Override
+    public long getTotalXp(long userId) {
+        synchronized (totalXp) {
+            long[] total = totalXp.get(userId);
+            return total != null ? total[0] : 0;
+        }
+    }
+
+    @Override
+    public List<UserXp> getXpPage(long guildId, long afterUserId, int limit) {
+        List<UserXp> page = new ArrayList<>();
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            guild.xp.forEach((userId, entry) -> {
+                if (userId > afterUserId) {
+                    UserXp xp = new UserXp();
+                    xp.setUserId(userId);
+                    xp.setGuildId(guildId);
+                    xp.setXp(entry[0]);
+                    xp.setLevel((int) entry[1]);
+                    page.add(xp);
+                }
+            });
+        }
+        page.sort(Comparator.comparingLong(UserXp::getUserId));
+        return new ArrayList<>(page.subList(0, Math.min(limit, page.size())));
+    }
+
+    @Override
+    public void updateLevels(long guildId, List<UserXp> rows) {
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            for (UserXp row : rows) {
+                long[] entry = guild.xp.get(row.getUserId());
+                if (entry != null && entry[0] == row.getXp()) {
+                    entry[1] = row.getLevel();
+                }
+            }
+        }
+    }
+
+    // Visits a snapshot so the visitor never runs under the guild lock
+    @Override
+    public void forEachUserXp(long guildId, Consumer<UserXp> visitor) {
+        for (UserXp xp : getLeaderboard(guildId, Integer.MAX_VALUE)) {
+            visitor.accept(xp);
+        }
+    }
+
+    // Mod Actions
+    @Override
+    public void logModAction(ModAction action) {
+        ModAction stored = new ModAction();
+        stored.setId(nextModActionId.getAndIncrement());
+        stored.setGuildId(action.getGuildId());
+        stored.setModeratorId(action.getModeratorId());
+        stored.setTargetId(action.getTargetId());
+        stored.setActionType(action.getActionType());
+        stored.setReason(action.getReason());
+        stored.setTimestamp(action.getTimestamp());
+
+        GuildData guild = guild(action.getGuildId());
+        synchronized (guild) {
+            guild.modActions.add(stored);
+        }
+    }
+
+    @Override
+    public List<ModAction> getModActions(long guildId, int limit) {
+        List<ModAction> actions;
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            actions = new ArrayList<>(guild.modActions);
+        }
+        actions.sort(Comparator.comparingLong(ModAction::getTimestamp).reversed());
+        return new ArrayList<>(actions.subList(0, Math.min(limit, actions.size())));
+    }
+
+    @Override
+    public ModStats getModStats(long guildId, long moderatorId) {
+        int bans = 0;
+        int kicks = 0;
+        int timeouts = 0;
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            for (ModAction action : guild.modActions) {
+                if (action.getModeratorId() != moderatorId) {
+                    continue;
+                }
+                switch (action.getActionType()) {
+                    case "ban" -> bans++;
+                    case "kick" -> kicks++;
+                    case "timeout" -> timeouts++;
+                }
+            }
+            bans += guild.archivedCounts.getOrDefault(moderatorId + ":ban", 0);
+            kicks += guild.archivedCounts.getOrDefault(moderatorId + ":kick", 0);
+            timeouts += guild.archivedCounts.getOrDefault(moderatorId + ":timeout", 0);
+        }
+        ModStats stats = new ModStats();
+        stats.setBanCount(bans);
+        stats.setKickCount(kicks);
+        stats.setTimeoutCount(timeouts);
+        return stats;
+    }
+
+    @Override
+    public void forEachModAction(long guildId, Consumer<ModAction> visitor) {
+        List<ModAction> actions;
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            actions = new ArrayList<>(guild.modActions);
+        }
+        actions.sort(Comparator.comparingLong(ModAction::getTimestamp));
+        for (ModAction action : actions) {
+            visitor.accept(action);
+        }
+    }
+
+    // Activity
+    @Override
+    public void addActivity(List<ActivityRow> rows, long hourlyBefore, long dailyBefore) {
+        for (ActivityRow row : rows) {
+            GuildData guild = guild(row.getGuildId());
+            synchronized (guild) {
+                long[] counts = guild.hourlyActivity.computeIfAbsent(row.getPeriod(), hour -> new LongObjectMap<>())
+                        .computeIfAbsent(row.getChannelId(), id -> new long[2]);
+                counts[0] += row.getMessages();
+                counts[1] = Math.max(counts[1], row.getPeak());
+            }
+        }
+        for (ActivityRow row : rows) {
+            if (row.getChannelId() != ActivityRow.GUILD) {
+                continue;
+            }
+            GuildData guild = guild(row.getGuildId());
+            synchronized (guild) {
+                long day = row.getPeriod() / 24;
+                LongObjectMap<long[]> totals = new LongObjectMap<>();
+                for (LongObjectMap<long[]> hour : guild.hourlyActivity.subMap(day * 24, day * 24 + 24).values()) {
+                    hour.forEach((channelId, counts) -> {
+                        long[] total = totals.computeIfAbsent(channelId, id -> new long[2]);
+                        total[0] += counts[0];
+                        total[1] = Math.max(total[1], counts[1]);
+                    });
+                }
+                guild.dailyActivity.put(day, totals);
+                guild.hourlyActivity.headMap(hourlyBefore).clear();
+                guild.dailyActivity.headMap(dailyBefore).clear();
+            }
+        }
+    }
+
+    @Override
+    public List<ActivityRow> getHourlyActivity(long guildId, long fromHour) {
+        List<ActivityRow> rows = new ArrayList<>();
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            guild.hourlyActivity.tailMap(fromHour).forEach((hour, channels) ->
+                    channels.forEach((channelId, counts) -> rows.add(activityRow(guildId, channelId, hour, counts))));
+        }
+        return rows;
+    }
+
+    @Override
+    public List<ActivityRow> getDailyActivity(long guildId, long fromDay) {
+        List<ActivityRow> rows = new ArrayList<>();
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            guild.dailyActivity.tailMap(fromDay).forEach((day, channels) -> {
+                long[] counts = channels.get(ActivityRow.GUILD);
+                if (counts != null) {
+                    rows.add(activityRow(guildId, ActivityRow.GUILD, day, counts));
+                }
+            });
+        }
+        return rows;
+    }
+
+    private static ActivityRow activityRow(long guildId, long channelId, long period, long[] counts) {
+        ActivityRow row = new ActivityRow();
+        row.setGuildId(guildId);
+        row.setChannelId(channelId);
+        row.setPeriod(period);
+        row.setMessages(counts[0]);
+        row.setPeak((int) counts[1]);
+        return row;
+    }
+
+    @Override
+    public void mergeChatterSketches(List<ChatterSketch> sketches, long before) {
+        for (ChatterSketch sketch : sketches) {
+            GuildData guild = guild(sketch.getGuildId());
+            synchronized (guild) {
+                guild.chatterSketches.put(sketch.getDay(),
+                        ChatterSketch.merge(guild.chatterSketches.get(sketch.getDay()), sketch.getSketch()));
+                guild.chatterSketches.headMap(before).clear();
+            }
+        }
+    }
+
+    @Override
+    public List<ChatterSketch> getChatterSketches(long guildId, long fromDay) {
+        List<ChatterSketch> sketches = new ArrayList<>();
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            guild.chatterSketches.tailMap(fromDay).forEach((day, bytes) -> {
+                ChatterSketch sketch = new ChatterSketch();
+                sketch.setGuildId(guildId);
+                sketch.setDay(day);
+                sketch.setSketch(bytes);
+                sketches.add(sketch);
+            });
+        }
+        return sketches;
+    }
+
+    // Auto-clean
+    @Override
+    public AutoCleanConfig getAutoCleanConfig(long guildId, long channelId) {
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            return guild.autoClean.get(channelId);
+        }
+    }
+
+    @Override
+    public void setAutoCleanConfig(AutoCleanConfig config) {
+        GuildData guild = guild(config.getGuildId());
+        synchronized (guild) {
+            guild.autoClean.put(config.getChannelId(), config);
+        }
+    }
+
+    @Override
+    public void removeAutoCleanConfig(long guildId, long channelId) {
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            guild.autoClean.remove(channelId);
+        }
+    }
+
+    @Override
+    public List<AutoCleanConfig> getAllAutoCleanConfigs() {
+        List<AutoCleanConfig> configs = new ArrayList<>();
+        for (GuildData guild : guilds.values()) {
+            synchronized (guild) {
+                guild.autoClean.forEach((channelId, config) -> {
+                    if (config.isEnabled()) {
+                        configs.add(config);
+                    }
+                });
+            }
+        }
+        return configs;
+    }
+
+    // Spam warnings
+    @Override
+    public void addSpamWarning(long userId, long guildId) {
+        GuildData guild = guild(guildId);
+        synchronized (guild) {
+            long[] entry = guild.spamWarnings.computeIfAbsent(userId, id -> new long[2]);
+            entry[0]++;
+            entry[1] = System.currentTimeMillis() / 1000;
+        }
+    }
+
+    @Override
+    public int getSpamWarnings(long userId, long guildId) {
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            long[] entry = guild.spamWarnings.get(userId);
+            return entry != null ? (int) entry[0] : 0;
+        }
+    }
+
+    @Override
+    public void resetSpamWarnings(long userId, long guildId) {
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            guild.spamWarnings.remove(userId);
+        }
+    }
+
+    // Retention
+    @Override
+    public List<Long> getGuildIdsWithHistory() {
+        List<Long> guildIds = new ArrayList<>();
+        guilds.forEach((guildId, guild) -> {
+            synchronized (guild) {
+                if (!guild.modActions.isEmpty() || guild.spamWarnings.size() > 0) {
+                    guildIds.add(guildId);
+                }
+            }
+        });
+        return guildIds;
+    }
+
+    @Override
+    public int expireSpamWarnings(long guildId, long before, int limit) {
+        List<Long> expired = new ArrayList<>();
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            guild.spamWarnings.forEach((userId, entry) -> {
+                if (entry[1] < before && expired.size() < limit) {
+                    expired.add(userId);
+                }
+            });
+            for (long userId : expired) {
+                guild.spamWarnings.remove(userId);
+            }
+        }
+        return expired.size();
+    }
+
+    @Override
+    public List<ModAction> getModActionsBefore(long guildId, long before, int limit) {
+        List<ModAction> actions = new ArrayList<>();
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            for (ModAction action : guild.modActions) {
+                if (action.getTimestamp() < before) {
+                    actions.add(action);
+                }
+            }
+        }
+        actions.sort(Comparator.comparingLong(ModAction::getTimestamp));
+        return new ArrayList<>(actions.subList(0, Math.min(limit, actions.size())));
+    }
+
+    @Override
+    public int archiveModActions(long guildId, List<ModAction> actions) {
+        Set<Long> ids = new HashSet<>();
+        for (ModAction action : actions) {
+            ids.add(action.getId());
+        }
+        GuildData guild = existingGuild(guildId);
+        synchronized (guild) {
+            List<ModAction> deleted = new ArrayList<>();
+            guild.modActions.removeIf(action -> ids.contains(action.getId()) && deleted.add(action));
+            ModAction.countByModeratorAndType(deleted).forEach((key, count) ->
+                    guild.archivedCounts.merge(key, count, Integer::sum));
+            return deleted.size();
+        }
+    }
+
+    // Scheduled actions
+    @Override
+    public synchronized long scheduleAction(ScheduledAction action) {
+        ScheduledAction existing = findScheduledAction(action.getGuildId(), action.getTargetId(), action.getActionType());
+        action.setId(existing != null ? existing.getId() : nextScheduledActionId++);
+        scheduledActions.put(action.getId(), copyOf(action));
+        return action.getId();
+    }
+
+    @Override
+    public synchronized ScheduledAction getScheduledAction(long id) {
+        ScheduledAction action = scheduledActions.get(id);
+        return action != null ? copyOf(action) : null;
+    }
+
+    @Override
+    public synchronized List<ScheduledAction> getScheduledActions(long dueFrom, long dueBefore, long afterId, int limit) {
+        List<ScheduledAction> actions = new ArrayList<>();
+        scheduledActions.forEach((id, action) -> {
+            if (action.getDueAt() >= dueFrom && action.getDueAt() < dueBefore && id > afterId) {
+                actions.add(copyOf(action));
+            }
+        });
+        actions.sort(Comparator.comparingLong(ScheduledAction::getId));
+        return new ArrayList<>(actions.subList(0, Math.min(limit, actions.size())));
+    }
+
+    @Override
+    public synchronized void cancelScheduledAction(long guildId, long targetId, String actionType) {
+        ScheduledAction existing = findScheduledAction(guildId, targetId, actionType);
+        if (existing != null) {
+            scheduledActions.remove(existing.getId());
+        }
+    }
+
+    @Override
+    public synchronized boolean rescheduleAction(long id, long dueAt, long newDueAt) {
+        ScheduledAction current = scheduledActions.get(id);
+        if (current == null || current.getDueAt() != dueAt) {
+            return false;
+        }
+        current.setDueAt(newDueAt);
+        return true;
+    }
+
+    @Override
+    public boolean completeScheduledActions(List<ScheduledAction> done, List<ModAction> log) {
+        synchronized (this) {
+            for (ScheduledAction action : done) {
+                ScheduledAction current = scheduledActions.get(action.getId());
+                if (current != null && current.getDueAt() == action.getDueAt()) {
+                    scheduledActions.remove(action.getId());
+                }
+            }
+        }
+        logModActions(log);
+        return true;
+    }
+
+    private ScheduledAction findScheduledAction(long guildId, long targetId, String actionType) {
+        ScheduledAction[] found = new ScheduledAction[1];
+        scheduledActions.forEach((id, action) -> {
+            if (action.getGuildId() == guildId && action.getTargetId() == targetId
+                    && action.getActionType().equals(actionType)) {
+                found[0] = action;
+            }
+        });
+        return found[0];
+    }
+
+    private static ScheduledAction copyOf(ScheduledAction action) {
+        ScheduledAction copy = new ScheduledAction();
+        copy.setId(action.getId());
+        copy.setGuildId(action.getGuildId());
+        copy.setTargetId(action.getTargetId());
+        copy.setModeratorId(action.getModeratorId());
+        copy.setActionType(action.getActionType());
+        copy.setReason(action.getReason());
+        copy.setDueAt(action.getDueAt());
+        return copy;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Level Curve
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.database;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps XP to levels. Every threshold is worked out once when the curve is
+ * parsed, so finding a level is a binary search over a flat table no matter
+ * how the curve is shaped. Curves are written as {@code quadratic:<base>},
+ * {@code linear:<step>} or {@code exponential:<base>:<factor>}.
+ */
+public final class LevelCurve {
+    public static final int MAX_LEVEL = 10_000;
+    public static final long MAX_BASE = 1_000_000;
+    public static final double MAX_FACTOR = 10;
+    // Far above any XP a message-driven guild can reach, and well clear of overflow
+    private static final long MAX_XP = Long.MAX_VALUE / 4;
+
+    private static final ConcurrentHashMap<String, LevelCurve> cache = new ConcurrentHashMap<>();
+
+    public static final String DEFAULT_SPEC = "quadratic:100";
+    // After the cache, which parse needs
+    public static final LevelCurve DEFAULT = parse(DEFAULT_SPEC);
+
+    private final String spec;
+    // thresholds[level] is the XP needed to reach that level, strictly increasing from 0
+    private final long[] thresholds;
+
+    private LevelCurve(String spec, long[] thresholds) {
+        this.spec = spec;
+        this.thresholds = thresholds;
+    }
+
+    /** Parses a curve spec, throwing IllegalArgumentException with a readable message if it's no good. */
+    public static LevelCurve parse(String spec) {
+        String normalized = spec.trim().toLowerCase(Locale.ROOT);
+        LevelCurve cached = cache.get(normalized);
+        if (cached != null) {
+            return cached;
+        }
+
+        String[] parts = normalized.split(":");
+        LevelCurve curve = switch (parts[0]) {
+            case "quadratic" -> {
+                long base = parseBase(parts, 2);
+                yield build("quadratic:" + base, level -> base * level * level);
+            }
+            case "linear" -> {
+                long step = parseBase(parts, 2);
+                yield build("linear:" + step, level -> step * level);
+            }
+            case "exponential" -> {
+                long base = parseBase(parts, 3);
+                double factor = parseFactor(parts[2]);
+                yield build("exponential:" + base + ":" + formatFactor(factor),
+                        level -> Math.round(base * (Math.pow(factor, level) - 1) / (factor - 1)));
+            }
+            default -> throw new IllegalArgumentException(
+                    "Unknown level curve '" + parts[0] + "', expected quadratic, linear or exponential");
+        };
+        // Keep the cache bounded by what guilds can actually configure
+        if (cache.size() < 1024) {
+            cache.putIfAbsent(normalized, curve);
+            cache.putIfAbsent(curve.spec, curve);
+        }
+        return curve;
+    }
+
+    /** The guild's curve, or the bot-wide one when the guild hasn't picked one or its stored spec no longer parses. */
+    public static LevelCurve forGuild(GuildSettings settings, String defaultSpec) {
+        if (settings != null && settings.getLevelCurve() != null) {
+            try {
+                return parse(settings.getLevelCurve());
+            } catch (IllegalArgumentException ignored) {
+                // Fall through to the default
+            }
+        }
+        return parse(defaultSpec);
+    }
+
+    private interface Formula {
+        double xpFor(int level);
+    }
+
+    private static LevelCurve build(String spec, Formula formula) {
+        long[] thresholds = new long[MAX_LEVEL + 1];
+        int levels = 1;
+        for (int level = 1; level <= MAX_LEVEL; level++) {
+            double raw = formula.xpFor(level);
+            if (!(raw < MAX_XP)) {
+                break;
+            }
+            // Rounding can flatten the bottom of a steep curve, but every level must cost something
+            thresholds[level] = Math.max((long) raw, thresholds[level - 1] + 1);
+            levels++;
+        }
+        return new LevelCurve(spec, Arrays.copyOf(thresholds, levels));
+    }
+
+    private static long parseBase(String[] parts, int expectedParts) {
+        if (parts.length != expectedParts) {
+            throw new IllegalArgumentException(expectedParts == 3
+                    ? "Expected exponential:<base>:<factor>" : "Expected " + parts[0] + ":<xp>");
+        }
+        long base;
+        try {
+            base = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + parts[1] + "' isn't a whole number");
+        }
+        if (base < 1 || base > MAX_BASE) {
+            throw new IllegalArgumentException("The base XP must be between 1 and " + MAX_BASE);
+        }
+        return base;
+    }
+
+    private static double parseFactor(String value) {
+        double factor;
+        try {
+            factor = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + value + "' isn't a number");
+        }
+        // Below 1.01 the formula loses precision; just use linear instead
+        if (!(factor >= 1.01 && factor <= MAX_FACTOR)) {
+            throw new IllegalArgumentException("The growth factor must be between 1.01 and " + (int) MAX_FACTOR);
+        }
+        return factor;
+    }
+
+    private static String formatFactor(double factor) {
+        return factor == Math.rint(factor) ? String.valueOf((long) factor) : String.valueOf(factor);
+    }
+
+    /** Canonical form, the one stored in guild settings. */
+    public String getSpec() {
+        return spec;
+    }
+
+    public int levelFor(long xp) {
+        if (xp <= 0) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(thresholds, xp);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /** XP needed to reach the level; Long.MAX_VALUE past the top of the table. */
+    public long xpFor(int level) {
+        if (level <= 0) {
+            return 0;
+        }
+        return level < thresholds.length ? thresholds[level] : Long.MAX_VALUE;
+    }
+
+    public int getMaxLevel() {
+        return thresholds.length - 1;
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -6,6 +6,10 @@
 
 package dev.blubskye.yuno.database;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class ModAction {
     private long id;
     private long guildId;
@@ -70,4 +74,13 @@ public class ModAction {
     public void setTimestamp(long timestamp) {
         this.timestamp = timestamp;
     }
+
+    // "moderatorId:actionType" -> how many of the given actions match it
+    static Map<String, Integer> countByModeratorAndType(List<ModAction> actions) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (ModAction action : actions) {
+            counts.merge(action.getModeratorId() + ":" + action.getActionType(), 1, Integer::sum);
+        }
+        return counts;
+    }
 }
@@ -0,0 +1,1486 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - PostgreSQL Database
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.database;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * PostgreSQL backend for running several shard processes against one database.
+ * Connections come from a bounded pool and mod actions are written in batches.
+ */
+public class PostgresDatabase implements YunoDatabase {
+    private static final Logger logger = LoggerFactory.getLogger(PostgresDatabase.class);
+
+    private static final int MOD_ACTION_BATCH_SIZE = 200;
+    private static final long MOD_ACTION_FLUSH_MILLIS = 250;
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int poolSize;
+    private HikariDataSource dataSource;
+
+    // A guild only lives on one shard, so only its own process ever writes its settings
+    private final Map<Long, GuildSettings> guildSettingsCache = new ConcurrentHashMap<>();
+    private volatile boolean guildSettingsPreloaded;
+
+    private final BlockingQueue<ModAction> pendingModActions = new LinkedBlockingQueue<>();
+    private final Object modActionFlushLock = new Object();
+    private Thread modActionWriter;
+    private volatile boolean running;
+
+    public PostgresDatabase(String url, String user, String password, int poolSize) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.poolSize = poolSize;
+    }
+
+    @Override
+    public void open() throws SQLException {
+        HikariConfig hikari = new HikariConfig();
+        hikari.setDriverClassName("org.postgresql.Driver");
+        hikari.setJdbcUrl(url);
+        hikari.setUsername(user);
+        hikari.setPassword(password);
+        hikari.setMaximumPoolSize(poolSize);
+        hikari.setMinimumIdle(Math.min(2, poolSize));
+        hikari.setPoolName("yuno-postgres");
+        hikari.setConnectionTimeout(TimeUnit.SECONDS.toMillis(10));
+        hikari.addDataSourceProperty("reWriteBatchedInserts", "true");
+        try {
+            dataSource = new HikariDataSource(hikari);
+        } catch (RuntimeException e) {
+            throw new SQLException("Could not connect to PostgreSQL: " + e.getMessage(), e);
+        }
+        logger.info("PostgreSQL pool established ({} connections max)~", poolSize);
+        initialize();
+
+        running = true;
+        modActionWriter = new Thread(this::writeModActions, "yuno-postgres-writer");
+        modActionWriter.setDaemon(true);
+        modActionWriter.start();
+    }
+
+    @Override
+    public void ping() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.setQueryTimeout(5);
+            stmt.executeQuery("SELECT 1").close();
+        }
+    }
+
+    @Override
+    public void flush() {
+        flushModActions();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (modActionWriter != null) {
+            modActionWriter.interrupt();
+            try {
+                modActionWriter.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flushModActions();
+        if (dataSource != null) {
+            dataSource.close();
+            logger.info("PostgreSQL pool closed~");
+        }
+    }
+
+    private void initialize() throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            // Guild settings table
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS guild_settings (
+                    guild_id BIGINT PRIMARY KEY,
+                    prefix TEXT DEFAULT '.',
+                    spam_filter_enabled INTEGER DEFAULT 0,
+                    leveling_enabled INTEGER DEFAULT 1,
+                    xp_cooldown_seconds INTEGER,
+                    warning_decay_days INTEGER,
+                    mod_action_retention_days INTEGER,
+                    level_up_mode TEXT,
+                    level_up_channel_id BIGINT,
+                    raid_join_threshold INTEGER,
+                    mod_alert_channel_id BIGINT,
+                    level_curve TEXT,
+                    message_log_channel_id BIGINT,
+                    raid_lockdown_until BIGINT,
+                    raid_previous_verification INTEGER
+                )
+            """);
+
+            // User XP table
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS user_xp (
+                    user_id BIGINT NOT NULL,
+                    guild_id BIGINT NOT NULL,
+                    xp BIGINT DEFAULT 0,
+                    level INTEGER DEFAULT 0,
+                    PRIMARY KEY (user_id, guild_id)
+                )
+            """);
+
+            // XP summed over every guild, kept by the trigger in createTotalXpTrigger
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS user_total_xp (
+                    user_id BIGINT PRIMARY KEY,
+                    xp BIGINT NOT NULL DEFAULT 0
+                )
+            """);
+
+            // Mod actions table
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS mod_actions (
+                    id BIGSERIAL PRIMARY KEY,
+                    guild_id BIGINT NOT NULL,
+                    moderator_id BIGINT NOT NULL,
+                    target_id BIGINT NOT NULL,
+                    action_type TEXT NOT NULL,
+                    reason TEXT,
+                    timestamp BIGINT NOT NULL
+                )
+            """);
+
+            // Counts of archived mod actions, so stats survive retention
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS mod_action_counts (
+                    guild_id BIGINT NOT NULL,
+                    moderator_id BIGINT NOT NULL,
+                    action_type TEXT NOT NULL,
+                    count BIGINT NOT NULL DEFAULT 0,
+                    PRIMARY KEY (guild_id, moderator_id, action_type)
+                )
+            """);
+
+            // Auto-clean config table
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS auto_clean_config (
+                    guild_id BIGINT NOT NULL,
+                    channel_id BIGINT NOT NULL,
+                    interval_minutes INTEGER DEFAULT 60,
+                    message_count INTEGER DEFAULT 100,
+                    enabled INTEGER DEFAULT 1,
+                    PRIMARY KEY (guild_id, channel_id)
+                )
+            """);
+
+            // Spam warnings table
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS spam_warnings (
+                    user_id BIGINT NOT NULL,
+                    guild_id BIGINT NOT NULL,
+                    warnings INTEGER DEFAULT 0,
+                    last_warning BIGINT,
+                    PRIMARY KEY (user_id, guild_id)
+                )
+            """);
+
+            // Message counts per hour and per day; channel 0 is the whole guild
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS activity_hourly (
+                    guild_id BIGINT NOT NULL,
+                    hour BIGINT NOT NULL,
+                    channel_id BIGINT NOT NULL,
+                    messages BIGINT NOT NULL,
+                    peak INTEGER NOT NULL DEFAULT 0,
+                    PRIMARY KEY (guild_id, hour, channel_id)
+                )
+            """);
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS activity_daily (
+                    guild_id BIGINT NOT NULL,
+                    day BIGINT NOT NULL,
+                    channel_id BIGINT NOT NULL,
+                    messages BIGINT NOT NULL,
+                    peak INTEGER NOT NULL DEFAULT 0,
+                    PRIMARY KEY (guild_id, day, channel_id)
+                )
+            """);
+
+            // Distinct chatters per day as HyperLogLog sketches
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS daily_chatters (
+                    guild_id BIGINT NOT NULL,
+                    day BIGINT NOT NULL,
+                    sketch BYTEA NOT NULL,
+                    PRIMARY KEY (guild_id, day)
+                )
+            """);
+
+            // Create indexes
+            // Pending timed actions, like the unban at the end of a temp-ban
+            stmt.executeUpdate("""
+                CREATE TABLE IF NOT EXISTS scheduled_actions (
+                    id BIGSERIAL PRIMARY KEY,
+                    guild_id BIGINT NOT NULL,
+                    target_id BIGINT NOT NULL,
+                    moderator_id BIGINT NOT NULL,
+                    action_type TEXT NOT NULL,
+                    reason TEXT,
+                    due_at BIGINT NOT NULL,
+                    UNIQUE (guild_id, target_id, action_type)
+                )
+            """);
+
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mod_actions_guild ON mod_actions(guild_id)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mod_actions_moderator ON mod_actions(moderator_id)");
+            // Also orders a guild's rows by user for paging
+            stmt.executeUpdate("DROP INDEX IF EXISTS idx_user_xp_guild");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_user_xp_guild_user ON user_xp(guild_id, user_id)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_mod_actions_guild_time ON mod_actions(guild_id, timestamp)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_spam_warnings_guild_time ON spam_warnings(guild_id, last_warning)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_scheduled_actions_due ON scheduled_actions(due_at)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_user_total_xp_xp ON user_total_xp(xp DESC)");
+
+            migrate(stmt);
+        }
+
+        logger.info("Database initialized~");
+    }
+
+    // Brings databases created by older versions up to the current schema
+    private void migrate(Statement stmt) throws SQLException {
+        stmt.executeUpdate("ALTER TABLE guild_settings ADD COLUMN IF NOT EXISTS xp_cooldown_seconds INTEGER");
+        stmt.executeUpdate("ALTER TABLE guild_settings ADD COLUMN IF NOT EXISTS warning_decay_days INTEGER");
+        stmt.executeUpdate("ALTER TABLE guild_settings ADD COLUMN IF NOT EXISTS mod_action_retention_days INTEGER");
+        stmt.executeUpdate("ALTER TABLE guild_settings ADD COLUMN IF NOT EXISTS level_up_mode TEXT");
+        stmt.executeUpdate("ALTER TABLE guild_settings ADD COLUMN IF NOT EXISTS level_up_channel_id BIGINT");
+        stmt.executeUpdate("ALTER TABLE guild_settings ADD COLUMN IF NOT EXISTS raid_join_threshold INTEGER");
+        stmt.executeUpdate("ALTER TABLE guild_settings ADD COLUMN IF NOT EXISTS mod_alert_channel_id BIGINT");
+        stmt.executeUpdate("ALTER TABLE guild_settings ADD COLUMN IF NOT EXISTS level_curve TEXT");
+        stmt.executeUpdate("ALTER TABLE guild_settings ADD COLUMN IF NOT EXISTS message_log_channel_id BIGINT");
+        stmt.executeUpdate("ALTER TABLE guild_settings ADD COLUMN IF NOT EXISTS raid_lockdown_until BIGINT");
+        stmt.executeUpdate("ALTER TABLE guild_settings ADD COLUMN IF NOT EXISTS raid_previous_verification INTEGER");
+        createTotalXpTrigger(stmt);
+    }
+
+    // Every write to user_xp updates user_total_xp in the same transaction. Databases from
+    // before the table existed get it filled in once, with XP writes held off meanwhile, so
+    // shards starting together can't double count.
+    private void createTotalXpTrigger(Statement stmt) throws SQLException {
+        Connection connection = stmt.getConnection();
+        connection.setAutoCommit(false);
+        try {
+            stmt.executeUpdate("LOCK TABLE user_xp IN SHARE ROW EXCLUSIVE MODE");
+            ResultSet rs = stmt.executeQuery("SELECT 1 FROM pg_trigger WHERE tgname = 'user_xp_total'");
+            if (rs.next()) {
+                connection.commit();
+                return;
+            }
+            stmt.executeUpdate("""
+                CREATE OR REPLACE FUNCTION yuno_user_total_xp() RETURNS trigger AS $$
+                BEGIN
+                    IF TG_OP = 'DELETE' THEN
+                        UPDATE user_total_xp SET xp = xp - OLD.xp WHERE user_id = OLD.user_id;
+                        RETURN OLD;
+                    ELSIF TG_OP = 'UPDATE' THEN
+                        UPDATE user_total_xp SET xp = xp + NEW.xp - OLD.xp WHERE user_id = NEW.user_id;
+                    ELSE
+                        INSERT INTO user_total_xp (user_id, xp) VALUES (NEW.user_id, NEW.xp)
+                        ON CONFLICT (user_id) DO UPDATE SET xp = user_total_xp.xp + EXCLUDED.xp;
+                    END IF;
+                    RETURN NEW;
+                END
+                $$ LANGUAGE plpgsql
+            """);
+            stmt.executeUpdate("DELETE FROM user_total_xp");
+            stmt.executeUpdate("INSERT INTO user_total_xp (user_id, xp) SELECT user_id, SUM(xp) FROM user_xp GROUP BY user_id");
+            stmt.executeUpdate("""
+                CREATE TRIGGER user_xp_total AFTER INSERT OR DELETE OR UPDATE OF xp ON user_xp
+                FOR EACH ROW EXECUTE FUNCTION yuno_user_total_xp()
+            """);
+            connection.commit();
+            logger.info("Totalled XP across guilds for every user~");
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    // Guild Settings
+    @Override
+    public void preloadGuildSettings() throws SQLException {
+        String sql = """
+            SELECT guild_id, prefix, spam_filter_enabled, leveling_enabled, xp_cooldown_seconds,
+                   warning_decay_days, mod_action_retention_days, level_up_mode, level_up_channel_id,
+                   raid_join_threshold, mod_alert_channel_id, level_curve, message_log_channel_id,
+                   raid_lockdown_until, raid_previous_verification
+            FROM guild_settings
+        """;
+        try (Connection connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery(sql);
+            while (rs.next()) {
+                GuildSettings settings = readGuildSettings(rs, rs.getLong("guild_id"));
+                guildSettingsCache.put(settings.getGuildId(), settings);
+            }
+        }
+        guildSettingsPreloaded = true;
+        logger.info("Preloaded settings for {} guilds~", guildSettingsCache.size());
+    }
+
+    @Override
+    public GuildSettings getGuildSettings(long guildId) {
+        GuildSettings cached = guildSettingsCache.get(guildId);
+        if (cached != null || guildSettingsPreloaded) {
+            return cached;
+        }
+
+        String sql = """
+            SELECT prefix, spam_filter_enabled, leveling_enabled, xp_cooldown_seconds,
+                   warning_decay_days, mod_action_retention_days, level_up_mode, level_up_channel_id,
+                   raid_join_threshold, mod_alert_channel_id, level_curve, message_log_channel_id,
+                   raid_lockdown_until, raid_previous_verification
+            FROM guild_settings WHERE guild_id = ?
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, guildId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                GuildSettings settings = readGuildSettings(rs, guildId);
+                guildSettingsCache.put(guildId, settings);
+                return settings;
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting guild settings: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    private GuildSettings readGuildSettings(ResultSet rs, long guildId) throws SQLException {
+        GuildSettings settings = new GuildSettings();
+        settings.setGuildId(guildId);
+        settings.setPrefix(rs.getString("prefix"));
+        settings.setSpamFilterEnabled(rs.getInt("spam_filter_enabled") == 1);
+        settings.setLevelingEnabled(rs.getInt("leveling_enabled") == 1);
+        settings.setXpCooldownSeconds(getOptionalInt(rs, "xp_cooldown_seconds"));
+        settings.setWarningDecayDays(getOptionalInt(rs, "warning_decay_days"));
+        settings.setModActionRetentionDays(getOptionalInt(rs, "mod_action_retention_days"));
+        String levelUpMode = rs.getString("level_up_mode");
+        settings.setLevelUpMode(levelUpMode != null ? levelUpMode : GuildSettings.LEVEL_UP_HERE);
+        settings.setLevelUpChannelId(rs.getLong("level_up_channel_id"));
+        settings.setRaidJoinThreshold(getOptionalInt(rs, "raid_join_threshold"));
+        settings.setModAlertChannelId(rs.getLong("mod_alert_channel_id"));
+        settings.setLevelCurve(rs.getString("level_curve"));
+        settings.setMessageLogChannelId(rs.getLong("message_log_channel_id"));
+        settings.setRaidLockdownUntil(rs.getLong("raid_lockdown_until"));
+        settings.setRaidPreviousVerification(getOptionalInt(rs, "raid_previous_verification"));
+        return settings;
+    }
+
+    // NULL columns map to -1 ("use the default")
+    private static int getOptionalInt(ResultSet rs, String column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? -1 : value;
+    }
+
+    private static void setOptionalInt(PreparedStatement stmt, int index, int value) throws SQLException {
+        if (value >= 0) {
+            stmt.setInt(index, value);
+        } else {
+            stmt.setNull(index, Types.INTEGER);
+        }
+    }
+
+    @Override
+    public void setGuildSettings(GuildSettings settings) {
+        String sql = """
+            INSERT INTO guild_settings (guild_id, prefix, spam_filter_enabled, leveling_enabled, xp_cooldown_seconds,
+                                        warning_decay_days, mod_action_retention_days, level_up_mode,
+                                        level_up_channel_id, raid_join_threshold, mod_alert_channel_id,
+                                        level_curve, message_log_channel_id, raid_lockdown_until,
+                                        raid_previous_verification)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (guild_id) DO UPDATE SET
+                prefix = EXCLUDED.prefix,
+                spam_filter_enabled = EXCLUDED.spam_filter_enabled,
+                leveling_enabled = EXCLUDED.leveling_enabled,
+                xp_cooldown_seconds = EXCLUDED.xp_cooldown_seconds,
+                warning_decay_days = EXCLUDED.warning_decay_days,
+                mod_action_retention_days = EXCLUDED.mod_action_retention_days,
+                level_up_mode = EXCLUDED.level_up_mode,
+                level_up_channel_id = EXCLUDED.level_up_channel_id,
+                raid_join_threshold = EXCLUDED.raid_join_threshold,
+                mod_alert_channel_id = EXCLUDED.mod_alert_channel_id,
+                level_curve = EXCLUDED.level_curve,
+                message_log_channel_id = EXCLUDED.message_log_channel_id,
+                raid_lockdown_until = EXCLUDED.raid_lockdown_until,
+                raid_previous_verification = EXCLUDED.raid_previous_verification
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, settings.getGuildId());
+            stmt.setString(2, settings.getPrefix());
+            stmt.setInt(3, settings.isSpamFilterEnabled() ? 1 : 0);
+            stmt.setInt(4, settings.isLevelingEnabled() ? 1 : 0);
+            setOptionalInt(stmt, 5, settings.getXpCooldownSeconds());
+            setOptionalInt(stmt, 6, settings.getWarningDecayDays());
+            setOptionalInt(stmt, 7, settings.getModActionRetentionDays());
+            stmt.setString(8, settings.getLevelUpMode());
+            if (settings.getLevelUpChannelId() != 0) {
+                stmt.setLong(9, settings.getLevelUpChannelId());
+            } else {
+                stmt.setNull(9, Types.BIGINT);
+            }
+            setOptionalInt(stmt, 10, settings.getRaidJoinThreshold());
+            if (settings.getModAlertChannelId() != 0) {
+                stmt.setLong(11, settings.getModAlertChannelId());
+            } else {
+                stmt.setNull(11, Types.BIGINT);
+            }
+            stmt.setString(12, settings.getLevelCurve());
+            if (settings.getMessageLogChannelId() != 0) {
+                stmt.setLong(13, settings.getMessageLogChannelId());
+            } else {
+                stmt.setNull(13, Types.BIGINT);
+            }
+            stmt.setLong(14, settings.getRaidLockdownUntil());
+            setOptionalInt(stmt, 15, settings.getRaidPreviousVerification());
+            stmt.executeUpdate();
+            guildSettingsCache.put(settings.getGuildId(), settings);
+        } catch (SQLException e) {
+            logger.error("Error setting guild settings: {}", e.getMessage());
+        }
+    }
+
+    // XP/Leveling
+    @Override
+    public UserXp getUserXp(long userId, long guildId) {
+        UserXp xp = new UserXp();
+        xp.setUserId(userId);
+        xp.setGuildId(guildId);
+        String sql = "SELECT xp, level FROM user_xp WHERE user_id = ? AND guild_id = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, userId);
+            stmt.setLong(2, guildId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                xp.setXp(rs.getLong("xp"));
+                xp.setLevel(rs.getInt("level"));
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting user XP: {}", e.getMessage());
+        }
+        return xp;
+    }
+
+    @Override
+    public void addXp(long userId, long guildId, long amount) {
+        String sql = """
+            INSERT INTO user_xp (user_id, guild_id, xp, level) VALUES (?, ?, ?, 0)
+            ON CONFLICT (user_id, guild_id) DO UPDATE SET xp = user_xp.xp + EXCLUDED.xp
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, userId);
+            stmt.setLong(2, guildId);
+            stmt.setLong(3, amount);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Error adding XP: {}", e.getMessage());
+        }
+    }
+
+    // Same contract as SqliteDatabase.awardXp: the row lock serializes awards, so each one
+    // covers a disjoint XP range and a level-up can only be reported once, even across shards
+    @Override
+    public XpAward awardXp(long userId, long guildId, long amount, LevelCurve curve) {
+        String sql = """
+            INSERT INTO user_xp (user_id, guild_id, xp, level) VALUES (?, ?, ?, ?)
+            ON CONFLICT (user_id, guild_id) DO UPDATE SET xp = user_xp.xp + EXCLUDED.xp
+            RETURNING xp, level
+        """;
+        XpAward award = new XpAward();
+        try (Connection connection = dataSource.getConnection()) {
+            long xp;
+            int storedLevel;
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setLong(1, userId);
+                stmt.setLong(2, guildId);
+                stmt.setLong(3, amount);
+                stmt.setInt(4, curve.levelFor(amount));
+                ResultSet rs = stmt.executeQuery();
+                if (!rs.next()) {
+                    return award;
+                }
+                xp = rs.getLong("xp");
+                storedLevel = rs.getInt("level");
+            }
+            award.setXp(xp);
+            award.setOldLevel(curve.levelFor(xp - amount));
+            award.setNewLevel(curve.levelFor(xp));
+            if (storedLevel != award.getNewLevel()) {
+                try (PreparedStatement stmt = connection.prepareStatement(
+                        "UPDATE user_xp SET level = ? WHERE user_id = ? AND guild_id = ? AND xp = ?")) {
+                    stmt.setInt(1, award.getNewLevel());
+                    stmt.setLong(2, userId);
+                    stmt.setLong(3, guildId);
+                    stmt.setLong(4, xp);
+                    stmt.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error awarding XP: {}", e.getMessage());
+        }
+        return award;
+    }
+
+    @Override
+    public List<UserXp> getLeaderboard(long guildId, int limit) {
+        List<UserXp> leaderboard = new ArrayList<>();
+        String sql = "SELECT user_id, xp, level FROM user_xp WHERE guild_id = ? ORDER BY xp DESC LIMIT ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, guildId);
+            stmt.setInt(2, limit);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                UserXp xp = new UserXp();
+                xp.setUserId(rs.getLong("user_id"));
+                xp.setGuildId(guildId);
+                xp.setXp(rs.getLong("xp"));
+                xp.setLevel(rs.getInt("level"));
+                leaderboard.add(xp);
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting leaderboard: {}", e.getMessage());
+        }
+        return leaderboard;
+    }
+
+    // Sorted so concurrent imports lock users' totals in the same order and can't deadlock
+    @Override
+    public boolean importXp(long guildId, List<UserXp> rows, LevelCurve curve) {
+        List<UserXp> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparingLong(UserXp::getUserId));
+        String sql = """
+            INSERT INTO user_xp (user_id, guild_id, xp, level) VALUES (?, ?, ?, ?)
+            ON CONFLICT (user_id, guild_id) DO UPDATE SET xp = EXCLUDED.xp, level = EXCLUDED.level
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            connection.setAutoCommit(false);
+            try {
+                for (UserXp row : sorted) {
+                    stmt.setLong(1, row.getUserId());
+                    stmt.setLong(2, guildId);
+                    stmt.setLong(3, row.getXp());
+                    stmt.setInt(4, curve.levelFor(row.getXp()));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Error importing {} XP rows: {}", rows.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public List<UserXp> getGlobalLeaderboard(int limit) {
+        List<UserXp> leaderboard = new ArrayList<>();
+        String sql = "SELECT user_id, xp FROM user_total_xp ORDER BY xp DESC LIMIT ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, limit);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                UserXp xp = new UserXp();
+                xp.setUserId(rs.getLong("user_id"));
+                xp.setXp(rs.getLong("xp"));
+                leaderboard.add(xp);
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting global leaderboard: {}", e.getMessage());
+        }
+        return leaderboard;
+    }
+
+    @Override
+    public long getTotalXp(long userId) {
+        String sql = "SELECT xp FROM user_total_xp WHERE user_id = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, userId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return rs.getLong("xp");
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting total XP: {}", e.getMessage());
+        }
+        return 0;
+    }
+
+    @Override
+    public List<UserXp> getXpPage(long guildId, long afterUserId, int limit) {
+        List<UserXp> page = new ArrayList<>();
+        String sql = "SELECT user_id, xp, level FROM user_xp WHERE guild_id = ? AND user_id > ? ORDER BY user_id LIMIT ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, guildId);
+            stmt.setLong(2, afterUserId);
+            stmt.setInt(3, limit);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                UserXp xp = new UserXp();
+                xp.setUserId(rs.getLong("user_id"));
+                xp.setGuildId(guildId);
+                xp.setXp(rs.getLong("xp"));
+                xp.setLevel(rs.getInt("level"));
+                page.add(xp);
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting XP page: {}", e.getMessage());
+        }
+        return page;
+    }
+
+    @Override
+    public void updateLevels(long guildId, List<UserXp> rows) {
+        String sql = "UPDATE user_xp SET level = ? WHERE user_id = ? AND guild_id = ? AND xp = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            connection.setAutoCommit(false);
+            try {
+                for (UserXp row : rows) {
+                    stmt.setInt(1, row.getLevel());
+                    stmt.setLong(2, row.getUserId());
+                    stmt.setLong(3, guildId);
+                    stmt.setLong(4, row.getXp());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Error updating {} levels: {}", rows.size(), e.getMessage());
+        }
+    }
+
+    // The driver only streams with a fetch size inside a transaction
+    @Override
+    public void forEachUserXp(long guildId, Consumer<UserXp> visitor) {
+        String sql = "SELECT user_id, xp, level FROM user_xp WHERE guild_id = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            connection.setAutoCommit(false);
+            try {
+                stmt.setFetchSize(STREAM_FETCH_SIZE);
+                stmt.setLong(1, guildId);
+                ResultSet rs = stmt.executeQuery();
+                UserXp xp = new UserXp();
+                xp.setGuildId(guildId);
+                while (rs.next()) {
+                    xp.setUserId(rs.getLong("user_id"));
+                    xp.setXp(rs.getLong("xp"));
+                    xp.setLevel(rs.getInt("level"));
+                    visitor.accept(xp);
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Error streaming XP: {}", e.getMessage());
+        }
+    }
+
+    // Mod Actions
+    @Override
+    public void logModAction(ModAction action) {
+        if (!running) {
+            logModActions(List.of(action));
+            return;
+        }
+        pendingModActions.add(action);
+    }
+
+    @Override
+    public boolean logModActions(List<ModAction> actions) {
+        if (actions.isEmpty()) {
+            return true;
+        }
+        String sql = """
+            INSERT INTO mod_actions (guild_id, moderator_id, target_id, action_type, reason, timestamp)
+            VALUES (?, ?, ?, ?, ?, ?)
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            connection.setAutoCommit(false);
+            try {
+                for (ModAction action : actions) {
+                    stmt.setLong(1, action.getGuildId());
+                    stmt.setLong(2, action.getModeratorId());
+                    stmt.setLong(3, action.getTargetId());
+                    stmt.setString(4, action.getActionType());
+                    stmt.setString(5, action.getReason());
+                    stmt.setLong(6, action.getTimestamp());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Error logging {} mod actions: {}", actions.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void writeModActions() {
+        while (running) {
+            try {
+                Thread.sleep(MOD_ACTION_FLUSH_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            flushModActions();
+        }
+    }
+
+    // Reads flush first so a moderator always sees the action they just took
+    private void flushModActions() {
+        synchronized (modActionFlushLock) {
+            List<ModAction> batch = new ArrayList<>();
+            while (pendingModActions.drainTo(batch, MOD_ACTION_BATCH_SIZE) > 0) {
+                logModActions(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    @Override
+    public List<ModAction> getModActions(long guildId, int limit) {
+        flushModActions();
+        List<ModAction> actions = new ArrayList<>();
+        String sql = """
+            SELECT id, moderator_id, target_id, action_type, reason, timestamp
+            FROM mod_actions WHERE guild_id = ? ORDER BY timestamp DESC LIMIT ?
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, guildId);
+            stmt.setInt(2, limit);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                ModAction action = new ModAction();
+                action.setId(rs.getLong("id"));
+                action.setGuildId(guildId);
+                action.setModeratorId(rs.getLong("moderator_id"));
+                action.setTargetId(rs.getLong("target_id"));
+                action.setActionType(rs.getString("action_type"));
+                action.setReason(rs.getString("reason"));
+                action.setTimestamp(rs.getLong("timestamp"));
+                actions.add(action);
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting mod actions: {}", e.getMessage());
+        }
+        return actions;
+    }
+
+    @Override
+    public ModStats getModStats(long guildId, long moderatorId) {
+        flushModActions();
+        ModStats stats = new ModStats();
+        // Live rows plus whatever retention has already archived
+        String sql = """
+            SELECT action_type, SUM(count) as count FROM (
+                SELECT action_type, COUNT(*) as count FROM mod_actions
+                WHERE guild_id = ? AND moderator_id = ? GROUP BY action_type
+                UNION ALL
+                SELECT action_type, count FROM mod_action_counts
+                WHERE guild_id = ? AND moderator_id = ?
+            ) AS combined GROUP BY action_type
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, guildId);
+            stmt.setLong(2, moderatorId);
+            stmt.setLong(3, guildId);
+            stmt.setLong(4, moderatorId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                String type = rs.getString("action_type");
+                int count = rs.getInt("count");
+                switch (type) {
+                    case "ban" -> stats.setBanCount(count);
+                    case "kick" -> stats.setKickCount(count);
+                    case "timeout" -> stats.setTimeoutCount(count);
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting mod stats: {}", e.getMessage());
+        }
+        return stats;
+    }
+
+    @Override
+    public void forEachModAction(long guildId, Consumer<ModAction> visitor) {
+        flushModActions();
+        String sql = """
+            SELECT id, moderator_id, target_id, action_type, reason, timestamp
+            FROM mod_actions WHERE guild_id = ? ORDER BY timestamp
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            connection.setAutoCommit(false);
+            try {
+                stmt.setFetchSize(STREAM_FETCH_SIZE);
+                stmt.setLong(1, guildId);
+                ResultSet rs = stmt.executeQuery();
+                ModAction action = new ModAction();
+                action.setGuildId(guildId);
+                while (rs.next()) {
+                    action.setId(rs.getLong("id"));
+                    action.setModeratorId(rs.getLong("moderator_id"));
+                    action.setTargetId(rs.getLong("target_id"));
+                    action.setActionType(rs.getString("action_type"));
+                    action.setReason(rs.getString("reason"));
+                    action.setTimestamp(rs.getLong("timestamp"));
+                    visitor.accept(action);
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Error streaming mod actions: {}", e.getMessage());
+        }
+    }
+
+    // Activity
+    @Override
+    public void addActivity(List<ActivityRow> rows, long hourlyBefore, long dailyBefore) {
+        String hourlySql = """
+            INSERT INTO activity_hourly (guild_id, hour, channel_id, messages, peak) VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (guild_id, hour, channel_id) DO UPDATE SET
+                messages = activity_hourly.messages + EXCLUDED.messages,
+                peak = GREATEST(activity_hourly.peak, EXCLUDED.peak)
+        """;
+        String dailySql = """
+            INSERT INTO activity_daily (guild_id, day, channel_id, messages, peak)
+            SELECT guild_id, ?, channel_id, SUM(messages), MAX(peak) FROM activity_hourly
+            WHERE guild_id = ? AND hour >= ? AND hour < ? GROUP BY guild_id, channel_id
+            ON CONFLICT (guild_id, day, channel_id) DO UPDATE SET messages = EXCLUDED.messages, peak = EXCLUDED.peak
+        """;
+        String pruneHourlySql = "DELETE FROM activity_hourly WHERE guild_id = ? AND hour < ?";
+        String pruneDailySql = "DELETE FROM activity_daily WHERE guild_id = ? AND day < ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement hourly = connection.prepareStatement(hourlySql);
+             PreparedStatement daily = connection.prepareStatement(dailySql);
+             PreparedStatement pruneHourly = connection.prepareStatement(pruneHourlySql);
+             PreparedStatement pruneDaily = connection.prepareStatement(pruneDailySql)) {
+            connection.setAutoCommit(false);
+            try {
+                for (ActivityRow row : rows) {
+                    hourly.setLong(1, row.getGuildId());
+                    hourly.setLong(2, row.getPeriod());
+                    hourly.setLong(3, row.getChannelId());
+                    hourly.setLong(4, row.getMessages());
+                    hourly.setInt(5, row.getPeak());
+                    hourly.addBatch();
+                }
+                hourly.executeBatch();
+
+                // Each guild-hour comes as a guild row followed by its channels
+                for (ActivityRow row : rows) {
+                    if (row.getChannelId() != ActivityRow.GUILD) {
+                        continue;
+                    }
+                    long day = row.getPeriod() / 24;
+                    daily.setLong(1, day);
+                    daily.setLong(2, row.getGuildId());
+                    daily.setLong(3, day * 24);
+                    daily.setLong(4, day * 24 + 24);
+                    daily.addBatch();
+                    pruneHourly.setLong(1, row.getGuildId());
+                    pruneHourly.setLong(2, hourlyBefore);
+                    pruneHourly.addBatch();
+                    pruneDaily.setLong(1, row.getGuildId());
+                    pruneDaily.setLong(2, dailyBefore);
+                    pruneDaily.addBatch();
+                }
+                daily.executeBatch();
+                pruneHourly.executeBatch();
+                pruneDaily.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Error saving {} activity rows: {}", rows.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public List<ActivityRow> getHourlyActivity(long guildId, long fromHour) {
+        String sql = "SELECT hour, channel_id, messages, peak FROM activity_hourly WHERE guild_id = ? AND hour >= ? ORDER BY hour";
+        List<ActivityRow> rows = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, guildId);
+            stmt.setLong(2, fromHour);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                rows.add(readActivityRow(guildId, rs.getLong("hour"), rs));
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting hourly activity: {}", e.getMessage());
+        }
+        return rows;
+    }
+
+    @Override
+    public List<ActivityRow> getDailyActivity(long guildId, long fromDay) {
+        String sql = "SELECT day, channel_id, messages, peak FROM activity_daily WHERE guild_id = ? AND day >= ? AND channel_id = 0 ORDER BY day";
+        List<ActivityRow> rows = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, guildId);
+            stmt.setLong(2, fromDay);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                rows.add(readActivityRow(guildId, rs.getLong("day"), rs));
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting daily activity: {}", e.getMessage());
+        }
+        return rows;
+    }
+
+    private static ActivityRow readActivityRow(long guildId, long period, ResultSet rs) throws SQLException {
+        ActivityRow row = new ActivityRow();
+        row.setGuildId(guildId);
+        row.setPeriod(period);
+        row.setChannelId(rs.getLong("channel_id"));
+        row.setMessages(rs.getLong("messages"));
+        row.setPeak(rs.getInt("peak"));
+        return row;
+    }
+
+    @Override
+    public void mergeChatterSketches(List<ChatterSketch> sketches, long before) {
+        String selectSql = "SELECT sketch FROM daily_chatters WHERE guild_id = ? AND day = ? FOR UPDATE";
+        String upsertSql = """
+            INSERT INTO daily_chatters (guild_id, day, sketch) VALUES (?, ?, ?)
+            ON CONFLICT (guild_id, day) DO UPDATE SET sketch = EXCLUDED.sketch
+        """;
+        String pruneSql = "DELETE FROM daily_chatters WHERE guild_id = ? AND day < ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement select = connection.prepareStatement(selectSql);
+             PreparedStatement upsert = connection.prepareStatement(upsertSql);
+             PreparedStatement prune = connection.prepareStatement(pruneSql)) {
+            connection.setAutoCommit(false);
+            try {
+                for (ChatterSketch sketch : sketches) {
+                    select.setLong(1, sketch.getGuildId());
+                    select.setLong(2, sketch.getDay());
+                    byte[] stored = null;
+                    try (ResultSet rs = select.executeQuery()) {
+                        if (rs.next()) {
+                            stored = rs.getBytes("sketch");
+                        }
+                    }
+                    upsert.setLong(1, sketch.getGuildId());
+                    upsert.setLong(2, sketch.getDay());
+                    upsert.setBytes(3, ChatterSketch.merge(stored, sketch.getSketch()));
+                    upsert.executeUpdate();
+                    prune.setLong(1, sketch.getGuildId());
+                    prune.setLong(2, before);
+                    prune.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Error saving {} chatter sketches: {}", sketches.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public List<ChatterSketch> getChatterSketches(long guildId, long fromDay) {
+        String sql = "SELECT day, sketch FROM daily_chatters WHERE guild_id = ? AND day >= ? ORDER BY day";
+        List<ChatterSketch> sketches = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, guildId);
+            stmt.setLong(2, fromDay);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                ChatterSketch sketch = new ChatterSketch();
+                sketch.setGuildId(guildId);
+                sketch.setDay(rs.getLong("day"));
+                sketch.setSketch(rs.getBytes("sketch"));
+                sketches.add(sketch);
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting chatter sketches: {}", e.getMessage());
+        }
+        return sketches;
+    }
+
+    // Auto-clean
+    @Override
+    public AutoCleanConfig getAutoCleanConfig(long guildId, long channelId) {
+        String sql = """
+            SELECT interval_minutes, message_count, enabled
+            FROM auto_clean_config WHERE guild_id = ? AND channel_id = ?
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, guildId);
+            stmt.setLong(2, channelId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                AutoCleanConfig config = new AutoCleanConfig();
+                config.setGuildId(guildId);
+                config.setChannelId(channelId);
+                config.setIntervalMinutes(rs.getInt("interval_minutes"));
+                config.setMessageCount(rs.getInt("message_count"));
+                config.setEnabled(rs.getInt("enabled") == 1);
+                return config;
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting auto-clean config: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public void setAutoCleanConfig(AutoCleanConfig config) {
+        String sql = """
+            INSERT INTO auto_clean_config (guild_id, channel_id, interval_minutes, message_count, enabled)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (guild_id, channel_id) DO UPDATE SET
+                interval_minutes = EXCLUDED.interval_minutes,
+                message_count = EXCLUDED.message_count,
+                enabled = EXCLUDED.enabled
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, config.getGuildId());
+            stmt.setLong(2, config.getChannelId());
+            stmt.setInt(3, config.getIntervalMinutes());
+            stmt.setInt(4, config.getMessageCount());
+            stmt.setInt(5, config.isEnabled() ? 1 : 0);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Error setting auto-clean config: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void removeAutoCleanConfig(long guildId, long channelId) {
+        String sql = "DELETE FROM auto_clean_config WHERE guild_id = ? AND channel_id = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, guildId);
+            stmt.setLong(2, channelId);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Error removing auto-clean config: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public List<AutoCleanConfig> getAllAutoCleanConfigs() {
+        List<AutoCleanConfig> configs = new ArrayList<>();
+        String sql = """
+            SELECT guild_id, channel_id, interval_minutes, message_count, enabled
+            FROM auto_clean_config WHERE enabled = 1
+        """;
+        try (Connection connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery(sql);
+            while (rs.next()) {
+                AutoCleanConfig config = new AutoCleanConfig();
+                config.setGuildId(rs.getLong("guild_id"));
+                config.setChannelId(rs.getLong("channel_id"));
+                config.setIntervalMinutes(rs.getInt("interval_minutes"));
+                config.setMessageCount(rs.getInt("message_count"));
+                config.setEnabled(rs.getInt("enabled") == 1);
+                configs.add(config);
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting all auto-clean configs: {}", e.getMessage());
+        }
+        return configs;
+    }
+
+    // Spam warnings
+    @Override
+    public void addSpamWarning(long userId, long guildId) {
+        String sql = """
+            INSERT INTO spam_warnings (user_id, guild_id, warnings, last_warning) VALUES (?, ?, 1, ?)
+            ON CONFLICT (user_id, guild_id) DO UPDATE SET
+                warnings = spam_warnings.warnings + 1,
+                last_warning = EXCLUDED.last_warning
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, userId);
+            stmt.setLong(2, guildId);
+            stmt.setLong(3, System.currentTimeMillis() / 1000);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Error adding spam warning: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public int getSpamWarnings(long userId, long guildId) {
+        String sql = "SELECT warnings FROM spam_warnings WHERE user_id = ? AND guild_id = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, userId);
+            stmt.setLong(2, guildId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return rs.getInt("warnings");
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting spam warnings: {}", e.getMessage());
+        }
+        return 0;
+    }
+
+    @Override
+    public void resetSpamWarnings(long userId, long guildId) {
+        String sql = "DELETE FROM spam_warnings WHERE user_id = ? AND guild_id = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, userId);
+            stmt.setLong(2, guildId);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Error resetting spam warnings: {}", e.getMessage());
+        }
+    }
+
+    // Retention
+    @Override
+    public List<Long> getGuildIdsWithHistory() {
+        flushModActions();
+        List<Long> guildIds = new ArrayList<>();
+        String sql = "SELECT guild_id FROM mod_actions UNION SELECT guild_id FROM spam_warnings";
+        try (Connection connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery(sql);
+            while (rs.next()) {
+                guildIds.add(rs.getLong("guild_id"));
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting guild IDs: {}", e.getMessage());
+        }
+        return guildIds;
+    }
+
+    @Override
+    public int expireSpamWarnings(long guildId, long before, int limit) {
+        String sql = """
+            DELETE FROM spam_warnings WHERE ctid IN (
+                SELECT ctid FROM spam_warnings WHERE guild_id = ? AND last_warning < ? LIMIT ?
+            )
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, guildId);
+            stmt.setLong(2, before);
+            stmt.setInt(3, limit);
+            return stmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Error expiring spam warnings: {}", e.getMessage());
+        }
+        return 0;
+    }
+
+    @Override
+    public List<ModAction> getModActionsBefore(long guildId, long before, int limit) {
+        flushModActions();
+        List<ModAction> actions = new ArrayList<>();
+        String sql = """
+            SELECT id, moderator_id, target_id, action_type, reason, timestamp
+            FROM mod_actions WHERE guild_id = ? AND timestamp < ? ORDER BY timestamp LIMIT ?
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, guildId);
+            stmt.setLong(2, before);
+            stmt.setInt(3, limit);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                ModAction action = new ModAction();
+                action.setId(rs.getLong("id"));
+                action.setGuildId(guildId);
+                action.setModeratorId(rs.getLong("moderator_id"));
+                action.setTargetId(rs.getLong("target_id"));
+                action.setActionType(rs.getString("action_type"));
+                action.setReason(rs.getString("reason"));
+                action.setTimestamp(rs.getLong("timestamp"));
+                actions.add(action);
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting old mod actions: {}", e.getMessage());
+        }
+        return actions;
+    }
+
+    // Only what this DELETE returns is counted, so a batch another shard archived first adds nothing
+    @Override
+    public int archiveModActions(long guildId, List<ModAction> actions) {
+        String deleteSql = "DELETE FROM mod_actions WHERE id = ANY(?) RETURNING moderator_id, action_type";
+        String countSql = """
+            INSERT INTO mod_action_counts (guild_id, moderator_id, action_type, count) VALUES (?, ?, ?, ?)
+            ON CONFLICT (guild_id, moderator_id, action_type) DO UPDATE SET count = mod_action_counts.count + EXCLUDED.count
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement delete = connection.prepareStatement(deleteSql);
+             PreparedStatement count = connection.prepareStatement(countSql)) {
+            connection.setAutoCommit(false);
+            try {
+                Long[] ids = new Long[actions.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = actions.get(i).getId();
+                }
+                delete.setArray(1, connection.createArrayOf("bigint", ids));
+                List<ModAction> deleted = new ArrayList<>();
+                try (ResultSet rs = delete.executeQuery()) {
+                    while (rs.next()) {
+                        ModAction action = new ModAction();
+                        action.setModeratorId(rs.getLong("moderator_id"));
+                        action.setActionType(rs.getString("action_type"));
+                        deleted.add(action);
+                    }
+                }
+                for (Map.Entry<String, Integer> entry : ModAction.countByModeratorAndType(deleted).entrySet()) {
+                    String[] key = entry.getKey().split(":", 2);
+                    count.setLong(1, guildId);
+                    count.setLong(2, Long.parseLong(key[0]));
+                    count.setString(3, key[1]);
+                    count.setInt(4, entry.getValue());
+                    count.addBatch();
+                }
+                count.executeBatch();
+                connection.commit();
+                return deleted.size();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Error archiving {} mod actions: {}", actions.size(), e.getMessage());
+        }
+        return -1;
+    }
+
+    // Scheduled actions
+    @Override
+    public long scheduleAction(ScheduledAction action) {
+        String sql = """
+            INSERT INTO scheduled_actions (guild_id, target_id, moderator_id, action_type, reason, due_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (guild_id, target_id, action_type) DO UPDATE SET
+                moderator_id = EXCLUDED.moderator_id, reason = EXCLUDED.reason, due_at = EXCLUDED.due_at
+            RETURNING id
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, action.getGuildId());
+            stmt.setLong(2, action.getTargetId());
+            stmt.setLong(3, action.getModeratorId());
+            stmt.setString(4, action.getActionType());
+            stmt.setString(5, action.getReason());
+            stmt.setLong(6, action.getDueAt());
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                action.setId(rs.getLong(1));
+                return action.getId();
+            }
+        } catch (SQLException e) {
+            logger.error("Error scheduling action: {}", e.getMessage());
+        }
+        return 0;
+    }
+
+    @Override
+    public ScheduledAction getScheduledAction(long id) {
+        String sql = """
+            SELECT id, guild_id, target_id, moderator_id, action_type, reason, due_at
+            FROM scheduled_actions WHERE id = ?
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, id);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return readScheduledAction(rs);
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting scheduled action: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public List<ScheduledAction> getScheduledActions(long dueFrom, long dueBefore, long afterId, int limit) {
+        List<ScheduledAction> actions = new ArrayList<>();
+        String sql = """
+            SELECT id, guild_id, target_id, moderator_id, action_type, reason, due_at
+            FROM scheduled_actions WHERE due_at >= ? AND due_at < ? AND id > ? ORDER BY id LIMIT ?
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, dueFrom);
+            stmt.setLong(2, dueBefore);
+            stmt.setLong(3, afterId);
+            stmt.setInt(4, limit);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                actions.add(readScheduledAction(rs));
+            }
+        } catch (SQLException e) {
+            logger.error("Error getting scheduled actions: {}", e.getMessage());
+        }
+        return actions;
+    }
+
+    private static ScheduledAction readScheduledAction(ResultSet rs) throws SQLException {
+        ScheduledAction action = new ScheduledAction();
+        action.setId(rs.getLong("id"));
+        action.setGuildId(rs.getLong("guild_id"));
+        action.setTargetId(rs.getLong("target_id"));
+        action.setModeratorId(rs.getLong("moderator_id"));
+        action.setActionType(rs.getString("action_type"));
+        action.setReason(rs.getString("reason"));
+        action.setDueAt(rs.getLong("due_at"));
+        return action;
+    }
+
+    @Override
+    public void cancelScheduledAction(long guildId, long targetId, String actionType) {
+        String sql = "DELETE FROM scheduled_actions WHERE guild_id = ? AND target_id = ? AND action_type = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, guildId);
+            stmt.setLong(2, targetId);
+            stmt.setString(3, actionType);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.error("Error cancelling scheduled action: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean rescheduleAction(long id, long dueAt, long newDueAt) {
+        String sql = "UPDATE scheduled_actions SET due_at = ? WHERE id = ? AND due_at = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, newDueAt);
+            stmt.setLong(2, id);
+            stmt.setLong(3, dueAt);
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            logger.error("Error rescheduling action: {}", e.getMessage());
+        }
+        return false;
+    }
+
+    @Override
+    public boolean completeScheduledActions(List<ScheduledAction> done, List<ModAction> log) {
+        String deleteSql = "DELETE FROM scheduled_actions WHERE id = ? AND due_at = ?";
+        String logSql = """
+            INSERT INTO mod_actions (guild_id, moderator_id, target_id, action_type, reason, timestamp)
+            VALUES (?, ?, ?, ?, ?, ?)
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement delete = connection.prepareStatement(deleteSql);
+             PreparedStatement insert = connection.prepareStatement(logSql)) {
+            connection.setAutoCommit(false);
+            try {
+                for (ScheduledAction action : done) {
+                    delete.setLong(1, action.getId());
+                    delete.setLong(2, action.getDueAt());
+                    delete.addBatch();
+                }
+                for (ModAction action : log) {
+                    insert.setLong(1, action.getGuildId());
+                    insert.setLong(2, action.getModeratorId());
+                    insert.setLong(3, action.getTargetId());
+                    insert.setString(4, action.getActionType());
+                    insert.setString(5, action.getReason());
+                    insert.setLong(6, action.getTimestamp());
+                    insert.addBatch();
+                }
+                delete.executeBatch();
+                insert.executeBatch();
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Error completing {} scheduled actions: {}", done.size(), e.getMessage());
+        }
+        return false;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Relevel Job
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.database;
+
+import dev.blubskye.yuno.util.ConcurrentLongObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Recomputes every stored level of a guild after its level curve changes.
+ * One thread pages through the guild's XP in user order while a small pool
+ * works out the new levels and writes back only the rows that moved, each
+ * page in its own short transaction. Writes are skipped for rows whose XP
+ * changed since they were read, so live awards always win. Starting a new
+ * job for a guild cancels the one already running there.
+ */
+public class RelevelJob {
+    private static final Logger logger = LoggerFactory.getLogger(RelevelJob.class);
+
+    private static final int PAGE_SIZE = 1000;
+    private static final int WORKERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    // Pages read but not yet written; keeps the scan from running far ahead of the writers
+    private static final int MAX_IN_FLIGHT = WORKERS * 2;
+
+    public static final class Result {
+        private final long scanned;
+        private final long changed;
+        private final long millis;
+
+        Result(long scanned, long changed, long millis) {
+            this.scanned = scanned;
+            this.changed = changed;
+            this.millis = millis;
+        }
+
+        public long getScanned() {
+            return scanned;
+        }
+
+        public long getChanged() {
+            return changed;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    private final YunoDatabase database;
+    private final ConcurrentLongObjectMap<AtomicInteger> generations = new ConcurrentLongObjectMap<>();
+    private final ExecutorService scanner = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "yuno-relevel");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final ExecutorService workers = Executors.newFixedThreadPool(WORKERS, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "yuno-relevel-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    public RelevelJob(YunoDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Queues a re-level of the guild on the given curve. {@code onDone} runs on a
+     * background thread once every row is written, and not at all if the job is
+     * superseded or the bot stops first.
+     */
+    public void relevel(long guildId, LevelCurve curve, Consumer<Result> onDone) {
+        AtomicInteger generation = generations.computeIfAbsent(guildId, id -> new AtomicInteger());
+        int mine = generation.incrementAndGet();
+        try {
+            scanner.execute(() -> run(guildId, curve, generation, mine, onDone));
+        } catch (RejectedExecutionException e) {
+            logger.debug("Not re-leveling guild {}, shutting down~", guildId);
+        }
+    }
+
+    private void run(long guildId, LevelCurve curve, AtomicInteger generation, int mine, Consumer<Result> onDone) {
+        long begin = System.nanoTime();
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        AtomicLong changed = new AtomicLong();
+        long scanned = 0;
+        long after = 0;
+        try {
+            while (generation.get() == mine) {
+                List<UserXp> page = database.getXpPage(guildId, after, PAGE_SIZE);
+                if (page.isEmpty()) {
+                    break;
+                }
+                scanned += page.size();
+                after = page.get(page.size() - 1).getUserId();
+
+                inFlight.acquire();
+                try {
+                    workers.execute(() -> {
+                        try {
+                            changed.addAndGet(apply(guildId, curve, page));
+                        } catch (RuntimeException e) {
+                            logger.error("Error re-leveling a page of guild {}: {}", guildId, e.getMessage());
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    inFlight.release();
+                    return;
+                }
+                if (page.size() < PAGE_SIZE) {
+                    break;
+                }
+            }
+            // Wait for the last pages to be written
+            inFlight.acquire(MAX_IN_FLIGHT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (generation.get() != mine) {
+            logger.info("Re-level of guild {} superseded after {} rows~", guildId, scanned);
+            return;
+        }
+        Result result = new Result(scanned, changed.get(), (System.nanoTime() - begin) / 1_000_000);
+        logger.info("Re-leveled guild {} on {}: {} of {} rows changed in {}ms~",
+                guildId, curve, result.getChanged(), result.getScanned(), result.getMillis());
+        try {
+            onDone.accept(result);
+        } catch (RuntimeException e) {
+            logger.error("Error finishing re-level of guild {}: {}", guildId, e.getMessage());
+        }
+    }
+
+    private int apply(long guildId, LevelCurve curve, List<UserXp> page) {
+        List<UserXp> moved = new ArrayList<>();
+        for (UserXp row : page) {
+            int level = curve.levelFor(row.getXp());
+            if (level != row.getLevel()) {
+                row.setLevel(level);
+                moved.add(row);
+            }
+        }
+        if (!moved.isEmpty()) {
+            database.updateLevels(guildId, moved);
+        }
+        return moved.size();
+    }
+
+    public void stop() {
+        scanner.shutdownNow();
+        workers.shutdownNow();
+        try {
+            if (!scanner.awaitTermination(5, TimeUnit.SECONDS) || !workers.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Re-level job did not stop in time~");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Retention Job
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.database;
+
+import com.google.gson.JsonObject;
+import dev.blubskye.yuno.config.YunoConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Applies each guild's retention policy in the background: spam warnings
+ * past their decay window are deleted, and mod actions past the retention
+ * window are written to a gzipped JSONL archive, then removed with their
+ * counts kept for mod-stats. All deletes happen in small batches.
+ */
+public class RetentionJob {
+    private static final Logger logger = LoggerFactory.getLogger(RetentionJob.class);
+
+    private static final DateTimeFormatter ARCHIVE_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final long INITIAL_DELAY_MINUTES = 10;
+    private static final long INTERVAL_MINUTES = 360;
+    private static final int BATCH_SIZE = 500;
+    private static final long BATCH_PAUSE_MS = 50;
+
+    private final YunoDatabase database;
+    private final Supplier<YunoConfig> config;
+    private final Path archiveDirectory;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "yuno-retention");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private volatile boolean stopping;
+
+    public RetentionJob(YunoDatabase database, Supplier<YunoConfig> config) {
+        this.database = database;
+        this.config = config;
+        this.archiveDirectory = Paths.get(config.get().getArchiveDirectory());
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::runOnce, INITIAL_DELAY_MINUTES, INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public void stop() {
+        stopping = true;
+        scheduler.shutdownNow();
+        try {
+            if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Retention job did not stop in time~");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void runOnce() {
+        long now = System.currentTimeMillis() / 1000;
+        int warnings = 0;
+        int archived = 0;
+        for (long guildId : database.getGuildIdsWithHistory()) {
+            if (stopping) {
+                break;
+            }
+            GuildSettings settings = database.getGuildSettings(guildId);
+            YunoConfig defaults = config.get();
+            try {
+                int decayDays = settings != null && settings.getWarningDecayDays() >= 0
+                        ? settings.getWarningDecayDays() : defaults.getWarningDecayDays();
+                if (decayDays > 0) {
+                    warnings += expireWarnings(guildId, now - TimeUnit.DAYS.toSeconds(decayDays));
+                }
+
+                int retentionDays = settings != null && settings.getModActionRetentionDays() >= 0
+                        ? settings.getModActionRetentionDays() : defaults.getModActionRetentionDays();
+                if (retentionDays > 0) {
+                    archived += archiveModActions(guildId, now - TimeUnit.DAYS.toSeconds(retentionDays));
+                }
+            } catch (SQLException e) {
+                // The database is refusing writes; the next run starts over
+                logger.error("Stopping retention at guild {}: {}", guildId, e.getMessage());
+                break;
+            } catch (Exception e) {
+                logger.error("Error applying retention for guild {}: {}", guildId, e.getMessage());
+            }
+        }
+        if (warnings > 0 || archived > 0) {
+            logger.info("Retention expired {} spam warnings and archived {} mod actions~", warnings, archived);
+        }
+    }
+
+    private int expireWarnings(long guildId, long before) throws InterruptedException {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = database.expireSpamWarnings(guildId, before, BATCH_SIZE);
+            total += deleted;
+            Thread.sleep(BATCH_PAUSE_MS);
+        } while (deleted == BATCH_SIZE && !stopping);
+        return total;
+    }
+
+    // Each batch reaches the archive file before its rows are deleted, so a crash or a
+    // failed delete can at worst archive a batch twice, never lose one
+    private int archiveModActions(long guildId, long before) throws IOException, InterruptedException, SQLException {
+        List<ModAction> batch = database.getModActionsBefore(guildId, before, BATCH_SIZE);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        Files.createDirectories(archiveDirectory);
+        Path archive = archiveDirectory.resolve("mod-actions-" + guildId + "-"
+                + LocalDateTime.now().format(ARCHIVE_SUFFIX) + ".jsonl.gz");
+        int total = 0;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(archive), true), StandardCharsets.UTF_8))) {
+            while (!batch.isEmpty() && !stopping) {
+                for (ModAction action : batch) {
+                    writer.write(toJson(action));
+                    writer.write('\n');
+                }
+                writer.flush();
+                int deleted = database.archiveModActions(guildId, batch);
+                if (deleted < 0) {
+                    // Reading on would fetch the same rows and archive them again, forever
+                    throw new SQLException("Could not delete " + batch.size() + " archived mod actions");
+                }
+                total += deleted;
+
+                Thread.sleep(BATCH_PAUSE_MS);
+                batch = batch.size() < BATCH_SIZE ? List.of() : database.getModActionsBefore(guildId, before, BATCH_SIZE);
+            }
+        }
+        logger.info("Archived {} mod actions for guild {} to {}~", total, guildId, archive.getFileName());
+        return total;
+    }
+
+    private static String toJson(ModAction action) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", action.getId());
+        json.addProperty("guild_id", String.valueOf(action.getGuildId()));
+        json.addProperty("moderator_id", String.valueOf(action.getModeratorId()));
+        json.addProperty("target_id", String.valueOf(action.getTargetId()));
+        json.addProperty("action_type", action.getActionType());
+        json.addProperty("reason", action.getReason());
+        json.addProperty("timestamp", action.getTimestamp());
+        return json.toString();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Scheduled Action
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.database;
+
+public class ScheduledAction {
+    public static final String UNBAN = "unban";
+
+    private long id;
+    private long guildId;
+    private long targetId;
+    private long moderatorId;
+    private String actionType;
+    private String reason;
+    private long dueAt;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getGuildId() {
+        return guildId;
+    }
+
+    public void setGuildId(long guildId) {
+        this.guildId = guildId;
+    }
+
+    public long getTargetId() {
+        return targetId;
+    }
+
+    public void setTargetId(long targetId) {
+        this.targetId = targetId;
+    }
+
+    public long getModeratorId() {
+        return moderatorId;
+    }
+
+    public void setModeratorId(long moderatorId) {
+        this.moderatorId = moderatorId;
+    }
+
+    public String getActionType() {
+        return actionType;
+    }
+
+    public void setActionType(String actionType) {
+        this.actionType = actionType;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    // Unix seconds
+    public long getDueAt() {
+        return dueAt;
+    }
+
+    public void setDueAt(long dueAt) {
+        this.dueAt = dueAt;
+    }
+}
@@ -0,0 +1,1615 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - SQLite Database
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+public class SqliteDatabase implements YunoDatabase {
+    private static final Logger logger = LoggerFactory.getLogger(SqliteDatabase.class);
+
+    // Shared by every thread, so every use holds its monitor; otherwise an autocommit write could
+    // land inside another thread's open transaction and be rolled back or committed along with it
+    private Connection connection;
+    private Connection checkpointConnection;
+    private Connection probeConnection;
+    private final String databasePath;
+    private final Map<Long, GuildSettings> guildSettingsCache = new ConcurrentHashMap<>();
+    private volatile boolean guildSettingsPreloaded;
+    private boolean needsVacuumRebuild;
+
+    public SqliteDatabase(String databasePath) {
+        this.databasePath = databasePath;
+    }
+
+    @Override
+    public void open() throws SQLException {
+        String url = "jdbc:sqlite:" + databasePath;
+        connection = DriverManager.getConnection(url);
+        logger.info("Database connection established~");
+        configure();
+        initialize();
+    }
+
+    private void configure() throws SQLException {
+        // auto_vacuum only takes effect on an empty file or after a full VACUUM; older
+        // databases get that one rebuild as a startup stage, before any events arrive
+        if (queryInt("PRAGMA auto_vacuum") != 2) {
+            executeUpdate("PRAGMA auto_vacuum = INCREMENTAL");
+            needsVacuumRebuild = queryInt("SELECT count(*) FROM sqlite_master") > 0;
+        }
+
+        // WAL lets the backup reader and the writer run side by side
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = WAL");
+        }
+        executeUpdate("PRAGMA synchronous = NORMAL");
+        executeUpdate("PRAGMA busy_timeout = 5000");
+        // Checkpoints normally come from SqliteMaintenance on its own connection;
+        // the writer only does one itself if the WAL gets this far behind
+        executeUpdate("PRAGMA wal_autocheckpoint = 10000");
+    }
+
+    // Read-only and separate from the writer, so a probe never waits behind a long transaction
+    @Override
+    public void ping() throws SQLException {
+        synchronized (this) {
+            if (probeConnection == null) {
+                SQLiteConfig config = new SQLiteConfig();
+                config.setReadOnly(true);
+                probeConnection = DriverManager.getConnection("jdbc:sqlite:" + databasePath, config.toProperties());
+            }
+            try (Statement stmt = probeConnection.createStatement()) {
+                stmt.setQueryTimeout(5);
+                stmt.executeQuery("SELECT 1 FROM sqlite_master LIMIT 1").close();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (probeConnection != null) {
+                try {
+                    probeConnection.close();
+                } catch (SQLException e) {
+                    logger.error("Error closing probe connection: {}", e.getMessage());
+                }
+            }
+        }
+        if (checkpointConnection != null) {
+            try {
+                checkpointConnection.close();
+            } catch (SQLException e) {
+                logger.error("Error closing checkpoint connection: {}", e.getMessage());
+            }
+        }
+        if (connection != null) {
+            synchronized (connection) {
+                try {
+                    connection.close();
+                    logger.info("Database connection closed~");
+                } catch (SQLException e) {
+                    logger.error("Error closing database: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void initialize() throws SQLException {
+        // Guild settings table
+        executeUpdate("""
+            CREATE TABLE IF NOT EXISTS guild_settings (
+                guild_id TEXT PRIMARY KEY,
+                prefix TEXT DEFAULT '.',
+                spam_filter_enabled INTEGER DEFAULT 0,
+                leveling_enabled INTEGER DEFAULT 1,
+                xp_cooldown_seconds INTEGER,
+                warning_decay_days INTEGER,
+                mod_action_retention_days INTEGER,
+                level_up_mode TEXT,
+                level_up_channel_id TEXT,
+                raid_join_threshold INTEGER,
+                mod_alert_channel_id TEXT,
+                level_curve TEXT,
+                message_log_channel_id TEXT,
+                raid_lockdown_until INTEGER,
+                raid_previous_verification INTEGER
+            )
+        """);
+
+        // User XP table
+        executeUpdate("""
+            CREATE TABLE IF NOT EXISTS user_xp (
+                user_id TEXT NOT NULL,
+                guild_id TEXT NOT NULL,
+                xp INTEGER DEFAULT 0,
+                level INTEGER DEFAULT 0,
+                PRIMARY KEY (user_id, guild_id)
+            )
+        """);
+
+        // XP summed over every guild, kept by the triggers in createTotalXpTriggers
+        executeUpdate("""
+            CREATE TABLE IF NOT EXISTS user_total_xp (
+                user_id TEXT PRIMARY KEY,
+                xp INTEGER NOT NULL DEFAULT 0
+            )
+        """);
+
+        // Mod actions table
+        executeUpdate("""
+            CREATE TABLE IF NOT EXISTS mod_actions (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                guild_id TEXT NOT NULL,
+                moderator_id TEXT NOT NULL,
+                target_id TEXT NOT NULL,
+                action_type TEXT NOT NULL,
+                reason TEXT,
+                timestamp INTEGER NOT NULL
+            )
+        """);
+
+        // Counts of archived mod actions, so stats survive retention
+        executeUpdate("""
+            CREATE TABLE IF NOT EXISTS mod_action_counts (
+                guild_id TEXT NOT NULL,
+                moderator_id TEXT NOT NULL,
+                action_type TEXT NOT NULL,
+                count INTEGER NOT NULL DEFAULT 0,
+                PRIMARY KEY (guild_id, moderator_id, action_type)
+            )
+        """);
+
+        // Auto-clean config table
+        executeUpdate("""
+            CREATE TABLE IF NOT EXISTS auto_clean_config (
+                guild_id TEXT NOT NULL,
+                channel_id TEXT NOT NULL,
+                interval_minutes INTEGER DEFAULT 60,
+                message_count INTEGER DEFAULT 100,
+                enabled INTEGER DEFAULT 1,
+                PRIMARY KEY (guild_id, channel_id)
+            )
+        """);
+
+        // Spam warnings table
+        executeUpdate("""
+            CREATE TABLE IF NOT EXISTS spam_warnings (
+                user_id TEXT NOT NULL,
+                guild_id TEXT NOT NULL,
+                warnings INTEGER DEFAULT 0,
+                last_warning INTEGER,
+                PRIMARY KEY (user_id, guild_id)
+            )
+        """);
+
+        // Pending timed actions, like the unban at the end of a temp-ban
+        executeUpdate("""
+            CREATE TABLE IF NOT EXISTS scheduled_actions (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                guild_id TEXT NOT NULL,
+                target_id TEXT NOT NULL,
+                moderator_id TEXT NOT NULL,
+                action_type TEXT NOT NULL,
+                reason TEXT,
+                due_at INTEGER NOT NULL,
+                UNIQUE (guild_id, target_id, action_type)
+            )
+        """);
+
+        // Message counts per hour and per day; channel 0 is the whole guild
+        executeUpdate("""
+            CREATE TABLE IF NOT EXISTS activity_hourly (
+                guild_id TEXT NOT NULL,
+                hour INTEGER NOT NULL,
+                channel_id TEXT NOT NULL,
+                messages INTEGER NOT NULL,
+                peak INTEGER NOT NULL DEFAULT 0,
+                PRIMARY KEY (guild_id, hour, channel_id)
+            ) WITHOUT ROWID
+        """);
+        executeUpdate("""
+            CREATE TABLE IF NOT EXISTS activity_daily (
+                guild_id TEXT NOT NULL,
+                day INTEGER NOT NULL,
+                channel_id TEXT NOT NULL,
+                messages INTEGER NOT NULL,
+                peak INTEGER NOT NULL DEFAULT 0,
+                PRIMARY KEY (guild_id, day, channel_id)
+            ) WITHOUT ROWID
+        """);
+
+        // Distinct chatters per day as HyperLogLog sketches
+        executeUpdate("""
+            CREATE TABLE IF NOT EXISTS daily_chatters (
+                guild_id TEXT NOT NULL,
+                day INTEGER NOT NULL,
+                sketch BLOB NOT NULL,
+                PRIMARY KEY (guild_id, day)
+            ) WITHOUT ROWID
+        """);
+
+        // Create indexes
+        executeUpdate("CREATE INDEX IF NOT EXISTS idx_mod_actions_guild ON mod_actions(guild_id)");
+        executeUpdate("CREATE INDEX IF NOT EXISTS idx_mod_actions_moderator ON mod_actions(moderator_id)");
+        // Also orders a guild's rows by user for paging
+        executeUpdate("DROP INDEX IF EXISTS idx_user_xp_guild");
+        executeUpdate("CREATE INDEX IF NOT EXISTS idx_user_xp_guild_user ON user_xp(guild_id, user_id)");
+        executeUpdate("CREATE INDEX IF NOT EXISTS idx_mod_actions_guild_time ON mod_actions(guild_id, timestamp)");
+        executeUpdate("CREATE INDEX IF NOT EXISTS idx_spam_warnings_guild_time ON spam_warnings(guild_id, last_warning)");
+        executeUpdate("CREATE INDEX IF NOT EXISTS idx_scheduled_actions_due ON scheduled_actions(due_at)");
+        executeUpdate("CREATE INDEX IF NOT EXISTS idx_user_total_xp_xp ON user_total_xp(xp)");
+
+        migrate();
+
+        logger.info("Database initialized~");
+    }
+
+    // Brings databases created by older versions up to the current schema
+    private void migrate() throws SQLException {
+        addColumnIfMissing("guild_settings", "xp_cooldown_seconds", "INTEGER");
+        addColumnIfMissing("guild_settings", "warning_decay_days", "INTEGER");
+        addColumnIfMissing("guild_settings", "mod_action_retention_days", "INTEGER");
+        addColumnIfMissing("guild_settings", "level_up_mode", "TEXT");
+        addColumnIfMissing("guild_settings", "level_up_channel_id", "TEXT");
+        addColumnIfMissing("guild_settings", "raid_join_threshold", "INTEGER");
+        addColumnIfMissing("guild_settings", "mod_alert_channel_id", "TEXT");
+        addColumnIfMissing("guild_settings", "level_curve", "TEXT");
+        addColumnIfMissing("guild_settings", "message_log_channel_id", "TEXT");
+        addColumnIfMissing("guild_settings", "raid_lockdown_until", "INTEGER");
+        addColumnIfMissing("guild_settings", "raid_previous_verification", "INTEGER");
+        createTotalXpTriggers();
+    }
+
+    // Every write to user_xp updates user_total_xp in the same transaction. Databases from
+    // before the table existed get it filled in once, together with the triggers.
+    private void createTotalXpTriggers() throws SQLException {
+        if (queryInt("SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' AND name = 'user_xp_total_insert'") > 0) {
+            return;
+        }
+        connection.setAutoCommit(false);
+        try {
+            executeUpdate("DELETE FROM user_total_xp");
+            executeUpdate("INSERT INTO user_total_xp (user_id, xp) SELECT user_id, SUM(xp) FROM user_xp GROUP BY user_id");
+            executeUpdate("""
+                CREATE TRIGGER user_xp_total_insert AFTER INSERT ON user_xp BEGIN
+                    INSERT OR IGNORE INTO user_total_xp (user_id, xp) VALUES (NEW.user_id, 0);
+                    UPDATE user_total_xp SET xp = xp + NEW.xp WHERE user_id = NEW.user_id;
+                END
+            """);
+            executeUpdate("""
+                CREATE TRIGGER user_xp_total_update AFTER UPDATE OF xp ON user_xp WHEN NEW.xp <> OLD.xp BEGIN
+                    UPDATE user_total_xp SET xp = xp + NEW.xp - OLD.xp WHERE user_id = NEW.user_id;
+                END
+            """);
+            executeUpdate("""
+                CREATE TRIGGER user_xp_total_delete AFTER DELETE ON user_xp BEGIN
+                    UPDATE user_total_xp SET xp = xp - OLD.xp WHERE user_id = OLD.user_id;
+                END
+            """);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        logger.info("Totalled XP for {} users across guilds~", queryInt("SELECT COUNT(*) FROM user_total_xp"));
+    }
+
+    private void addColumnIfMissing(String table, String column, String definition) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")");
+            while (rs.next()) {
+                if (rs.getString("name").equalsIgnoreCase(column)) {
+                    return;
+                }
+            }
+        }
+        executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        logger.info("Added column {}.{}~", table, column);
+    }
+
+    private void executeUpdate(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
+    private int queryInt(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            ResultSet rs = stmt.executeQuery(sql);
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Retention
+    @Override
+    public List<Long> getGuildIdsWithHistory() {
+        List<Long> guildIds = new ArrayList<>();
+        String sql = "SELECT guild_id FROM mod_actions UNION SELECT guild_id FROM spam_warnings";
+        synchronized (connection) {
+            try (Statement stmt = connection.createStatement()) {
+                ResultSet rs = stmt.executeQuery(sql);
+                while (rs.next()) {
+                    guildIds.add(Long.parseLong(rs.getString("guild_id")));
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting guild IDs: {}", e.getMessage());
+            }
+        }
+        return guildIds;
+    }
+
+    @Override
+    public int expireSpamWarnings(long guildId, long before, int limit) {
+        String sql = """
+            DELETE FROM spam_warnings WHERE rowid IN (
+                SELECT rowid FROM spam_warnings WHERE guild_id = ? AND last_warning < ? LIMIT ?
+            )
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(guildId));
+                stmt.setLong(2, before);
+                stmt.setInt(3, limit);
+                return stmt.executeUpdate();
+            } catch (SQLException e) {
+                logger.error("Error expiring spam warnings: {}", e.getMessage());
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public List<ModAction> getModActionsBefore(long guildId, long before, int limit) {
+        List<ModAction> actions = new ArrayList<>();
+        String sql = """
+            SELECT id, moderator_id, target_id, action_type, reason, timestamp
+            FROM mod_actions WHERE guild_id = ? AND timestamp < ? ORDER BY timestamp LIMIT ?
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(guildId));
+                stmt.setLong(2, before);
+                stmt.setInt(3, limit);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    ModAction action = new ModAction();
+                    action.setId(rs.getLong("id"));
+                    action.setGuildId(guildId);
+                    action.setModeratorId(Long.parseLong(rs.getString("moderator_id")));
+                    action.setTargetId(Long.parseLong(rs.getString("target_id")));
+                    action.setActionType(rs.getString("action_type"));
+                    action.setReason(rs.getString("reason"));
+                    action.setTimestamp(rs.getLong("timestamp"));
+                    actions.add(action);
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting old mod actions: {}", e.getMessage());
+            }
+        }
+        return actions;
+    }
+
+    @Override
+    public int archiveModActions(long guildId, List<ModAction> actions) {
+        String deleteSql = "DELETE FROM mod_actions WHERE id = ?";
+        String countSql = """
+            INSERT INTO mod_action_counts (guild_id, moderator_id, action_type, count) VALUES (?, ?, ?, ?)
+            ON CONFLICT(guild_id, moderator_id, action_type) DO UPDATE SET count = count + excluded.count
+        """;
+        synchronized (connection) {
+            try (PreparedStatement delete = connection.prepareStatement(deleteSql);
+                 PreparedStatement count = connection.prepareStatement(countSql)) {
+                connection.setAutoCommit(false);
+                try {
+                    for (ModAction action : actions) {
+                        delete.setLong(1, action.getId());
+                        delete.addBatch();
+                    }
+                    int[] deletedCounts = delete.executeBatch();
+                    List<ModAction> deleted = new ArrayList<>();
+                    for (int i = 0; i < deletedCounts.length; i++) {
+                        if (deletedCounts[i] > 0) {
+                            deleted.add(actions.get(i));
+                        }
+                    }
+                    for (Map.Entry<String, Integer> entry : ModAction.countByModeratorAndType(deleted).entrySet()) {
+                        String[] key = entry.getKey().split(":", 2);
+                        count.setString(1, String.valueOf(guildId));
+                        count.setString(2, key[0]);
+                        count.setString(3, key[1]);
+                        count.setInt(4, entry.getValue());
+                        count.addBatch();
+                    }
+                    count.executeBatch();
+                    connection.commit();
+                    return deleted.size();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                logger.error("Error archiving {} mod actions: {}", actions.size(), e.getMessage());
+                return -1;
+            }
+        }
+    }
+
+    // Maintenance
+
+    /**
+     * Copies the live database to {@code target} through SQLite's backup API.
+     * The copy runs on its own read-only connection inside one read transaction,
+     * so it sees a consistent snapshot while writers keep going on the WAL.
+     * Pages are copied {@code pagesPerStep} at a time with a pause after each step.
+     */
+    public void backup(Path target, int pagesPerStep, long pauseMillis) throws SQLException, IOException {
+        Path partial = target.resolveSibling(target.getFileName() + ".partial");
+        Files.deleteIfExists(partial);
+
+        SQLiteConfig readOnly = new SQLiteConfig();
+        readOnly.setReadOnly(true);
+        long begin = System.nanoTime();
+        try (Connection reader = readOnly.createConnection("jdbc:sqlite:" + databasePath)) {
+            reader.setAutoCommit(false);
+            try (Statement stmt = reader.createStatement()) {
+                // Opens the read snapshot the whole backup is taken from
+                stmt.executeQuery("SELECT count(*) FROM sqlite_master").close();
+            }
+            int[] pages = new int[1];
+            int rc = ((SQLiteConnection) reader).getDatabase().backup("main", partial.toString(), (remaining, pageCount) -> {
+                pages[0] = pageCount;
+                if (remaining > 0) {
+                    pause(pauseMillis);
+                }
+            }, 50, 100, pagesPerStep);
+            reader.commit();
+            if (rc != 0) {
+                throw new SQLException("Backup failed with SQLite code " + rc);
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Backed up {} pages to {} in {}ms~", pages[0], target,
+                    (System.nanoTime() - begin) / 1_000_000);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    public boolean needsVacuumRebuild() {
+        synchronized (connection) {
+            return needsVacuumRebuild;
+        }
+    }
+
+    /**
+     * Rebuilds a database from before incremental vacuum so it can use it, once.
+     * Every other statement waits while the whole file is rewritten, so this only
+     * runs during startup, never once the bot is handling events. Returns false if
+     * there was nothing to do.
+     */
+    public boolean rebuildForIncrementalVacuum() throws SQLException {
+        synchronized (connection) {
+            if (!needsVacuumRebuild) {
+                return false;
+            }
+            logger.info("Rebuilding database for incremental vacuum, this only happens once~");
+            long begin = System.nanoTime();
+            // The mode only sticks to this connection until the VACUUM applies it
+            executeUpdate("PRAGMA auto_vacuum = INCREMENTAL");
+            executeUpdate("VACUUM");
+            needsVacuumRebuild = false;
+            logger.info("Rebuilt database in {}ms~", (System.nanoTime() - begin) / 1_000_000);
+        }
+        return true;
+    }
+
+    /**
+     * Hands free pages back to the filesystem {@code pagesPerStep} at a time,
+     * stopping after {@code maxPages}. Each step is its own short write transaction.
+     */
+    public int incrementalVacuum(int pagesPerStep, int maxPages, long pauseMillis) throws SQLException {
+        int freed = 0;
+        while (freed < maxPages) {
+            int step;
+            synchronized (connection) {
+                int free = queryInt("PRAGMA freelist_count");
+                if (free == 0) {
+                    break;
+                }
+                step = Math.min(Math.min(pagesPerStep, free), maxPages - freed);
+                // executeUpdate steps the pragma to completion, execute() would free a single page
+                executeUpdate("PRAGMA incremental_vacuum(" + step + ")");
+            }
+            freed += step;
+            pause(pauseMillis);
+        }
+        if (freed > 0) {
+            logger.debug("Incremental vacuum freed {} pages~", freed);
+        }
+        return freed;
+    }
+
+    /**
+     * Copies committed WAL frames back into the main file from a separate
+     * connection, so the fsync happens here instead of inside someone's XP write.
+     */
+    public void checkpoint() throws SQLException {
+        if (checkpointConnection == null) {
+            checkpointConnection = DriverManager.getConnection("jdbc:sqlite:" + databasePath);
+        }
+        try (Statement stmt = checkpointConnection.createStatement()) {
+            stmt.executeQuery("PRAGMA wal_checkpoint(PASSIVE)").close();
+        }
+    }
+
+    /**
+     * Refreshes the planner statistics and folds the whole WAL back into the
+     * main file, so the next start opens a small, up-to-date database.
+     */
+    @Override
+    public void optimize() {
+        synchronized (connection) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("PRAGMA optimize");
+                stmt.executeQuery("PRAGMA wal_checkpoint(TRUNCATE)").close();
+            } catch (SQLException e) {
+                logger.error("Error optimizing database: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Guild Settings
+    @Override
+    public void preloadGuildSettings() throws SQLException {
+        String sql = """
+            SELECT guild_id, prefix, spam_filter_enabled, leveling_enabled, xp_cooldown_seconds,
+                   warning_decay_days, mod_action_retention_days, level_up_mode, level_up_channel_id,
+                   raid_join_threshold, mod_alert_channel_id, level_curve, message_log_channel_id,
+                   raid_lockdown_until, raid_previous_verification
+            FROM guild_settings
+        """;
+        synchronized (connection) {
+            try (Statement stmt = connection.createStatement()) {
+                ResultSet rs = stmt.executeQuery(sql);
+                while (rs.next()) {
+                    GuildSettings settings = readGuildSettings(rs, Long.parseLong(rs.getString("guild_id")));
+                    guildSettingsCache.put(settings.getGuildId(), settings);
+                }
+            }
+            // Every write goes through setGuildSettings, so a miss now means "no row"
+            guildSettingsPreloaded = true;
+            logger.info("Preloaded settings for {} guilds~", guildSettingsCache.size());
+        }
+    }
+
+    @Override
+    public GuildSettings getGuildSettings(long guildId) {
+        GuildSettings cached = guildSettingsCache.get(guildId);
+        if (cached != null || guildSettingsPreloaded) {
+            return cached;
+        }
+
+        String sql = """
+            SELECT prefix, spam_filter_enabled, leveling_enabled, xp_cooldown_seconds,
+                   warning_decay_days, mod_action_retention_days, level_up_mode, level_up_channel_id,
+                   raid_join_threshold, mod_alert_channel_id, level_curve, message_log_channel_id,
+                   raid_lockdown_until, raid_previous_verification
+            FROM guild_settings WHERE guild_id = ?
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(guildId));
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    GuildSettings settings = readGuildSettings(rs, guildId);
+                    guildSettingsCache.put(guildId, settings);
+                    return settings;
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting guild settings: {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private GuildSettings readGuildSettings(ResultSet rs, long guildId) throws SQLException {
+        GuildSettings settings = new GuildSettings();
+        settings.setGuildId(guildId);
+        settings.setPrefix(rs.getString("prefix"));
+        settings.setSpamFilterEnabled(rs.getInt("spam_filter_enabled") == 1);
+        settings.setLevelingEnabled(rs.getInt("leveling_enabled") == 1);
+        settings.setXpCooldownSeconds(getOptionalInt(rs, "xp_cooldown_seconds"));
+        settings.setWarningDecayDays(getOptionalInt(rs, "warning_decay_days"));
+        settings.setModActionRetentionDays(getOptionalInt(rs, "mod_action_retention_days"));
+        String levelUpMode = rs.getString("level_up_mode");
+        settings.setLevelUpMode(levelUpMode != null ? levelUpMode : GuildSettings.LEVEL_UP_HERE);
+        String levelUpChannel = rs.getString("level_up_channel_id");
+        settings.setLevelUpChannelId(levelUpChannel != null ? Long.parseLong(levelUpChannel) : 0);
+        settings.setRaidJoinThreshold(getOptionalInt(rs, "raid_join_threshold"));
+        String modAlertChannel = rs.getString("mod_alert_channel_id");
+        settings.setModAlertChannelId(modAlertChannel != null ? Long.parseLong(modAlertChannel) : 0);
+        settings.setLevelCurve(rs.getString("level_curve"));
+        String messageLogChannel = rs.getString("message_log_channel_id");
+        settings.setMessageLogChannelId(messageLogChannel != null ? Long.parseLong(messageLogChannel) : 0);
+        settings.setRaidLockdownUntil(rs.getLong("raid_lockdown_until"));
+        settings.setRaidPreviousVerification(getOptionalInt(rs, "raid_previous_verification"));
+        return settings;
+    }
+
+    // NULL columns map to -1 ("use the default")
+    private static int getOptionalInt(ResultSet rs, String column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? -1 : value;
+    }
+
+    private static void setOptionalInt(PreparedStatement stmt, int index, int value) throws SQLException {
+        if (value >= 0) {
+            stmt.setInt(index, value);
+        } else {
+            stmt.setNull(index, Types.INTEGER);
+        }
+    }
+
+    @Override
+    public void setGuildSettings(GuildSettings settings) {
+        String sql = """
+            INSERT OR REPLACE INTO guild_settings
+                (guild_id, prefix, spam_filter_enabled, leveling_enabled, xp_cooldown_seconds,
+                 warning_decay_days, mod_action_retention_days, level_up_mode, level_up_channel_id,
+                 raid_join_threshold, mod_alert_channel_id, level_curve, message_log_channel_id,
+                 raid_lockdown_until, raid_previous_verification)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(settings.getGuildId()));
+                stmt.setString(2, settings.getPrefix());
+                stmt.setInt(3, settings.isSpamFilterEnabled() ? 1 : 0);
+                stmt.setInt(4, settings.isLevelingEnabled() ? 1 : 0);
+                setOptionalInt(stmt, 5, settings.getXpCooldownSeconds());
+                setOptionalInt(stmt, 6, settings.getWarningDecayDays());
+                setOptionalInt(stmt, 7, settings.getModActionRetentionDays());
+                stmt.setString(8, settings.getLevelUpMode());
+                stmt.setString(9, settings.getLevelUpChannelId() != 0 ? String.valueOf(settings.getLevelUpChannelId()) : null);
+                setOptionalInt(stmt, 10, settings.getRaidJoinThreshold());
+                stmt.setString(11, settings.getModAlertChannelId() != 0 ? String.valueOf(settings.getModAlertChannelId()) : null);
+                stmt.setString(12, settings.getLevelCurve());
+                stmt.setString(13, settings.getMessageLogChannelId() != 0 ? String.valueOf(settings.getMessageLogChannelId()) : null);
+                stmt.setLong(14, settings.getRaidLockdownUntil());
+                setOptionalInt(stmt, 15, settings.getRaidPreviousVerification());
+                stmt.executeUpdate();
+                guildSettingsCache.put(settings.getGuildId(), settings);
+            } catch (SQLException e) {
+                logger.error("Error setting guild settings: {}", e.getMessage());
+            }
+        }
+    }
+
+    // XP/Leveling
+    @Override
+    public UserXp getUserXp(long userId, long guildId) {
+        String sql = "SELECT xp, level FROM user_xp WHERE user_id = ? AND guild_id = ?";
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(userId));
+                stmt.setString(2, String.valueOf(guildId));
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    UserXp xp = new UserXp();
+                    xp.setUserId(userId);
+                    xp.setGuildId(guildId);
+                    xp.setXp(rs.getLong("xp"));
+                    xp.setLevel(rs.getInt("level"));
+                    return xp;
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting user XP: {}", e.getMessage());
+            }
+        }
+        UserXp xp = new UserXp();
+        xp.setUserId(userId);
+        xp.setGuildId(guildId);
+        return xp;
+    }
+
+    @Override
+    public void addXp(long userId, long guildId, long amount) {
+        String sql = """
+            INSERT INTO user_xp (user_id, guild_id, xp, level) VALUES (?, ?, ?, 0)
+            ON CONFLICT(user_id, guild_id) DO UPDATE SET xp = xp + ?
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(userId));
+                stmt.setString(2, String.valueOf(guildId));
+                stmt.setLong(3, amount);
+                stmt.setLong(4, amount);
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                logger.error("Error adding XP: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Adds XP in one statement, then works the levels out from the XP range the award covered.
+    // Concurrent awards for the same user are serialized by SQLite, so each covers a disjoint
+    // range and a level threshold can only be crossed (and announced) once. The stored level is
+    // only rewritten when it's off, and only if no later award has moved the XP since.
+    @Override
+    public XpAward awardXp(long userId, long guildId, long amount, LevelCurve curve) {
+        String sql = """
+            INSERT INTO user_xp (user_id, guild_id, xp, level) VALUES (?, ?, ?, ?)
+            ON CONFLICT(user_id, guild_id) DO UPDATE SET xp = xp + excluded.xp
+            RETURNING xp, level
+        """;
+        XpAward award = new XpAward();
+        synchronized (connection) {
+            try {
+                long xp;
+                int storedLevel;
+                // The upsert has to be finished (statement closed) before the next write can commit
+                try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                    stmt.setString(1, String.valueOf(userId));
+                    stmt.setString(2, String.valueOf(guildId));
+                    stmt.setLong(3, amount);
+                    stmt.setInt(4, curve.levelFor(amount));
+                    ResultSet rs = stmt.executeQuery();
+                    if (!rs.next()) {
+                        return award;
+                    }
+                    xp = rs.getLong("xp");
+                    storedLevel = rs.getInt("level");
+                }
+                award.setXp(xp);
+                award.setOldLevel(curve.levelFor(xp - amount));
+                award.setNewLevel(curve.levelFor(xp));
+                if (storedLevel != award.getNewLevel()) {
+                    try (PreparedStatement stmt = connection.prepareStatement(
+                            "UPDATE user_xp SET level = ? WHERE user_id = ? AND guild_id = ? AND xp = ?")) {
+                        stmt.setInt(1, award.getNewLevel());
+                        stmt.setString(2, String.valueOf(userId));
+                        stmt.setString(3, String.valueOf(guildId));
+                        stmt.setLong(4, xp);
+                        stmt.executeUpdate();
+                    }
+                }
+            } catch (SQLException e) {
+                logger.error("Error awarding XP: {}", e.getMessage());
+            }
+        }
+        return award;
+    }
+
+    @Override
+    public List<UserXp> getLeaderboard(long guildId, int limit) {
+        List<UserXp> leaderboard = new ArrayList<>();
+        String sql = "SELECT user_id, xp, level FROM user_xp WHERE guild_id = ? ORDER BY xp DESC LIMIT ?";
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(guildId));
+                stmt.setInt(2, limit);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    UserXp xp = new UserXp();
+                    xp.setUserId(Long.parseLong(rs.getString("user_id")));
+                    xp.setGuildId(guildId);
+                    xp.setXp(rs.getLong("xp"));
+                    xp.setLevel(rs.getInt("level"));
+                    leaderboard.add(xp);
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting leaderboard: {}", e.getMessage());
+            }
+        }
+        return leaderboard;
+    }
+
+    @Override
+    public boolean importXp(long guildId, List<UserXp> rows, LevelCurve curve) {
+        String sql = """
+            INSERT INTO user_xp (user_id, guild_id, xp, level) VALUES (?, ?, ?, ?)
+            ON CONFLICT(user_id, guild_id) DO UPDATE SET xp = excluded.xp, level = excluded.level
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                connection.setAutoCommit(false);
+                try {
+                    for (UserXp row : rows) {
+                        stmt.setString(1, String.valueOf(row.getUserId()));
+                        stmt.setString(2, String.valueOf(guildId));
+                        stmt.setLong(3, row.getXp());
+                        stmt.setInt(4, curve.levelFor(row.getXp()));
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    connection.commit();
+                    return true;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                logger.error("Error importing {} XP rows: {}", rows.size(), e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public List<UserXp> getGlobalLeaderboard(int limit) {
+        List<UserXp> leaderboard = new ArrayList<>();
+        String sql = "SELECT user_id, xp FROM user_total_xp ORDER BY xp DESC LIMIT ?";
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setInt(1, limit);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    UserXp xp = new UserXp();
+                    xp.setUserId(Long.parseLong(rs.getString("user_id")));
+                    xp.setXp(rs.getLong("xp"));
+                    leaderboard.add(xp);
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting global leaderboard: {}", e.getMessage());
+            }
+        }
+        return leaderboard;
+    }
+
+    @Override
+    public long getTotalXp(long userId) {
+        String sql = "SELECT xp FROM user_total_xp WHERE user_id = ?";
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(userId));
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    return rs.getLong("xp");
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting total XP: {}", e.getMessage());
+            }
+        }
+        return 0;
+    }
+
+    // IDs are stored as text, so pages follow text order; "" sorts before every ID
+    @Override
+    public List<UserXp> getXpPage(long guildId, long afterUserId, int limit) {
+        List<UserXp> page = new ArrayList<>();
+        String sql = "SELECT user_id, xp, level FROM user_xp WHERE guild_id = ? AND user_id > ? ORDER BY user_id LIMIT ?";
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(guildId));
+                stmt.setString(2, afterUserId != 0 ? String.valueOf(afterUserId) : "");
+                stmt.setInt(3, limit);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    UserXp xp = new UserXp();
+                    xp.setUserId(Long.parseLong(rs.getString("user_id")));
+                    xp.setGuildId(guildId);
+                    xp.setXp(rs.getLong("xp"));
+                    xp.setLevel(rs.getInt("level"));
+                    page.add(xp);
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting XP page: {}", e.getMessage());
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void updateLevels(long guildId, List<UserXp> rows) {
+        String sql = "UPDATE user_xp SET level = ? WHERE user_id = ? AND guild_id = ? AND xp = ?";
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                connection.setAutoCommit(false);
+                try {
+                    for (UserXp row : rows) {
+                        stmt.setInt(1, row.getLevel());
+                        stmt.setString(2, String.valueOf(row.getUserId()));
+                        stmt.setString(3, String.valueOf(guildId));
+                        stmt.setLong(4, row.getXp());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                logger.error("Error updating {} levels: {}", rows.size(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void forEachUserXp(long guildId, Consumer<UserXp> visitor) {
+        String sql = "SELECT user_id, xp, level FROM user_xp WHERE guild_id = ?";
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(guildId));
+                ResultSet rs = stmt.executeQuery();
+                UserXp xp = new UserXp();
+                xp.setGuildId(guildId);
+                while (rs.next()) {
+                    xp.setUserId(Long.parseLong(rs.getString("user_id")));
+                    xp.setXp(rs.getLong("xp"));
+                    xp.setLevel(rs.getInt("level"));
+                    visitor.accept(xp);
+                }
+            } catch (SQLException e) {
+                logger.error("Error streaming XP: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Mod Actions
+    @Override
+    public void logModAction(ModAction action) {
+        String sql = """
+            INSERT INTO mod_actions (guild_id, moderator_id, target_id, action_type, reason, timestamp)
+            VALUES (?, ?, ?, ?, ?, ?)
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(action.getGuildId()));
+                stmt.setString(2, String.valueOf(action.getModeratorId()));
+                stmt.setString(3, String.valueOf(action.getTargetId()));
+                stmt.setString(4, action.getActionType());
+                stmt.setString(5, action.getReason());
+                stmt.setLong(6, action.getTimestamp());
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                logger.error("Error logging mod action: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public boolean logModActions(List<ModAction> actions) {
+        String sql = """
+            INSERT INTO mod_actions (guild_id, moderator_id, target_id, action_type, reason, timestamp)
+            VALUES (?, ?, ?, ?, ?, ?)
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                connection.setAutoCommit(false);
+                try {
+                    for (ModAction action : actions) {
+                        stmt.setString(1, String.valueOf(action.getGuildId()));
+                        stmt.setString(2, String.valueOf(action.getModeratorId()));
+                        stmt.setString(3, String.valueOf(action.getTargetId()));
+                        stmt.setString(4, action.getActionType());
+                        stmt.setString(5, action.getReason());
+                        stmt.setLong(6, action.getTimestamp());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    connection.commit();
+                    return true;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                logger.error("Error logging {} mod actions: {}", actions.size(), e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public List<ModAction> getModActions(long guildId, int limit) {
+        List<ModAction> actions = new ArrayList<>();
+        String sql = """
+            SELECT id, moderator_id, target_id, action_type, reason, timestamp
+            FROM mod_actions WHERE guild_id = ? ORDER BY timestamp DESC LIMIT ?
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(guildId));
+                stmt.setInt(2, limit);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    ModAction action = new ModAction();
+                    action.setId(rs.getLong("id"));
+                    action.setGuildId(guildId);
+                    action.setModeratorId(Long.parseLong(rs.getString("moderator_id")));
+                    action.setTargetId(Long.parseLong(rs.getString("target_id")));
+                    action.setActionType(rs.getString("action_type"));
+                    action.setReason(rs.getString("reason"));
+                    action.setTimestamp(rs.getLong("timestamp"));
+                    actions.add(action);
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting mod actions: {}", e.getMessage());
+            }
+        }
+        return actions;
+    }
+
+    @Override
+    public ModStats getModStats(long guildId, long moderatorId) {
+        ModStats stats = new ModStats();
+        // Live rows plus whatever retention has already archived
+        String sql = """
+            SELECT action_type, SUM(count) as count FROM (
+                SELECT action_type, COUNT(*) as count FROM mod_actions
+                WHERE guild_id = ?1 AND moderator_id = ?2 GROUP BY action_type
+                UNION ALL
+                SELECT action_type, count FROM mod_action_counts
+                WHERE guild_id = ?1 AND moderator_id = ?2
+            ) GROUP BY action_type
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(guildId));
+                stmt.setString(2, String.valueOf(moderatorId));
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    String type = rs.getString("action_type");
+                    int count = rs.getInt("count");
+                    switch (type) {
+                        case "ban" -> stats.setBanCount(count);
+                        case "kick" -> stats.setKickCount(count);
+                        case "timeout" -> stats.setTimeoutCount(count);
+                    }
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting mod stats: {}", e.getMessage());
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public void forEachModAction(long guildId, Consumer<ModAction> visitor) {
+        String sql = """
+            SELECT id, moderator_id, target_id, action_type, reason, timestamp
+            FROM mod_actions WHERE guild_id = ? ORDER BY timestamp
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(guildId));
+                ResultSet rs = stmt.executeQuery();
+                ModAction action = new ModAction();
+                action.setGuildId(guildId);
+                while (rs.next()) {
+                    action.setId(rs.getLong("id"));
+                    action.setModeratorId(Long.parseLong(rs.getString("moderator_id")));
+                    action.setTargetId(Long.parseLong(rs.getString("target_id")));
+                    action.setActionType(rs.getString("action_type"));
+                    action.setReason(rs.getString("reason"));
+                    action.setTimestamp(rs.getLong("timestamp"));
+                    visitor.accept(action);
+                }
+            } catch (SQLException e) {
+                logger.error("Error streaming mod actions: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Activity
+    @Override
+    public void addActivity(List<ActivityRow> rows, long hourlyBefore, long dailyBefore) {
+        String hourlySql = """
+            INSERT INTO activity_hourly (guild_id, hour, channel_id, messages, peak) VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT(guild_id, hour, channel_id) DO UPDATE SET
+                messages = messages + excluded.messages, peak = MAX(peak, excluded.peak)
+        """;
+        String dailySql = """
+            INSERT INTO activity_daily (guild_id, day, channel_id, messages, peak)
+            SELECT guild_id, ?, channel_id, SUM(messages), MAX(peak) FROM activity_hourly
+            WHERE guild_id = ? AND hour >= ? AND hour < ? GROUP BY guild_id, channel_id
+            ON CONFLICT(guild_id, day, channel_id) DO UPDATE SET messages = excluded.messages, peak = excluded.peak
+        """;
+        String pruneHourlySql = "DELETE FROM activity_hourly WHERE guild_id = ? AND hour < ?";
+        String pruneDailySql = "DELETE FROM activity_daily WHERE guild_id = ? AND day < ?";
+        synchronized (connection) {
+            try (PreparedStatement hourly = connection.prepareStatement(hourlySql);
+                 PreparedStatement daily = connection.prepareStatement(dailySql);
+                 PreparedStatement pruneHourly = connection.prepareStatement(pruneHourlySql);
+                 PreparedStatement pruneDaily = connection.prepareStatement(pruneDailySql)) {
+                connection.setAutoCommit(false);
+                try {
+                    for (ActivityRow row : rows) {
+                        hourly.setString(1, String.valueOf(row.getGuildId()));
+                        hourly.setLong(2, row.getPeriod());
+                        hourly.setString(3, String.valueOf(row.getChannelId()));
+                        hourly.setLong(4, row.getMessages());
+                        hourly.setInt(5, row.getPeak());
+                        hourly.addBatch();
+                    }
+                    hourly.executeBatch();
+
+                    // Each guild-hour comes as a guild row followed by its channels
+                    for (ActivityRow row : rows) {
+                        if (row.getChannelId() != ActivityRow.GUILD) {
+                            continue;
+                        }
+                        String guildId = String.valueOf(row.getGuildId());
+                        long day = row.getPeriod() / 24;
+                        daily.setLong(1, day);
+                        daily.setString(2, guildId);
+                        daily.setLong(3, day * 24);
+                        daily.setLong(4, day * 24 + 24);
+                        daily.addBatch();
+                        pruneHourly.setString(1, guildId);
+                        pruneHourly.setLong(2, hourlyBefore);
+                        pruneHourly.addBatch();
+                        pruneDaily.setString(1, guildId);
+                        pruneDaily.setLong(2, dailyBefore);
+                        pruneDaily.addBatch();
+                    }
+                    daily.executeBatch();
+                    pruneHourly.executeBatch();
+                    pruneDaily.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                logger.error("Error saving {} activity rows: {}", rows.size(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public List<ActivityRow> getHourlyActivity(long guildId, long fromHour) {
+        String sql = "SELECT hour, channel_id, messages, peak FROM activity_hourly WHERE guild_id = ? AND hour >= ? ORDER BY hour";
+        List<ActivityRow> rows = new ArrayList<>();
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(guildId));
+                stmt.setLong(2, fromHour);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    rows.add(readActivityRow(guildId, rs.getLong("hour"), rs));
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting hourly activity: {}", e.getMessage());
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public List<ActivityRow> getDailyActivity(long guildId, long fromDay) {
+        String sql = "SELECT day, channel_id, messages, peak FROM activity_daily WHERE guild_id = ? AND day >= ? AND channel_id = '0' ORDER BY day";
+        List<ActivityRow> rows = new ArrayList<>();
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(guildId));
+                stmt.setLong(2, fromDay);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    rows.add(readActivityRow(guildId, rs.getLong("day"), rs));
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting daily activity: {}", e.getMessage());
+            }
+        }
+        return rows;
+    }
+
+    private static ActivityRow readActivityRow(long guildId, long period, ResultSet rs) throws SQLException {
+        ActivityRow row = new ActivityRow();
+        row.setGuildId(guildId);
+        row.setPeriod(period);
+        row.setChannelId(Long.parseLong(rs.getString("channel_id")));
+        row.setMessages(rs.getLong("messages"));
+        row.setPeak(rs.getInt("peak"));
+        return row;
+    }
+
+    @Override
+    public void mergeChatterSketches(List<ChatterSketch> sketches, long before) {
+        String selectSql = "SELECT sketch FROM daily_chatters WHERE guild_id = ? AND day = ?";
+        String upsertSql = """
+            INSERT INTO daily_chatters (guild_id, day, sketch) VALUES (?, ?, ?)
+            ON CONFLICT(guild_id, day) DO UPDATE SET sketch = excluded.sketch
+        """;
+        String pruneSql = "DELETE FROM daily_chatters WHERE guild_id = ? AND day < ?";
+        synchronized (connection) {
+            try (PreparedStatement select = connection.prepareStatement(selectSql);
+                 PreparedStatement upsert = connection.prepareStatement(upsertSql);
+                 PreparedStatement prune = connection.prepareStatement(pruneSql)) {
+                connection.setAutoCommit(false);
+                try {
+                    for (ChatterSketch sketch : sketches) {
+                        String guildId = String.valueOf(sketch.getGuildId());
+                        select.setString(1, guildId);
+                        select.setLong(2, sketch.getDay());
+                        byte[] stored = null;
+                        try (ResultSet rs = select.executeQuery()) {
+                            if (rs.next()) {
+                                stored = rs.getBytes("sketch");
+                            }
+                        }
+                        upsert.setString(1, guildId);
+                        upsert.setLong(2, sketch.getDay());
+                        upsert.setBytes(3, ChatterSketch.merge(stored, sketch.getSketch()));
+                        upsert.executeUpdate();
+                        prune.setString(1, guildId);
+                        prune.setLong(2, before);
+                        prune.executeUpdate();
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                logger.error("Error saving {} chatter sketches: {}", sketches.size(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public List<ChatterSketch> getChatterSketches(long guildId, long fromDay) {
+        String sql = "SELECT day, sketch FROM daily_chatters WHERE guild_id = ? AND day >= ? ORDER BY day";
+        List<ChatterSketch> sketches = new ArrayList<>();
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(guildId));
+                stmt.setLong(2, fromDay);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    ChatterSketch sketch = new ChatterSketch();
+                    sketch.setGuildId(guildId);
+                    sketch.setDay(rs.getLong("day"));
+                    sketch.setSketch(rs.getBytes("sketch"));
+                    sketches.add(sketch);
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting chatter sketches: {}", e.getMessage());
+            }
+        }
+        return sketches;
+    }
+
+    // Auto-clean
+    @Override
+    public AutoCleanConfig getAutoCleanConfig(long guildId, long channelId) {
+        String sql = """
+            SELECT interval_minutes, message_count, enabled
+            FROM auto_clean_config WHERE guild_id = ? AND channel_id = ?
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(guildId));
+                stmt.setString(2, String.valueOf(channelId));
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    AutoCleanConfig config = new AutoCleanConfig();
+                    config.setGuildId(guildId);
+                    config.setChannelId(channelId);
+                    config.setIntervalMinutes(rs.getInt("interval_minutes"));
+                    config.setMessageCount(rs.getInt("message_count"));
+                    config.setEnabled(rs.getInt("enabled") == 1);
+                    return config;
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting auto-clean config: {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void setAutoCleanConfig(AutoCleanConfig config) {
+        String sql = """
+            INSERT OR REPLACE INTO auto_clean_config (guild_id, channel_id, interval_minutes, message_count, enabled)
+            VALUES (?, ?, ?, ?, ?)
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(config.getGuildId()));
+                stmt.setString(2, String.valueOf(config.getChannelId()));
+                stmt.setInt(3, config.getIntervalMinutes());
+                stmt.setInt(4, config.getMessageCount());
+                stmt.setInt(5, config.isEnabled() ? 1 : 0);
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                logger.error("Error setting auto-clean config: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void removeAutoCleanConfig(long guildId, long channelId) {
+        String sql = "DELETE FROM auto_clean_config WHERE guild_id = ? AND channel_id = ?";
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(guildId));
+                stmt.setString(2, String.valueOf(channelId));
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                logger.error("Error removing auto-clean config: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public List<AutoCleanConfig> getAllAutoCleanConfigs() {
+        List<AutoCleanConfig> configs = new ArrayList<>();
+        String sql = """
+            SELECT guild_id, channel_id, interval_minutes, message_count, enabled
+            FROM auto_clean_config WHERE enabled = 1
+        """;
+        synchronized (connection) {
+            try (Statement stmt = connection.createStatement()) {
+                ResultSet rs = stmt.executeQuery(sql);
+                while (rs.next()) {
+                    AutoCleanConfig config = new AutoCleanConfig();
+                    config.setGuildId(Long.parseLong(rs.getString("guild_id")));
+                    config.setChannelId(Long.parseLong(rs.getString("channel_id")));
+                    config.setIntervalMinutes(rs.getInt("interval_minutes"));
+                    config.setMessageCount(rs.getInt("message_count"));
+                    config.setEnabled(rs.getInt("enabled") == 1);
+                    configs.add(config);
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting all auto-clean configs: {}", e.getMessage());
+            }
+        }
+        return configs;
+    }
+
+    // Spam warnings
+    @Override
+    public void addSpamWarning(long userId, long guildId) {
+        String sql = """
+            INSERT INTO spam_warnings (user_id, guild_id, warnings, last_warning) VALUES (?, ?, 1, ?)
+            ON CONFLICT(user_id, guild_id) DO UPDATE SET warnings = warnings + 1, last_warning = ?
+        """;
+        long now = System.currentTimeMillis() / 1000;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(userId));
+                stmt.setString(2, String.valueOf(guildId));
+                stmt.setLong(3, now);
+                stmt.setLong(4, now);
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                logger.error("Error adding spam warning: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public int getSpamWarnings(long userId, long guildId) {
+        String sql = "SELECT warnings FROM spam_warnings WHERE user_id = ? AND guild_id = ?";
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(userId));
+                stmt.setString(2, String.valueOf(guildId));
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    return rs.getInt("warnings");
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting spam warnings: {}", e.getMessage());
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void resetSpamWarnings(long userId, long guildId) {
+        String sql = "DELETE FROM spam_warnings WHERE user_id = ? AND guild_id = ?";
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(userId));
+                stmt.setString(2, String.valueOf(guildId));
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                logger.error("Error resetting spam warnings: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Scheduled actions
+    @Override
+    public long scheduleAction(ScheduledAction action) {
+        String sql = """
+            INSERT INTO scheduled_actions (guild_id, target_id, moderator_id, action_type, reason, due_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (guild_id, target_id, action_type) DO UPDATE SET
+                moderator_id = excluded.moderator_id, reason = excluded.reason, due_at = excluded.due_at
+            RETURNING id
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(action.getGuildId()));
+                stmt.setString(2, String.valueOf(action.getTargetId()));
+                stmt.setString(3, String.valueOf(action.getModeratorId()));
+                stmt.setString(4, action.getActionType());
+                stmt.setString(5, action.getReason());
+                stmt.setLong(6, action.getDueAt());
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    action.setId(rs.getLong(1));
+                    return action.getId();
+                }
+            } catch (SQLException e) {
+                logger.error("Error scheduling action: {}", e.getMessage());
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public ScheduledAction getScheduledAction(long id) {
+        String sql = """
+            SELECT id, guild_id, target_id, moderator_id, action_type, reason, due_at
+            FROM scheduled_actions WHERE id = ?
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setLong(1, id);
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    return readScheduledAction(rs);
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting scheduled action: {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<ScheduledAction> getScheduledActions(long dueFrom, long dueBefore, long afterId, int limit) {
+        List<ScheduledAction> actions = new ArrayList<>();
+        String sql = """
+            SELECT id, guild_id, target_id, moderator_id, action_type, reason, due_at
+            FROM scheduled_actions WHERE due_at >= ? AND due_at < ? AND id > ? ORDER BY id LIMIT ?
+        """;
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setLong(1, dueFrom);
+                stmt.setLong(2, dueBefore);
+                stmt.setLong(3, afterId);
+                stmt.setInt(4, limit);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    actions.add(readScheduledAction(rs));
+                }
+            } catch (SQLException e) {
+                logger.error("Error getting scheduled actions: {}", e.getMessage());
+            }
+        }
+        return actions;
+    }
+
+    private static ScheduledAction readScheduledAction(ResultSet rs) throws SQLException {
+        ScheduledAction action = new ScheduledAction();
+        action.setId(rs.getLong("id"));
+        action.setGuildId(Long.parseLong(rs.getString("guild_id")));
+        action.setTargetId(Long.parseLong(rs.getString("target_id")));
+        action.setModeratorId(Long.parseLong(rs.getString("moderator_id")));
+        action.setActionType(rs.getString("action_type"));
+        action.setReason(rs.getString("reason"));
+        action.setDueAt(rs.getLong("due_at"));
+        return action;
+    }
+
+    @Override
+    public void cancelScheduledAction(long guildId, long targetId, String actionType) {
+        String sql = "DELETE FROM scheduled_actions WHERE guild_id = ? AND target_id = ? AND action_type = ?";
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, String.valueOf(guildId));
+                stmt.setString(2, String.valueOf(targetId));
+                stmt.setString(3, actionType);
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                logger.error("Error cancelling scheduled action: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public boolean rescheduleAction(long id, long dueAt, long newDueAt) {
+        String sql = "UPDATE scheduled_actions SET due_at = ? WHERE id = ? AND due_at = ?";
+        synchronized (connection) {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setLong(1, newDueAt);
+                stmt.setLong(2, id);
+                stmt.setLong(3, dueAt);
+                return stmt.executeUpdate() > 0;
+            } catch (SQLException e) {
+                logger.error("Error rescheduling action: {}", e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean completeScheduledActions(List<ScheduledAction> done, List<ModAction> log) {
+        String deleteSql = "DELETE FROM scheduled_actions WHERE id = ? AND due_at = ?";
+        String logSql = """
+            INSERT INTO mod_actions (guild_id, moderator_id, target_id, action_type, reason, timestamp)
+            VALUES (?, ?, ?, ?, ?, ?)
+        """;
+        synchronized (connection) {
+            try (PreparedStatement delete = connection.prepareStatement(deleteSql);
+                 PreparedStatement insert = connection.prepareStatement(logSql)) {
+                connection.setAutoCommit(false);
+                try {
+                    for (ScheduledAction action : done) {
+                        delete.setLong(1, action.getId());
+                        delete.setLong(2, action.getDueAt());
+                        delete.addBatch();
+                    }
+                    for (ModAction action : log) {
+                        insert.setString(1, String.valueOf(action.getGuildId()));
+                        insert.setString(2, String.valueOf(action.getModeratorId()));
+                        insert.setString(3, String.valueOf(action.getTargetId()));
+                        insert.setString(4, action.getActionType());
+                        insert.setString(5, action.getReason());
+                        insert.setLong(6, action.getTimestamp());
+                        insert.addBatch();
+                    }
+                    delete.executeBatch();
+                    insert.executeBatch();
+                    connection.commit();
+                    return true;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                logger.error("Error completing {} scheduled actions: {}", done.size(), e.getMessage());
+                return false;
+            }
+        }
+    }
+}
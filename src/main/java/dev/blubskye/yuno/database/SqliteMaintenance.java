@@ -0,0 +1,126 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - SQLite Maintenance
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.database;
+
+import dev.blubskye.yuno.config.YunoConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs online backups and incremental vacuum for the SQLite backend on one
+ * background thread. Both jobs work in small steps with pauses in between
+ * so the event threads' XP writes are never held up for long.
+ */
+public class SqliteMaintenance {
+    private static final Logger logger = LoggerFactory.getLogger(SqliteMaintenance.class);
+
+    private static final DateTimeFormatter BACKUP_NAME = DateTimeFormatter.ofPattern("'yuno-'yyyyMMdd-HHmmss'.db'");
+
+    // 64 pages (256 KiB at the default page size) per step, then a breather
+    private static final int BACKUP_PAGES_PER_STEP = 64;
+    private static final long BACKUP_PAUSE_MS = 10;
+
+    private static final long CHECKPOINT_INTERVAL_SECONDS = 30;
+
+    private static final long VACUUM_INTERVAL_MINUTES = 15;
+    private static final int VACUUM_PAGES_PER_STEP = 32;
+    private static final int VACUUM_MAX_PAGES = 4096;
+    private static final long VACUUM_PAUSE_MS = 20;
+
+    private final SqliteDatabase database;
+    private final Path backupDirectory;
+    private final int backupIntervalMinutes;
+    private final int backupKeep;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "yuno-db-maintenance");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    public SqliteMaintenance(SqliteDatabase database, YunoConfig config) {
+        this.database = database;
+        this.backupDirectory = Paths.get(config.getBackupDirectory());
+        this.backupIntervalMinutes = config.getBackupIntervalMinutes();
+        this.backupKeep = config.getBackupKeep();
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::checkpoint, CHECKPOINT_INTERVAL_SECONDS, CHECKPOINT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::vacuum, VACUUM_INTERVAL_MINUTES, VACUUM_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        if (backupIntervalMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(this::backup, backupIntervalMinutes, backupIntervalMinutes, TimeUnit.MINUTES);
+            logger.info("Backing up the database to {} every {} minutes~", backupDirectory, backupIntervalMinutes);
+        }
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+        try {
+            if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Database maintenance did not stop in time~");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void backup() {
+        try {
+            Files.createDirectories(backupDirectory);
+            Path target = backupDirectory.resolve(LocalDateTime.now().format(BACKUP_NAME));
+            database.backup(target, BACKUP_PAGES_PER_STEP, BACKUP_PAUSE_MS);
+            pruneBackups();
+        } catch (Exception e) {
+            logger.error("Error backing up database: {}", e.getMessage());
+        }
+    }
+
+    private void vacuum() {
+        try {
+            if (database.incrementalVacuum(VACUUM_PAGES_PER_STEP, VACUUM_MAX_PAGES, VACUUM_PAUSE_MS) > 0) {
+                database.checkpoint();
+            }
+        } catch (Exception e) {
+            logger.error("Error running incremental vacuum: {}", e.getMessage());
+        }
+    }
+
+    private void checkpoint() {
+        try {
+            database.checkpoint();
+        } catch (Exception e) {
+            logger.error("Error checkpointing database: {}", e.getMessage());
+        }
+    }
+
+    // Backup names sort by time, so the oldest ones come first
+    private void pruneBackups() throws IOException {
+        List<Path> backups;
+        try (var files = Files.list(backupDirectory)) {
+            backups = files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith("yuno-") && name.endsWith(".db");
+            }).sorted().toList();
+        }
+        for (int i = 0; i < backups.size() - backupKeep; i++) {
+            Files.deleteIfExists(backups.get(i));
+            logger.info("Removed old backup {}~", backups.get(i).getFileName());
+        }
+    }
+}
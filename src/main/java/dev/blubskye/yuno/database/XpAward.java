@@ -0,0 +1,41 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - XP Award
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.database;
+
+public class XpAward {
+    private long xp;
+    private int oldLevel;
+    private int newLevel;
+
+    public long getXp() {
+        return xp;
+    }
+
+    public void setXp(long xp) {
+        this.xp = xp;
+    }
+
+    public int getOldLevel() {
+        return oldLevel;
+    }
+
+    public void setOldLevel(int oldLevel) {
+        this.oldLevel = oldLevel;
+    }
+
+    public int getNewLevel() {
+        return newLevel;
+    }
+
+    public void setNewLevel(int newLevel) {
+        this.newLevel = newLevel;
+    }
+
+    public boolean isLevelUp() {
+        return newLevel > oldLevel;
+    }
+}
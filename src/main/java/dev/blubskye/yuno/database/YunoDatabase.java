@@ -6,426 +6,238 @@
 
 package dev.blubskye.yuno.database;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import dev.blubskye.yuno.config.YunoConfig;
 
-import java.sql.*;
-import java.util.ArrayList;
+import java.sql.SQLException;
 import java.util.List;
+import java.util.function.Consumer;
 
-public class YunoDatabase {
-    private static final Logger logger = LoggerFactory.getLogger(YunoDatabase.class);
-
-    private Connection connection;
-    private final String databasePath;
+/**
+ * Storage used by the commands and listeners. Implementations log and swallow
+ * errors on the per-call methods, like the SQLite backend always has.
+ */
+public interface YunoDatabase {
 
-    public YunoDatabase(String databasePath) {
-        this.databasePath = databasePath;
+    static YunoDatabase create(YunoConfig config) {
+        return switch (config.getDatabaseBackend()) {
+            case "memory" -> new InMemoryDatabase();
+            case "sqlite" -> new SqliteDatabase(config.getDatabasePath());
+            case "postgres" -> new PostgresDatabase(config.getPostgresUrl(), config.getPostgresUser(),
+                    config.getPostgresPassword(), config.getPostgresPoolSize());
+            default -> throw new IllegalArgumentException("Unknown database backend: " + config.getDatabaseBackend());
+        };
     }
 
-    public void open() throws SQLException {
-        String url = "jdbc:sqlite:" + databasePath;
-        connection = DriverManager.getConnection(url);
-        logger.info("Database connection established~");
-        initialize();
-    }
+    void open() throws SQLException;
 
-    public void close() {
-        if (connection != null) {
-            try {
-                connection.close();
-                logger.info("Database connection closed~");
-            } catch (SQLException e) {
-                logger.error("Error closing database: {}", e.getMessage());
-            }
-        }
-    }
+    void close();
 
-    private void initialize() throws SQLException {
-        // Guild settings table
-        executeUpdate("""
-            CREATE TABLE IF NOT EXISTS guild_settings (
-                guild_id TEXT PRIMARY KEY,
-                prefix TEXT DEFAULT '.',
-                spam_filter_enabled INTEGER DEFAULT 0,
-                leveling_enabled INTEGER DEFAULT 1
-            )
-        """);
-
-        // User XP table
-        executeUpdate("""
-            CREATE TABLE IF NOT EXISTS user_xp (
-                user_id TEXT NOT NULL,
-                guild_id TEXT NOT NULL,
-                xp INTEGER DEFAULT 0,
-                level INTEGER DEFAULT 0,
-                PRIMARY KEY (user_id, guild_id)
-            )
-        """);
-
-        // Mod actions table
-        executeUpdate("""
-            CREATE TABLE IF NOT EXISTS mod_actions (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                guild_id TEXT NOT NULL,
-                moderator_id TEXT NOT NULL,
-                target_id TEXT NOT NULL,
-                action_type TEXT NOT NULL,
-                reason TEXT,
-                timestamp INTEGER NOT NULL
-            )
-        """);
-
-        // Auto-clean config table
-        executeUpdate("""
-            CREATE TABLE IF NOT EXISTS auto_clean_config (
-                guild_id TEXT NOT NULL,
-                channel_id TEXT NOT NULL,
-                interval_minutes INTEGER DEFAULT 60,
-                message_count INTEGER DEFAULT 100,
-                enabled INTEGER DEFAULT 1,
-                PRIMARY KEY (guild_id, channel_id)
-            )
-        """);
-
-        // Spam warnings table
-        executeUpdate("""
-            CREATE TABLE IF NOT EXISTS spam_warnings (
-                user_id TEXT NOT NULL,
-                guild_id TEXT NOT NULL,
-                warnings INTEGER DEFAULT 0,
-                last_warning INTEGER,
-                PRIMARY KEY (user_id, guild_id)
-            )
-        """);
-
-        // Create indexes
-        executeUpdate("CREATE INDEX IF NOT EXISTS idx_mod_actions_guild ON mod_actions(guild_id)");
-        executeUpdate("CREATE INDEX IF NOT EXISTS idx_mod_actions_moderator ON mod_actions(moderator_id)");
-        executeUpdate("CREATE INDEX IF NOT EXISTS idx_user_xp_guild ON user_xp(guild_id)");
-
-        logger.info("Database initialized~");
+    void preloadGuildSettings() throws SQLException;
+
+    /** Runs a trivial read, throwing if the database can't answer it. */
+    void ping() throws SQLException;
+
+    /** Writes out anything buffered in memory. */
+    default void flush() {
     }
 
-    private void executeUpdate(String sql) throws SQLException {
-        try (Statement stmt = connection.createStatement()) {
-            stmt.executeUpdate(sql);
-        }
+    /** Leaves the database cheap to reopen; called once while shutting down, after the last write. */
+    default void optimize() {
     }
 
     // Guild Settings
-    public GuildSettings getGuildSettings(long guildId) {
-        String sql = "SELECT prefix, spam_filter_enabled, leveling_enabled FROM guild_settings WHERE guild_id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, String.valueOf(guildId));
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                GuildSettings settings = new GuildSettings();
-                settings.setGuildId(guildId);
-                settings.setPrefix(rs.getString("prefix"));
-                settings.setSpamFilterEnabled(rs.getInt("spam_filter_enabled") == 1);
-                settings.setLevelingEnabled(rs.getInt("leveling_enabled") == 1);
-                return settings;
-            }
-        } catch (SQLException e) {
-            logger.error("Error getting guild settings: {}", e.getMessage());
-        }
-        return null;
-    }
+    GuildSettings getGuildSettings(long guildId);
 
-    public void setGuildSettings(GuildSettings settings) {
-        String sql = """
-            INSERT OR REPLACE INTO guild_settings (guild_id, prefix, spam_filter_enabled, leveling_enabled)
-            VALUES (?, ?, ?, ?)
-        """;
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, String.valueOf(settings.getGuildId()));
-            stmt.setString(2, settings.getPrefix());
-            stmt.setInt(3, settings.isSpamFilterEnabled() ? 1 : 0);
-            stmt.setInt(4, settings.isLevelingEnabled() ? 1 : 0);
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            logger.error("Error setting guild settings: {}", e.getMessage());
-        }
-    }
+    void setGuildSettings(GuildSettings settings);
 
-    public String getPrefix(long guildId, String defaultPrefix) {
+    default String getPrefix(long guildId, String defaultPrefix) {
         GuildSettings settings = getGuildSettings(guildId);
         return settings != null ? settings.getPrefix() : defaultPrefix;
     }
 
-    public void setPrefix(long guildId, String prefix) {
-        GuildSettings settings = getGuildSettings(guildId);
-        if (settings == null) {
-            settings = new GuildSettings();
-            settings.setGuildId(guildId);
-            settings.setLevelingEnabled(true);
-        }
+    default void setPrefix(long guildId, String prefix) {
+        GuildSettings settings = editableGuildSettings(guildId);
         settings.setPrefix(prefix);
         setGuildSettings(settings);
     }
 
-    // XP/Leveling
-    public UserXp getUserXp(long userId, long guildId) {
-        String sql = "SELECT xp, level FROM user_xp WHERE user_id = ? AND guild_id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, String.valueOf(userId));
-            stmt.setString(2, String.valueOf(guildId));
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                UserXp xp = new UserXp();
-                xp.setUserId(userId);
-                xp.setGuildId(guildId);
-                xp.setXp(rs.getLong("xp"));
-                xp.setLevel(rs.getInt("level"));
-                return xp;
-            }
-        } catch (SQLException e) {
-            logger.error("Error getting user XP: {}", e.getMessage());
-        }
-        UserXp xp = new UserXp();
-        xp.setUserId(userId);
-        xp.setGuildId(guildId);
-        return xp;
+    default void setXpCooldown(long guildId, int seconds) {
+        GuildSettings settings = editableGuildSettings(guildId);
+        settings.setXpCooldownSeconds(seconds);
+        setGuildSettings(settings);
     }
 
-    public void addXp(long userId, long guildId, long amount) {
-        String sql = """
-            INSERT INTO user_xp (user_id, guild_id, xp, level) VALUES (?, ?, ?, 0)
-            ON CONFLICT(user_id, guild_id) DO UPDATE SET xp = xp + ?
-        """;
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, String.valueOf(userId));
-            stmt.setString(2, String.valueOf(guildId));
-            stmt.setLong(3, amount);
-            stmt.setLong(4, amount);
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            logger.error("Error adding XP: {}", e.getMessage());
-        }
+    default void setRetention(long guildId, int warningDecayDays, int modActionRetentionDays) {
+        GuildSettings settings = editableGuildSettings(guildId);
+        settings.setWarningDecayDays(warningDecayDays);
+        settings.setModActionRetentionDays(modActionRetentionDays);
+        setGuildSettings(settings);
     }
 
-    public void setLevel(long userId, long guildId, int level) {
-        String sql = "UPDATE user_xp SET level = ? WHERE user_id = ? AND guild_id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, level);
-            stmt.setString(2, String.valueOf(userId));
-            stmt.setString(3, String.valueOf(guildId));
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            logger.error("Error setting level: {}", e.getMessage());
-        }
+    default void setLevelUpRouting(long guildId, String mode, long channelId) {
+        GuildSettings settings = editableGuildSettings(guildId);
+        settings.setLevelUpMode(mode);
+        settings.setLevelUpChannelId(channelId);
+        setGuildSettings(settings);
     }
 
-    public List<UserXp> getLeaderboard(long guildId, int limit) {
-        List<UserXp> leaderboard = new ArrayList<>();
-        String sql = "SELECT user_id, xp, level FROM user_xp WHERE guild_id = ? ORDER BY xp DESC LIMIT ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, String.valueOf(guildId));
-            stmt.setInt(2, limit);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                UserXp xp = new UserXp();
-                xp.setUserId(Long.parseLong(rs.getString("user_id")));
-                xp.setGuildId(guildId);
-                xp.setXp(rs.getLong("xp"));
-                xp.setLevel(rs.getInt("level"));
-                leaderboard.add(xp);
-            }
-        } catch (SQLException e) {
-            logger.error("Error getting leaderboard: {}", e.getMessage());
-        }
-        return leaderboard;
+    default void setRaidGuard(long guildId, int joinThreshold, long alertChannelId) {
+        GuildSettings settings = editableGuildSettings(guildId);
+        settings.setRaidJoinThreshold(joinThreshold);
+        settings.setModAlertChannelId(alertChannelId);
+        setGuildSettings(settings);
     }
 
-    // Mod Actions
-    public void logModAction(ModAction action) {
-        String sql = """
-            INSERT INTO mod_actions (guild_id, moderator_id, target_id, action_type, reason, timestamp)
-            VALUES (?, ?, ?, ?, ?, ?)
-        """;
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, String.valueOf(action.getGuildId()));
-            stmt.setString(2, String.valueOf(action.getModeratorId()));
-            stmt.setString(3, String.valueOf(action.getTargetId()));
-            stmt.setString(4, action.getActionType());
-            stmt.setString(5, action.getReason());
-            stmt.setLong(6, action.getTimestamp());
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            logger.error("Error logging mod action: {}", e.getMessage());
-        }
+    default void setLevelCurve(long guildId, String spec) {
+        GuildSettings settings = editableGuildSettings(guildId);
+        settings.setLevelCurve(spec);
+        setGuildSettings(settings);
     }
 
-    public List<ModAction> getModActions(long guildId, int limit) {
-        List<ModAction> actions = new ArrayList<>();
-        String sql = """
-            SELECT id, moderator_id, target_id, action_type, reason, timestamp
-            FROM mod_actions WHERE guild_id = ? ORDER BY timestamp DESC LIMIT ?
-        """;
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, String.valueOf(guildId));
-            stmt.setInt(2, limit);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                ModAction action = new ModAction();
-                action.setId(rs.getLong("id"));
-                action.setGuildId(guildId);
-                action.setModeratorId(Long.parseLong(rs.getString("moderator_id")));
-                action.setTargetId(Long.parseLong(rs.getString("target_id")));
-                action.setActionType(rs.getString("action_type"));
-                action.setReason(rs.getString("reason"));
-                action.setTimestamp(rs.getLong("timestamp"));
-                actions.add(action);
-            }
-        } catch (SQLException e) {
-            logger.error("Error getting mod actions: {}", e.getMessage());
-        }
-        return actions;
+    default void setMessageLogChannel(long guildId, long channelId) {
+        GuildSettings settings = editableGuildSettings(guildId);
+        settings.setMessageLogChannelId(channelId);
+        setGuildSettings(settings);
     }
 
-    public ModStats getModStats(long guildId, long moderatorId) {
-        ModStats stats = new ModStats();
-        String sql = """
-            SELECT action_type, COUNT(*) as count FROM mod_actions
-            WHERE guild_id = ? AND moderator_id = ? GROUP BY action_type
-        """;
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, String.valueOf(guildId));
-            stmt.setString(2, String.valueOf(moderatorId));
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                String type = rs.getString("action_type");
-                int count = rs.getInt("count");
-                switch (type) {
-                    case "ban" -> stats.setBanCount(count);
-                    case "kick" -> stats.setKickCount(count);
-                    case "timeout" -> stats.setTimeoutCount(count);
-                }
-            }
-        } catch (SQLException e) {
-            logger.error("Error getting mod stats: {}", e.getMessage());
-        }
-        return stats;
+    /** Remembers a running lockdown so a restart can still lift it; {@code until} 0 clears it. */
+    default void setRaidLockdown(long guildId, long until, int previousVerification) {
+        GuildSettings settings = editableGuildSettings(guildId);
+        settings.setRaidLockdownUntil(until);
+        settings.setRaidPreviousVerification(previousVerification);
+        setGuildSettings(settings);
     }
 
-    // Auto-clean
-    public AutoCleanConfig getAutoCleanConfig(long guildId, long channelId) {
-        String sql = """
-            SELECT interval_minutes, message_count, enabled
-            FROM auto_clean_config WHERE guild_id = ? AND channel_id = ?
-        """;
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, String.valueOf(guildId));
-            stmt.setString(2, String.valueOf(channelId));
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                AutoCleanConfig config = new AutoCleanConfig();
-                config.setGuildId(guildId);
-                config.setChannelId(channelId);
-                config.setIntervalMinutes(rs.getInt("interval_minutes"));
-                config.setMessageCount(rs.getInt("message_count"));
-                config.setEnabled(rs.getInt("enabled") == 1);
-                return config;
-            }
-        } catch (SQLException e) {
-            logger.error("Error getting auto-clean config: {}", e.getMessage());
+    // Cached settings are shared, so edits start from a copy
+    private GuildSettings editableGuildSettings(long guildId) {
+        GuildSettings current = getGuildSettings(guildId);
+        if (current != null) {
+            return current.copy();
         }
-        return null;
+        GuildSettings settings = new GuildSettings();
+        settings.setGuildId(guildId);
+        settings.setLevelingEnabled(true);
+        return settings;
     }
 
-    public void setAutoCleanConfig(AutoCleanConfig config) {
-        String sql = """
-            INSERT OR REPLACE INTO auto_clean_config (guild_id, channel_id, interval_minutes, message_count, enabled)
-            VALUES (?, ?, ?, ?, ?)
-        """;
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, String.valueOf(config.getGuildId()));
-            stmt.setString(2, String.valueOf(config.getChannelId()));
-            stmt.setInt(3, config.getIntervalMinutes());
-            stmt.setInt(4, config.getMessageCount());
-            stmt.setInt(5, config.isEnabled() ? 1 : 0);
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            logger.error("Error setting auto-clean config: {}", e.getMessage());
-        }
-    }
+    // XP/Leveling
+    UserXp getUserXp(long userId, long guildId);
 
-    public void removeAutoCleanConfig(long guildId, long channelId) {
-        String sql = "DELETE FROM auto_clean_config WHERE guild_id = ? AND channel_id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, String.valueOf(guildId));
-            stmt.setString(2, String.valueOf(channelId));
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            logger.error("Error removing auto-clean config: {}", e.getMessage());
-        }
-    }
+    void addXp(long userId, long guildId, long amount);
+
+    /** Adds XP and reports the levels before and after on the given curve. */
+    XpAward awardXp(long userId, long guildId, long amount, LevelCurve curve);
+
+    List<UserXp> getLeaderboard(long guildId, int limit);
 
-    public List<AutoCleanConfig> getAllAutoCleanConfigs() {
-        List<AutoCleanConfig> configs = new ArrayList<>();
-        String sql = """
-            SELECT guild_id, channel_id, interval_minutes, message_count, enabled
-            FROM auto_clean_config WHERE enabled = 1
-        """;
-        try (Statement stmt = connection.createStatement()) {
-            ResultSet rs = stmt.executeQuery(sql);
-            while (rs.next()) {
-                AutoCleanConfig config = new AutoCleanConfig();
-                config.setGuildId(Long.parseLong(rs.getString("guild_id")));
-                config.setChannelId(Long.parseLong(rs.getString("channel_id")));
-                config.setIntervalMinutes(rs.getInt("interval_minutes"));
-                config.setMessageCount(rs.getInt("message_count"));
-                config.setEnabled(rs.getInt("enabled") == 1);
-                configs.add(config);
-            }
-        } catch (SQLException e) {
-            logger.error("Error getting all auto-clean configs: {}", e.getMessage());
+    /** Sets each user's XP to the given value (level follows the curve) in one transaction; false if nothing was written. */
+    boolean importXp(long guildId, List<UserXp> rows, LevelCurve curve);
+
+    /** Users with the most XP summed over every guild, highest first; the rows have no guild or level. */
+    List<UserXp> getGlobalLeaderboard(int limit);
+
+    /** XP summed over every guild. */
+    long getTotalXp(long userId);
+
+    /** Up to {@code limit} XP rows of the guild in user ID order, starting after {@code afterUserId} (0 for the first page). */
+    List<UserXp> getXpPage(long guildId, long afterUserId, int limit);
+
+    /** Stores the rows' levels in one transaction, skipping any whose XP has changed since they were read. */
+    void updateLevels(long guildId, List<UserXp> rows);
+
+    /** Streams every XP row of the guild without loading them all at once. The row object may be reused between calls. */
+    void forEachUserXp(long guildId, Consumer<UserXp> visitor);
+
+    // Mod Actions
+    void logModAction(ModAction action);
+
+    /** Logs the actions together, in one transaction where the backend has them; false if nothing was written. */
+    default boolean logModActions(List<ModAction> actions) {
+        for (ModAction action : actions) {
+            logModAction(action);
         }
-        return configs;
+        return true;
     }
 
+    List<ModAction> getModActions(long guildId, int limit);
+
+    ModStats getModStats(long guildId, long moderatorId);
+
+    /** Streams every mod action of the guild, oldest first. The action object may be reused between calls. */
+    void forEachModAction(long guildId, Consumer<ModAction> visitor);
+
+    // Activity
+    /**
+     * Adds the counts to the hourly rows (keeping the higher peak) and re-sums the daily rows of the
+     * days they fall in, then drops the guilds' hourly rows before {@code hourlyBefore} and daily rows
+     * before {@code dailyBefore}, all in one transaction.
+     */
+    void addActivity(List<ActivityRow> rows, long hourlyBefore, long dailyBefore);
+
+    /** Hourly rows of the guild from {@code fromHour} on, every channel, oldest first. */
+    List<ActivityRow> getHourlyActivity(long guildId, long fromHour);
+
+    /** Daily guild totals from {@code fromDay} on, oldest first. */
+    List<ActivityRow> getDailyActivity(long guildId, long fromDay);
+
+    /**
+     * Merges each sketch into the one stored for its guild and day (a stored sketch that doesn't
+     * decode is replaced), then drops the guilds' sketches before {@code before}, in one transaction.
+     */
+    void mergeChatterSketches(List<ChatterSketch> sketches, long before);
+
+    /** Stored sketches of the guild from {@code fromDay} on, oldest first. */
+    List<ChatterSketch> getChatterSketches(long guildId, long fromDay);
+
+    // Auto-clean
+    AutoCleanConfig getAutoCleanConfig(long guildId, long channelId);
+
+    void setAutoCleanConfig(AutoCleanConfig config);
+
+    void removeAutoCleanConfig(long guildId, long channelId);
+
+    List<AutoCleanConfig> getAllAutoCleanConfigs();
+
     // Spam warnings
-    public void addSpamWarning(long userId, long guildId) {
-        String sql = """
-            INSERT INTO spam_warnings (user_id, guild_id, warnings, last_warning) VALUES (?, ?, 1, ?)
-            ON CONFLICT(user_id, guild_id) DO UPDATE SET warnings = warnings + 1, last_warning = ?
-        """;
-        long now = System.currentTimeMillis() / 1000;
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, String.valueOf(userId));
-            stmt.setString(2, String.valueOf(guildId));
-            stmt.setLong(3, now);
-            stmt.setLong(4, now);
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            logger.error("Error adding spam warning: {}", e.getMessage());
-        }
-    }
+    void addSpamWarning(long userId, long guildId);
 
-    public int getSpamWarnings(long userId, long guildId) {
-        String sql = "SELECT warnings FROM spam_warnings WHERE user_id = ? AND guild_id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, String.valueOf(userId));
-            stmt.setString(2, String.valueOf(guildId));
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("warnings");
-            }
-        } catch (SQLException e) {
-            logger.error("Error getting spam warnings: {}", e.getMessage());
-        }
-        return 0;
-    }
+    int getSpamWarnings(long userId, long guildId);
 
-    public void resetSpamWarnings(long userId, long guildId) {
-        String sql = "DELETE FROM spam_warnings WHERE user_id = ? AND guild_id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, String.valueOf(userId));
-            stmt.setString(2, String.valueOf(guildId));
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            logger.error("Error resetting spam warnings: {}", e.getMessage());
-        }
-    }
+    void resetSpamWarnings(long userId, long guildId);
+
+    // Retention
+    List<Long> getGuildIdsWithHistory();
+
+    /** Deletes up to {@code limit} warnings last given before {@code before} and returns how many went. */
+    int expireSpamWarnings(long guildId, long before, int limit);
+
+    /** Oldest mod actions first, only those taken before {@code before}. */
+    List<ModAction> getModActionsBefore(long guildId, long before, int limit);
+
+    /**
+     * Deletes the given mod actions and adds the ones it deleted to the kept per-moderator counts in one
+     * transaction; rows someone else archived first aren't counted twice. Returns how many it deleted,
+     * or -1 if the write failed.
+     */
+    int archiveModActions(long guildId, List<ModAction> actions);
+
+    // Scheduled actions
+    /** Stores the action, replacing a pending one of the same type for the same user, and returns its ID. */
+    long scheduleAction(ScheduledAction action);
+
+    ScheduledAction getScheduledAction(long id);
+
+    /** Actions due from {@code dueFrom} up to (not including) {@code dueBefore} with IDs above {@code afterId}, in ID order. */
+    List<ScheduledAction> getScheduledActions(long dueFrom, long dueBefore, long afterId, int limit);
+
+    void cancelScheduledAction(long guildId, long targetId, String actionType);
+
+    /** Moves an action to {@code newDueAt} only if it is still due at {@code dueAt}; false if it was changed or cancelled meanwhile. */
+    boolean rescheduleAction(long id, long dueAt, long newDueAt);
+
+    /**
+     * Deletes the finished actions, unless rescheduled since, and logs what they did in one transaction.
+     * Returns false if nothing was written.
+     */
+    boolean completeScheduledActions(List<ScheduledAction> done, List<ModAction> log);
 }
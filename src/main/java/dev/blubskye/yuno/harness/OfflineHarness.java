@@ -0,0 +1,278 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Offline Harness
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.harness;
+
+import dev.blubskye.yuno.StartupTracker;
+import dev.blubskye.yuno.config.YunoConfig;
+import dev.blubskye.yuno.database.DataTransfer;
+import dev.blubskye.yuno.database.LevelCurve;
+import dev.blubskye.yuno.database.ModAction;
+import dev.blubskye.yuno.database.UserXp;
+import dev.blubskye.yuno.database.YunoDatabase;
+import dev.blubskye.yuno.logging.LogControl;
+import dev.blubskye.yuno.logging.LogSampler;
+import dev.blubskye.yuno.util.Csv;
+import net.dv8tion.jda.api.JDABuilder;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the bot's startup and hot paths without connecting to Discord.
+ * Used as the AppCDS training run and for the build's startup-time check.
+ * Pass -Dyuno.harness.backend=memory|postgres to benchmark another database backend
+ * (postgres also reads -Dyuno.harness.postgres.url/user/password).
+ */
+public class OfflineHarness {
+    private static final Logger logger = LoggerFactory.getLogger(OfflineHarness.class);
+
+    private static final long GUILD_ID = 100000000000000001L;
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "train";
+
+        switch (mode) {
+            case "train" -> train(args.length > 1 ? Integer.parseInt(args[1]) : 5000);
+            case "startup-check" -> startupCheck(args.length > 1 ? Long.parseLong(args[1]) : 2000);
+            case "load" -> load(args.length > 1 ? Integer.parseInt(args[1]) : 4,
+                    args.length > 2 ? Integer.parseInt(args[2]) : 200000);
+            case "transfer" -> transfer(args.length > 1 ? Integer.parseInt(args[1]) : 1000000);
+            default -> {
+                System.err.println("Usage: OfflineHarness [train [messages] | startup-check [budget-ms]"
+                        + " | load [threads] [messages-per-thread] | transfer [rows]]");
+                System.exit(2);
+            }
+        }
+        LogControl.shutdown();
+    }
+
+    private static void train(int messages) throws Exception {
+        Path workDir = Files.createTempDirectory("yuno-harness");
+        try {
+            StartupTracker startup = new StartupTracker();
+            YunoDatabase database = boot(startup, workDir);
+            startup.time("workload", () -> runWorkload(database, messages));
+            startup.finish();
+            database.close();
+            logger.info("Training run finished: {}", startup.summary());
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    private static void startupCheck(long budgetMs) throws Exception {
+        Path workDir = Files.createTempDirectory("yuno-harness");
+        long uptimeMs;
+        try {
+            StartupTracker startup = new StartupTracker();
+            YunoDatabase database = boot(startup, workDir);
+            startup.finish();
+            uptimeMs = ManagementFactory.getRuntimeMXBean().getUptime();
+            database.close();
+            logger.info("Startup stages: {}", startup.summary());
+        } finally {
+            deleteRecursively(workDir);
+        }
+
+        System.out.printf("startup-check: ready after %dms (budget %dms)%n", uptimeMs, budgetMs);
+        if (uptimeMs > budgetMs) {
+            System.err.println("startup-check: cold start exceeded the budget");
+            LogControl.shutdown();
+            System.exit(1);
+        }
+    }
+
+    // Replays the listener's per-message front half (prefix lookup + command log) from several threads.
+    // Run with -Dyuno.harness.sampling=false to log every message like the listeners used to.
+    private static void load(int threads, int messagesPerThread) throws Exception {
+        boolean sampling = Boolean.parseBoolean(System.getProperty("yuno.harness.sampling", "true"));
+        LogSampler sampler = new LogSampler(20, 1, TimeUnit.SECONDS);
+        Path workDir = Files.createTempDirectory("yuno-harness");
+        try {
+            YunoDatabase database = boot(new StartupTracker(), workDir);
+            long[][] latencies = new long[threads][messagesPerThread];
+            Thread[] workers = new Thread[threads];
+
+            long begin = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                long[] samples = latencies[t];
+                String author = "harness-user-" + t;
+                workers[t] = new Thread(() -> {
+                    for (int i = 0; i < messagesPerThread; i++) {
+                        long start = System.nanoTime();
+                        String prefix = database.getPrefix(GUILD_ID, ".");
+                        if (logger.isDebugEnabled() && (!sampling || sampler.sample())) {
+                            logger.debug("Received prefix command: {} from {} ({} similar suppressed)",
+                                    prefix + "ping", author, sampling ? sampler.drainSuppressed() : 0);
+                        }
+                        samples[i] = System.nanoTime() - start;
+                    }
+                }, "harness-load-" + t);
+                workers[t].start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            long elapsed = System.nanoTime() - begin;
+            database.close();
+
+            long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+            System.out.printf("load: %d messages on %d threads in %dms (%.0f msg/s), p50=%.1fus p99=%.1fus p99.9=%.1fus%n",
+                    all.length, threads, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    all.length / (elapsed / 1e9),
+                    all[all.length / 2] / 1e3,
+                    all[(int) (all.length * 0.99)] / 1e3,
+                    all[(int) (all.length * 0.999)] / 1e3);
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    // Mirrors the stages YunoGasai.main and YunoBot.start go through, minus the gateway connection
+    // Round-trips a generated XP file and mod log through import and export, reporting rows/s
+    private static void transfer(int rows) throws Exception {
+        Path workDir = Files.createTempDirectory("yuno-harness");
+        try {
+            YunoDatabase database = boot(new StartupTracker(), workDir);
+            DataTransfer transfer = new DataTransfer(database);
+            Random random = new Random(42);
+
+            Path xpFile = workDir.resolve("xp.csv");
+            Path modLogFile = workDir.resolve("mod-log.csv");
+            try (Writer xp = Files.newBufferedWriter(xpFile); Writer modLog = Files.newBufferedWriter(modLogFile)) {
+                Csv.writeRecord(xp, "user_id", "xp", "level");
+                Csv.writeRecord(modLog, "moderator_id", "target_id", "action_type", "reason", "timestamp");
+                for (int i = 0; i < rows; i++) {
+                    Csv.writeRecord(xp, String.valueOf(300000000000000000L + i), String.valueOf(random.nextInt(500000)), "0");
+                    Csv.writeRecord(modLog, "200000000000000001", String.valueOf(300000000000000000L + random.nextInt(rows)),
+                            i % 3 == 0 ? "kick" : "ban", "Harness, \"quoted\" reason", String.valueOf(1700000000L + i));
+                }
+            }
+
+            long begin = System.nanoTime();
+            DataTransfer.Result xpResult;
+            try (BufferedReader in = Files.newBufferedReader(xpFile)) {
+                xpResult = transfer.importXp(GUILD_ID, DataTransfer.Format.CSV, in, LevelCurve.DEFAULT);
+            }
+            report("import xp", xpResult.getRows(), begin);
+
+            begin = System.nanoTime();
+            DataTransfer.Result modLogResult;
+            try (BufferedReader in = Files.newBufferedReader(modLogFile)) {
+                modLogResult = transfer.importModActions(GUILD_ID, DataTransfer.Format.CSV, in);
+            }
+            report("import mod-log", modLogResult.getRows(), begin);
+
+            begin = System.nanoTime();
+            try (Writer out = Files.newBufferedWriter(workDir.resolve("xp-export.jsonl"))) {
+                report("export xp", transfer.exportXp(GUILD_ID, DataTransfer.Format.JSONL, out), begin);
+            }
+            begin = System.nanoTime();
+            try (Writer out = Files.newBufferedWriter(workDir.resolve("mod-log-export.csv"))) {
+                report("export mod-log", transfer.exportModActions(GUILD_ID, DataTransfer.Format.CSV, out), begin);
+            }
+            database.close();
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    private static void report(String step, long rows, long begin) {
+        long elapsed = System.nanoTime() - begin;
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("transfer: %s %d rows in %dms (%.0f rows/s), heap used %dMB%n",
+                step, rows, TimeUnit.NANOSECONDS.toMillis(elapsed), rows / (elapsed / 1e9),
+                (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+    }
+
+    private static YunoDatabase boot(StartupTracker startup, Path workDir) throws Exception {
+        Path configPath = workDir.resolve("config.json");
+        Files.writeString(configPath, """
+                {
+                    "discord_token": "harness",
+                    "database_backend": "%s",
+                    "database_path": "%s",
+                    "postgres_url": "%s",
+                    "postgres_user": "%s",
+                    "postgres_password": "%s",
+                    "master_users": ["1"]
+                }
+                """.formatted(System.getProperty("yuno.harness.backend", "sqlite"),
+                        workDir.resolve("yuno.db").toString().replace("\\", "\\\\"),
+                        System.getProperty("yuno.harness.postgres.url", "jdbc:postgresql://localhost:5432/yuno"),
+                        System.getProperty("yuno.harness.postgres.user", "yuno"),
+                        System.getProperty("yuno.harness.postgres.password", "yuno")));
+
+        YunoConfig config = startup.time("config", () -> YunoConfig.loadFromFile(configPath.toString()));
+        YunoDatabase database = YunoDatabase.create(config);
+        startup.time("database", database::open);
+        startup.time("cache-preload", database::preloadGuildSettings);
+        startup.time("gateway-classes", () -> loadGatewayClasses(config));
+        return database;
+    }
+
+    private static void loadGatewayClasses(YunoConfig config) {
+        JDABuilder.createDefault(config.getDiscordToken())
+                .enableIntents(
+                        GatewayIntent.GUILD_MESSAGES,
+                        GatewayIntent.MESSAGE_CONTENT,
+                        GatewayIntent.GUILD_MEMBERS,
+                        GatewayIntent.DIRECT_MESSAGES
+                )
+                .setMemberCachePolicy(MemberCachePolicy.ALL);
+        new OkHttpClient.Builder().build();
+        DataObject.fromJson("{\"op\":0,\"t\":\"READY\",\"d\":{\"guilds\":[]}}");
+    }
+
+    private static void runWorkload(YunoDatabase database, int messages) {
+        Random random = new Random(42);
+        for (int i = 0; i < messages; i++) {
+            long userId = 1000 + random.nextInt(200);
+            database.getPrefix(GUILD_ID, ".");
+            database.getGuildSettings(GUILD_ID);
+            database.awardXp(userId, GUILD_ID, 15 + random.nextInt(11), LevelCurve.DEFAULT);
+            database.getUserXp(userId, GUILD_ID);
+
+            if (i % 100 == 0) {
+                List<UserXp> top = database.getLeaderboard(GUILD_ID, 10);
+                logger.debug("Leaderboard has {} entries", top.size());
+
+                ModAction action = new ModAction();
+                action.setGuildId(GUILD_ID);
+                action.setModeratorId(1);
+                action.setTargetId(userId);
+                action.setActionType("timeout");
+                action.setReason("harness");
+                action.setTimestamp(System.currentTimeMillis() / 1000);
+                database.logModAction(action);
+                database.getModStats(GUILD_ID, 1);
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (var paths = Files.walk(dir)) {
+            for (Path path : paths.sorted((a, b) -> b.compareTo(a)).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Health Server
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.health;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.blubskye.yuno.YunoBot;
+import dev.blubskye.yuno.listeners.EventPool;
+import net.dv8tion.jda.api.JDA;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tiny HTTP endpoint for an orchestrator. {@code /health/live} only fails
+ * when a restart would help: the event thread is stuck on one event or the
+ * gateway has been gone for a long time. {@code /health/ready} also fails
+ * while starting up, while the gateway is reconnecting, when the database
+ * is slow or not answering, or when events are piling up. Both return the
+ * same JSON report; only the status code differs. The database is probed
+ * in the background, so a hung database can't hang the endpoint too.
+ * {@code /metrics} returns every counter and gauge in the bot's registry.
+ */
+public class HealthServer {
+    private static final Logger logger = LoggerFactory.getLogger(HealthServer.class);
+
+    private static final long PROBE_INTERVAL_MS = 5000;
+    // No successful probe for this long means the database stopped answering
+    private static final long PROBE_STALE_MS = 15_000;
+    private static final long SLOW_PROBE_MS = 1000;
+    private static final int MAX_READY_BACKLOG = 500;
+    private static final long MAX_EVENT_STALL_MS = 60_000;
+    private static final long MAX_GATEWAY_DOWN_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private final YunoBot bot;
+    private final EventPool events;
+    private final ScheduledExecutorService prober = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "yuno-health-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private HttpServer server;
+    private volatile long lastProbeOk;
+    private volatile long lastProbeMillis = -1;
+    private volatile String lastProbeError;
+    private volatile long gatewayDownSince;
+
+    public HealthServer(YunoBot bot, EventPool events) {
+        this.bot = bot;
+        this.events = events;
+    }
+
+    public void start(String bindAddress, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        server.createContext("/health/live", exchange -> respond(exchange, true));
+        server.createContext("/health/ready", exchange -> respond(exchange, false));
+        server.createContext("/metrics", this::respondMetrics);
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "yuno-health");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        prober.scheduleWithFixedDelay(this::probe, 0, PROBE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        logger.info("Health checks on http://{}:{}/health/live and /health/ready, metrics on /metrics~", bindAddress, port);
+    }
+
+    public void stop() {
+        prober.shutdownNow();
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private void probe() {
+        long begin = System.nanoTime();
+        try {
+            bot.getDatabase().ping();
+            lastProbeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+            lastProbeOk = System.currentTimeMillis();
+            lastProbeError = null;
+        } catch (Exception e) {
+            lastProbeError = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+
+        JDA jda = bot.getJda();
+        if (bot.isReady() && jda != null && jda.getStatus() != JDA.Status.CONNECTED) {
+            if (gatewayDownSince == 0) {
+                gatewayDownSince = System.currentTimeMillis();
+            }
+        } else {
+            gatewayDownSince = 0;
+        }
+    }
+
+    private void respond(HttpExchange exchange, boolean liveness) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            JsonArray failures = new JsonArray();
+            JsonObject report = report(liveness, failures);
+            byte[] body = report.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+            int status = failures.isEmpty() ? 200 : 503;
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private void respondMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            JsonObject metrics = new JsonObject();
+            bot.getMetrics().snapshot().forEach(metrics::addProperty);
+            byte[] body = metrics.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private JsonObject report(boolean liveness, JsonArray failures) {
+        long now = System.currentTimeMillis();
+        JDA jda = bot.getJda();
+        JDA.Status status = jda != null ? jda.getStatus() : null;
+        long downFor = gatewayDownSince != 0 ? now - gatewayDownSince : 0;
+        long stalled = events.getStalledMillis();
+        int backlog = events.getBacklog();
+        long probeAge = lastProbeOk != 0 ? now - lastProbeOk : -1;
+
+        // Liveness: only things a restart fixes
+        if (stalled > MAX_EVENT_STALL_MS) {
+            failures.add("event thread stuck for " + stalled + "ms");
+        }
+        if (downFor > MAX_GATEWAY_DOWN_MS) {
+            failures.add("gateway down for " + downFor + "ms");
+        }
+        if (!liveness) {
+            if (bot.isShuttingDown()) {
+                failures.add("shutting down");
+            } else if (!bot.isReady()) {
+                failures.add("still starting (" + bot.getStartup().getCurrentStage() + ")");
+            }
+            if (status != JDA.Status.CONNECTED) {
+                failures.add("gateway " + (status != null ? status.name() : "not created"));
+            }
+            if (probeAge < 0 || probeAge > PROBE_STALE_MS) {
+                failures.add("database not answering" + (lastProbeError != null ? ": " + lastProbeError : ""));
+            } else if (lastProbeMillis > SLOW_PROBE_MS) {
+                failures.add("database slow: " + lastProbeMillis + "ms");
+            }
+            if (backlog > MAX_READY_BACKLOG) {
+                failures.add("event backlog " + backlog);
+            }
+        }
+
+        JsonObject report = new JsonObject();
+        report.addProperty("status", failures.isEmpty() ? "ok" : "fail");
+        report.addProperty("stage", bot.getStartup().getCurrentStage());
+        report.add("failures", failures);
+
+        JsonObject gateway = new JsonObject();
+        gateway.addProperty("status", status != null ? status.name() : null);
+        gateway.addProperty("ping_ms", jda != null ? jda.getGatewayPing() : -1);
+        gateway.addProperty("down_ms", downFor);
+        report.add("gateway", gateway);
+
+        JsonObject database = new JsonObject();
+        database.addProperty("latency_ms", lastProbeMillis);
+        database.addProperty("last_ok_ms_ago", probeAge);
+        database.addProperty("error", lastProbeError);
+        report.add("database", database);
+
+        JsonObject eventQueue = new JsonObject();
+        eventQueue.addProperty("backlog", backlog);
+        eventQueue.addProperty("stalled_ms", stalled);
+        report.add("events", eventQueue);
+        return report;
+    }
+}
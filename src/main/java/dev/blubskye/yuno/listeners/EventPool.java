@@ -0,0 +1,60 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Event Pool
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.listeners;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The single thread gateway events are handled on. Events are still handled
+ * one at a time and in order, as when JDA ran them on its socket thread, but
+ * a slow handler now backs up this queue instead of the heartbeat, and the
+ * backlog can be measured.
+ */
+public class EventPool extends ThreadPoolExecutor {
+    private volatile long lastProgress = System.currentTimeMillis();
+
+    public EventPool() {
+        super(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "yuno-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        lastProgress = System.currentTimeMillis();
+    }
+
+    @Override
+    protected void afterExecute(Runnable task, Throwable error) {
+        lastProgress = System.currentTimeMillis();
+    }
+
+    /** Waits for the event being handled and everything queued behind it; false if the deadline came first. */
+    public boolean awaitIdle(long deadlineNanos) throws InterruptedException {
+        while (getActiveCount() > 0 || !getQueue().isEmpty()) {
+            if (System.nanoTime() >= deadlineNanos) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    public int getBacklog() {
+        return getQueue().size();
+    }
+
+    /** How long the current event has been running without the queue moving, or 0 when idle. */
+    public long getStalledMillis() {
+        boolean busy = getActiveCount() > 0 || !getQueue().isEmpty();
+        return busy ? System.currentTimeMillis() - lastProgress : 0;
+    }
+}
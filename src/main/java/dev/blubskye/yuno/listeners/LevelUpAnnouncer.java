@@ -0,0 +1,151 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Level Up Announcer
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.listeners;
+
+import dev.blubskye.yuno.YunoBot;
+import dev.blubskye.yuno.database.GuildSettings;
+import dev.blubskye.yuno.outbound.OutboundScheduler;
+import dev.blubskye.yuno.util.ConcurrentLongObjectMap;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildMessageChannel;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes level-up announcements per guild and coalesces the ones headed for
+ * the same channel: the first level-up opens a short window, and everything
+ * that lands in it goes out as one message, so a busy channel's rate limit
+ * is left for moderation replies.
+ */
+public class LevelUpAnnouncer {
+    private static final Logger logger = LoggerFactory.getLogger(LevelUpAnnouncer.class);
+
+    private static final long WINDOW_MS = 3000;
+    private static final int MAX_LISTED = 25;
+
+    private static final class Batch {
+        // Highest level reached per user, in the order they levelled up
+        final Map<Long, Integer> levels = new LinkedHashMap<>();
+        boolean flushed;
+    }
+
+    private final YunoBot bot;
+    private final OutboundScheduler.Sender out;
+    private final ConcurrentLongObjectMap<Batch> batches = new ConcurrentLongObjectMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "yuno-level-ups");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LevelUpAnnouncer(YunoBot bot) {
+        this.bot = bot;
+        this.out = bot.getOutbound().sender(OutboundScheduler.Priority.ANNOUNCEMENT);
+    }
+
+    public void announce(Guild guild, MessageChannel source, User user, int level) {
+        GuildSettings settings = bot.getDatabase().getGuildSettings(guild.getIdLong());
+        String mode = settings != null ? settings.getLevelUpMode() : GuildSettings.LEVEL_UP_HERE;
+
+        switch (mode) {
+            case GuildSettings.LEVEL_UP_OFF -> {
+            }
+            case GuildSettings.LEVEL_UP_DM -> out.send(user.openPrivateChannel()
+                    .flatMap(channel -> channel.sendMessage(String.format(
+                            "\u2728 **Level Up!** \u2728\nYou've reached level **%d** in **%s**! \uD83D\uDC95",
+                            level, guild.getName()))),
+                    null, error -> logger.debug("Could not DM level-up to {}: {}", user.getId(), error.getMessage()));
+            case GuildSettings.LEVEL_UP_CHANNEL -> {
+                GuildMessageChannel target = guild.getChannelById(GuildMessageChannel.class, settings.getLevelUpChannelId());
+                enqueue(target != null && target.canTalk() ? target.getIdLong() : source.getIdLong(), user.getIdLong(), level);
+            }
+            default -> enqueue(source.getIdLong(), user.getIdLong(), level);
+        }
+    }
+
+    private void enqueue(long channelId, long userId, int level) {
+        while (true) {
+            Batch batch = batches.computeIfAbsent(channelId, id -> new Batch());
+            synchronized (batch) {
+                // Lost a race with the flush; the next pass gets a fresh batch
+                if (batch.flushed) {
+                    continue;
+                }
+                boolean first = batch.levels.isEmpty();
+                batch.levels.merge(userId, level, Math::max);
+                if (first) {
+                    scheduler.schedule(() -> flush(channelId, batch), WINDOW_MS, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+        }
+    }
+
+    private void flush(long channelId, Batch batch) {
+        Map<Long, Integer> levels;
+        synchronized (batch) {
+            if (batch.flushed) {
+                return;
+            }
+            batch.flushed = true;
+            batches.remove(channelId);
+            levels = batch.levels;
+        }
+
+        JDA jda = bot.getJda();
+        MessageChannel channel = jda != null ? jda.getChannelById(MessageChannel.class, channelId) : null;
+        if (channel == null || levels.isEmpty()) {
+            return;
+        }
+        out.sendMessage(channel, render(levels), null,
+                error -> logger.debug("Could not announce level-ups in {}: {}", channelId, error.getMessage()));
+    }
+
+    private static String render(Map<Long, Integer> levels) {
+        if (levels.size() == 1) {
+            Map.Entry<Long, Integer> only = levels.entrySet().iterator().next();
+            return String.format(
+                    "\u2728 **Level Up!** \u2728\nCongratulations <@%d>! You've reached level **%d**! \uD83D\uDC95",
+                    only.getKey(), only.getValue());
+        }
+
+        StringBuilder sb = new StringBuilder("\u2728 **Level Up!** \u2728\nCongratulations, everyone~ \uD83D\uDC95\n");
+        int listed = 0;
+        for (Map.Entry<Long, Integer> entry : levels.entrySet()) {
+            if (listed++ == MAX_LISTED) {
+                sb.append(String.format("...and **%d** more~\n", levels.size() - MAX_LISTED));
+                break;
+            }
+            sb.append(String.format("<@%d> reached level **%d**\n", entry.getKey(), entry.getValue()));
+        }
+        return sb.toString();
+    }
+
+    // Sends whatever is still waiting, so a restart doesn't swallow announcements
+    public void stop() {
+        scheduler.shutdownNow();
+        List<Long> pending = new ArrayList<>();
+        batches.forEach((channelId, batch) -> pending.add(channelId));
+        for (long channelId : pending) {
+            Batch batch = batches.get(channelId);
+            if (batch != null) {
+                flush(channelId, batch);
+            }
+        }
+    }
+}
@@ -7,33 +7,46 @@
 package dev.blubskye.yuno.listeners;
 
 import dev.blubskye.yuno.YunoBot;
+import dev.blubskye.yuno.commands.DataCommands;
 import dev.blubskye.yuno.commands.FunCommands;
 import dev.blubskye.yuno.commands.ModerationCommands;
 import dev.blubskye.yuno.commands.UtilityCommands;
 import dev.blubskye.yuno.database.GuildSettings;
-import dev.blubskye.yuno.database.UserXp;
+import dev.blubskye.yuno.database.XpAward;
+import dev.blubskye.yuno.logging.LogSampler;
+import dev.blubskye.yuno.outbound.OutboundScheduler;
+import dev.blubskye.yuno.util.LongExpiryMap;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 public class MessageListener extends ListenerAdapter {
     private static final Logger logger = LoggerFactory.getLogger(MessageListener.class);
+    private static final LogSampler commandLogSampler = new LogSampler(20, 1, TimeUnit.SECONDS);
 
     private final YunoBot bot;
     private final ModerationCommands moderationCommands;
     private final UtilityCommands utilityCommands;
     private final FunCommands funCommands;
+    private final DataCommands dataCommands;
     private final Random random;
+    private final LongExpiryMap xpCooldowns;
+    private final LongExpiryMap rateLimitWarnings = new LongExpiryMap(256);
+    private final OutboundScheduler.Sender out;
 
     public MessageListener(YunoBot bot) {
         this.bot = bot;
         this.moderationCommands = new ModerationCommands(bot);
         this.utilityCommands = new UtilityCommands(bot);
         this.funCommands = new FunCommands(bot);
+        this.dataCommands = new DataCommands(bot);
         this.random = new Random();
+        this.xpCooldowns = new LongExpiryMap(4096);
+        this.out = bot.getOutbound().sender(OutboundScheduler.Priority.REPLY);
     }
 
     @Override
@@ -41,12 +54,18 @@ public class MessageListener extends ListenerAdapter {
         // Ignore bots
         if (event.getAuthor().isBot()) return;
 
+        // Ignore everything until startup has finished
+        if (!bot.isReady()) return;
+
         // Handle DMs
         if (!event.isFromGuild()) {
-            event.getChannel().sendMessage(bot.getConfig().getDmMessage()).queue();
+            out.sendMessage(event.getChannel(), bot.getConfig().getDmMessage());
             return;
         }
 
+        bot.getActivity().record(event.getGuild().getIdLong(), event.getChannel().getIdLong(),
+                event.getAuthor().getIdLong(), System.currentTimeMillis());
+
         String content = event.getMessage().getContentRaw();
         String prefix = bot.getDatabase().getPrefix(
                 event.getGuild().getIdLong(), bot.getConfig().getDefaultPrefix());
@@ -63,61 +82,111 @@ public class MessageListener extends ListenerAdapter {
         if (commandContent.isEmpty()) return;
 
         String[] parts = commandContent.split("\\s+", 2);
-        String command = parts[0].toLowerCase();
+        String command = canonicalCommand(parts[0].toLowerCase());
         String args = parts.length > 1 ? parts[1] : null;
 
-        logger.debug("Received prefix command: {} from {}", command, event.getAuthor().getName());
+        if (logger.isDebugEnabled() && commandLogSampler.sample()) {
+            logger.debug("Received prefix command: {} from {} ({} similar suppressed)",
+                    command, event.getAuthor().getName(), commandLogSampler.drainSuppressed());
+        }
 
         // Route to command handlers
-        switch (command) {
+        Runnable handler = switch (command) {
             // Utility commands
-            case "ping" -> utilityCommands.handlePingPrefix(event);
-            case "help" -> utilityCommands.handleHelpPrefix(event);
-            case "source" -> utilityCommands.handleSourcePrefix(event);
-            case "prefix" -> utilityCommands.handlePrefixPrefix(event, args);
-            case "auto-clean", "autoclean" -> utilityCommands.handleAutoCleanPrefix(event);
-            case "delay" -> utilityCommands.handleDelayPrefix(event, args);
-            case "xp", "level", "rank" -> utilityCommands.handleXpPrefix(event);
-            case "leaderboard", "lb", "top" -> utilityCommands.handleLeaderboardPrefix(event);
+            case "ping" -> () -> utilityCommands.handlePingPrefix(event);
+            case "help" -> () -> utilityCommands.handleHelpPrefix(event);
+            case "source" -> () -> utilityCommands.handleSourcePrefix(event);
+            case "prefix" -> () -> utilityCommands.handlePrefixPrefix(event, args);
+            case "auto-clean" -> () -> utilityCommands.handleAutoCleanPrefix(event);
+            case "delay" -> () -> utilityCommands.handleDelayPrefix(event, args);
+            case "xp" -> () -> utilityCommands.handleXpPrefix(event);
+            case "leaderboard" -> () -> utilityCommands.handleLeaderboardPrefix(event, args);
+            case "stats" -> () -> utilityCommands.handleStatsPrefix(event);
+            case "xp-cooldown" -> () -> utilityCommands.handleXpCooldownPrefix(event, args);
+            case "level-ups" -> () -> utilityCommands.handleLevelUpsPrefix(event, args);
+            case "level-curve" -> () -> utilityCommands.handleLevelCurvePrefix(event, args);
+            case "retention" -> () -> utilityCommands.handleRetentionPrefix(event, args);
+            case "raid-guard" -> () -> utilityCommands.handleRaidGuardPrefix(event, args);
+            case "message-log" -> () -> utilityCommands.handleMessageLogPrefix(event, args);
+            case "export" -> () -> dataCommands.handleExportPrefix(event, args);
+            case "import" -> () -> dataCommands.handleImportPrefix(event, args);
 
             // Moderation commands
-            case "ban" -> moderationCommands.handleBanPrefix(event, args);
-            case "kick" -> moderationCommands.handleKickPrefix(event, args);
-            case "unban" -> moderationCommands.handleUnbanPrefix(event, args);
-            case "timeout" -> moderationCommands.handleTimeoutPrefix(event, args);
-            case "clean" -> moderationCommands.handleCleanPrefix(event, args);
-            case "mod-stats", "modstats" -> moderationCommands.handleModStatsPrefix(event);
+            case "ban" -> () -> moderationCommands.handleBanPrefix(event, args);
+            case "mass-ban" -> () -> moderationCommands.handleMassBanPrefix(event, args);
+            case "kick" -> () -> moderationCommands.handleKickPrefix(event, args);
+            case "unban" -> () -> moderationCommands.handleUnbanPrefix(event, args);
+            case "timeout" -> () -> moderationCommands.handleTimeoutPrefix(event, args);
+            case "clean" -> () -> moderationCommands.handleCleanPrefix(event, args);
+            case "mod-stats" -> () -> moderationCommands.handleModStatsPrefix(event);
+            case "import-bans" -> () -> dataCommands.handleImportBansPrefix(event);
 
             // Fun commands
-            case "8ball" -> funCommands.handle8BallPrefix(event, args);
+            case "8ball" -> () -> funCommands.handle8BallPrefix(event, args);
+            default -> null;
+        };
+        if (handler == null) return;
+
+        long wait = bot.getRateLimiter().tryAcquire(command, event.getGuild().getIdLong(), event.getAuthor().getIdLong());
+        if (wait > 0) {
+            // Say so once per burst, so the warnings can't be used to spam either
+            if (rateLimitWarnings.tryAcquire(event.getAuthor().getIdLong(), System.currentTimeMillis(), wait)) {
+                out.sendMessage(event.getChannel(), String.format(
+                        "\u23F3 %s Slow down a little~ Try again in %ds \uD83D\uDC95",
+                        event.getAuthor().getAsMention(), (wait + 999) / 1000));
+            }
+            return;
         }
+        handler.run();
+    }
+
+    // Folds aliases into the name the handlers and command costs use
+    private static String canonicalCommand(String command) {
+        return switch (command) {
+            case "autoclean" -> "auto-clean";
+            case "level", "rank" -> "xp";
+            case "lb", "top" -> "leaderboard";
+            case "xpcooldown" -> "xp-cooldown";
+            case "levelups" -> "level-ups";
+            case "levelcurve" -> "level-curve";
+            case "raidguard" -> "raid-guard";
+            case "messagelog" -> "message-log";
+            case "massban" -> "mass-ban";
+            case "modstats" -> "mod-stats";
+            case "activity" -> "stats";
+            case "importbans" -> "import-bans";
+            default -> command;
+        };
     }
 
     private void handleXpGain(MessageReceivedEvent event) {
-        // Check if leveling is enabled for this guild
-        GuildSettings settings = bot.getDatabase().getGuildSettings(event.getGuild().getIdLong());
+        long userId = event.getAuthor().getIdLong();
+        long guildId = event.getGuild().getIdLong();
+
+        // Settings come from the preloaded cache, so nothing here touches the database yet
+        GuildSettings settings = bot.getDatabase().getGuildSettings(guildId);
         if (settings != null && !settings.isLevelingEnabled()) {
             return;
         }
 
-        long userId = event.getAuthor().getIdLong();
-        long guildId = event.getGuild().getIdLong();
+        int cooldownSeconds = settings != null && settings.getXpCooldownSeconds() >= 0
+                ? settings.getXpCooldownSeconds() : bot.getConfig().getXpCooldownSeconds();
+        if (cooldownSeconds > 0 && !xpCooldowns.tryAcquire(LongExpiryMap.pairKey(guildId, userId),
+                System.currentTimeMillis(), cooldownSeconds * 1000L)) {
+            return;
+        }
 
         // Add random XP (15-25)
         int xpGain = 15 + random.nextInt(11);
-        bot.getDatabase().addXp(userId, guildId, xpGain);
-
-        // Check for level up
-        UserXp userXp = bot.getDatabase().getUserXp(userId, guildId);
-        int newLevel = (int) Math.sqrt(userXp.getXp() / 100.0);
-
-        if (newLevel > userXp.getLevel()) {
-            bot.getDatabase().setLevel(userId, guildId, newLevel);
+        XpAward award = bot.getDatabase().awardXp(userId, guildId, xpGain, bot.getLevelCurve(guildId));
+        // An XP of 0 means the award wasn't written, so there's nothing to count
+        if (award.getXp() != 0) {
+            bot.getLeaderboardCache().onXpAwarded(guildId, userId, award.getXp());
+            bot.getGlobalLeaderboard().onXpAwarded(userId, xpGain);
+        }
 
-            event.getChannel().sendMessage(String.format(
-                    "\u2728 **Level Up!** \u2728\nCongratulations %s! You've reached level **%d**! \uD83D\uDC95",
-                    event.getAuthor().getAsMention(), newLevel
-            )).queue();
+        if (award.isLevelUp()) {
+            bot.getLevelUpAnnouncer().announce(event.getGuild(), event.getChannel(), event.getAuthor(), award.getNewLevel());
         }
     }
 }
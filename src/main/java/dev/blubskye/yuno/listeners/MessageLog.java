@@ -0,0 +1,352 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Message Log
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.listeners;
+
+import dev.blubskye.yuno.YunoBot;
+import dev.blubskye.yuno.database.GuildSettings;
+import dev.blubskye.yuno.metrics.Metrics;
+import dev.blubskye.yuno.outbound.OutboundScheduler;
+import dev.blubskye.yuno.util.ConcurrentLongObjectMap;
+import dev.blubskye.yuno.util.LongObjectMap;
+import dev.blubskye.yuno.util.RecentMessageCache;
+import dev.blubskye.yuno.util.RecentMessageCache.CachedMessage;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.PermissionOverride;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.channel.concrete.ThreadChannel;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildChannel;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildMessageChannel;
+import net.dv8tion.jda.api.events.channel.ChannelDeleteEvent;
+import net.dv8tion.jda.api.events.channel.update.GenericChannelUpdateEvent;
+import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleAddEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleRemoveEvent;
+import net.dv8tion.jda.api.events.guild.override.GenericPermissionOverrideEvent;
+import net.dv8tion.jda.api.events.message.MessageBulkDeleteEvent;
+import net.dv8tion.jda.api.events.message.MessageDeleteEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.message.MessageUpdateEvent;
+import net.dv8tion.jda.api.events.role.RoleCreateEvent;
+import net.dv8tion.jda.api.events.role.RoleDeleteEvent;
+import net.dv8tion.jda.api.events.role.update.GenericRoleUpdateEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.utils.TimeUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Posts deleted and edited messages to a guild's message log channel. Discord
+ * doesn't say what a deleted message said, so messages are remembered as they
+ * arrive, only in guilds with a log channel, in a {@link RecentMessageCache}
+ * capped at {@code message_cache_megabytes}. Anything older than the cache
+ * (or from before a restart) can't be shown and isn't logged, and neither
+ * is anything from a channel the log's readers couldn't see themselves.
+ * That check walks every role, so its answer is kept per channel until
+ * roles, permission overrides or the log channel change.
+ */
+public class MessageLog extends ListenerAdapter {
+    private static final Logger logger = LoggerFactory.getLogger(MessageLog.class);
+
+    private static final int MESSAGES_PER_CHANNEL = 100;
+    // Before and after both fit in one Discord message
+    private static final int SHOWN_CHARS = 800;
+
+    private final YunoBot bot;
+    private final OutboundScheduler.Sender out;
+    private final RecentMessageCache cache;
+    private final LongAdder deletedLogged;
+    private final LongAdder editsLogged;
+    private final ConcurrentLongObjectMap<Audience> audiences = new ConcurrentLongObjectMap<>();
+
+    public MessageLog(YunoBot bot) {
+        this.bot = bot;
+        // Logs can wait, or be dropped in a flood, before anything a user asked for
+        this.out = bot.getOutbound().sender(OutboundScheduler.Priority.ANNOUNCEMENT);
+        this.cache = new RecentMessageCache(bot.getConfig().getMessageCacheMegabytes() * 1024L * 1024L,
+                MESSAGES_PER_CHANNEL);
+        Metrics metrics = bot.getMetrics();
+        this.deletedLogged = metrics.counter("message_log.deleted");
+        this.editsLogged = metrics.counter("message_log.edited");
+        metrics.gauge("message_cache.bytes", cache::getBytes);
+        metrics.gauge("message_cache.capacity_bytes", cache::getCapacityBytes);
+        metrics.gauge("message_cache.channels", cache::getChannels);
+        metrics.gauge("message_cache.messages", cache::getMessages);
+        metrics.gauge("message_cache.evictions", cache::getEvictions);
+    }
+
+    @Override
+    public void onMessageReceived(MessageReceivedEvent event) {
+        if (!bot.isReady() || !event.isFromGuild() || event.getAuthor().isBot()) {
+            return;
+        }
+        GuildMessageChannel log = logChannel(event.getGuild());
+        if (log == null || !canLog(event.getGuildChannel(), log)) {
+            return;
+        }
+        Message message = event.getMessage();
+        cache.put(event.getGuild().getIdLong(), event.getChannel().getIdLong(), message.getIdLong(),
+                event.getAuthor().getIdLong(), message.getContentRaw(), attachmentUrls(message));
+    }
+
+    @Override
+    public void onMessageUpdate(MessageUpdateEvent event) {
+        if (!bot.isReady() || !event.isFromGuild() || event.getAuthor().isBot()) {
+            return;
+        }
+        Guild guild = event.getGuild();
+        GuildMessageChannel log = logChannel(guild);
+        if (log == null || !canLog(event.getGuildChannel(), log)) {
+            return;
+        }
+        Message message = event.getMessage();
+        List<String> attachments = attachmentUrls(message);
+        CachedMessage before = cache.update(guild.getIdLong(), event.getChannel().getIdLong(), message.getIdLong(),
+                event.getAuthor().getIdLong(), message.getContentRaw(), attachments);
+        // Embeds unfurling fire updates too; only log what the author changed
+        if (before == null || (before.getContent().equals(message.getContentRaw())
+                && before.getAttachments().equals(attachments))) {
+            return;
+        }
+
+        StringBuilder text = new StringBuilder()
+                .append("\u270F\uFE0F **Message edited** in <#").append(event.getChannel().getId())
+                .append("> by <@").append(before.getAuthorId()).append("> \u00B7 ")
+                .append(message.getJumpUrl()).append('\n')
+                .append("**Before:**\n").append(quote(before.getContent())).append('\n')
+                .append("**After:**\n").append(quote(message.getContentRaw()));
+        if (!before.getAttachments().equals(attachments)) {
+            text.append("\n**Attachments removed:** ").append(removedAttachments(before.getAttachments(), attachments));
+        }
+        post(log, text);
+        editsLogged.increment();
+    }
+
+    @Override
+    public void onMessageDelete(MessageDeleteEvent event) {
+        if (!event.isFromGuild()) {
+            return;
+        }
+        CachedMessage deleted = cache.remove(event.getChannel().getIdLong(), event.getMessageIdLong());
+        if (deleted == null || !bot.isReady()) {
+            return;
+        }
+        // Permissions may have changed since the message was cached
+        GuildMessageChannel log = logChannel(event.getGuild());
+        if (log == null || !canLog(event.getGuildChannel(), log)) {
+            return;
+        }
+
+        StringBuilder text = new StringBuilder()
+                .append("\uD83D\uDDD1\uFE0F **Message deleted** in <#").append(event.getChannel().getId())
+                .append(">\n**Author:** <@").append(deleted.getAuthorId()).append("> \u00B7 sent <t:")
+                .append(TimeUtil.getTimeCreated(deleted.getMessageId()).toEpochSecond()).append(":R>\n")
+                .append(quote(deleted.getContent()));
+        if (!deleted.getAttachments().isEmpty()) {
+            text.append("\n**Attachments:** ").append(String.join(" ", deleted.getAttachments()));
+        }
+        post(log, text);
+        deletedLogged.increment();
+    }
+
+    // Purges are already in the mod log; just forget the messages
+    @Override
+    public void onMessageBulkDelete(MessageBulkDeleteEvent event) {
+        long channelId = event.getChannel().getIdLong();
+        for (String messageId : event.getMessageIds()) {
+            cache.remove(channelId, Long.parseLong(messageId));
+        }
+    }
+
+    @Override
+    public void onChannelDelete(ChannelDeleteEvent event) {
+        cache.removeChannel(event.getChannel().getIdLong());
+        if (event.isFromGuild()) {
+            audiences.remove(event.getGuild().getIdLong());
+        }
+    }
+
+    // Anything that can change who sees which channel throws the guild's answers away
+
+    @Override
+    public void onGenericChannelUpdate(GenericChannelUpdateEvent<?> event) {
+        if (event.isFromGuild()) {
+            audiences.remove(event.getGuild().getIdLong());
+        }
+    }
+
+    @Override
+    public void onGenericPermissionOverride(GenericPermissionOverrideEvent event) {
+        audiences.remove(event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onRoleCreate(RoleCreateEvent event) {
+        audiences.remove(event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onRoleDelete(RoleDeleteEvent event) {
+        audiences.remove(event.getGuild().getIdLong());
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void onGenericRoleUpdate(GenericRoleUpdateEvent event) {
+        audiences.remove(event.getGuild().getIdLong());
+    }
+
+    // Members only matter when the log lets them in by name
+
+    @Override
+    public void onGuildMemberJoin(GuildMemberJoinEvent event) {
+        forgetIfNamedInLog(event.getMember());
+    }
+
+    @Override
+    public void onGuildMemberRoleAdd(GuildMemberRoleAddEvent event) {
+        forgetIfNamedInLog(event.getMember());
+    }
+
+    @Override
+    public void onGuildMemberRoleRemove(GuildMemberRoleRemoveEvent event) {
+        forgetIfNamedInLog(event.getMember());
+    }
+
+    @Override
+    public void onGuildLeave(GuildLeaveEvent event) {
+        audiences.remove(event.getGuild().getIdLong());
+    }
+
+    /** Forgets everything remembered in a guild, once it stops logging messages. */
+    public void forgetGuild(long guildId) {
+        cache.removeGuild(guildId);
+        audiences.remove(guildId);
+    }
+
+    /** Drops what was worked out for the guild's previous log channel. */
+    public void logChannelChanged(long guildId) {
+        audiences.remove(guildId);
+    }
+
+    // Null when the guild has no log channel, or it is gone
+    private GuildMessageChannel logChannel(Guild guild) {
+        GuildSettings settings = bot.getDatabase().getGuildSettings(guild.getIdLong());
+        if (settings == null || settings.getMessageLogChannelId() == 0) {
+            return null;
+        }
+        return guild.getChannelById(GuildMessageChannel.class, settings.getMessageLogChannelId());
+    }
+
+    private void forgetIfNamedInLog(Member member) {
+        Audience audience = audiences.get(member.getGuild().getIdLong());
+        if (audience == null) {
+            return;
+        }
+        GuildChannel log = member.getGuild().getGuildChannelById(audience.logChannelId);
+        if (log == null || log.getPermissionContainer().getPermissionOverride(member) != null) {
+            audiences.remove(member.getGuild().getIdLong());
+        }
+    }
+
+    // Private threads never share the log's audience; anything else goes by its permission container
+    private boolean canLog(GuildChannel source, GuildMessageChannel log) {
+        if (source instanceof ThreadChannel thread && !thread.isPublic()) {
+            return false;
+        }
+        GuildChannel container = source.getPermissionContainer();
+        long guildId = log.getGuild().getIdLong();
+        Audience audience = audiences.get(guildId);
+        if (audience == null || audience.logChannelId != log.getIdLong()) {
+            audience = new Audience(log.getIdLong());
+            audiences.put(guildId, audience);
+        }
+        synchronized (audience) {
+            Boolean shared = audience.verdicts.get(container.getIdLong());
+            if (shared == null) {
+                shared = sharesAudience(container, log);
+                audience.verdicts.put(container.getIdLong(), shared);
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Whether everyone who can read the log could read the source channel
+     * anyway, so staff-only channels never leak into a log with a wider
+     * audience. Each role is checked on its own (with {@code @everyone}),
+     * and members let into the log by name must be able to see the source too.
+     */
+    private static boolean sharesAudience(GuildChannel container, GuildChannel log) {
+        for (Role role : container.getGuild().getRoles()) {
+            if (role.hasAccess(log) && !role.hasAccess(container)) {
+                return false;
+            }
+        }
+        for (PermissionOverride override : log.getPermissionContainer().getMemberPermissionOverrides()) {
+            if (override.getAllowed().contains(Permission.VIEW_CHANNEL)) {
+                Member member = override.getMember();
+                if (member == null || !member.hasAccess(container)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void post(GuildMessageChannel channel, StringBuilder text) {
+        if (!channel.canTalk()) {
+            logger.debug("Can't post to the message log of guild {}", channel.getGuild().getId());
+            return;
+        }
+        if (text.length() > Message.MAX_CONTENT_LENGTH) {
+            text.setLength(Message.MAX_CONTENT_LENGTH - 1);
+            text.append('\u2026');
+        }
+        // Quoted messages may mention anyone; nobody should be pinged by the log
+        out.send(channel, channel.sendMessage(text).setAllowedMentions(List.of()));
+    }
+
+    // A guild's log channel, with whether each source permission container shares its audience
+    private static final class Audience {
+        private final long logChannelId;
+        private final LongObjectMap<Boolean> verdicts = new LongObjectMap<>();
+
+        private Audience(long logChannelId) {
+            this.logChannelId = logChannelId;
+        }
+    }
+
+    private static String quote(String content) {
+        if (content.isEmpty()) {
+            return "> *(no text)*";
+        }
+        String shown = content.length() > SHOWN_CHARS ? content.substring(0, SHOWN_CHARS) + "\u2026" : content;
+        return "> " + shown.replace("\n", "\n> ");
+    }
+
+    private static List<String> attachmentUrls(Message message) {
+        List<String> urls = new ArrayList<>();
+        for (Message.Attachment attachment : message.getAttachments()) {
+            urls.add(attachment.getUrl());
+        }
+        return urls;
+    }
+
+    private static String removedAttachments(List<String> before, List<String> after) {
+        List<String> removed = new ArrayList<>(before);
+        removed.removeAll(after);
+        return removed.isEmpty() ? "none" : String.join(" ", removed);
+    }
+}
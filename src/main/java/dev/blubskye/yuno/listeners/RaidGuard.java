@@ -0,0 +1,348 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Raid Guard
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.listeners;
+
+import dev.blubskye.yuno.YunoBot;
+import dev.blubskye.yuno.config.YunoConfig;
+import dev.blubskye.yuno.database.GuildSettings;
+import dev.blubskye.yuno.database.ModAction;
+import dev.blubskye.yuno.outbound.OutboundScheduler;
+import dev.blubskye.yuno.util.ConcurrentLongObjectMap;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.UserSnowflake;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildMessageChannel;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts joins per guild over a short sliding window and locks the guild
+ * down when they pile up: verification goes to High, everyone who joined
+ * in the window and everyone joining after is timed out, and the mods get
+ * an alert. Accounts younger than a few days count double. The lockdown
+ * lifts itself once joins have been quiet for a while. A running lockdown
+ * is saved with the guild's settings, so one interrupted by a restart is
+ * picked up again and still lifted.
+ */
+public class RaidGuard extends ListenerAdapter {
+    private static final Logger logger = LoggerFactory.getLogger(RaidGuard.class);
+
+    public static final int MIN_THRESHOLD = 2;
+    public static final int MAX_THRESHOLD = 50;
+    // Enough joins to reach the highest threshold even when none are young
+    private static final int CAPACITY = 64;
+    private static final long DISCORD_EPOCH = 1420070400000L;
+    private static final long SWEEP_SECONDS = 30;
+    private static final String REASON = "Raid lockdown";
+
+    private static final class JoinWindow {
+        // Ring of recent joins: join time in millis shifted left once, low bit set for young accounts
+        final long[] joins = new long[CAPACITY];
+        final long[] userIds = new long[CAPACITY];
+        int next;
+        long lastJoin;
+        long lockdownUntil;
+        // Level to go back to when the lockdown lifts, if we raised it
+        Guild.VerificationLevel previousLevel;
+        boolean removed;
+
+        void record(long now, long userId, boolean young) {
+            joins[next] = now << 1 | (young ? 1 : 0);
+            userIds[next] = userId;
+            next = (next + 1) & (CAPACITY - 1);
+            lastJoin = now;
+        }
+
+        // Walks back from the newest join until one falls out of the window
+        int score(long since) {
+            int score = 0;
+            for (int i = 1; i <= CAPACITY; i++) {
+                long join = joins[(next - i) & (CAPACITY - 1)];
+                if (join == 0 || join >>> 1 < since) {
+                    break;
+                }
+                score += 1 + (int) (join & 1);
+            }
+            return score;
+        }
+
+        List<Long> usersSince(long since) {
+            List<Long> users = new ArrayList<>();
+            for (int i = 1; i <= CAPACITY; i++) {
+                int slot = (next - i) & (CAPACITY - 1);
+                if (joins[slot] == 0 || joins[slot] >>> 1 < since) {
+                    break;
+                }
+                users.add(userIds[slot]);
+            }
+            return users;
+        }
+    }
+
+    private final YunoBot bot;
+    private final OutboundScheduler.Sender out;
+    private final ConcurrentLongObjectMap<JoinWindow> windows = new ConcurrentLongObjectMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "yuno-raid-guard");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RaidGuard(YunoBot bot) {
+        this.bot = bot;
+        this.out = bot.getOutbound().sender(OutboundScheduler.Priority.MODERATION);
+        scheduler.scheduleWithFixedDelay(this::sweep, SWEEP_SECONDS, SWEEP_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void onGuildMemberJoin(GuildMemberJoinEvent event) {
+        if (!bot.isReady() || event.getUser().isBot()) {
+            return;
+        }
+        Guild guild = event.getGuild();
+        YunoConfig config = bot.getConfig();
+        int threshold = thresholdFor(guild.getIdLong(), config);
+        if (threshold == 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long userId = event.getUser().getIdLong();
+        // The account's creation time is in its ID, no need to look at the user object
+        long accountAge = now - ((userId >>> 22) + DISCORD_EPOCH);
+        boolean young = accountAge < TimeUnit.DAYS.toMillis(config.getRaidYoungAccountDays());
+        long since = now - TimeUnit.SECONDS.toMillis(config.getRaidWindowSeconds());
+        long lockdownMillis = TimeUnit.MINUTES.toMillis(config.getRaidLockdownMinutes());
+
+        while (true) {
+            JoinWindow window = windows.computeIfAbsent(guild.getIdLong(), id -> new JoinWindow());
+            List<Long> raiders;
+            boolean tripped;
+            int score;
+            synchronized (window) {
+                // Lost a race with the sweep; the next pass gets a fresh window
+                if (window.removed) {
+                    continue;
+                }
+                window.record(now, userId, young);
+                score = window.score(since);
+                if (window.lockdownUntil != 0) {
+                    // Joins during a lockdown keep it going
+                    window.lockdownUntil = Math.max(window.lockdownUntil, now + lockdownMillis);
+                    tripped = false;
+                    raiders = List.of(userId);
+                } else if (score >= threshold) {
+                    window.lockdownUntil = now + lockdownMillis;
+                    tripped = true;
+                    raiders = window.usersSince(since);
+                } else {
+                    return;
+                }
+            }
+
+            if (tripped) {
+                startLockdown(guild, window, raiders, score, config);
+            } else {
+                timeout(guild, raiders, config);
+            }
+            return;
+        }
+    }
+
+    public boolean isLockedDown(long guildId) {
+        JoinWindow window = windows.get(guildId);
+        if (window == null) {
+            return false;
+        }
+        synchronized (window) {
+            return window.lockdownUntil != 0;
+        }
+    }
+
+    /** Lifts a lockdown early; false if there wasn't one. */
+    public boolean endLockdown(Guild guild) {
+        JoinWindow window = windows.get(guild.getIdLong());
+        if (window == null) {
+            return false;
+        }
+        Guild.VerificationLevel restore;
+        synchronized (window) {
+            if (window.lockdownUntil == 0) {
+                return false;
+            }
+            window.lockdownUntil = 0;
+            restore = window.previousLevel;
+            window.previousLevel = null;
+        }
+        bot.getDatabase().setRaidLockdown(guild.getIdLong(), 0, -1);
+
+        if (restore != null && guild.getVerificationLevel() == Guild.VerificationLevel.HIGH) {
+            out.send(guild.getManager().setVerificationLevel(restore).reason("Raid lockdown lifted"), null,
+                    error -> logger.warn("Could not restore verification in guild {}: {}", guild.getId(), error.getMessage()));
+        }
+        alert(guild, "\uD83D\uDC95 **Lockdown lifted~**\nThings have calmed down, so I've put everything back the way it was.");
+        logger.info("Raid lockdown lifted in guild {}~", guild.getId());
+        return true;
+    }
+
+    /** Picks up lockdowns a restart interrupted; ones that ran out meanwhile are lifted on the next sweep. */
+    public void restoreLockdowns(JDA jda) {
+        long now = System.currentTimeMillis();
+        for (Guild guild : jda.getGuilds()) {
+            GuildSettings settings = bot.getDatabase().getGuildSettings(guild.getIdLong());
+            if (settings == null || settings.getRaidLockdownUntil() == 0) {
+                continue;
+            }
+            JoinWindow window = windows.computeIfAbsent(guild.getIdLong(), id -> new JoinWindow());
+            synchronized (window) {
+                window.lockdownUntil = settings.getRaidLockdownUntil() * 1000;
+                window.previousLevel = settings.getRaidPreviousVerification() >= 0
+                        ? Guild.VerificationLevel.fromKey(settings.getRaidPreviousVerification()) : null;
+                window.lastJoin = now;
+            }
+            logger.info("Resuming the raid lockdown of guild {}~", guild.getId());
+        }
+    }
+
+    public int thresholdFor(long guildId, YunoConfig config) {
+        GuildSettings settings = bot.getDatabase().getGuildSettings(guildId);
+        return settings != null && settings.getRaidJoinThreshold() >= 0
+                ? settings.getRaidJoinThreshold() : config.getRaidJoinThreshold();
+    }
+
+    private void startLockdown(Guild guild, JoinWindow window, List<Long> raiders, int score, YunoConfig config) {
+        logger.warn("Raid detected in guild {}: {} recent joins (score {}), locking down~", guild.getId(), raiders.size(), score);
+
+        boolean raised = false;
+        Guild.VerificationLevel current = guild.getVerificationLevel();
+        if (current.getKey() < Guild.VerificationLevel.HIGH.getKey()
+                && guild.getSelfMember().hasPermission(Permission.MANAGE_SERVER)) {
+            synchronized (window) {
+                window.previousLevel = current;
+            }
+            out.send(guild.getManager().setVerificationLevel(Guild.VerificationLevel.HIGH).reason(REASON), null,
+                    error -> logger.warn("Could not raise verification in guild {}: {}", guild.getId(), error.getMessage()));
+            raised = true;
+        }
+        long until;
+        synchronized (window) {
+            until = window.lockdownUntil;
+        }
+        // Saved with its planned end; joins that stretch it only live in memory, a restart just lifts it a bit sooner
+        bot.getDatabase().setRaidLockdown(guild.getIdLong(), until / 1000, raised ? current.getKey() : -1);
+        timeout(guild, raiders, config);
+
+        alert(guild, String.format(
+                "\uD83D\uDEA8 **Raid detected!**\nSomeone's trying to hurt you... I won't let them~ \uD83D\uDD2A\n\n" +
+                        "**Recent joins:** %d in %ds\n**Lockdown:** %d minutes%s\n" +
+                        "New joiners are timed out until it lifts. Use `/raid-guard end_lockdown:True` to lift it early, " +
+                        "or `/mass-ban joined_minutes:5` to clean up~",
+                raiders.size(), config.getRaidWindowSeconds(), config.getRaidLockdownMinutes(),
+                raised ? ", verification raised to High" : ""));
+    }
+
+    private void timeout(Guild guild, List<Long> userIds, YunoConfig config) {
+        if (!guild.getSelfMember().hasPermission(Permission.MODERATE_MEMBERS)) {
+            return;
+        }
+        Duration duration = Duration.ofMinutes(config.getRaidLockdownMinutes());
+        long selfId = guild.getSelfMember().getIdLong();
+        for (long userId : userIds) {
+            out.send(guild.timeoutFor(UserSnowflake.fromId(userId), duration).reason(REASON),
+                    success -> {
+                        ModAction action = new ModAction();
+                        action.setGuildId(guild.getIdLong());
+                        action.setModeratorId(selfId);
+                        action.setTargetId(userId);
+                        action.setActionType("timeout");
+                        action.setReason(String.format("%s (%d minutes)", REASON, config.getRaidLockdownMinutes()));
+                        action.setTimestamp(System.currentTimeMillis() / 1000);
+                        bot.getDatabase().logModAction(action);
+                    },
+                    error -> logger.debug("Could not time out {} in guild {}: {}", userId, guild.getId(), error.getMessage()));
+        }
+    }
+
+    private void alert(Guild guild, String message) {
+        GuildSettings settings = bot.getDatabase().getGuildSettings(guild.getIdLong());
+        GuildMessageChannel channel = settings != null && settings.getModAlertChannelId() != 0
+                ? guild.getChannelById(GuildMessageChannel.class, settings.getModAlertChannelId()) : null;
+        if (channel == null) {
+            channel = guild.getSafetyAlertsChannel() != null ? guild.getSafetyAlertsChannel() : guild.getSystemChannel();
+        }
+        if (channel == null || !channel.canTalk()) {
+            logger.warn("No channel to alert the mods of guild {} in", guild.getId());
+            return;
+        }
+        out.sendMessage(channel, message);
+    }
+
+    // Lifts expired lockdowns and forgets guilds that have gone quiet
+    private void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            long idle = now - TimeUnit.SECONDS.toMillis(bot.getConfig().getRaidWindowSeconds());
+            List<Long> expired = new ArrayList<>();
+            List<Long> quiet = new ArrayList<>();
+            windows.forEach((guildId, window) -> {
+                synchronized (window) {
+                    if (window.lockdownUntil != 0 && window.lockdownUntil <= now) {
+                        expired.add(guildId);
+                    } else if (window.lockdownUntil == 0 && window.lastJoin < idle) {
+                        quiet.add(guildId);
+                    }
+                }
+            });
+
+            for (long guildId : quiet) {
+                JoinWindow window = windows.get(guildId);
+                if (window == null) {
+                    continue;
+                }
+                synchronized (window) {
+                    if (window.lockdownUntil == 0 && window.lastJoin < idle) {
+                        window.removed = true;
+                        windows.remove(guildId);
+                    }
+                }
+            }
+
+            JDA jda = bot.getJda();
+            for (long guildId : expired) {
+                Guild guild = jda != null ? jda.getGuildById(guildId) : null;
+                if (guild != null) {
+                    endLockdown(guild);
+                    continue;
+                }
+                // We left the guild while it was locked down
+                JoinWindow window = windows.get(guildId);
+                if (window != null) {
+                    synchronized (window) {
+                        window.removed = true;
+                        windows.remove(guildId);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error sweeping raid windows: {}", e.getMessage());
+        }
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+}
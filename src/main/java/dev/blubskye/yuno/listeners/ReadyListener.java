@@ -25,5 +25,6 @@ public class ReadyListener extends ListenerAdapter {
     public void onReady(ReadyEvent event) {
         logger.info("Yuno is online! Logged in as {}~", event.getJDA().getSelfUser().getName());
         logger.info("I'm watching over {} servers for you~", event.getGuildTotalCount());
+        bot.onGatewayReady(event.getJDA());
     }
 }
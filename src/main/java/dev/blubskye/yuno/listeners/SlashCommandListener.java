@@ -7,34 +7,59 @@
 package dev.blubskye.yuno.listeners;
 
 import dev.blubskye.yuno.YunoBot;
+import dev.blubskye.yuno.commands.DataCommands;
 import dev.blubskye.yuno.commands.FunCommands;
 import dev.blubskye.yuno.commands.ModerationCommands;
 import dev.blubskye.yuno.commands.UtilityCommands;
+import dev.blubskye.yuno.logging.LogSampler;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.TimeUnit;
+
 public class SlashCommandListener extends ListenerAdapter {
     private static final Logger logger = LoggerFactory.getLogger(SlashCommandListener.class);
+    private static final LogSampler commandLogSampler = new LogSampler(20, 1, TimeUnit.SECONDS);
 
     private final YunoBot bot;
     private final ModerationCommands moderationCommands;
     private final UtilityCommands utilityCommands;
     private final FunCommands funCommands;
+    private final DataCommands dataCommands;
 
     public SlashCommandListener(YunoBot bot) {
         this.bot = bot;
         this.moderationCommands = new ModerationCommands(bot);
         this.utilityCommands = new UtilityCommands(bot);
         this.funCommands = new FunCommands(bot);
+        this.dataCommands = new DataCommands(bot);
     }
 
     @Override
     public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
         String commandName = event.getName();
 
-        logger.debug("Received slash command: {} from {}", commandName, event.getUser().getName());
+        if (!bot.isReady()) {
+            event.reply(bot.isShuttingDown()
+                    ? "\uD83D\uDCA4 I'm going to sleep for a moment... try again soon~"
+                    : "\u23F3 I'm still waking up... try again in a moment~").setEphemeral(true).queue();
+            return;
+        }
+
+        if (logger.isDebugEnabled() && commandLogSampler.sample()) {
+            logger.debug("Received slash command: {} from {} ({} similar suppressed)",
+                    commandName, event.getUser().getName(), commandLogSampler.drainSuppressed());
+        }
+
+        long wait = bot.getRateLimiter().tryAcquire(commandName,
+                event.getGuild() != null ? event.getGuild().getIdLong() : 0, event.getUser().getIdLong());
+        if (wait > 0) {
+            event.reply(String.format("\u23F3 Slow down a little~ Try again in %ds \uD83D\uDC95", (wait + 999) / 1000))
+                    .setEphemeral(true).queue();
+            return;
+        }
 
         switch (commandName) {
             // Utility commands
@@ -46,14 +71,25 @@ public class SlashCommandListener extends ListenerAdapter {
             case "delay" -> utilityCommands.handleDelay(event);
             case "xp" -> utilityCommands.handleXp(event);
             case "leaderboard" -> utilityCommands.handleLeaderboard(event);
+            case "stats" -> utilityCommands.handleStats(event);
+            case "xp-cooldown" -> utilityCommands.handleXpCooldown(event);
+            case "level-ups" -> utilityCommands.handleLevelUps(event);
+            case "level-curve" -> utilityCommands.handleLevelCurve(event);
+            case "retention" -> utilityCommands.handleRetention(event);
+            case "raid-guard" -> utilityCommands.handleRaidGuard(event);
+            case "message-log" -> utilityCommands.handleMessageLog(event);
+            case "export" -> dataCommands.handleExport(event);
+            case "import" -> dataCommands.handleImport(event);
 
             // Moderation commands
             case "ban" -> moderationCommands.handleBan(event);
+            case "mass-ban" -> moderationCommands.handleMassBan(event);
             case "kick" -> moderationCommands.handleKick(event);
             case "unban" -> moderationCommands.handleUnban(event);
             case "timeout" -> moderationCommands.handleTimeout(event);
             case "clean" -> moderationCommands.handleClean(event);
             case "mod-stats" -> moderationCommands.handleModStats(event);
+            case "import-bans" -> dataCommands.handleImportBans(event);
 
             // Fun commands
             case "8ball" -> funCommands.handle8Ball(event);
@@ -0,0 +1,37 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Log Control
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.LoggerFactory;
+
+public final class LogControl {
+    private static final String APP_LOGGER = "dev.blubskye.yuno";
+
+    private LogControl() {
+    }
+
+    public static void setAppLevel(String level) {
+        if (level == null || level.isEmpty()) {
+            return;
+        }
+        ILoggerFactory factory = LoggerFactory.getILoggerFactory();
+        if (factory instanceof LoggerContext context) {
+            context.getLogger(APP_LOGGER).setLevel(Level.toLevel(level, Level.INFO));
+        }
+    }
+
+    // Stops the logger context so the async appenders flush their queues before exit
+    public static void shutdown() {
+        ILoggerFactory factory = LoggerFactory.getILoggerFactory();
+        if (factory instanceof LoggerContext context) {
+            context.stop();
+        }
+    }
+}
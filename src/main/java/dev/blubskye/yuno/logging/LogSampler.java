@@ -0,0 +1,45 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Log Sampler
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets at most {@code permits} events through per window and counts the rest,
+ * so repetitive per-message logs can't flood the appender queue.
+ */
+public class LogSampler {
+    private final int permits;
+    private final long windowNanos;
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public LogSampler(int permits, long window, TimeUnit unit) {
+        this.permits = permits;
+        this.windowNanos = unit.toNanos(window);
+    }
+
+    public boolean sample() {
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= windowNanos && windowStart.compareAndSet(start, now)) {
+            used.set(0);
+        }
+        if (used.incrementAndGet() <= permits) {
+            return true;
+        }
+        suppressed.incrementAndGet();
+        return false;
+    }
+
+    /** Returns how many events were dropped since the last call. */
+    public long drainSuppressed() {
+        return suppressed.getAndSet(0);
+    }
+}
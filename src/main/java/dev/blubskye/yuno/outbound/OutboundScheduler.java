@@ -0,0 +1,284 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Outbound Scheduler
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.outbound;
+
+import dev.blubskye.yuno.metrics.Metrics;
+import dev.blubskye.yuno.util.LongObjectMap;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.dv8tion.jda.api.requests.RestAction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Sits in front of JDA's requester so outbound REST calls are released by
+ * importance instead of arrival order. Each priority class has a budget of
+ * requests in flight; everything but moderation also shares a global cap,
+ * so once JDA is backed up on rate limits new moderation work still goes
+ * straight out while replies queue ahead of announcements and fun. Sends
+ * from droppable classes are discarded when their bucket (the channel
+ * they post to) already has a backlog.
+ */
+public class OutboundScheduler {
+    public enum Priority {
+        // budget = requests in flight, maxQueued = waiting requests before new ones are dropped
+        MODERATION(32, Integer.MAX_VALUE, false),
+        REPLY(16, 1000, false),
+        ANNOUNCEMENT(4, 200, true),
+        FUN(4, 100, true);
+
+        final int budget;
+        final int maxQueued;
+        final boolean droppable;
+
+        Priority(int budget, int maxQueued, boolean droppable) {
+            this.budget = budget;
+            this.maxQueued = maxQueued;
+            this.droppable = droppable;
+        }
+
+        String metricName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    // Shared by every class except moderation
+    private static final int MAX_IN_FLIGHT = 16;
+    // Pending sends in one bucket before droppable classes stop adding to it
+    private static final int SATURATED_BUCKET = 5;
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private record Task<T>(Priority priority, long bucket, RestAction<T> action,
+                           Consumer<? super T> success, Consumer<? super Throwable> failure) {
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Task<?>>[] queues = new ArrayDeque[PRIORITIES.length];
+    private final int[] inFlight = new int[PRIORITIES.length];
+    private int sharedInFlight;
+    // Bucket -> {pending sends}, counting both queued and in-flight ones
+    private final LongObjectMap<int[]> buckets = new LongObjectMap<>();
+    private final LongAdder[] sent = new LongAdder[PRIORITIES.length];
+    private final LongAdder[] failed = new LongAdder[PRIORITIES.length];
+    private final LongAdder[] dropped = new LongAdder[PRIORITIES.length];
+
+    public OutboundScheduler(Metrics metrics) {
+        for (Priority priority : PRIORITIES) {
+            int index = priority.ordinal();
+            queues[index] = new ArrayDeque<>();
+            sent[index] = metrics.counter("outbound." + priority.metricName() + ".sent");
+            failed[index] = metrics.counter("outbound." + priority.metricName() + ".failed");
+            dropped[index] = metrics.counter("outbound." + priority.metricName() + ".dropped");
+            metrics.gauge("outbound." + priority.metricName() + ".queued", () -> getQueueDepth(priority));
+            metrics.gauge("outbound." + priority.metricName() + ".in_flight", () -> getInFlight(priority));
+        }
+    }
+
+    /** Sends without a bucket, for interaction replies and DMs. */
+    public boolean send(Priority priority, RestAction<?> action) {
+        return send(priority, 0, action, null, null);
+    }
+
+    public boolean send(Priority priority, long bucket, RestAction<?> action) {
+        return send(priority, bucket, action, null, null);
+    }
+
+    /**
+     * Queues the action behind anything more important. Null callbacks fall back
+     * to JDA's defaults. Returns false if the send was dropped; callbacks don't run then.
+     */
+    public <T> boolean send(Priority priority, long bucket, RestAction<T> action,
+                            Consumer<? super T> success, Consumer<? super Throwable> failure) {
+        int index = priority.ordinal();
+        synchronized (this) {
+            if (queues[index].size() >= priority.maxQueued
+                    || (priority.droppable && bucket != 0 && pendingIn(bucket) >= SATURATED_BUCKET)) {
+                dropped[index].increment();
+                return false;
+            }
+            queues[index].add(new Task<>(priority, bucket, action, success, failure));
+            if (bucket != 0) {
+                buckets.computeIfAbsent(bucket, ignored -> new int[1])[0]++;
+            }
+        }
+        drain();
+        return true;
+    }
+
+    public Sender sender(Priority priority) {
+        return new Sender(priority);
+    }
+
+    /** Sends everything at one priority; channel sends use the channel as their bucket. */
+    public final class Sender {
+        private final Priority priority;
+
+        private Sender(Priority priority) {
+            this.priority = priority;
+        }
+
+        public void send(RestAction<?> action) {
+            OutboundScheduler.this.send(priority, 0, action, null, null);
+        }
+
+        public <T> void send(RestAction<T> action, Consumer<? super T> success) {
+            OutboundScheduler.this.send(priority, 0, action, success, null);
+        }
+
+        public <T> void send(RestAction<T> action, Consumer<? super T> success, Consumer<? super Throwable> failure) {
+            OutboundScheduler.this.send(priority, 0, action, success, failure);
+        }
+
+        public void send(MessageChannel channel, RestAction<?> action) {
+            OutboundScheduler.this.send(priority, channel.getIdLong(), action, null, null);
+        }
+
+        public <T> void send(MessageChannel channel, RestAction<T> action, Consumer<? super T> success) {
+            OutboundScheduler.this.send(priority, channel.getIdLong(), action, success, null);
+        }
+
+        public <T> void send(MessageChannel channel, RestAction<T> action,
+                             Consumer<? super T> success, Consumer<? super Throwable> failure) {
+            OutboundScheduler.this.send(priority, channel.getIdLong(), action, success, failure);
+        }
+
+        public void sendMessage(MessageChannel channel, CharSequence text) {
+            send(channel, channel.sendMessage(text));
+        }
+
+        public void sendMessage(MessageChannel channel, CharSequence text,
+                                Consumer<? super Message> success, Consumer<? super Throwable> failure) {
+            send(channel, channel.sendMessage(text), success, failure);
+        }
+    }
+
+    public synchronized int getQueueDepth(Priority priority) {
+        return queues[priority.ordinal()].size();
+    }
+
+    public synchronized int getInFlight(Priority priority) {
+        return inFlight[priority.ordinal()];
+    }
+
+    public long getDropped(Priority priority) {
+        return dropped[priority.ordinal()].sum();
+    }
+
+    /** Sends that went through. */
+    public long getSent(Priority priority) {
+        return sent[priority.ordinal()].sum();
+    }
+
+    /** Sends that Discord or JDA rejected. */
+    public long getFailed(Priority priority) {
+        return failed[priority.ordinal()].sum();
+    }
+
+    private int pendingIn(long bucket) {
+        int[] pending = buckets.get(bucket);
+        return pending != null ? pending[0] : 0;
+    }
+
+    // Picks what may start under the lock, then hands it to JDA outside of it
+    private void drain() {
+        List<Task<?>> ready = new ArrayList<>();
+        synchronized (this) {
+            for (Priority priority : PRIORITIES) {
+                int index = priority.ordinal();
+                boolean shared = priority != Priority.MODERATION;
+                while (!queues[index].isEmpty() && inFlight[index] < priority.budget
+                        && (!shared || sharedInFlight < MAX_IN_FLIGHT)) {
+                    ready.add(queues[index].poll());
+                    inFlight[index]++;
+                    if (shared) {
+                        sharedInFlight++;
+                    }
+                }
+            }
+        }
+        for (Task<?> task : ready) {
+            start(task);
+        }
+    }
+
+    private <T> void start(Task<T> task) {
+        Consumer<? super Throwable> failure = task.failure() != null ? task.failure() : RestAction.getDefaultFailure();
+        // Callbacks run before the task counts as finished, so awaitIdle also waits for the writes they make
+        try {
+            task.action().queue(result -> {
+                try {
+                    if (task.success() != null) {
+                        task.success().accept(result);
+                    }
+                } finally {
+                    finish(task, true);
+                }
+            }, error -> {
+                try {
+                    failure.accept(error);
+                } finally {
+                    finish(task, false);
+                }
+            });
+        } catch (RuntimeException e) {
+            try {
+                failure.accept(e);
+            } finally {
+                finish(task, false);
+            }
+        }
+    }
+
+    private void finish(Task<?> task, boolean delivered) {
+        int index = task.priority().ordinal();
+        synchronized (this) {
+            inFlight[index]--;
+            if (task.priority() != Priority.MODERATION) {
+                sharedInFlight--;
+            }
+            if (task.bucket() != 0) {
+                int[] pending = buckets.get(task.bucket());
+                if (pending != null && --pending[0] == 0) {
+                    buckets.remove(task.bucket());
+                }
+            }
+            if (getPending() == 0) {
+                notifyAll();
+            }
+        }
+        (delivered ? sent : failed)[index].increment();
+        drain();
+    }
+
+    /** Everything queued or in flight, at any priority. */
+    public synchronized int getPending() {
+        int pending = 0;
+        for (Priority priority : PRIORITIES) {
+            pending += queues[priority.ordinal()].size() + inFlight[priority.ordinal()];
+        }
+        return pending;
+    }
+
+    /** Waits for every send to finish, callbacks included; false if the deadline came first. */
+    public synchronized boolean awaitIdle(long deadlineNanos) throws InterruptedException {
+        while (getPending() > 0) {
+            long left = deadlineNanos - System.nanoTime();
+            if (left <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Concurrent Long Object Map
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+
+/**
+ * Lock-striped {@link LongObjectMap}: keys are spread over independently locked
+ * segments, so unrelated guilds and users don't contend.
+ */
+public class ConcurrentLongObjectMap<V> {
+    private final LongObjectMap<V>[] segments;
+    private final int segmentMask;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ConcurrentLongObjectMap(int concurrency) {
+        int count = Integer.highestOneBit(Math.max(2, concurrency) - 1) << 1;
+        segments = new LongObjectMap[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new LongObjectMap<>();
+        }
+        segmentMask = count - 1;
+    }
+
+    public ConcurrentLongObjectMap() {
+        this(16);
+    }
+
+    public V get(long key) {
+        LongObjectMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    public V put(long key, V value) {
+        LongObjectMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.put(key, value);
+        }
+    }
+
+    public V computeIfAbsent(long key, LongFunction<V> factory) {
+        LongObjectMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.computeIfAbsent(key, factory);
+        }
+    }
+
+    public V remove(long key) {
+        LongObjectMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.remove(key);
+        }
+    }
+
+    public int size() {
+        int total = 0;
+        for (LongObjectMap<V> segment : segments) {
+            synchronized (segment) {
+                total += segment.size();
+            }
+        }
+        return total;
+    }
+
+    public void clear() {
+        for (LongObjectMap<V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /** Snapshot of the values, taken one segment at a time. */
+    public List<V> values() {
+        List<V> result = new ArrayList<>();
+        for (LongObjectMap<V> segment : segments) {
+            synchronized (segment) {
+                segment.forEach((key, value) -> result.add(value));
+            }
+        }
+        return result;
+    }
+
+    /** Visits every entry, one segment at a time with that segment locked. */
+    public void forEach(LongObjectMap.Visitor<? super V> visitor) {
+        for (LongObjectMap<V> segment : segments) {
+            synchronized (segment) {
+                segment.forEach(visitor);
+            }
+        }
+    }
+
+    private LongObjectMap<V> segmentFor(long key) {
+        return segments[(int) (LongExpiryMap.mix(key) >>> 58) & segmentMask];
+    }
+}
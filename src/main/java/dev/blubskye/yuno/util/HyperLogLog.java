@@ -0,0 +1,161 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - HyperLogLog
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.util;
+
+/**
+ * Estimates how many distinct IDs were added, in 2 KiB no matter how many
+ * there are. Each ID is hashed; the top {@link #PRECISION} bits pick one of
+ * {@link #REGISTERS} registers, which keeps the longest run of leading zeros
+ * seen in the rest. Merging two sketches takes the larger of each register,
+ * so merging is idempotent and a merged sketch counts the union. Estimates
+ * are within {@link #STANDARD_ERROR} about two times in three and within
+ * three times that nearly always.
+ */
+public final class HyperLogLog {
+    public static final int PRECISION = 11;
+    public static final int REGISTERS = 1 << PRECISION;
+    public static final double STANDARD_ERROR = 1.04 / Math.sqrt(REGISTERS);
+    // Longest run a register can hold: every bit below the index, plus one
+    private static final int MAX_RANK = 64 - PRECISION + 1;
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[REGISTERS];
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    /** Returns true if the sketch changed, false if it already had the ID (or one that looks the same). */
+    public boolean add(long id) {
+        long hash = mix(id);
+        int index = (int) (hash >>> (64 - PRECISION));
+        // The low bits left over; an all-zero rest gets the longest possible run
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << PRECISION) + 1, MAX_RANK);
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+            return true;
+        }
+        return false;
+    }
+
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    // Ertl's improved estimator: no bias correction tables or switch-over to linear counting needed
+    public long estimate() {
+        int[] counts = new int[MAX_RANK + 1];
+        for (byte register : registers) {
+            counts[register]++;
+        }
+        double z = REGISTERS * tau(1 - (double) counts[MAX_RANK] / REGISTERS);
+        for (int k = MAX_RANK - 1; k >= 1; k--) {
+            z = 0.5 * (z + counts[k]);
+        }
+        z += REGISTERS * sigma((double) counts[0] / REGISTERS);
+        return Math.round(REGISTERS * (REGISTERS / (2 * Math.log(2))) / z);
+    }
+
+    private static double sigma(double x) {
+        if (x == 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (z != previous);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0 || x == 1) {
+            return 0;
+        }
+        double y = 1;
+        double z = 1 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= (1 - x) * (1 - x) * y;
+        } while (z != previous);
+        return z / 3;
+    }
+
+    /**
+     * Encodes the sketch for storage: every register if most are set, otherwise
+     * just the set ones as (index high, index low, value) triples. A quiet day
+     * takes a few bytes per ID instead of 2 KiB.
+     */
+    public byte[] toBytes() {
+        int set = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                set++;
+            }
+        }
+        if (set * 3 >= REGISTERS) {
+            return registers.clone();
+        }
+        byte[] sparse = new byte[set * 3];
+        int at = 0;
+        for (int i = 0; i < REGISTERS; i++) {
+            if (registers[i] != 0) {
+                sparse[at++] = (byte) (i >>> 8);
+                sparse[at++] = (byte) i;
+                sparse[at++] = registers[i];
+            }
+        }
+        return sparse;
+    }
+
+    /** Reads what {@link #toBytes()} wrote; throws IllegalArgumentException if it isn't a sketch. */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        byte[] registers;
+        if (bytes.length == REGISTERS) {
+            registers = bytes.clone();
+        } else if (bytes.length % 3 == 0 && bytes.length < REGISTERS) {
+            registers = new byte[REGISTERS];
+            for (int at = 0; at < bytes.length; at += 3) {
+                int index = (bytes[at] & 0xFF) << 8 | (bytes[at + 1] & 0xFF);
+                if (index >= REGISTERS) {
+                    throw new IllegalArgumentException("Not a sketch: register " + index);
+                }
+                registers[index] = bytes[at + 2];
+            }
+        } else {
+            throw new IllegalArgumentException("Not a sketch: " + bytes.length + " bytes");
+        }
+        for (byte register : registers) {
+            if (register < 0 || register > MAX_RANK) {
+                throw new IllegalArgumentException("Not a sketch: register value " + register);
+            }
+        }
+        return new HyperLogLog(registers);
+    }
+
+    // SplitMix64; snowflakes differ mostly in their low bits and need spreading over all 64
+    private static long mix(long id) {
+        long z = id + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Long Expiry Map
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.util;
+
+/**
+ * Open-addressing map from long keys to expiry timestamps, stored in two parallel
+ * primitive arrays. Expired entries are not removed eagerly: they are reused when a
+ * probe passes over them and dropped when the table is rehashed.
+ */
+public class LongExpiryMap {
+    private static final long EMPTY = 0L;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+    private long[] expiries;
+    private int mask;
+    private int occupied;
+    // 0 marks empty slots, so key 0 is kept on the side
+    private long zeroKeyExpiry = Long.MIN_VALUE;
+
+    public LongExpiryMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Claims {@code key} until {@code now + ttl} if it is absent or expired.
+     * Returns false (and leaves the entry alone) while the key is still live.
+     */
+    public synchronized boolean tryAcquire(long key, long now, long ttl) {
+        if (key == EMPTY) {
+            if (zeroKeyExpiry > now) {
+                return false;
+            }
+            zeroKeyExpiry = now + ttl;
+            return true;
+        }
+
+        int reusable = -1;
+        int slot = slotFor(key);
+
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                if (expiries[slot] > now) {
+                    return false;
+                }
+                expiries[slot] = now + ttl;
+                return true;
+            }
+            if (reusable < 0 && expiries[slot] <= now) {
+                reusable = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (reusable >= 0) {
+            keys[reusable] = key;
+            expiries[reusable] = now + ttl;
+            return true;
+        }
+
+        keys[slot] = key;
+        expiries[slot] = now + ttl;
+        if (++occupied > keys.length * LOAD_FACTOR) {
+            rehash(now);
+        }
+        return true;
+    }
+
+    public synchronized int capacity() {
+        return keys.length;
+    }
+
+    public synchronized int size(long now) {
+        int live = zeroKeyExpiry > now ? 1 : 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY && expiries[i] > now) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    // Drops expired entries; only grows when the live entries alone would fill half the table
+    private void rehash(long now) {
+        long[] oldKeys = keys;
+        long[] oldExpiries = expiries;
+
+        int live = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY && oldExpiries[i] > now) {
+                live++;
+            }
+        }
+        allocate(live * 2 > oldKeys.length * LOAD_FACTOR ? oldKeys.length << 1 : oldKeys.length);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY && oldExpiries[i] > now) {
+                int slot = slotFor(oldKeys[i]);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                expiries[slot] = oldExpiries[i];
+                occupied++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        expiries = new long[capacity];
+        mask = capacity - 1;
+        occupied = 0;
+    }
+
+    private int slotFor(long key) {
+        return (int) mix(key) & mask;
+    }
+
+    public static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb3fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /** Packs a (guild, user) pair into one well-distributed key. */
+    public static long pairKey(long first, long second) {
+        return mix(first) * 31 + second;
+    }
+}
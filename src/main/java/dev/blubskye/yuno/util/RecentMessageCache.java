@@ -0,0 +1,323 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Recent Message Cache
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The newest messages of recently active channels, so a deleted or edited
+ * message can still be shown. Each message is packed into a single byte
+ * array (author, content, attachment URLs) and each channel keeps a ring of
+ * the last {@code perChannel}. Bytes are counted as they are stored, array
+ * and bookkeeping overhead included, and the least recently used channels
+ * are dropped so the count never goes over the cap.
+ */
+public class RecentMessageCache {
+    public static final int MAX_CONTENT_CHARS = 2000;
+    public static final int MAX_ATTACHMENTS = 10;
+    private static final int MAX_URL_CHARS = 512;
+    // Array header, plus the message's ID and reference slots in its ring
+    private static final int MESSAGE_OVERHEAD = 16 + 8 + 4;
+    // The ring, its two arrays, the map entry and its boxed key
+    private static final int CHANNEL_OVERHEAD = 160;
+
+    /** A message as it was when last seen. */
+    public static final class CachedMessage {
+        private final long messageId;
+        private final long authorId;
+        private final String content;
+        private final List<String> attachments;
+
+        CachedMessage(long messageId, long authorId, String content, List<String> attachments) {
+            this.messageId = messageId;
+            this.authorId = authorId;
+            this.content = content;
+            this.attachments = attachments;
+        }
+
+        public long getMessageId() {
+            return messageId;
+        }
+
+        public long getAuthorId() {
+            return authorId;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public List<String> getAttachments() {
+            return attachments;
+        }
+    }
+
+    private static final class Ring {
+        final long guildId;
+        final long[] ids;
+        final byte[][] messages;
+        int next;
+        int count;
+        long bytes;
+
+        Ring(long guildId, int size) {
+            this.guildId = guildId;
+            this.ids = new long[size];
+            this.messages = new byte[size][];
+        }
+
+        int find(long messageId) {
+            for (int i = 0; i < ids.length; i++) {
+                if (messages[i] != null && ids[i] == messageId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // Overwrites the oldest slot once the ring is full
+        void add(long messageId, byte[] packed) {
+            set(next, messageId, packed);
+            next = (next + 1) % ids.length;
+        }
+
+        void set(int slot, long messageId, byte[] packed) {
+            clear(slot);
+            ids[slot] = messageId;
+            messages[slot] = packed;
+            count++;
+            bytes += packed.length + MESSAGE_OVERHEAD;
+        }
+
+        void clear(int slot) {
+            byte[] old = messages[slot];
+            if (old != null) {
+                messages[slot] = null;
+                count--;
+                bytes -= old.length + MESSAGE_OVERHEAD;
+            }
+        }
+
+        // The oldest is the first one found walking forward from the next slot to be written
+        void clearOldest() {
+            for (int i = 0; i < ids.length; i++) {
+                int slot = (next + i) % ids.length;
+                if (messages[slot] != null) {
+                    clear(slot);
+                    return;
+                }
+            }
+        }
+    }
+
+    private final long capacityBytes;
+    private final int perChannel;
+    private final long channelBytes;
+    // Access order, so the eldest entry is the least recently used channel
+    private final LinkedHashMap<Long, Ring> channels = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private long messages;
+    private long evictions;
+
+    public RecentMessageCache(long capacityBytes, int perChannel) {
+        this.capacityBytes = capacityBytes;
+        this.perChannel = perChannel;
+        this.channelBytes = CHANNEL_OVERHEAD + perChannel * (8L + 4L);
+    }
+
+    public synchronized void put(long guildId, long channelId, long messageId, long authorId,
+                                 String content, List<String> attachments) {
+        byte[] packed = pack(authorId, content, attachments);
+        if (packed.length + MESSAGE_OVERHEAD + channelBytes > capacityBytes) {
+            return;
+        }
+        Ring ring = ringFor(guildId, channelId);
+        long bytesBefore = ring.bytes;
+        int countBefore = ring.count;
+        ring.add(messageId, packed);
+        settle(ring, bytesBefore, countBefore);
+        trim(channelId);
+    }
+
+    /**
+     * Stores the new version of a message and returns the one it replaces,
+     * or null if the message wasn't cached (it is then cached from now on).
+     */
+    public synchronized CachedMessage update(long guildId, long channelId, long messageId, long authorId,
+                                             String content, List<String> attachments) {
+        Ring ring = channels.get(channelId);
+        int slot = ring != null ? ring.find(messageId) : -1;
+        if (slot < 0) {
+            put(guildId, channelId, messageId, authorId, content, attachments);
+            return null;
+        }
+        CachedMessage previous = unpack(messageId, ring.messages[slot]);
+        byte[] packed = pack(authorId, content, attachments);
+        long bytesBefore = ring.bytes;
+        int countBefore = ring.count;
+        if (packed.length + MESSAGE_OVERHEAD + channelBytes > capacityBytes) {
+            ring.clear(slot);
+        } else {
+            ring.set(slot, messageId, packed);
+        }
+        settle(ring, bytesBefore, countBefore);
+        trim(channelId);
+        return previous;
+    }
+
+    /** Forgets a message and returns what it said, or null if it wasn't cached. */
+    public synchronized CachedMessage remove(long channelId, long messageId) {
+        Ring ring = channels.get(channelId);
+        int slot = ring != null ? ring.find(messageId) : -1;
+        if (slot < 0) {
+            return null;
+        }
+        CachedMessage removed = unpack(messageId, ring.messages[slot]);
+        long bytesBefore = ring.bytes;
+        int countBefore = ring.count;
+        ring.clear(slot);
+        settle(ring, bytesBefore, countBefore);
+        return removed;
+    }
+
+    /** Drops every channel of a guild, e.g. when it stops logging messages. */
+    public synchronized void removeGuild(long guildId) {
+        Iterator<Ring> it = channels.values().iterator();
+        while (it.hasNext()) {
+            Ring ring = it.next();
+            if (ring.guildId == guildId) {
+                drop(ring);
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void removeChannel(long channelId) {
+        Ring ring = channels.remove(channelId);
+        if (ring != null) {
+            drop(ring);
+        }
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getChannels() {
+        return channels.size();
+    }
+
+    public synchronized long getMessages() {
+        return messages;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    private Ring ringFor(long guildId, long channelId) {
+        Ring ring = channels.get(channelId);
+        if (ring == null) {
+            ring = new Ring(guildId, perChannel);
+            channels.put(channelId, ring);
+            bytes += channelBytes;
+        }
+        return ring;
+    }
+
+    // Carries a ring's change over into the totals
+    private void settle(Ring ring, long bytesBefore, int countBefore) {
+        bytes += ring.bytes - bytesBefore;
+        messages += ring.count - countBefore;
+    }
+
+    // Evicts the least recently used channels, then the kept channel's oldest messages, until back under the cap
+    private void trim(long keepChannelId) {
+        Iterator<Map.Entry<Long, Ring>> it = channels.entrySet().iterator();
+        while (bytes > capacityBytes && it.hasNext()) {
+            Map.Entry<Long, Ring> eldest = it.next();
+            if (eldest.getKey() == keepChannelId) {
+                continue;
+            }
+            drop(eldest.getValue());
+            it.remove();
+            evictions++;
+        }
+        Ring kept = channels.get(keepChannelId);
+        while (bytes > capacityBytes && kept != null && kept.count > 0) {
+            long bytesBefore = kept.bytes;
+            int countBefore = kept.count;
+            kept.clearOldest();
+            settle(kept, bytesBefore, countBefore);
+        }
+    }
+
+    private void drop(Ring ring) {
+        bytes -= ring.bytes + channelBytes;
+        messages -= ring.count;
+    }
+
+    // Packing
+
+    static byte[] pack(long authorId, String content, List<String> attachments) {
+        byte[] text = truncate(content != null ? content : "", MAX_CONTENT_CHARS).getBytes(StandardCharsets.UTF_8);
+        List<byte[]> urls = new ArrayList<>();
+        int size = 8 + 4 + text.length + 1;
+        for (String url : attachments) {
+            if (urls.size() == MAX_ATTACHMENTS) {
+                break;
+            }
+            // A cut-off URL is no use to anyone
+            if (url.length() <= MAX_URL_CHARS) {
+                byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+                urls.add(bytes);
+                size += 2 + bytes.length;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(authorId).putInt(text.length).put(text).put((byte) urls.size());
+        for (byte[] url : urls) {
+            buffer.putShort((short) url.length).put(url);
+        }
+        return buffer.array();
+    }
+
+    static CachedMessage unpack(long messageId, byte[] packed) {
+        ByteBuffer buffer = ByteBuffer.wrap(packed);
+        long authorId = buffer.getLong();
+        byte[] text = new byte[buffer.getInt()];
+        buffer.get(text);
+        int count = buffer.get();
+        List<String> attachments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] url = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(url);
+            attachments.add(new String(url, StandardCharsets.UTF_8));
+        }
+        return new CachedMessage(messageId, authorId, new String(text, StandardCharsets.UTF_8), attachments);
+    }
+
+    // Never splits a surrogate pair, so the cut text still encodes cleanly
+    private static String truncate(String text, int maxChars) {
+        if (text.length() <= maxChars) {
+            return text;
+        }
+        int end = Character.isHighSurrogate(text.charAt(maxChars - 1)) ? maxChars - 1 : maxChars;
+        return text.substring(0, end);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Timing Wheel
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Two-level hashed timing wheel with a one-second tick. The inner wheel
+ * holds the next 64 seconds one slot per tick; the outer one holds the
+ * following hour a minute per slot and is poured into the inner wheel as
+ * it comes round. Anything further out is refused, so callers keep only
+ * the near future here and the rest wherever it lives durably. Not
+ * thread-safe.
+ */
+public class TimingWheel<T> {
+    private static final int SLOTS = 64;
+    private static final int MASK = SLOTS - 1;
+    private static final int SHIFT = 6;
+    private static final long TICK_MS = 1000;
+    public static final long SPAN_MS = (long) SLOTS * SLOTS * TICK_MS;
+
+    private record Entry<T>(long tick, T value) {
+    }
+
+    private final List<List<Entry<T>>> inner = new ArrayList<>(SLOTS);
+    private final List<List<Entry<T>>> outer = new ArrayList<>(SLOTS);
+    // Next tick to fire
+    private long tick;
+    private int size;
+
+    public TimingWheel(long nowMs) {
+        for (int i = 0; i < SLOTS; i++) {
+            inner.add(new ArrayList<>());
+            outer.add(new ArrayList<>());
+        }
+        tick = nowMs / TICK_MS;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Adds a deadline; false if it is too far out for the wheel. Past deadlines fire on the next advance. */
+    public boolean add(long deadlineMs, T value) {
+        long at = Math.max(deadlineMs / TICK_MS, tick);
+        if (at - tick >= SLOTS * SLOTS) {
+            return false;
+        }
+        place(new Entry<>(at, value));
+        size++;
+        return true;
+    }
+
+    private void place(Entry<T> entry) {
+        if (entry.tick() - tick < SLOTS) {
+            inner.get((int) (entry.tick() & MASK)).add(entry);
+        } else {
+            outer.get((int) ((entry.tick() >>> SHIFT) & MASK)).add(entry);
+        }
+    }
+
+    /** Fires everything due up to {@code nowMs}, in deadline order to the second. */
+    public void advance(long nowMs, Consumer<T> fire) {
+        long until = nowMs / TICK_MS;
+        while (tick <= until) {
+            // Entering a new minute: move its outer slot down to the inner wheel
+            if ((tick & MASK) == 0) {
+                List<Entry<T>> slot = outer.get((int) ((tick >>> SHIFT) & MASK));
+                if (!slot.isEmpty()) {
+                    List<Entry<T>> cascading = new ArrayList<>(slot);
+                    slot.clear();
+                    cascading.forEach(this::place);
+                }
+            }
+            List<Entry<T>> slot = inner.get((int) (tick & MASK));
+            if (!slot.isEmpty()) {
+                List<Entry<T>> due = new ArrayList<>(slot);
+                slot.clear();
+                size -= due.size();
+                for (Entry<T> entry : due) {
+                    fire.accept(entry.value());
+                }
+            }
+            tick++;
+        }
+    }
+}
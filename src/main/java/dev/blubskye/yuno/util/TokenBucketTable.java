@@ -0,0 +1,142 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Token Bucket Table
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free table of token buckets keyed by long. Each slot is
+ * a key plus one packed state word (refill time in the high 40 bits,
+ * milli-tokens in the low 24), updated with compare-and-set. Buckets refill
+ * lazily from the elapsed time whenever they are touched. There is no
+ * removal: a bucket that has refilled completely is as good as new, so its
+ * slot is handed to the next key that probes past it. When a short probe
+ * finds no slot at all the caller is let through.
+ */
+public class TokenBucketTable {
+    private static final int MAX_PROBE = 16;
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    public static final long MAX_TOKENS = TOKEN_MASK / 1000;
+    // Longer than any bucket takes to refill, and small enough not to overflow the refill maths
+    private static final long MAX_ELAPSED_MS = 86_400_000L;
+
+    private final AtomicLongArray keys;
+    private final AtomicLongArray states;
+    private final int mask;
+    private final long baseMillis;
+
+    public TokenBucketTable(int slots, long nowMillis) {
+        int capacity = Integer.highestOneBit(Math.max(2, slots) - 1) << 1;
+        keys = new AtomicLongArray(capacity);
+        states = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+        // Times are stored relative to this, plus one so that a zero state means "never used, full"
+        baseMillis = nowMillis - 1;
+    }
+
+    /**
+     * Takes {@code cost} tokens from the bucket for {@code key}, holding at
+     * most {@code burst} and refilling {@code perMinute} a minute. Returns 0
+     * on success, otherwise how many milliseconds until the tokens would be
+     * there. A cost above {@code burst} is charged as {@code burst}. Key 0 is
+     * not allowed, and {@code burst} may not exceed {@link #MAX_TOKENS}.
+     */
+    public long tryTake(long key, long cost, long burst, long perMinute, long nowMillis) {
+        int slot = slotFor(key, burst, perMinute, nowMillis);
+        if (slot < 0) {
+            return 0;
+        }
+        long need = Math.min(cost, burst) * 1000;
+        while (true) {
+            long state = states.get(slot);
+            long tokens = tokensAt(state, burst, perMinute, nowMillis);
+            if (tokens < need) {
+                return Math.max(1, ((need - tokens) * 60 + perMinute - 1) / perMinute);
+            }
+            if (states.compareAndSet(slot, state, pack(nowMillis, tokens - need))) {
+                return 0;
+            }
+        }
+    }
+
+    /** Gives back tokens taken by {@link #tryTake} when a later check turned the request down. */
+    public void refund(long key, long cost, long burst, long perMinute, long nowMillis) {
+        int slot = find(key);
+        if (slot < 0) {
+            return;
+        }
+        while (true) {
+            long state = states.get(slot);
+            long tokens = Math.min(burst * 1000, tokensAt(state, burst, perMinute, nowMillis) + Math.min(cost, burst) * 1000);
+            if (states.compareAndSet(slot, state, pack(nowMillis, tokens))) {
+                return;
+            }
+        }
+    }
+
+    private long tokensAt(long state, long burst, long perMinute, long nowMillis) {
+        long full = burst * 1000;
+        if (state == 0) {
+            return full;
+        }
+        long elapsed = Math.min(MAX_ELAPSED_MS, Math.max(0, nowMillis - baseMillis - (state >>> TOKEN_BITS)));
+        // perMinute tokens a minute is perMinute milli-tokens every 60ms
+        return Math.min(full, (state & TOKEN_MASK) + elapsed * perMinute / 60);
+    }
+
+    private long pack(long nowMillis, long milliTokens) {
+        return (nowMillis - baseMillis) << TOKEN_BITS | milliTokens;
+    }
+
+    private int find(long key) {
+        int start = (int) LongExpiryMap.mix(key) & mask;
+        for (int i = 0; i < MAX_PROBE; i++) {
+            int slot = (start + i) & mask;
+            long current = keys.get(slot);
+            if (current == key) {
+                return slot;
+            }
+            if (current == 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private int slotFor(long key, long burst, long perMinute, long nowMillis) {
+        int start = (int) LongExpiryMap.mix(key) & mask;
+        int idle = -1;
+        for (int i = 0; i < MAX_PROBE; i++) {
+            int slot = (start + i) & mask;
+            long current = keys.get(slot);
+            if (current == key) {
+                return slot;
+            }
+            if (current == 0) {
+                if (keys.compareAndSet(slot, 0, key)) {
+                    return slot;
+                }
+                if (keys.get(slot) == key) {
+                    return slot;
+                }
+                continue;
+            }
+            if (idle < 0 && tokensAt(states.get(slot), burst, perMinute, nowMillis) == burst * 1000) {
+                idle = slot;
+            }
+        }
+        // A full bucket looks the same whoever owned it, so its slot can change hands as is
+        if (idle >= 0) {
+            long previous = keys.get(idle);
+            if (keys.compareAndSet(idle, previous, key)) {
+                return idle;
+            }
+        }
+        return -1;
+    }
+}
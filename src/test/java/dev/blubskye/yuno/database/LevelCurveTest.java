@@ -0,0 +1,94 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Level Curve Tests
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LevelCurveTest {
+    @Test
+    void defaultIsOneHundredTimesLevelSquared() {
+        LevelCurve curve = LevelCurve.DEFAULT;
+        assertEquals(0, curve.levelFor(0));
+        assertEquals(0, curve.levelFor(-5));
+        assertEquals(0, curve.levelFor(99));
+        assertEquals(1, curve.levelFor(100));
+        assertEquals(1, curve.levelFor(399));
+        assertEquals(2, curve.levelFor(400));
+        assertEquals(0, curve.xpFor(0));
+        assertEquals(900, curve.xpFor(3));
+        assertEquals(LevelCurve.MAX_LEVEL, curve.getMaxLevel());
+    }
+
+    @Test
+    void linearAndExponentialShapes() {
+        LevelCurve linear = LevelCurve.parse("linear:50");
+        assertEquals(150, linear.xpFor(3));
+        assertEquals(2, linear.levelFor(149));
+
+        // 10, then 20 more, then 40 more
+        LevelCurve exponential = LevelCurve.parse("exponential:10:2");
+        assertEquals(10, exponential.xpFor(1));
+        assertEquals(30, exponential.xpFor(2));
+        assertEquals(70, exponential.xpFor(3));
+        assertEquals(2, exponential.levelFor(69));
+    }
+
+    @Test
+    void specsAreNormalized() {
+        assertEquals("quadratic:100", LevelCurve.parse("  Quadratic:100 ").getSpec());
+        assertEquals("exponential:50:1.5", LevelCurve.parse("exponential:50:1.50").getSpec());
+        assertEquals("exponential:50:2", LevelCurve.parse("exponential:50:2.0").getSpec());
+        assertSame(LevelCurve.parse("linear:7"), LevelCurve.parse("LINEAR:7"));
+    }
+
+    @Test
+    void rejectsBadSpecs() {
+        for (String spec : new String[] {"cubic:100", "quadratic", "quadratic:0", "quadratic:abc",
+                "linear:" + (LevelCurve.MAX_BASE + 1), "linear:5:5", "exponential:10", "exponential:10:1",
+                "exponential:10:11", "exponential:10:fast"}) {
+            assertThrows(IllegalArgumentException.class, () -> LevelCurve.parse(spec), spec);
+        }
+    }
+
+    @Test
+    void levelForInvertsXpForAtEveryThreshold() {
+        for (String spec : new String[] {"quadratic:100", "linear:1", "exponential:1:1.01", "exponential:1000000:10"}) {
+            LevelCurve curve = LevelCurve.parse(spec);
+            for (int level = 1; level <= curve.getMaxLevel(); level++) {
+                long xp = curve.xpFor(level);
+                assertTrue(xp > curve.xpFor(level - 1), spec + " level " + level);
+                assertEquals(level, curve.levelFor(xp), spec);
+                assertEquals(level - 1, curve.levelFor(xp - 1), spec);
+            }
+        }
+    }
+
+    @Test
+    void steepCurvesStopBeforeOverflow() {
+        LevelCurve curve = LevelCurve.parse("exponential:1000000:10");
+        assertTrue(curve.getMaxLevel() < LevelCurve.MAX_LEVEL);
+        assertEquals(Long.MAX_VALUE, curve.xpFor(curve.getMaxLevel() + 1));
+        assertEquals(curve.getMaxLevel(), curve.levelFor(Long.MAX_VALUE));
+    }
+
+    @Test
+    void guildCurveFallsBackToTheDefault() {
+        assertSame(LevelCurve.DEFAULT, LevelCurve.forGuild(null, LevelCurve.DEFAULT_SPEC));
+
+        GuildSettings settings = new GuildSettings();
+        assertEquals("linear:10", LevelCurve.forGuild(settings, "linear:10").getSpec());
+        settings.setLevelCurve("linear:20");
+        assertEquals("linear:20", LevelCurve.forGuild(settings, "linear:10").getSpec());
+        settings.setLevelCurve("not a curve");
+        assertEquals("linear:10", LevelCurve.forGuild(settings, "linear:10").getSpec());
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Outbound Scheduler Tests
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.outbound;
+
+import dev.blubskye.yuno.metrics.Metrics;
+import dev.blubskye.yuno.outbound.OutboundScheduler.Priority;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.requests.RestAction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundSchedulerTest {
+    // Shared in-flight cap for everything but moderation
+    private static final int SHARED_CAP = 16;
+
+    private OutboundScheduler scheduler;
+    private Metrics metrics;
+    // Names of the actions handed to JDA, in order
+    private final List<String> started = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        metrics = new Metrics();
+        scheduler = new OutboundScheduler(metrics);
+    }
+
+    @Test
+    void releasesQueuedSendsByPriorityOnceTheSharedCapFrees() {
+        List<FakeAction> replies = fillSharedCap();
+        scheduler.send(Priority.FUN, action("fun"));
+        scheduler.send(Priority.ANNOUNCEMENT, action("announcement"));
+        scheduler.send(Priority.REPLY, action("late-reply"));
+        assertEquals(SHARED_CAP, started.size());
+
+        started.clear();
+        replies.get(0).succeed();
+        replies.get(1).succeed();
+        replies.get(2).succeed();
+        assertEquals(List.of("late-reply", "announcement", "fun"), started);
+    }
+
+    @Test
+    void moderationSkipsTheSharedCap() {
+        fillSharedCap();
+        scheduler.send(Priority.REPLY, action("queued-reply"));
+        started.clear();
+
+        scheduler.send(Priority.MODERATION, action("ban"));
+        assertEquals(List.of("ban"), started);
+        assertEquals(1, scheduler.getQueueDepth(Priority.REPLY));
+    }
+
+    @Test
+    void aFailedSendFreesItsSlotForTheNextInLine() {
+        List<FakeAction> replies = fillSharedCap();
+        scheduler.send(Priority.FUN, action("fun"));
+        scheduler.send(Priority.REPLY, action("retry"));
+        started.clear();
+
+        replies.get(0).fail();
+        assertEquals(List.of("retry"), started);
+        replies.get(1).fail();
+        assertEquals(List.of("retry", "fun"), started);
+    }
+
+    @Test
+    void countsDeliveredAndFailedSendsApart() {
+        FakeAction ok = action("ok");
+        FakeAction rejected = action("rejected");
+        scheduler.send(Priority.REPLY, 0, ok, null, error -> { });
+        scheduler.send(Priority.REPLY, 0, rejected, null, error -> { });
+        scheduler.send(Priority.REPLY, 0, new ThrowingAction(), null, error -> { });
+
+        ok.succeed();
+        rejected.fail();
+        assertEquals(1, scheduler.getSent(Priority.REPLY));
+        assertEquals(2, scheduler.getFailed(Priority.REPLY));
+        assertEquals(1, metrics.get("outbound.reply.sent"));
+        assertEquals(2, metrics.get("outbound.reply.failed"));
+        assertEquals(0, scheduler.getPending());
+    }
+
+    @Test
+    void dropsDroppableSendsToABackedUpChannel() {
+        long channel = 42;
+        for (int i = 0; i < 5; i++) {
+            assertTrue(scheduler.send(Priority.FUN, channel, action("fun-" + i)));
+        }
+        assertFalse(scheduler.send(Priority.FUN, channel, action("fun-5")));
+        assertFalse(scheduler.send(Priority.ANNOUNCEMENT, channel, action("announcement")));
+        assertTrue(scheduler.send(Priority.REPLY, channel, action("reply")));
+        assertTrue(scheduler.send(Priority.FUN, channel + 1, action("elsewhere")));
+        assertEquals(1, scheduler.getDropped(Priority.FUN));
+        assertEquals(1, scheduler.getDropped(Priority.ANNOUNCEMENT));
+    }
+
+    @Test
+    void successCallbackRunsBeforeTheSendCountsAsFinished() throws InterruptedException {
+        FakeAction action = action("reply");
+        int[] pendingInCallback = new int[1];
+        scheduler.send(Priority.REPLY, 0, action, result -> pendingInCallback[0] = scheduler.getPending(), null);
+
+        assertFalse(scheduler.awaitIdle(System.nanoTime()));
+        action.succeed();
+        assertEquals(1, pendingInCallback[0]);
+        assertTrue(scheduler.awaitIdle(System.nanoTime() + 1_000_000_000L));
+    }
+
+    private List<FakeAction> fillSharedCap() {
+        List<FakeAction> replies = new ArrayList<>();
+        for (int i = 0; i < SHARED_CAP; i++) {
+            FakeAction reply = action("reply-" + i);
+            replies.add(reply);
+            scheduler.send(Priority.REPLY, 0, reply, null, error -> { });
+        }
+        return replies;
+    }
+
+    private FakeAction action(String name) {
+        return new FakeAction(name);
+    }
+
+    // Records when the scheduler hands it to JDA, then finishes whenever the test says
+    private class FakeAction implements RestAction<String> {
+        private final String name;
+        private Consumer<? super String> success;
+        private Consumer<? super Throwable> failure;
+
+        FakeAction(String name) {
+            this.name = name;
+        }
+
+        void succeed() {
+            success.accept(name);
+        }
+
+        void fail() {
+            failure.accept(new IllegalStateException(name + " failed"));
+        }
+
+        @Override
+        public void queue(Consumer<? super String> success, Consumer<? super Throwable> failure) {
+            this.success = success;
+            this.failure = failure;
+            started.add(name);
+        }
+
+        @Override
+        public JDA getJDA() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public RestAction<String> setCheck(BooleanSupplier checks) {
+            return this;
+        }
+
+        @Override
+        public String complete(boolean shouldQueue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<String> submit(boolean shouldQueue) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // Like an action JDA refuses before it is ever sent
+    private class ThrowingAction extends FakeAction {
+        ThrowingAction() {
+            super("throwing");
+        }
+
+        @Override
+        public void queue(Consumer<? super String> success, Consumer<? super Throwable> failure) {
+            throw new IllegalStateException("refused");
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - HyperLogLog Tests
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+    // Snowflake-like IDs: close together, differing mostly in the low bits
+    private static final long BASE_ID = 1_100_000_000_000_000_000L;
+
+    @Test
+    void emptySketchCountsZero() {
+        assertEquals(0, new HyperLogLog().estimate());
+    }
+
+    @Test
+    void smallCountsAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 20; i++) {
+            sketch.add(BASE_ID + i);
+        }
+        assertEquals(20, sketch.estimate(), 1);
+    }
+
+    @Test
+    void largeCountsStayWithinThreeStandardErrors() {
+        for (int n : new int[] {1_000, 50_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < n; i++) {
+                sketch.add(BASE_ID + i);
+            }
+            assertEquals(n, sketch.estimate(), n * 3 * HyperLogLog.STANDARD_ERROR, "n=" + n);
+        }
+    }
+
+    @Test
+    void repeatsDontCount() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 5_000; i++) {
+            sketch.add(BASE_ID + i);
+        }
+        long estimate = sketch.estimate();
+        for (int i = 0; i < 5_000; i++) {
+            assertFalse(sketch.add(BASE_ID + i));
+        }
+        assertEquals(estimate, sketch.estimate());
+    }
+
+    @Test
+    void mergeCountsTheUnionAndIsIdempotent() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        for (int i = 0; i < 30_000; i++) {
+            a.add(BASE_ID + i);
+        }
+        for (int i = 20_000; i < 50_000; i++) {
+            b.add(BASE_ID + i);
+        }
+        a.merge(b);
+        long union = a.estimate();
+        assertEquals(50_000, union, 50_000 * 3 * HyperLogLog.STANDARD_ERROR);
+        a.merge(b);
+        assertEquals(union, a.estimate());
+    }
+
+    @Test
+    void roundTripsSparseAndDense() {
+        HyperLogLog sparse = new HyperLogLog();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(sparse.add(BASE_ID + i));
+        }
+        byte[] sparseBytes = sparse.toBytes();
+        assertEquals(15, sparseBytes.length);
+        assertArrayEquals(sparseBytes, HyperLogLog.fromBytes(sparseBytes).toBytes());
+        assertEquals(sparse.estimate(), HyperLogLog.fromBytes(sparseBytes).estimate());
+
+        HyperLogLog dense = new HyperLogLog();
+        for (int i = 0; i < 100_000; i++) {
+            dense.add(BASE_ID + i);
+        }
+        byte[] denseBytes = dense.toBytes();
+        assertEquals(HyperLogLog.REGISTERS, denseBytes.length);
+        assertEquals(dense.estimate(), HyperLogLog.fromBytes(denseBytes).estimate());
+    }
+
+    @Test
+    void rejectsBytesThatArentASketch() {
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[4]));
+        // Register index past the end
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[] {0x08, 0x00, 1}));
+        // A run longer than the hash has bits
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[] {0, 0, 60}));
+        assertEquals(0, HyperLogLog.fromBytes(new byte[0]).estimate());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Recent Message Cache Tests
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.util;
+
+import dev.blubskye.yuno.util.RecentMessageCache.CachedMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecentMessageCacheTest {
+    private static final long GUILD = 1;
+    private static final long AUTHOR = 99;
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    void removeReturnsWhatTheMessageSaidOnce() {
+        RecentMessageCache cache = new RecentMessageCache(MB, 10);
+        cache.put(GUILD, 10, 100, AUTHOR, "hello~", List.of("https://cdn.example/a.png"));
+
+        CachedMessage removed = cache.remove(10, 100);
+        assertNotNull(removed);
+        assertEquals(100, removed.getMessageId());
+        assertEquals(AUTHOR, removed.getAuthorId());
+        assertEquals("hello~", removed.getContent());
+        assertEquals(List.of("https://cdn.example/a.png"), removed.getAttachments());
+        assertNull(cache.remove(10, 100));
+        assertNull(cache.remove(11, 100));
+    }
+
+    @Test
+    void updateReturnsTheVersionItReplaces() {
+        RecentMessageCache cache = new RecentMessageCache(MB, 10);
+        assertNull(cache.update(GUILD, 10, 100, AUTHOR, "first", List.of()));
+        assertEquals("first", cache.update(GUILD, 10, 100, AUTHOR, "second", List.of()).getContent());
+        assertEquals("second", cache.remove(10, 100).getContent());
+        assertEquals(0, cache.getMessages());
+    }
+
+    @Test
+    void keepsOnlyTheNewestMessagesOfAChannel() {
+        RecentMessageCache cache = new RecentMessageCache(MB, 3);
+        for (long id = 1; id <= 5; id++) {
+            cache.put(GUILD, 10, id, AUTHOR, "message " + id, List.of());
+        }
+        assertEquals(3, cache.getMessages());
+        assertNull(cache.remove(10, 1));
+        assertNull(cache.remove(10, 2));
+        for (long id = 3; id <= 5; id++) {
+            assertEquals("message " + id, cache.remove(10, id).getContent());
+        }
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedChannelToStayUnderTheCap() {
+        // Room for two channels holding one short message each, not three
+        RecentMessageCache cache = new RecentMessageCache(600, 3);
+        cache.put(GUILD, 10, 1, AUTHOR, "a", List.of());
+        cache.put(GUILD, 20, 2, AUTHOR, "b", List.of());
+        cache.update(GUILD, 10, 1, AUTHOR, "a2", List.of());
+        cache.put(GUILD, 30, 3, AUTHOR, "c", List.of());
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.getChannels());
+        assertTrue(cache.getBytes() <= cache.getCapacityBytes());
+        assertNull(cache.remove(20, 2));
+        assertNotNull(cache.remove(10, 1));
+        assertNotNull(cache.remove(30, 3));
+    }
+
+    @Test
+    void trimsTheBusyChannelItselfWhenItAloneIsOverTheCap() {
+        // The channel's ring takes 1,360 bytes, leaving room for four of these messages
+        RecentMessageCache cache = new RecentMessageCache(2_000, 100);
+        for (long id = 1; id <= 20; id++) {
+            cache.put(GUILD, 10, id, AUTHOR, "x".repeat(100), List.of());
+            assertTrue(cache.getBytes() <= cache.getCapacityBytes());
+        }
+        assertEquals(4, cache.getMessages());
+        assertEquals(0, cache.getEvictions());
+        assertNotNull(cache.remove(10, 20));
+        assertNull(cache.remove(10, 16));
+    }
+
+    @Test
+    void skipsMessagesTooBigForTheWholeCache() {
+        RecentMessageCache cache = new RecentMessageCache(1_000, 10);
+        cache.put(GUILD, 10, 1, AUTHOR, "x".repeat(1_500), List.of());
+        assertEquals(0, cache.getMessages());
+        assertNull(cache.remove(10, 1));
+    }
+
+    @Test
+    void bytesGoBackToZeroOnceEverythingIsGone() {
+        RecentMessageCache cache = new RecentMessageCache(MB, 10);
+        cache.put(GUILD, 10, 1, AUTHOR, "a", List.of());
+        cache.put(GUILD, 20, 2, AUTHOR, "b", List.of());
+        cache.put(2, 30, 3, AUTHOR, "c", List.of());
+
+        cache.removeGuild(GUILD);
+        assertEquals(1, cache.getChannels());
+        assertNotNull(cache.remove(30, 3));
+        cache.removeChannel(30);
+        assertEquals(0, cache.getChannels());
+        assertEquals(0, cache.getMessages());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    void cutsLongContentWithoutSplittingASurrogatePair() {
+        RecentMessageCache cache = new RecentMessageCache(MB, 10);
+        String content = "a".repeat(RecentMessageCache.MAX_CONTENT_CHARS - 1) + "\uD83D\uDC95" + "tail";
+        cache.put(GUILD, 10, 1, AUTHOR, content, List.of());
+        assertEquals("a".repeat(RecentMessageCache.MAX_CONTENT_CHARS - 1), cache.remove(10, 1).getContent());
+    }
+
+    @Test
+    void keepsUpToTenUsableAttachmentUrls() {
+        List<String> urls = new ArrayList<>();
+        urls.add("https://cdn.example/" + "x".repeat(600));
+        for (int i = 0; i < 12; i++) {
+            urls.add("https://cdn.example/" + i + ".png");
+        }
+        RecentMessageCache cache = new RecentMessageCache(MB, 10);
+        cache.put(GUILD, 10, 1, AUTHOR, "", urls);
+
+        List<String> kept = cache.remove(10, 1).getAttachments();
+        assertEquals(RecentMessageCache.MAX_ATTACHMENTS, kept.size());
+        assertEquals(urls.subList(1, 11), kept);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Timing Wheel Tests
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    // Not on a minute boundary, so cascades happen mid-run
+    private static final long START = 1_700_000_017_000L;
+
+    @Test
+    void firesNothingBeforeItsSecond() {
+        TimingWheel<String> wheel = new TimingWheel<>(START);
+        wheel.add(START + 5_000, "a");
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(START + 4_999, fired::add);
+        assertTrue(fired.isEmpty());
+        assertEquals(1, wheel.size());
+
+        wheel.advance(START + 5_000, fired::add);
+        assertEquals(List.of("a"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlinesFireOnTheNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(START);
+        wheel.add(START - 60_000, "late");
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(START, fired::add);
+        assertEquals(List.of("late"), fired);
+    }
+
+    @Test
+    void refusesDeadlinesPastTheSpan() {
+        TimingWheel<String> wheel = new TimingWheel<>(START);
+        assertTrue(wheel.add(START + TimingWheel.SPAN_MS - 1_000, "last"));
+        assertFalse(wheel.add(START + TimingWheel.SPAN_MS, "too far"));
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void cascadesTheOuterWheelInDeadlineOrder() {
+        TimingWheel<Long> wheel = new TimingWheel<>(START);
+        Random random = new Random(7);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            long deadline = START + random.nextLong(TimingWheel.SPAN_MS - 1_000);
+            deadlines.add(deadline);
+            assertTrue(wheel.add(deadline, deadline));
+        }
+
+        List<Long> fired = new ArrayList<>();
+        // Uneven steps, including ones that cross several minutes at once
+        long now = START;
+        while (fired.size() < deadlines.size()) {
+            long from = now;
+            now += 1_000 + random.nextInt(200_000);
+            long until = now;
+            wheel.advance(now, deadline -> {
+                assertTrue(deadline / 1_000 <= until / 1_000, "fired early");
+                assertTrue(deadline / 1_000 > from / 1_000 || from == START, "fired late");
+                fired.add(deadline);
+            });
+        }
+
+        for (int i = 1; i < fired.size(); i++) {
+            assertTrue(fired.get(i - 1) / 1_000 <= fired.get(i) / 1_000, "out of order at " + i);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void addsDuringARunLandRelativeToTheCurrentTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(START);
+        List<String> fired = new ArrayList<>();
+        wheel.advance(START + 3_600_000, fired::add);
+
+        long now = START + 3_600_000;
+        wheel.add(now + 90_000, "later");
+        wheel.advance(now + 89_000, fired::add);
+        assertTrue(fired.isEmpty());
+        wheel.advance(now + 90_000, fired::add);
+        assertEquals(List.of("later"), fired);
+    }
+}
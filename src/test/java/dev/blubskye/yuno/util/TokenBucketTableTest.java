@@ -0,0 +1,129 @@
+/*
+ * Yuno Gasai 2 (Java Edition) - Token Bucket Table Tests
+ * Copyright (C) 2025 blubskye
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package dev.blubskye.yuno.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTableTest {
+    private static final long NOW = 1_700_000_000_000L;
+    // Three at once, then one every ten seconds
+    private static final long BURST = 3;
+    private static final long PER_MINUTE = 6;
+
+    @Test
+    void allowsTheBurstThenSaysHowLongToWait() {
+        TokenBucketTable table = new TokenBucketTable(64, NOW);
+        for (int i = 0; i < BURST; i++) {
+            assertEquals(0, table.tryTake(1, 1, BURST, PER_MINUTE, NOW));
+        }
+        assertEquals(10_000, table.tryTake(1, 1, BURST, PER_MINUTE, NOW));
+        assertEquals(4_000, table.tryTake(1, 1, BURST, PER_MINUTE, NOW + 6_000));
+        assertEquals(0, table.tryTake(1, 1, BURST, PER_MINUTE, NOW + 10_000));
+        assertEquals(10_000, table.tryTake(1, 1, BURST, PER_MINUTE, NOW + 10_000));
+    }
+
+    @Test
+    void refillsNoHigherThanTheBurst() {
+        TokenBucketTable table = new TokenBucketTable(64, NOW);
+        table.tryTake(1, BURST, BURST, PER_MINUTE, NOW);
+        long later = NOW + 3_600_000;
+        for (int i = 0; i < BURST; i++) {
+            assertEquals(0, table.tryTake(1, 1, BURST, PER_MINUTE, later));
+        }
+        assertTrue(table.tryTake(1, 1, BURST, PER_MINUTE, later) > 0);
+    }
+
+    @Test
+    void chargesACostAboveTheBurstAsTheBurst() {
+        TokenBucketTable table = new TokenBucketTable(64, NOW);
+        assertEquals(0, table.tryTake(1, 50, BURST, PER_MINUTE, NOW));
+        assertEquals(10_000, table.tryTake(1, 1, BURST, PER_MINUTE, NOW));
+    }
+
+    @Test
+    void refundGivesTokensBack() {
+        TokenBucketTable table = new TokenBucketTable(64, NOW);
+        table.tryTake(1, BURST, BURST, PER_MINUTE, NOW);
+        table.refund(1, 2, BURST, PER_MINUTE, NOW);
+        assertEquals(0, table.tryTake(1, 2, BURST, PER_MINUTE, NOW));
+        assertTrue(table.tryTake(1, 1, BURST, PER_MINUTE, NOW) > 0);
+        // Never past the burst, and unknown keys are ignored
+        table.refund(1, 100, BURST, PER_MINUTE, NOW);
+        table.refund(2, 1, BURST, PER_MINUTE, NOW);
+        assertEquals(0, table.tryTake(1, BURST, BURST, PER_MINUTE, NOW));
+        assertTrue(table.tryTake(1, 1, BURST, PER_MINUTE, NOW) > 0);
+    }
+
+    @Test
+    void keysHaveTheirOwnBuckets() {
+        TokenBucketTable table = new TokenBucketTable(64, NOW);
+        table.tryTake(1, BURST, BURST, PER_MINUTE, NOW);
+        assertEquals(0, table.tryTake(2, BURST, BURST, PER_MINUTE, NOW));
+        assertTrue(table.tryTake(1, 1, BURST, PER_MINUTE, NOW) > 0);
+    }
+
+    @Test
+    void letsThroughWhenEveryProbedSlotIsBusy() {
+        TokenBucketTable table = new TokenBucketTable(2, NOW);
+        table.tryTake(1, BURST, BURST, PER_MINUTE, NOW);
+        table.tryTake(2, BURST, BURST, PER_MINUTE, NOW);
+        // No slot to keep a third bucket in, so no limit either
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, table.tryTake(3, 1, BURST, PER_MINUTE, NOW));
+        }
+        assertTrue(table.tryTake(1, 1, BURST, PER_MINUTE, NOW) > 0);
+    }
+
+    @Test
+    void handsARefilledSlotToANewKey() {
+        TokenBucketTable table = new TokenBucketTable(2, NOW);
+        table.tryTake(1, BURST, BURST, PER_MINUTE, NOW);
+        table.tryTake(2, BURST, BURST, PER_MINUTE, NOW);
+
+        long later = NOW + 60_000;
+        table.tryTake(3, BURST, BURST, PER_MINUTE, later);
+        assertTrue(table.tryTake(3, 1, BURST, PER_MINUTE, later) > 0);
+    }
+
+    @Test
+    void concurrentTakesNeverOverspend() throws InterruptedException {
+        TokenBucketTable table = new TokenBucketTable(64, NOW);
+        long burst = 1_000;
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 500; i++) {
+                    if (table.tryTake(7, 1, burst, 1, NOW) == 0) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(burst, allowed.get());
+    }
+}